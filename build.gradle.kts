@@ -7,6 +7,7 @@ plugins {
 	`jacoco-report-aggregation`
 	id("org.springframework.boot") version "3.4.1"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.2"
 }
 
 checkstyle {
@@ -57,8 +58,21 @@ dependencies {
 	implementation("com.fasterxml.jackson.core:jackson-annotations")
 
 	implementation("org.apache.commons:commons-lang3:3.17.0")
+	implementation("com.github.ben-manes.caffeine:caffeine")
 
 	annotationProcessor("org.springframework.boot:spring-boot-configuration-processor")
+
+	jmh("org.testcontainers:postgresql")
+	jmh("org.postgresql:postgresql")
+	jmh("org.postgresql:r2dbc-postgresql")
+}
+
+jmh {
+	warmupIterations = 2
+	iterations = 5
+	fork = 1
+	resultFormat = "JSON"
+	zip64 = true
 }
 
 testing {
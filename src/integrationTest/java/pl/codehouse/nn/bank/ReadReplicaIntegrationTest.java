@@ -0,0 +1,160 @@
+package pl.codehouse.nn.bank;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.Money;
+import pl.codehouse.nn.bank.customer.CustomerApi;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class ReadReplicaIntegrationTest {
+    private static final long WRITING_CUSTOMER_ID = 1L;
+    private static final long READING_CUSTOMER_ID = 2L;
+    private static final long CREATED_CUSTOMER_ID = 3L;
+
+    private static final PostgreSQLContainer<?> replica = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"))
+            .withDatabaseName("bank_account_db")
+            .withUsername("test_user")
+            .withPassword("test_password");
+
+    static {
+        replica.start();
+    }
+
+    @DynamicPropertySource
+    static void readReplicaProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.read-replicas.enabled", () -> "true");
+        registry.add("app.read-replicas.urls", () -> "r2dbc:postgresql://%s:%d/%s".formatted(
+                replica.getHost(), replica.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), replica.getDatabaseName()));
+        registry.add("app.read-replicas.readYourWritesWindow", () -> "PT1M");
+    }
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private CustomerApi customerApi;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) throws SQLException {
+        flyway.clean();
+        flyway.migrate();
+        Flyway replicaFlyway = Flyway.configure()
+                .dataSource(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword())
+                .locations("classpath:db/migrations")
+                .placeholders(Map.of("storage", "ROWS"))
+                .cleanDisabled(false)
+                .load();
+        replicaFlyway.clean();
+        replicaFlyway.migrate();
+
+        // The replica lags behind the primary, so that it is visible which of them served a read
+        for (long customerId : List.of(WRITING_CUSTOMER_ID, READING_CUSTOMER_ID)) {
+            entityTemplate.getDatabaseClient().sql(insertCustomerSql(customerId, 10000)).then().block();
+            onReplica(insertCustomerSql(customerId, 5000));
+        }
+    }
+
+    @Test
+    void readsAccountsFromReplica() {
+        // When
+        var accounts = accountService.findAccountsFor(READING_CUSTOMER_ID);
+
+        // Then
+        StepVerifier.create(accounts)
+                .expectNext(List.of(new CurrencyAccountDto(Currency.PLN, new BigDecimal("50.00"), true)))
+                .verifyComplete();
+    }
+
+    @Test
+    void readsOwnWritesFromPrimaryWithinReadYourWritesWindow() {
+        // When
+        accountService.updateAmountFor(WRITING_CUSTOMER_ID, Money.ofMinor(1000, Currency.PLN)).block();
+
+        // Then
+        StepVerifier.create(accountService.findAccountsFor(WRITING_CUSTOMER_ID))
+                .expectNext(List.of(new CurrencyAccountDto(Currency.PLN, new BigDecimal("110.00"), true)))
+                .verifyComplete();
+        StepVerifier.create(accountService.findAccountsFor(READING_CUSTOMER_ID))
+                .expectNext(List.of(new CurrencyAccountDto(Currency.PLN, new BigDecimal("50.00"), true)))
+                .verifyComplete();
+    }
+
+    @Test
+    void readsCustomerNotYetOnReplicaFromPrimary() {
+        // Given
+        entityTemplate.getDatabaseClient().sql(insertCustomerSql(CREATED_CUSTOMER_ID, 10000)).then().block();
+
+        // When
+        var customer = customerApi.fetchCustomer(CREATED_CUSTOMER_ID);
+
+        // Then
+        StepVerifier.create(customer)
+                .assertNext(created -> assertThat(created.accountBalance())
+                        .containsExactly(new CurrencyAccountDto(Currency.PLN, new BigDecimal("100.00"), true)))
+                .verifyComplete();
+    }
+
+    @Test
+    void readsCustomerChangedByAnotherNodeFromPrimary() {
+        // Given
+        entityTemplate.getDatabaseClient()
+                .sql("UPDATE currency_accounts SET amount_minor = 12000 WHERE customer_id = %d".formatted(READING_CUSTOMER_ID))
+                .then()
+                .block();
+
+        // When
+        var customer = customerApi.fetchCustomer(READING_CUSTOMER_ID);
+
+        // Then
+        StepVerifier.create(customer)
+                .assertNext(changed -> assertThat(changed.accountBalance())
+                        .containsExactly(new CurrencyAccountDto(Currency.PLN, new BigDecimal("120.00"), true)))
+                .verifyComplete();
+    }
+
+    private static String insertCustomerSql(long customerId, long amountMinor) {
+        return """
+                INSERT INTO customers(id, first_name, last_name) VALUES (%1$d, 'John', 'Doe');
+                INSERT INTO currency_accounts(customer_id, currency, amount_minor, is_main_account) VALUES (%1$d, 'PLN', %2$d, TRUE);
+                """.formatted(customerId, amountMinor);
+    }
+
+    private static void onReplica(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@TestPropertySource(properties = {
+        "app.accounts.storage=LEDGER",
+        "app.accounts.ledger.snapshotInterval=PT1H"
+})
+class AccountLedgerIntegrationTest {
+    private static final long CUSTOMER_ID = 1L;
+    private static final String INSERT_CUSTOMER_SQL = "INSERT INTO customers(id, first_name, last_name) VALUES (:id, 'John', 'Doe')";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private LedgerSnapshotter ledgerSnapshotter;
+
+    @Autowired
+    private AccountLedgerRepository ledgerRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+        entityTemplate.getDatabaseClient().sql(INSERT_CUSTOMER_SQL).bind("id", CUSTOMER_ID).then().block();
+        accountService.createNewAccounts(new NewAccountsRequest(CUSTOMER_ID, new BigDecimal("100.00"), Currency.PLN, List.of(Currency.EUR))).block();
+    }
+
+    @Test
+    void concurrentExchangesAppendLedgerEntriesWithoutOverdrawingTheAccount() {
+        // When
+        var results = Flux.range(0, 20)
+                .flatMap(i -> accountService.updateAmountsFor(CUSTOMER_ID, Map.of(
+                                        Currency.PLN, Money.ofMinor(-1000, Currency.PLN),
+                                        Currency.EUR, Money.ofMinor(234, Currency.EUR)))
+                                .map(accounts -> true)
+                                .onErrorResume(InsufficientFundsException.class, e -> Mono.just(false))
+                                .subscribeOn(Schedulers.parallel()),
+                        20)
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(10);
+        assertBalances("0.00", "23.40");
+        assertThat(countRows("SELECT COUNT(*) FROM account_ledger")).isEqualTo(20);
+        assertThat(countRows("SELECT COUNT(*) FROM currency_accounts WHERE amount_minor = 10000")).isEqualTo(1);
+    }
+
+    @Test
+    void balancesReadFromSnapshotPlusTailAfterSnapshotting() {
+        // Given
+        accountService.updateAmountsFor(CUSTOMER_ID, Map.of(Currency.PLN, Money.ofMinor(-1000, Currency.PLN), Currency.EUR, Money.ofMinor(234, Currency.EUR))).block();
+
+        // When
+        StepVerifier.create(ledgerSnapshotter.snapshot())
+                .expectNext(2L)
+                .verifyComplete();
+        accountService.updateAmountFor(CUSTOMER_ID, Money.ofMinor(-500, Currency.PLN)).block();
+
+        // Then
+        assertBalances("85.00", "2.34");
+        assertThat(countRows("SELECT COUNT(*) FROM account_balance_snapshots")).isEqualTo(2);
+
+        // And
+        StepVerifier.create(ledgerSnapshotter.snapshot())
+                .expectNext(1L)
+                .verifyComplete();
+        assertBalances("85.00", "2.34");
+    }
+
+    @Test
+    void newestFoldedEntryFoundAfterSnapshotting() {
+        // Given
+        accountService.updateAmountsFor(CUSTOMER_ID, Map.of(Currency.PLN, Money.ofMinor(-1000, Currency.PLN), Currency.EUR, Money.ofMinor(234, Currency.EUR))).block();
+        StepVerifier.create(ledgerRepository.findLastSnapshotEntryId())
+                .expectNext(0L)
+                .verifyComplete();
+
+        // When
+        ledgerSnapshotter.snapshot().block();
+
+        // Then
+        StepVerifier.create(ledgerRepository.findLastSnapshotEntryId())
+                .expectNext(countRows("SELECT MAX(entry_id) FROM account_ledger"))
+                .verifyComplete();
+    }
+
+    private void assertBalances(String expectedPln, String expectedEur) {
+        StepVerifier.create(accountService.findAccountsFor(CUSTOMER_ID))
+                .assertNext(accounts -> {
+                    assertThat(accounts).anySatisfy(account -> {
+                        assertThat(account.currency()).isEqualTo(Currency.PLN);
+                        assertThat(account.amount()).isEqualByComparingTo(expectedPln);
+                    });
+                    assertThat(accounts).anySatisfy(account -> {
+                        assertThat(account.currency()).isEqualTo(Currency.EUR);
+                        assertThat(account.amount()).isEqualByComparingTo(expectedEur);
+                    });
+                })
+                .verifyComplete();
+    }
+
+    private long countRows(String sql) {
+        return entityTemplate.getDatabaseClient().sql(sql)
+                .map(readable -> readable.get(0, Long.class))
+                .one()
+                .block();
+    }
+}
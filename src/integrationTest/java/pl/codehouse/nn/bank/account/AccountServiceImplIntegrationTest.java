@@ -0,0 +1,173 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.ReactiveTransactionManager;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import pl.codehouse.nn.bank.account.AccountProperties.Concurrency;
+import pl.codehouse.nn.bank.account.AccountProperties.ConcurrencyMode;
+import pl.codehouse.nn.bank.account.AccountProperties.Holdings;
+import pl.codehouse.nn.bank.account.AccountProperties.Ledger;
+import pl.codehouse.nn.bank.account.AccountProperties.Storage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class AccountServiceImplIntegrationTest {
+    private static final long CUSTOMER_ID = 1L;
+    private static final String INSERT_CUSTOMER_SQL = "INSERT INTO customers(id, first_name, last_name) VALUES (:id, 'John', 'Doe')";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+        entityTemplate.getDatabaseClient().sql(INSERT_CUSTOMER_SQL).bind("id", CUSTOMER_ID).then().block();
+        accountService.createNewAccounts(new NewAccountsRequest(CUSTOMER_ID, new BigDecimal("100.00"), Currency.PLN, List.of(Currency.EUR))).block();
+    }
+
+    @Test
+    void concurrentExchangesNeverOverdrawTheAccountNorLoseUpdates() {
+        // When
+        var results = Flux.range(0, 20)
+                .flatMap(i -> accountService.updateAmountsFor(CUSTOMER_ID, Map.of(
+                                        Currency.PLN, Money.ofMinor(-1000, Currency.PLN),
+                                        Currency.EUR, Money.ofMinor(234, Currency.EUR)))
+                                .map(accounts -> true)
+                                .onErrorResume(InsufficientFundsException.class, e -> Mono.just(false))
+                                .subscribeOn(Schedulers.parallel()),
+                        20)
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(results).containsOnly(true, false);
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(10);
+        StepVerifier.create(accountService.findAccountsFor(CUSTOMER_ID))
+                .assertNext(accounts -> {
+                    assertThat(accounts).anySatisfy(account -> {
+                        assertThat(account.currency()).isEqualTo(Currency.PLN);
+                        assertThat(account.amount()).isEqualByComparingTo("0.00");
+                    });
+                    assertThat(accounts).anySatisfy(account -> {
+                        assertThat(account.currency()).isEqualTo(Currency.EUR);
+                        assertThat(account.amount()).isEqualByComparingTo("23.40");
+                    });
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void currencyHoldingsFollowEveryCommittedBalanceChange() {
+        // Given
+        entityTemplate.getDatabaseClient().sql(INSERT_CUSTOMER_SQL).bind("id", 2L).then().block();
+        accountService.createNewAccounts(new NewAccountsRequest(2L, new BigDecimal("50.00"), Currency.EUR, List.of(Currency.PLN))).block();
+
+        // When
+        var results = Flux.range(0, 20)
+                .flatMap(i -> accountService.updateAmountsFor(i % 2 == 0 ? CUSTOMER_ID : 2L, Map.of(
+                                        Currency.PLN, Money.ofMinor(-1000, Currency.PLN),
+                                        Currency.EUR, Money.ofMinor(234, Currency.EUR)))
+                                .map(accounts -> true)
+                                .onErrorResume(InsufficientFundsException.class, e -> Mono.just(false))
+                                .subscribeOn(Schedulers.parallel()),
+                        20)
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(10);
+        StepVerifier.create(accountService.findHoldings())
+                .expectNext(List.of(
+                        new CurrencyHoldingDto(Currency.PLN, new BigDecimal("0.00")),
+                        new CurrencyHoldingDto(Currency.EUR, new BigDecimal("73.40"))))
+                .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConcurrencyMode.class)
+    void everyConcurrencyModeKeepsBalancesConsistentUnderContention(ConcurrencyMode mode,
+                                                                    @Autowired CurrencyAccountRepository repository,
+                                                                    @Autowired AccountLedgerRepository ledgerRepository,
+                                                                    @Autowired CurrencyHoldingsRepository holdingsRepository,
+                                                                    @Autowired ReactiveTransactionManager transactionManager) {
+        // Given
+        var properties = new AccountProperties(Storage.ROWS,
+                new Concurrency(mode, 50, Duration.ofMillis(1), Duration.ofMillis(50), 0.5),
+                new Ledger(Duration.ofMinutes(1), 1),
+                new Holdings(4));
+        var balanceUpdater = new BalanceUpdater(repository, ledgerRepository, holdingsRepository, transactionManager, properties, new SimpleMeterRegistry());
+
+        // When
+        var results = Flux.range(0, 20)
+                .flatMap(i -> balanceUpdater.update(CUSTOMER_ID, Map.of(
+                                        Currency.PLN, Money.ofMinor(-1000, Currency.PLN),
+                                        Currency.EUR, Money.ofMinor(234, Currency.EUR)))
+                                .map(accounts -> true)
+                                .onErrorResume(InsufficientFundsException.class, e -> Mono.just(false))
+                                .subscribeOn(Schedulers.parallel()),
+                        20)
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(10);
+        StepVerifier.create(accountService.findAccountsFor(CUSTOMER_ID))
+                .assertNext(accounts -> {
+                    assertThat(accounts).anySatisfy(account -> {
+                        assertThat(account.currency()).isEqualTo(Currency.PLN);
+                        assertThat(account.amount()).isEqualByComparingTo("0.00");
+                    });
+                    assertThat(accounts).anySatisfy(account -> {
+                        assertThat(account.currency()).isEqualTo(Currency.EUR);
+                        assertThat(account.amount()).isEqualByComparingTo("23.40");
+                    });
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void failedLegRollsBackTheWholeExchange() {
+        // When
+        var result = accountService.updateAmountsFor(CUSTOMER_ID, Map.of(
+                Currency.PLN, Money.ofMinor(1000, Currency.PLN),
+                Currency.EUR, Money.ofMinor(-100, Currency.EUR)));
+
+        // Then
+        StepVerifier.create(result)
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        StepVerifier.create(accountService.findAccountsFor(CUSTOMER_ID))
+                .assertNext(accounts -> assertThat(accounts).anySatisfy(account -> {
+                    assertThat(account.currency()).isEqualTo(Currency.PLN);
+                    assertThat(account.amount()).isEqualByComparingTo("100.00");
+                }))
+                .verifyComplete();
+    }
+}
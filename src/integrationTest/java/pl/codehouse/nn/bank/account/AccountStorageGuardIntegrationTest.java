@@ -0,0 +1,66 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class AccountStorageGuardIntegrationTest {
+    private static final String INSERT_CUSTOMER_SQL = "INSERT INTO customers(id, first_name, last_name) VALUES (1, 'John', 'Doe')";
+    private static final String RECORD_COMPACT_STORAGE_SQL = "UPDATE account_storage SET storage = 'COMPACT'";
+
+    @Autowired
+    private AccountStorageGuard guard;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+    }
+
+    @Test
+    void refusesStorageOtherThanTheOneOfExistingCustomers() {
+        // Given
+        entityTemplate.getDatabaseClient().sql(INSERT_CUSTOMER_SQL).then().block();
+        entityTemplate.getDatabaseClient().sql(RECORD_COMPACT_STORAGE_SQL).then().block();
+
+        // When & Then
+        StepVerifier.create(guard.verifyStorage())
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasMessageContaining("kept in COMPACT storage, app.accounts.storage=ROWS"))
+                .verify();
+    }
+
+    @Test
+    void switchesStorageOfDatabaseWithoutCustomers() {
+        // Given
+        entityTemplate.getDatabaseClient().sql(RECORD_COMPACT_STORAGE_SQL).then().block();
+
+        // When
+        StepVerifier.create(guard.verifyStorage())
+                .verifyComplete();
+
+        // Then
+        assertThat(entityTemplate.getDatabaseClient().sql("SELECT storage FROM account_storage")
+                .map(row -> row.get("storage", String.class))
+                .one()
+                .block()).isEqualTo("ROWS");
+    }
+}
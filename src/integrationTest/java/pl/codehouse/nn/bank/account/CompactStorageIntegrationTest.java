@@ -0,0 +1,111 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@TestPropertySource(properties = "app.accounts.storage=COMPACT")
+class CompactStorageIntegrationTest {
+    private static final long CUSTOMER_ID = 1L;
+    private static final String INSERT_CUSTOMER_SQL = "INSERT INTO customers(id, first_name, last_name) VALUES (:id, 'John', 'Doe')";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private CurrencyAccountRepository repository;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+        entityTemplate.getDatabaseClient().sql(INSERT_CUSTOMER_SQL).bind("id", CUSTOMER_ID).then().block();
+        accountService.createNewAccounts(new NewAccountsRequest(CUSTOMER_ID, new BigDecimal("100.00"), Currency.PLN, List.of(Currency.EUR))).block();
+    }
+
+    @Test
+    void keepsAllBalancesOfCustomerInSingleRow() {
+        // Then
+        assertThat(repository).isInstanceOf(CompactCurrencyAccountRepository.class);
+        assertThat(countRows("SELECT COUNT(*) FROM customer_balances")).isEqualTo(1);
+        assertThat(countRows("SELECT COUNT(*) FROM currency_accounts")).isZero();
+        StepVerifier.create(accountService.findAccountsFor(CUSTOMER_ID))
+                .expectNext(List.of(
+                        new CurrencyAccountDto(Currency.PLN, new BigDecimal("100.00"), true),
+                        new CurrencyAccountDto(Currency.EUR, new BigDecimal("0.00"), false)))
+                .verifyComplete();
+    }
+
+    @Test
+    void concurrentExchangesUpdateSingleRowWithoutOverdrawingTheAccount() {
+        // When
+        var results = Flux.range(0, 20)
+                .flatMap(i -> accountService.updateAmountsFor(CUSTOMER_ID, Map.of(
+                                        Currency.PLN, Money.ofMinor(-1000, Currency.PLN),
+                                        Currency.EUR, Money.ofMinor(234, Currency.EUR)))
+                                .map(accounts -> true)
+                                .onErrorResume(InsufficientFundsException.class, e -> Mono.just(false))
+                                .subscribeOn(Schedulers.parallel()),
+                        20)
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(results.stream().filter(Boolean::booleanValue).count()).isEqualTo(10);
+        assertThat(countRows("SELECT version FROM customer_balances WHERE customer_id = 1")).isEqualTo(10);
+        StepVerifier.create(accountService.findAccountsFor(CUSTOMER_ID))
+                .expectNext(List.of(
+                        new CurrencyAccountDto(Currency.PLN, new BigDecimal("0.00"), true),
+                        new CurrencyAccountDto(Currency.EUR, new BigDecimal("23.40"), false)))
+                .verifyComplete();
+    }
+
+    @Test
+    void rejectsWholeExchangeWhenCustomerHasNoAccountInOneOfTheCurrencies() {
+        // When
+        var result = accountService.updateAmountsFor(CUSTOMER_ID, Map.of(
+                Currency.PLN, Money.ofMinor(-1000, Currency.PLN),
+                Currency.USD, Money.ofMinor(241, Currency.USD)));
+
+        // Then
+        StepVerifier.create(result)
+                .expectError(CurrencyAccountNotFoundException.class)
+                .verify();
+        StepVerifier.create(repository.findById(new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN)))
+                .assertNext(account -> assertThat(account.amount()).isEqualTo(Money.ofMinor(10000, Currency.PLN)))
+                .verifyComplete();
+    }
+
+    private long countRows(String sql) {
+        return entityTemplate.getDatabaseClient().sql(sql)
+                .map(readable -> readable.get(0, Long.class))
+                .one()
+                .block();
+    }
+}
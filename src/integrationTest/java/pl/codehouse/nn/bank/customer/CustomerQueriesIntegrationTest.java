@@ -0,0 +1,165 @@
+package pl.codehouse.nn.bank.customer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.CurrencyHoldingDto;
+import pl.codehouse.nn.bank.account.NewAccountsRequest;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class CustomerQueriesIntegrationTest {
+    private static final String INSERT_CUSTOMER_SQL = "INSERT INTO customers(id, first_name, last_name) VALUES (:id, 'John', 'Doe')";
+
+    @Autowired
+    private CustomerRepository repository;
+
+    @Autowired
+    private AccountService accountService;
+
+    @Autowired
+    private R2dbcEntityTemplate entityTemplate;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+    }
+
+    @Test
+    @DisplayName("should load customer with all its accounts, the main account first")
+    void should_LoadCustomerWithAllItsAccounts_MainAccountFirst() {
+        // given
+        insertCustomer(1L);
+        accountService.createNewAccounts(new NewAccountsRequest(1L, new BigDecimal("100.00"), Currency.USD, List.of(Currency.EUR, Currency.PLN))).block();
+
+        // when & then
+        StepVerifier.create(repository.findWithAccounts(1L))
+                .assertNext(customer -> {
+                    assertThat(customer.accountId()).isEqualTo(1L);
+                    assertThat(customer.firstName()).isEqualTo("John");
+                    assertThat(customer.lastName()).isEqualTo("Doe");
+                    assertThat(customer.accountBalance()).usingRecursiveComparison()
+                            .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                            .isEqualTo(List.of(
+                                    new CurrencyAccountDto(Currency.USD, new BigDecimal("100.00"), true),
+                                    new CurrencyAccountDto(Currency.EUR, BigDecimal.ZERO, false),
+                                    new CurrencyAccountDto(Currency.PLN, BigDecimal.ZERO, false)));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should load customer without accounts with empty account list")
+    void should_LoadCustomerWithoutAccounts_WithEmptyAccountList() {
+        // given
+        insertCustomer(2L);
+
+        // when & then
+        StepVerifier.create(repository.findWithAccounts(2L))
+                .assertNext(customer -> assertThat(customer.accountBalance()).isEmpty())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should complete empty when customer does not exist")
+    void should_CompleteEmpty_When_CustomerDoesNotExist() {
+        StepVerifier.create(repository.findWithAccounts(3L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should stream all customers after the given id in id order, each with its accounts, through a small cursor")
+    void should_StreamAllCustomersAfterGivenId_InIdOrder() {
+        // given
+        for (long customerId = 1L; customerId <= 5L; customerId++) {
+            insertCustomer(customerId);
+        }
+        accountService.createNewAccounts(new NewAccountsRequest(2L, new BigDecimal("20.00"), Currency.EUR, List.of(Currency.PLN))).block();
+        accountService.createNewAccounts(new NewAccountsRequest(4L, new BigDecimal("40.00"), Currency.PLN, List.of(Currency.USD))).block();
+
+        // when & then
+        StepVerifier.create(repository.streamAllWithAccounts(1L, 2))
+                .assertNext(customer -> {
+                    assertThat(customer.accountId()).isEqualTo(2L);
+                    assertThat(customer.accountBalance()).extracting(CurrencyAccountDto::currency).containsExactly(Currency.EUR, Currency.PLN);
+                })
+                .assertNext(customer -> assertThat(customer.accountBalance()).isEmpty())
+                .assertNext(customer -> {
+                    assertThat(customer.accountId()).isEqualTo(4L);
+                    assertThat(customer.accountBalance()).extracting(CurrencyAccountDto::currency).containsExactly(Currency.PLN, Currency.USD);
+                })
+                .assertNext(customer -> assertThat(customer.accountId()).isEqualTo(5L))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should load pages of customers after the given id, each with its accounts, until the last one")
+    void should_LoadPagesOfCustomersAfterGivenId() {
+        // given
+        for (long customerId = 1L; customerId <= 5L; customerId++) {
+            insertCustomer(customerId);
+        }
+        accountService.createNewAccounts(new NewAccountsRequest(3L, new BigDecimal("30.00"), Currency.USD, List.of(Currency.EUR))).block();
+
+        // when & then
+        StepVerifier.create(repository.findPageWithAccounts(2L, 2))
+                .assertNext(page -> {
+                    assertThat(page).extracting(CustomerDto::accountId).containsExactly(3L, 4L);
+                    assertThat(page.get(0).accountBalance()).extracting(CurrencyAccountDto::currency).containsExactly(Currency.USD, Currency.EUR);
+                    assertThat(page.get(1).accountBalance()).isEmpty();
+                })
+                .verifyComplete();
+        StepVerifier.create(repository.findPageWithAccounts(4L, 2))
+                .assertNext(page -> assertThat(page).extracting(CustomerDto::accountId).containsExactly(5L))
+                .verifyComplete();
+        StepVerifier.create(repository.findPageWithAccounts(5L, 2))
+                .assertNext(page -> assertThat(page).isEmpty())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should insert customer with its accounts and their opening balances in currency holdings with a single statement")
+    void should_InsertCustomerWithItsAccounts() {
+        // given
+        var customer = Customer.createNew("Peter", "Pan");
+        var accounts = new NewAccountsRequest(0L, new BigDecimal("199.99"), Currency.USD, List.of(Currency.PLN, Currency.USD));
+
+        // when
+        var inserted = repository.insertWithAccounts(customer, accounts).block();
+
+        // then
+        assertThat(inserted.accountId()).isPositive();
+        assertThat(inserted.accountBalance()).containsExactly(
+                new CurrencyAccountDto(Currency.USD, new BigDecimal("199.99"), true),
+                new CurrencyAccountDto(Currency.PLN, new BigDecimal("0.00"), false));
+        StepVerifier.create(repository.findWithAccounts(inserted.accountId()))
+                .expectNext(inserted)
+                .verifyComplete();
+        StepVerifier.create(accountService.findHoldings())
+                .expectNext(List.of(new CurrencyHoldingDto(Currency.USD, new BigDecimal("199.99"))))
+                .verifyComplete();
+    }
+
+    private void insertCustomer(long customerId) {
+        entityTemplate.getDatabaseClient().sql(INSERT_CUSTOMER_SQL).bind("id", customerId).then().block();
+    }
+}
@@ -1,6 +1,7 @@
 package pl.codehouse.nn.bank.customer;
 
 import static io.restassured.module.webtestclient.RestAssuredWebTestClient.given;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
@@ -25,10 +26,13 @@ import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
 
 @ActiveProfiles("test")
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -38,8 +42,8 @@ import pl.codehouse.nn.bank.TestcontainersConfiguration;
 @Import(TestcontainersConfiguration.class)
 class CustomerResourceApiTest {
     private static final String INSERT_SQL_TEMPLATE = """
-            INSERT INTO currency_accounts(customer_id, currency, amount, is_main_account) 
-            VALUES (:customerId, :currency, :amount, :isMainAccount) RETURNING customer_id, currency, amount, is_main_account;
+            INSERT INTO currency_accounts(customer_id, currency, amount_minor, is_main_account) 
+            VALUES (:customerId, :currency, :amountMinor, :isMainAccount) RETURNING customer_id, currency, amount_minor, is_main_account;
             """;
     @Autowired
     private WebTestClient webTestClient;
@@ -84,12 +88,52 @@ class CustomerResourceApiTest {
                 .body("accountBalance", hasSize(2))
                 .body("accountBalance.find { it.currency == 'PLN' }.amount", equalTo(199.99f))
                 .body("accountBalance.find { it.currency == 'PLN' }.isMainAccount", equalTo(true))
-                .body("accountBalance.find { it.currency == 'USD' }.amount", equalTo(0))
+                .body("accountBalance.find { it.currency == 'USD' }.amount", equalTo(0f))
                 .body("accountBalance.find { it.currency == 'USD' }.isMainAccount", equalTo(false))
 
         ;
     }
 
+    @Test
+    @DisplayName("should create customers streamed as NDJSON and stream back a result per line")
+    void should_CreateCustomersStreamedAsNdjson_AndStreamBackResultPerLine(@Autowired R2dbcEntityTemplate r2dbcEntityTemplate) {
+        // given
+        var lines = """
+                {"firstName": "Peter", "lastName": "Pan", "mainAccountBalance": "199.99", "mainAccountCurrency": "PLN", "additionalCurrencies": ["USD"]}
+                {"firstName": "", "lastName": "Hook", "mainAccountBalance": "10.00", "mainAccountCurrency": "PLN", "additionalCurrencies": []}
+                {"firstName": "Wendy", "lastName": "Darling", "mainAccountBalance": "5.00", "mainAccountCurrency": "EUR", "additionalCurrencies": []}
+                """;
+
+        // when
+        List<BulkCustomerResult> results = webTestClient.post()
+                .uri("/customers/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(lines)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BulkCustomerResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // then
+        assertThat(results).extracting(BulkCustomerResult::line).containsExactly(1L, 2L, 3L);
+        assertThat(results.get(0).customer().firstName()).isEqualTo("Peter");
+        assertThat(results.get(0).customer().accountBalance())
+                .extracting(CurrencyAccountDto::currency)
+                .containsExactly(Currency.PLN, Currency.USD);
+        assertThat(results.get(1).customer()).isNull();
+        assertThat(results.get(1).error()).contains("firstName");
+        assertThat(results.get(2).customer().accountBalance())
+                .extracting(CurrencyAccountDto::currency)
+                .containsExactly(Currency.EUR, Currency.PLN, Currency.USD);
+        assertThat(r2dbcEntityTemplate.getDatabaseClient().sql("SELECT COUNT(*) FROM customers")
+                .map(readable -> readable.get(0, Long.class))
+                .one()
+                .block()).isEqualTo(2L);
+    }
+
     @Test
     @DisplayName("should fetch existing customer by id")
     void should_FetchExistingCustomer_WhenGivenValidId(@Autowired R2dbcEntityTemplate r2dbcEntityTemplate) {
@@ -130,6 +174,21 @@ class CustomerResourceApiTest {
                 .body("detail", equalTo("Customer with id 999999 not found."));
     }
 
+    @Test
+    @DisplayName("should return 400 Bad Request when page limit exceeds the maximum")
+    void should_ReturnBadRequest_When_PageLimitExceedsMaximum() {
+        // when & then
+        given()
+                .when()
+                .get("/customers?limit=1001")
+
+                .then()
+                .log().ifValidationFails()
+                .status(HttpStatus.BAD_REQUEST)
+                .body("title", equalTo("Validation Failed"))
+                .body("errors.limit", notNullValue());
+    }
+
 
     @Test
     @DisplayName("should update EUR account when exchanging PLN to EUR currency")
@@ -141,7 +200,7 @@ class CustomerResourceApiTest {
         r2dbcEntityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
                 .bind("customerId", existingCustomerId)
                 .bind("currency", "PLN")
-                .bind("amount", 199.99f)
+                .bind("amountMinor", 19999L)
                 .bind("isMainAccount", true)
                 .fetch()
                 .rowsUpdated()
@@ -150,7 +209,7 @@ class CustomerResourceApiTest {
         r2dbcEntityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
                 .bind("customerId", existingCustomerId)
                 .bind("currency", "EUR")
-                .bind("amount", 0)
+                .bind("amountMinor", 0L)
                 .bind("isMainAccount", false)
                 .fetch()
                 .rowsUpdated()
@@ -181,4 +240,122 @@ class CustomerResourceApiTest {
                 .body("accountBalance.find { it.currency == 'EUR' }.amount", equalTo(42f))
                 .body("accountBalance.find { it.currency == 'EUR' }.isMainAccount", equalTo(false));
     }
+
+    @Test
+    @DisplayName("should execute a batch of exchanges of a customer against its running balance with a single update")
+    void should_executeBatchOfExchanges_AgainstRunningBalance(
+            @Autowired R2dbcEntityTemplate r2dbcEntityTemplate) {
+        // given
+        int existingCustomerId = (int) r2dbcEntityTemplate.insert(new Customer(0L, "John", "Doe")).block().accountId();
+        r2dbcEntityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
+                .bind("customerId", existingCustomerId)
+                .bind("currency", "PLN")
+                .bind("amountMinor", 19999L)
+                .bind("isMainAccount", true)
+                .fetch()
+                .rowsUpdated()
+                .block();
+        r2dbcEntityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
+                .bind("customerId", existingCustomerId)
+                .bind("currency", "EUR")
+                .bind("amountMinor", 0L)
+                .bind("isMainAccount", false)
+                .fetch()
+                .rowsUpdated()
+                .block();
+        var lines = """
+                {"customerId": %1$d, "request": {"fromCurrency": "PLN", "toCurrency": "EUR", "amount": "89.48"}}
+                {"customerId": %1$d, "request": {"fromCurrency": "PLN", "toCurrency": "EUR", "amount": "89.48"}}
+                {"customerId": %1$d, "request": {"fromCurrency": "PLN", "toCurrency": "EUR", "amount": "25.00"}}
+                """.formatted(existingCustomerId);
+
+        // when
+        List<BatchExchangeResult> results = webTestClient.post()
+                .uri("/customers/exchange/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(lines)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BatchExchangeResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // then
+        assertThat(results).extracting(BatchExchangeResult::line).containsExactly(1L, 2L, 3L);
+        assertThat(results.get(2).error()).isEqualTo("Not enough amount for exchanging from PLN currency");
+        given()
+                .contentType(APPLICATION_JSON_VALUE)
+
+                .when()
+                .get("/customers/{customerId}", String.valueOf(existingCustomerId))
+
+                .then()
+                .log().ifValidationFails()
+                .status(HttpStatus.OK)
+                .body("accountBalance.find { it.currency == 'PLN' }.amount", equalTo(21.03f))
+                .body("accountBalance.find { it.currency == 'EUR' }.amount", equalTo(42f));
+    }
+
+    @Test
+    @DisplayName("should execute exchange with the amounts locked by a previously issued quote")
+    void should_executeExchange_When_quoteIssuedBefore(
+            @Autowired R2dbcEntityTemplate r2dbcEntityTemplate) {
+        // given
+        Customer existingCustomer = new Customer(0L, "John", "Doe");
+        int existingCustomerId = (int) r2dbcEntityTemplate.insert(existingCustomer).block().accountId();
+        r2dbcEntityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
+                .bind("customerId", existingCustomerId)
+                .bind("currency", "PLN")
+                .bind("amountMinor", 19999L)
+                .bind("isMainAccount", true)
+                .fetch()
+                .rowsUpdated()
+                .block();
+
+        r2dbcEntityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
+                .bind("customerId", existingCustomerId)
+                .bind("currency", "EUR")
+                .bind("amountMinor", 0L)
+                .bind("isMainAccount", false)
+                .fetch()
+                .rowsUpdated()
+                .block();
+
+        String quoteId = given()
+                .contentType(APPLICATION_JSON_VALUE)
+                .body(Map.of(
+                        "fromCurrency", "PLN",
+                        "toCurrency", "EUR",
+                        "amount", "178.96"
+                ))
+
+                .when()
+                .post("/customers/{customerId}/exchange/quote", String.valueOf(existingCustomerId))
+
+                .then()
+                .log().ifValidationFails()
+                .status(CREATED)
+                .body("quoteId", notNullValue())
+                .body("fromAmount", equalTo(178.96f))
+                .body("toAmount", equalTo(42f))
+                .body("expiresAt", notNullValue())
+                .extract()
+                .path("quoteId");
+
+        // when & then
+        given()
+                .contentType(APPLICATION_JSON_VALUE)
+                .body(Map.of("quoteId", quoteId))
+
+                .when()
+                .post("/customers/{customerId}/exchange", String.valueOf(existingCustomerId))
+
+                .then()
+                .log().ifValidationFails()
+                .status(HttpStatus.OK)
+                .body("accountBalance.find { it.currency == 'PLN' }.amount", equalTo(21.03f))
+                .body("accountBalance.find { it.currency == 'EUR' }.amount", equalTo(42f));
+    }
 }
@@ -0,0 +1,88 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+class ExchangeRateHistoryRepositoryImplIntegrationTest {
+    private static final String TABLE = "A";
+    private static final Instant FETCHED_AT = Instant.parse("2025-01-14T12:00:00Z");
+
+    @Autowired
+    private ExchangeRateHistoryRepository repository;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+    }
+
+    @Test
+    @DisplayName("should return the most recent rate effective on or before the requested date")
+    void should_returnMostRecentRate_AsOfRequestedDate() {
+        // given
+        var monday = entry(Currency.USD, "2025-01-13", "4.1000", "008/A/NBP/2025");
+        var tuesday = entry(Currency.USD, "2025-01-14", "4.1658", "009/A/NBP/2025");
+        repository.saveAll(List.of(monday, tuesday)).block();
+
+        // when & then
+        StepVerifier.create(repository.findAsOf(TABLE, Currency.USD, LocalDate.parse("2025-01-13")))
+                .assertNext(found -> assertThat(found.no()).isEqualTo("008/A/NBP/2025"))
+                .verifyComplete();
+
+        StepVerifier.create(repository.findAsOf(TABLE, Currency.USD, LocalDate.parse("2025-01-19")))
+                .assertNext(found -> {
+                    assertThat(found.no()).isEqualTo("009/A/NBP/2025");
+                    assertThat(found.mid()).isEqualByComparingTo("4.1658");
+                    assertThat(found.fetchedAt()).isEqualTo(FETCHED_AT);
+                })
+                .verifyComplete();
+
+        StepVerifier.create(repository.findAsOf(TABLE, Currency.USD, LocalDate.parse("2025-01-12")))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should return the latest rate of every currency and ignore duplicated recordings")
+    void should_returnLatestRateOfEveryCurrency_And_IgnoreDuplicates() {
+        // given
+        var usd = entry(Currency.USD, "2025-01-14", "4.1658", "009/A/NBP/2025");
+        var eur = entry(Currency.EUR, "2025-01-13", "4.2611", "008/A/NBP/2025");
+        repository.saveAll(List.of(usd, eur)).block();
+        repository.saveAll(List.of(usd)).block();
+
+        // when & then
+        StepVerifier.create(repository.findAllAsOf(TABLE, LocalDate.parse("2025-01-14")).collectList())
+                .assertNext(found -> assertThat(found)
+                        .extracting(ExchangeRateHistoryEntry::currency, ExchangeRateHistoryEntry::no)
+                        .containsExactlyInAnyOrder(
+                                tuple(Currency.USD, "009/A/NBP/2025"),
+                                tuple(Currency.EUR, "008/A/NBP/2025")
+                        ))
+                .verifyComplete();
+    }
+
+    private static ExchangeRateHistoryEntry entry(Currency currency, String effectiveDate, String mid, String no) {
+        return new ExchangeRateHistoryEntry(TABLE, currency, LocalDate.parse(effectiveDate), new BigDecimal(mid), no, FETCHED_AT);
+    }
+}
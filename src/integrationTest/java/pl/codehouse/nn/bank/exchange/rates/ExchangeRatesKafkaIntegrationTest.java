@@ -0,0 +1,120 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.utility.DockerImageName;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import pl.codehouse.nn.bank.account.Currency;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import({TestcontainersConfiguration.class, ExchangeRatesKafkaIntegrationTest.KafkaContainerConfiguration.class})
+@TestPropertySource(properties = {
+        "app.exchange-rates.kafka.enabled=true",
+        "app.exchange-rates.kafka.ingestor=true",
+        "app.exchange-rates.kafka.topic=exchange-rates-it"
+})
+class ExchangeRatesKafkaIntegrationTest {
+    private static final String TOPIC = "exchange-rates-it";
+
+    @Autowired
+    private ExchangeRatesRefresher exchangeRatesRefresher;
+
+    @Autowired
+    private ExchangeRatesCache exchangeRatesCache;
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Autowired
+    private ConsumerFactory<String, String> consumerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        exchangeRatesCache.clear();
+    }
+
+    @Test
+    void ingestorPublishesRefreshedTableToCompactedTopic() {
+        // When
+        exchangeRatesRefresher.refresh().block();
+
+        // Then
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        try (Consumer<String, String> consumer = consumerFactory.createConsumer("it-" + UUID.randomUUID(), "it", null, properties)) {
+            consumer.subscribe(List.of(TOPIC));
+            List<ConsumerRecord<String, String>> records = new ArrayList<>();
+            await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+                consumer.poll(Duration.ofMillis(200)).forEach(records::add);
+                assertThat(records)
+                        .anySatisfy(record -> {
+                            assertThat(record.key()).isEqualTo("A");
+                            var message = objectMapper.readValue(record.value(), ExchangeRatesMessage.class);
+                            assertThat(message.no()).isEqualTo("009/A/NBP/2025");
+                            assertThat(message.toSnapshot().rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2611");
+                        });
+            });
+        }
+    }
+
+    @Test
+    void pushedTableIsConsumedIntoLocalCache() throws Exception {
+        // Given
+        var rates = List.of(
+                new ExchangeRateDto(Currency.USD, new BigDecimal("4.1000"), LocalDate.parse("2025-01-15"), Instant.now().plusSeconds(60)),
+                new ExchangeRateDto(Currency.EUR, new BigDecimal("4.3000"), LocalDate.parse("2025-01-15"), Instant.now().plusSeconds(60)));
+        var payload = objectMapper.writeValueAsString(new ExchangeRatesMessage("A", "010/A/NBP/2025", rates));
+
+        // When
+        kafkaTemplate.send(TOPIC, "A", payload).get();
+
+        // Then
+        await().atMost(Duration.ofSeconds(30)).untilAsserted(() -> {
+            var snapshot = exchangeRatesCache.snapshot("A");
+            assertThat(snapshot.no()).contains("010/A/NBP/2025");
+            assertThat(snapshot.rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.3000");
+        });
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class KafkaContainerConfiguration {
+
+        @Bean
+        @ServiceConnection
+        KafkaContainer kafkaContainer() {
+            return new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.6.1"));
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package pl.codehouse.nn.bank.exchange.rates;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.serverError;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.awaitility.Awaitility.await;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
+import java.time.Duration;
+import java.time.LocalDate;
 import org.flywaydb.core.Flyway;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,11 +31,18 @@ class ExchangeRatesServiceImplIntegrationTest {
     @Autowired
     private ExchangeRatesService exchangeRatesService;
 
+    @Autowired
+    private ExchangeRatesCache exchangeRatesCache;
+
+    @Autowired
+    private ExchangeRateHistoryRepository exchangeRateHistoryRepository;
+
     @BeforeEach
     void setUp(@Autowired Flyway flyway) {
         flyway.clean();
         flyway.migrate();
         WireMock.reset();
+        exchangeRatesCache.clear();
     }
 
     @Test
@@ -44,4 +58,65 @@ class ExchangeRatesServiceImplIntegrationTest {
                 )
                 .verifyComplete();
     }
+
+    @Test
+    void fetchCurrentRatesForEURServedFromCacheOnSubsequentCalls() {
+        // When
+        var firstResult = exchangeRatesService.fetchCurrentRatesFor(Currency.EUR);
+        var secondResult = exchangeRatesService.fetchCurrentRatesFor(Currency.EUR);
+
+        // Then
+        StepVerifier.create(firstResult.then(secondResult))
+                .assertNext(dto -> assertThat(dto)
+                        .hasFieldOrPropertyWithValue("currency", Currency.EUR)
+                        .satisfies(exchange -> assertThat(exchange.rate()).isEqualTo("4.2611"))
+                        .satisfies(exchange -> assertThat(exchange.effectiveDate()).isNotNull())
+                )
+                .verifyComplete();
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/api/exchangerates/rates/A/EUR/")));
+    }
+
+    @Test
+    void fetchRatesSnapshotWithSingleTableRequest() {
+        // When
+        var result = exchangeRatesService.fetchRatesSnapshot();
+
+        // Then
+        StepVerifier.create(result)
+                .assertNext(snapshot -> {
+                    assertThat(snapshot.isComplete()).isTrue();
+                    assertThat(snapshot.no()).contains("009/A/NBP/2025");
+                    assertThat(snapshot.rateFor(Currency.USD).orElseThrow().rate()).isEqualTo("4.1658");
+                    assertThat(snapshot.rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2611");
+                    assertThat(snapshot.rateFor(Currency.PLN).orElseThrow().rate()).isEqualTo("1");
+                })
+                .verifyComplete();
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/api/exchangerates/tables/A/")));
+        WireMock.verify(0, getRequestedFor(urlEqualTo("/api/exchangerates/rates/A/USD/")));
+    }
+
+    @Test
+    void fetchRatesSnapshotRecordsRatesAndServesThemFromHistoryWhenNbpFails() {
+        // Given
+        exchangeRatesService.fetchRatesSnapshot().block();
+        await().atMost(Duration.ofSeconds(2)).untilAsserted(() ->
+                StepVerifier.create(exchangeRateHistoryRepository.findAsOf("A", Currency.EUR, LocalDate.parse("2025-01-14")))
+                        .assertNext(entry -> assertThat(entry.no()).isEqualTo("009/A/NBP/2025"))
+                        .verifyComplete());
+        exchangeRatesCache.clear();
+        WireMock.stubFor(get(urlEqualTo("/api/exchangerates/tables/A/")).willReturn(serverError()));
+
+        // When
+        var result = exchangeRatesService.fetchRatesSnapshot();
+
+        // Then
+        StepVerifier.create(result)
+                .assertNext(snapshot -> {
+                    assertThat(snapshot.no()).isEmpty();
+                    assertThat(snapshot.rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2611");
+                })
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,125 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import pl.codehouse.nn.bank.TestcontainersConfiguration;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+@Import(TestcontainersConfiguration.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@TestPropertySource(properties = {
+        "app.exchange-rates.resilience.callTimeout=PT1S",
+        "app.exchange-rates.resilience.staleAfter=PT0.2S",
+        "app.exchange-rates.resilience.failureThreshold=2",
+        "app.exchange-rates.resilience.openDuration=PT1M"
+})
+class ResilientExchangeRatesServiceIntegrationTest {
+    private static final String TABLE_URL = "/api/exchangerates/tables/A/";
+
+    @Autowired
+    @Qualifier("upstreamExchangeRatesService")
+    private ExchangeRatesService upstreamExchangeRatesService;
+
+    @Autowired
+    private ExchangeRatesCache exchangeRatesCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp(@Autowired Flyway flyway) {
+        flyway.clean();
+        flyway.migrate();
+        WireMock.reset();
+        exchangeRatesCache.clear();
+    }
+
+    @Test
+    void slowNbpApiServesLastKnownGoodRatesAndRefreshesThemInBackground() {
+        // Given
+        upstreamExchangeRatesService.fetchRatesSnapshot().block();
+        var lastKnownGood = exchangeRatesCache.snapshot("A").rateFor(Currency.EUR).orElseThrow();
+        WireMock.stubFor(get(urlEqualTo(TABLE_URL)).willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withFixedDelay(700)
+                .withBody("""
+                        [{"table":"A","no":"010/A/NBP/2025","effectiveDate":"2025-01-15",
+                          "rates":[{"currency":"euro","code":"EUR","mid":4.2700}]}]
+                        """)));
+
+        // When
+        var result = upstreamExchangeRatesService.fetchRatesSnapshot();
+
+        // Then
+        StepVerifier.create(result)
+                .assertNext(snapshot -> assertThat(snapshot.rateFor(Currency.EUR)).contains(lastKnownGood))
+                .expectComplete()
+                .verify(Duration.ofMillis(600));
+        await().atMost(Duration.ofSeconds(2)).untilAsserted(() ->
+                assertThat(exchangeRatesCache.snapshot("A").rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2700"));
+        assertThat(meterRegistry.get("exchange.rates.stale.served").tag("reason", "slow").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedFaultsOpenTheCircuitAndStopCallingNbpApi() {
+        // Given
+        upstreamExchangeRatesService.fetchRatesSnapshot().block();
+        WireMock.stubFor(get(urlEqualTo(TABLE_URL)).willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        // When
+        var firstResult = upstreamExchangeRatesService.fetchRatesSnapshot().block();
+        var secondResult = upstreamExchangeRatesService.fetchRatesSnapshot().block();
+        var thirdResult = upstreamExchangeRatesService.fetchRatesSnapshot().block();
+
+        // Then
+        assertThat(firstResult.rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2611");
+        assertThat(secondResult.rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2611");
+        assertThat(thirdResult.rateFor(Currency.EUR).orElseThrow().rate()).isEqualTo("4.2611");
+        WireMock.verify(3, getRequestedFor(urlEqualTo(TABLE_URL)));
+        assertThat(meterRegistry.get("exchange.rates.circuit.state").gauge().value())
+                .isEqualTo(ExchangeRatesCircuitBreaker.State.OPEN.ordinal());
+        assertThat(meterRegistry.get("exchange.rates.stale.served").tag("reason", "circuit-open").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("exchange.rates.stale.age").timeGauge().value()).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    void nbpApiTimeoutWithoutLastKnownGoodRateFailsWithUnavailableRates() {
+        // Given
+        WireMock.stubFor(get(urlEqualTo("/api/exchangerates/rates/A/USD/")).willReturn(aResponse()
+                .withStatus(200)
+                .withFixedDelay(2_000)));
+
+        // When
+        var result = upstreamExchangeRatesService.fetchCurrentRatesFor(Currency.USD);
+
+        // Then
+        StepVerifier.create(result)
+                .expectError(ExchangeRatesUnavailableException.class)
+                .verify(Duration.ofMillis(1_500));
+    }
+}
@@ -0,0 +1,158 @@
+package pl.codehouse.nn.bank.account;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import pl.codehouse.nn.bank.account.AccountProperties.Concurrency;
+import pl.codehouse.nn.bank.account.AccountProperties.ConcurrencyMode;
+import pl.codehouse.nn.bank.account.AccountProperties.Holdings;
+import pl.codehouse.nn.bank.account.AccountProperties.Ledger;
+import pl.codehouse.nn.bank.account.AccountProperties.Storage;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares the throughput of two-leg balance updates under every {@link ConcurrencyMode} of the {@link Storage#ROWS}
+ * and with the {@link Storage#LEDGER} and {@link Storage#COMPACT} storages, with 16 threads spread over a small number
+ * of hot customers. The fewer the customers, the higher the contention. With the ledger, the balances are snapshotted every second meanwhile.
+ * The retries and conflicts of every iteration are reported next to its throughput as JMH auxiliary counters.
+ * Runs against a PostgreSQL container, start it with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class BalanceUpdateContentionBenchmark {
+    private static final Money INITIAL_BALANCE = Money.ofMinor(100_000_000_000L, Currency.PLN);
+    private static final Map<Currency, Money> EXCHANGE = Map.of(
+            Currency.PLN, Money.ofMinor(-100, Currency.PLN),
+            Currency.EUR, Money.ofMinor(23, Currency.EUR));
+    private static final Duration SNAPSHOT_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * One of the {@link ConcurrencyMode}s of the {@link Storage#ROWS}, or {@code LEDGER}, or {@code COMPACT}.
+     */
+    @Param({"ATOMIC", "OPTIMISTIC", "PESSIMISTIC", "SERIALIZABLE", "LEDGER", "COMPACT"})
+    private String variant;
+
+    @Param({"1", "4", "64"})
+    private int hotCustomers;
+
+    private final AtomicLong reportedRetries = new AtomicLong();
+    private final AtomicLong reportedConflicts = new AtomicLong();
+
+    private PostgreSQLContainer<?> postgres;
+    private MeterRegistry meterRegistry;
+    private BalanceUpdater balanceUpdater;
+    private Disposable snapshots;
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"))
+                .withDatabaseName("bank_account_db")
+                .withUsername("test_user")
+                .withPassword("test_password");
+        postgres.start();
+        Storage storage = "LEDGER".equals(variant) || "COMPACT".equals(variant) ? Storage.valueOf(variant) : Storage.ROWS;
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .locations("classpath:db/migrations")
+                .placeholders(Map.of("storage", storage.name()))
+                .load()
+                .migrate();
+
+        ConnectionFactory connectionFactory = ConnectionFactories.get("r2dbc:pool:postgresql://%s:%s@%s:%d/%s?maxSize=20".formatted(
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName()));
+        R2dbcEntityTemplate entityTemplate = new R2dbcEntityTemplate(connectionFactory);
+        CurrencyAccountRepository repository = storage == Storage.COMPACT
+                ? new CompactCurrencyAccountRepository(entityTemplate)
+                : new CurrencyAccountRepositoryImpl(entityTemplate);
+        List<CurrencyAccount> accounts = new ArrayList<>();
+        for (long customerId = 1; customerId <= hotCustomers; customerId++) {
+            accounts.add(new CurrencyAccount(new CurrencyAccountPk(customerId, Currency.PLN), INITIAL_BALANCE, true));
+            accounts.add(new CurrencyAccount(new CurrencyAccountPk(customerId, Currency.EUR), Money.zero(Currency.EUR), false));
+        }
+        repository.saveAll(accounts).blockLast();
+
+        meterRegistry = new SimpleMeterRegistry();
+        ConcurrencyMode mode = storage == Storage.ROWS ? ConcurrencyMode.valueOf(variant) : ConcurrencyMode.ATOMIC;
+        var properties = new AccountProperties(storage,
+                new Concurrency(mode, 100, Duration.ofMillis(1), Duration.ofMillis(100), 0.5),
+                new Ledger(Duration.ofMinutes(1), 1),
+                new Holdings(64));
+        var ledgerRepository = new AccountLedgerRepositoryImpl(entityTemplate);
+        var holdingsRepository = new CurrencyHoldingsRepositoryImpl(entityTemplate, properties);
+        var transactionManager = new R2dbcTransactionManager(connectionFactory);
+        balanceUpdater = new BalanceUpdater(repository, ledgerRepository, holdingsRepository, transactionManager, properties, meterRegistry);
+        if (storage == Storage.LEDGER) {
+            var snapshotter = new LedgerSnapshotter(ledgerRepository, TransactionalOperator.create(transactionManager), properties, null, Clock.systemUTC());
+            snapshots = Flux.interval(SNAPSHOT_INTERVAL)
+                    .concatMap(tick -> snapshotter.snapshot())
+                    .subscribe();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        if (snapshots != null) {
+            snapshots.dispose();
+        }
+        postgres.stop();
+    }
+
+    @Benchmark
+    public List<CurrencyAccountDto> exchange(UpdateCounters counters) {
+        long customerId = 1 + ThreadLocalRandom.current().nextInt(hotCustomers);
+        return balanceUpdater.update(customerId, EXCHANGE).block();
+    }
+
+    private long claim(String counterName, AtomicLong reported) {
+        long total = (long) meterRegistry.get(counterName).counter().count();
+        return Math.max(0, total - reported.getAndAccumulate(total, Math::max));
+    }
+
+    /**
+     * The retries and conflicts of an iteration. The counters of the {@link BalanceUpdater} are shared by all threads,
+     * so every thread claims the part of them not yet reported by the others when its iteration ends.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class UpdateCounters {
+        public long retries;
+        public long conflicts;
+
+        @TearDown(Level.Iteration)
+        public void claim(BalanceUpdateContentionBenchmark benchmark) {
+            retries = benchmark.claim("accounts.balance.update.retries", benchmark.reportedRetries);
+            conflicts = benchmark.claim("accounts.balance.update.conflicts", benchmark.reportedConflicts);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package pl.codehouse.nn.bank.account;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+
+/**
+ * Compares inserting the currency accounts of newly onboarded customers with one statement per account
+ * against the single {@code UNNEST} statement used by {@link CurrencyAccountRepositoryImpl#saveAll(List)}.
+ * Runs against a PostgreSQL container, start it with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CurrencyAccountSaveAllBenchmark {
+    private static final String INSERT_SQL_TEMPLATE = """
+            INSERT INTO currency_accounts(customer_id, currency, amount_minor, is_main_account)
+            VALUES (:customerId, :currency, :amountMinor, :isMainAccount) RETURNING customer_id, currency, amount_minor, is_main_account;
+            """;
+
+    @Param({"1", "10", "100"})
+    private int customers;
+
+    private final AtomicLong customerIds = new AtomicLong();
+    private PostgreSQLContainer<?> postgres;
+    private DatabaseClient databaseClient;
+    private CurrencyAccountRepositoryImpl repository;
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"))
+                .withDatabaseName("bank_account_db")
+                .withUsername("test_user")
+                .withPassword("test_password");
+        postgres.start();
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .locations("classpath:db/migrations")
+                .placeholders(Map.of("storage", "ROWS"))
+                .load()
+                .migrate();
+
+        ConnectionFactory connectionFactory = ConnectionFactories.get("r2dbc:pool:postgresql://%s:%s@%s:%d/%s".formatted(
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName()));
+        R2dbcEntityTemplate entityTemplate = new R2dbcEntityTemplate(connectionFactory);
+        databaseClient = entityTemplate.getDatabaseClient();
+        repository = new CurrencyAccountRepositoryImpl(entityTemplate);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncateAccounts() {
+        databaseClient.sql("TRUNCATE currency_accounts").then().block();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        postgres.stop();
+    }
+
+    @Benchmark
+    public List<CurrencyAccount> insertPerAccount() {
+        return Flux.fromIterable(newCustomersAccounts())
+                .flatMap(account -> databaseClient.sql(INSERT_SQL_TEMPLATE)
+                        .bind("customerId", account.id().customerId())
+                        .bind("currency", account.id().currency().name())
+                        .bind("amountMinor", account.amount().minorUnits())
+                        .bind("isMainAccount", account.isMainAccount())
+                        .map(CurrencyAccountSaveAllBenchmark::mapToCurrencyAccount)
+                        .one())
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<CurrencyAccount> insertAllWithUnnest() {
+        return repository.saveAll(newCustomersAccounts())
+                .collectList()
+                .block();
+    }
+
+    private List<CurrencyAccount> newCustomersAccounts() {
+        List<CurrencyAccount> accounts = new ArrayList<>(customers * Currency.values().length);
+        for (int i = 0; i < customers; i++) {
+            long customerId = customerIds.incrementAndGet();
+            for (Currency currency : Currency.values()) {
+                accounts.add(new CurrencyAccount(new CurrencyAccountPk(customerId, currency), Money.ofMinor(1000, currency), currency == Currency.PLN));
+            }
+        }
+        return accounts;
+    }
+
+    private static CurrencyAccount mapToCurrencyAccount(Readable readable) {
+        Currency currency = Currency.valueOf(readable.get("currency", String.class));
+        return new CurrencyAccount(
+                new CurrencyAccountPk(readable.get("customer_id", Long.class), currency),
+                Money.ofMinor(readable.get("amount_minor", Long.class), currency),
+                readable.get("is_main_account", Boolean.class));
+    }
+}
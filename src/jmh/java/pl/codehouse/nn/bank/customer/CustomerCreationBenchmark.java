@@ -0,0 +1,132 @@
+package pl.codehouse.nn.bank.customer;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import pl.codehouse.nn.bank.account.AccountProperties;
+import pl.codehouse.nn.bank.account.AccountProperties.Concurrency;
+import pl.codehouse.nn.bank.account.AccountProperties.ConcurrencyMode;
+import pl.codehouse.nn.bank.account.AccountProperties.Holdings;
+import pl.codehouse.nn.bank.account.AccountProperties.Ledger;
+import pl.codehouse.nn.bank.account.AccountProperties.Storage;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.NewAccountsRequest;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compares the throughput of creating a customer with its accounts as {@link CreateCustomerCommand} did before,
+ * i.e. inserting the customer and then, in a transaction of its own, its accounts and their opening balances
+ * into the currency holdings, against the single data-modifying CTE of {@link CustomerQueriesImpl#insertWithAccounts}.
+ * Runs against a PostgreSQL container, start it with {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class CustomerCreationBenchmark {
+    private static final int HOLDINGS_STRIPES = 64;
+    private static final NewAccountsRequest ACCOUNTS = new NewAccountsRequest(
+            0L, new BigDecimal("199.99"), Currency.PLN, List.of(Currency.USD, Currency.EUR));
+
+    private static final String INSERT_ACCOUNTS_SQL = """
+            INSERT INTO currency_accounts(customer_id, currency, amount_minor, is_main_account)
+            SELECT * FROM UNNEST(CAST(:customerIds AS INT[]), CAST(:currencies AS TEXT[]), CAST(:amounts AS BIGINT[]), CAST(:isMainAccounts AS BOOLEAN[]))
+            RETURNING customer_id, currency, amount_minor, is_main_account;
+            """;
+
+    private static final String ADD_HOLDINGS_SQL = """
+            INSERT INTO currency_holdings(currency, stripe, amount_minor)
+            SELECT * FROM UNNEST(CAST(:currencies AS TEXT[]), CAST(:stripes AS INT[]), CAST(:amounts AS BIGINT[]))
+            ON CONFLICT (currency, stripe) DO UPDATE
+            SET amount_minor = currency_holdings.amount_minor + EXCLUDED.amount_minor
+            """;
+
+    private PostgreSQLContainer<?> postgres;
+    private R2dbcEntityTemplate entityTemplate;
+    private TransactionalOperator transactionalOperator;
+    private CustomerQueriesImpl customerQueries;
+
+    @Setup(Level.Trial)
+    public void startDatabase() {
+        postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"))
+                .withDatabaseName("bank_account_db")
+                .withUsername("test_user")
+                .withPassword("test_password");
+        postgres.start();
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .locations("classpath:db/migrations")
+                .placeholders(Map.of("storage", "ROWS"))
+                .load()
+                .migrate();
+
+        ConnectionFactory connectionFactory = ConnectionFactories.get("r2dbc:pool:postgresql://%s:%s@%s:%d/%s?maxSize=20".formatted(
+                postgres.getUsername(), postgres.getPassword(), postgres.getHost(),
+                postgres.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgres.getDatabaseName()));
+        entityTemplate = new R2dbcEntityTemplate(connectionFactory);
+        transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        var properties = new AccountProperties(Storage.ROWS,
+                new Concurrency(ConcurrencyMode.ATOMIC, 5, Duration.ofMillis(10), Duration.ofMillis(500), 0.5),
+                new Ledger(Duration.ofMinutes(1), 1),
+                new Holdings(HOLDINGS_STRIPES));
+        customerQueries = new CustomerQueriesImpl(entityTemplate, properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() {
+        postgres.stop();
+    }
+
+    @Benchmark
+    public CustomerDto saveCustomerThenAccounts() {
+        return entityTemplate.insert(Customer.createNew("John", "Doe"))
+                .flatMap(customer -> insertAccounts(customer.accountId())
+                        .as(transactionalOperator::transactional)
+                        .thenReturn(CustomerDto.from(customer, List.of(
+                                new CurrencyAccountDto(Currency.PLN, ACCOUNTS.mainAccountBalance(), true),
+                                new CurrencyAccountDto(Currency.USD, BigDecimal.ZERO, false),
+                                new CurrencyAccountDto(Currency.EUR, BigDecimal.ZERO, false)))))
+                .block();
+    }
+
+    @Benchmark
+    public CustomerDto insertWithAccountsInSingleStatement() {
+        return customerQueries.insertWithAccounts(Customer.createNew("John", "Doe"), ACCOUNTS)
+                .block();
+    }
+
+    private Mono<Void> insertAccounts(long customerId) {
+        return entityTemplate.getDatabaseClient().sql(INSERT_ACCOUNTS_SQL)
+                .bind("customerIds", new Long[]{customerId, customerId, customerId})
+                .bind("currencies", new String[]{"PLN", "USD", "EUR"})
+                .bind("amounts", new Long[]{19999L, 0L, 0L})
+                .bind("isMainAccounts", new Boolean[]{true, false, false})
+                .then()
+                .then(entityTemplate.getDatabaseClient().sql(ADD_HOLDINGS_SQL)
+                        .bind("currencies", new String[]{"PLN"})
+                        .bind("stripes", new Integer[]{(int) (customerId % HOLDINGS_STRIPES)})
+                        .bind("amounts", new Long[]{19999L})
+                        .then());
+    }
+}
@@ -0,0 +1,81 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.Money;
+
+/**
+ * Compares the calculation of the amount changes of a single exchange, as done by the exchange command:
+ * checking the balance of the source account, converting the amount and merging both legs by currency,
+ * on {@link BigDecimal} amounts against {@link Money} held in minor units.
+ * Does not need any container, it runs with the others on {@code ./gradlew jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExchangeAmountsBenchmark {
+    private static final LocalDate EFFECTIVE_DATE = LocalDate.parse("2025-01-14");
+    private static final Instant FETCHED_AT = Instant.parse("2025-01-14T12:00:00Z");
+
+    @Param({"USD", "PLN"})
+    private Currency from;
+
+    @Param({"3.99", "12345.67"})
+    private String amount;
+
+    private CrossRateMatrix.Conversion conversion;
+    private Currency to;
+    private BigDecimal decimalAmount;
+    private BigDecimal decimalBalance;
+    private Money moneyAmount;
+    private Money moneyBalance;
+
+    @Setup
+    public void setUp() {
+        to = Currency.EUR;
+        conversion = RatesSnapshot.of("009/A/NBP/2025", List.of(
+                new ExchangeRateDto(Currency.USD, new BigDecimal("4.1658"), EFFECTIVE_DATE, FETCHED_AT),
+                new ExchangeRateDto(Currency.EUR, new BigDecimal("4.2611"), EFFECTIVE_DATE, FETCHED_AT)
+        )).crossRates().conversion(from, to);
+        decimalAmount = new BigDecimal(amount);
+        decimalBalance = new BigDecimal("1000000.00");
+        moneyAmount = Money.of(decimalAmount, from);
+        moneyBalance = Money.of(decimalBalance, from);
+    }
+
+    @Benchmark
+    public Map<Currency, BigDecimal> bigDecimal() {
+        if (decimalBalance.compareTo(decimalAmount) < 0) {
+            throw new IllegalStateException("Insufficient funds");
+        }
+        Map<Currency, BigDecimal> amountChanges = new EnumMap<>(Currency.class);
+        amountChanges.merge(from, decimalAmount.negate(), BigDecimal::add);
+        amountChanges.merge(to, conversion.convert(decimalAmount), BigDecimal::add);
+        return amountChanges;
+    }
+
+    @Benchmark
+    public Map<Currency, Money> money() {
+        if (moneyBalance.compareTo(moneyAmount) < 0) {
+            throw new IllegalStateException("Insufficient funds");
+        }
+        Map<Currency, Money> amountChanges = new EnumMap<>(Currency.class);
+        amountChanges.merge(from, moneyAmount.negate(), Money::plus);
+        amountChanges.merge(to, conversion.convert(moneyAmount), Money::plus);
+        return amountChanges;
+    }
+}
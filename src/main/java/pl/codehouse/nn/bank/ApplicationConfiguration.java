@@ -7,10 +7,16 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.validation.beanvalidation.MethodValidationPostProcessor;
 import org.springframework.web.reactive.function.client.WebClient;
+import pl.codehouse.nn.bank.account.AccountProperties;
+import pl.codehouse.nn.bank.customer.CustomerBulkProperties;
+import pl.codehouse.nn.bank.customer.CustomerCacheProperties;
+import pl.codehouse.nn.bank.customer.CustomerExportProperties;
+import pl.codehouse.nn.bank.customer.ExchangeBatchProperties;
+import pl.codehouse.nn.bank.customer.ExchangeQuoteProperties;
 import pl.codehouse.nn.bank.exchange.rates.ExchangeRatesProperties;
 
 @Configuration
-@EnableConfigurationProperties({ExchangeRatesProperties.class})
+@EnableConfigurationProperties({AccountProperties.class, ExchangeRatesProperties.class, ExchangeQuoteProperties.class, ExchangeBatchProperties.class, CustomerCacheProperties.class, CustomerBulkProperties.class, CustomerExportProperties.class, CommandExecutorProperties.class, ReadReplicaProperties.class})
 class ApplicationConfiguration {
     @Bean
     LocalValidatorFactoryBean validator() {
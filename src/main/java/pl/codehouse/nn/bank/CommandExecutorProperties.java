@@ -0,0 +1,30 @@
+package pl.codehouse.nn.bank;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for the {@link StripedCommandExecutor}.
+ *
+ * @param stripes The number of stripes the command keys are hashed into, i.e. the maximum number of commands running at once.
+ *                Commands of different keys hashed into the same stripe wait for each other, so the commands submitted
+ *                should only read and update the balances, without calling remote services. The default keeps the
+ *                chance of two concurrent customers sharing a stripe low, while staying above the number of connections
+ *                of the R2DBC pool, which bounds the balance updates running at once anyway.
+ * @param threads The number of threads starting the commands, by default the number of available processors.
+ */
+@ConfigurationProperties("app.command-executor")
+public record CommandExecutorProperties(
+        @DefaultValue("256") int stripes,
+        @DefaultValue("0") int threads
+) {
+
+    /**
+     * Resolves the number of threads, falling back to the number of available processors.
+     *
+     * @return The number of threads starting the commands.
+     */
+    public int resolvedThreads() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
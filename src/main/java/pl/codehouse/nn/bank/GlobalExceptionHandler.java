@@ -1,14 +1,20 @@
 package pl.codehouse.nn.bank;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import java.util.HashMap;
 import java.util.Map;
+import org.springframework.context.MessageSourceResolvable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
+import org.springframework.validation.method.MethodValidationException;
+import org.springframework.validation.method.ParameterValidationResult;
 import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.support.WebExchangeBindException;
 import org.springframework.web.reactive.result.method.annotation.ResponseEntityExceptionHandler;
 import org.springframework.web.server.ServerWebExchange;
@@ -49,4 +55,51 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
 
         return Mono.just(ResponseEntity.badRequest().body(problemDetail));
     }
+
+    /**
+     * Handles validation exceptions thrown by the method validation of the controllers.
+     * This method is invoked when a path variable or a request parameter is invalid
+     * and the method validation adapts the constraint violations, as the application configures it to.
+     *
+     * @param ex       The MethodValidationException thrown when validation fails
+     * @param status   The selected response status
+     * @param exchange The current server exchange
+     * @return A Mono that emits a ResponseEntity containing a ProblemDetail with validation error information
+     */
+    @Override
+    public Mono<ResponseEntity<Object>> handleMethodValidationException(
+            MethodValidationException ex, HttpStatus status, ServerWebExchange exchange) {
+        Map<String, String> errors = new HashMap<>();
+        for (ParameterValidationResult result : ex.getParameterValidationResults()) {
+            for (MessageSourceResolvable error : result.getResolvableErrors()) {
+                errors.put(result.getMethodParameter().getParameterName(), error.getDefaultMessage());
+            }
+        }
+        return Mono.just(ResponseEntity.badRequest().body(invalidParameters(errors)));
+    }
+
+    /**
+     * Handles validation exceptions thrown by the method validation of the controllers.
+     * This method is invoked when a path variable or a request parameter is invalid
+     * and the method validation does not adapt the constraint violations.
+     *
+     * @param ex The ConstraintViolationException thrown when validation fails
+     * @return A Mono that emits a ResponseEntity containing a ProblemDetail with validation error information
+     */
+    @ExceptionHandler(ConstraintViolationException.class)
+    public Mono<ResponseEntity<Object>> handleConstraintViolationException(ConstraintViolationException ex) {
+        Map<String, String> errors = new HashMap<>();
+        for (ConstraintViolation<?> violation : ex.getConstraintViolations()) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return Mono.just(ResponseEntity.badRequest().body(invalidParameters(errors)));
+    }
+
+    private static ProblemDetail invalidParameters(Map<String, String> errors) {
+        ProblemDetail problemDetail = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
+        problemDetail.setTitle("Validation Failed");
+        problemDetail.setDetail("One or more parameters are invalid.");
+        problemDetail.setProperty("errors", errors);
+        return problemDetail;
+    }
 }
@@ -0,0 +1,72 @@
+package pl.codehouse.nn.bank;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcConnectionDetails;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Replaces the auto-configured connection pool with {@link ReadReplicaRoutingConnectionFactory}, routing the reads
+ * marked by {@link ReadReplicas} to the pools of the replicas and everything else to the pool of the primary.
+ * Transactions, and so all balance updates, always run on the primary.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(value = "app.read-replicas.enabled", havingValue = "true")
+class ReadReplicaConfiguration {
+
+    @Bean
+    ReadReplicaRoutingConnectionFactory connectionFactory(R2dbcConnectionDetails connectionDetails,
+                                                          R2dbcProperties r2dbcProperties,
+                                                          ReadReplicaProperties properties) {
+        if (properties.urls().isEmpty()) {
+            throw new IllegalStateException("app.read-replicas.urls must list at least one replica when read replicas are enabled");
+        }
+        ConnectionFactoryOptions primaryOptions = connectionDetails.getConnectionFactoryOptions();
+        R2dbcProperties.Pool pool = r2dbcProperties.getPool();
+        ConnectionPool primary = pool(primaryOptions, pool.getInitialSize(), pool.getMaxSize(), pool);
+        List<ConnectionPool> replicas = properties.urls().stream()
+                .map(url -> replicaOptions(url, primaryOptions, properties))
+                .map(options -> pool(options, 0, properties.maxSize(), pool))
+                .toList();
+        return new ReadReplicaRoutingConnectionFactory(primary, replicas, properties.readYourWritesWindow());
+    }
+
+    private static ConnectionFactoryOptions replicaOptions(String url, ConnectionFactoryOptions primaryOptions, ReadReplicaProperties properties) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        Object user = properties.username() != null ? properties.username() : primaryOptions.getValue(ConnectionFactoryOptions.USER);
+        Object password = properties.password() != null ? properties.password() : primaryOptions.getValue(ConnectionFactoryOptions.PASSWORD);
+        if (user != null) {
+            options.option(ConnectionFactoryOptions.USER, user.toString());
+        }
+        if (password != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password.toString());
+        }
+        return options.build();
+    }
+
+    private static ConnectionPool pool(ConnectionFactoryOptions options, int initialSize, int maxSize, R2dbcProperties.Pool pool) {
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(ConnectionFactories.get(options))
+                .initialSize(Math.min(initialSize, maxSize))
+                .maxSize(maxSize)
+                .maxIdleTime(pool.getMaxIdleTime());
+        if (pool.getMaxLifeTime() != null) {
+            configuration.maxLifeTime(pool.getMaxLifeTime());
+        }
+        if (pool.getMaxAcquireTime() != null) {
+            configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+        if (pool.getMaxCreateConnectionTime() != null) {
+            configuration.maxCreateConnectionTime(pool.getMaxCreateConnectionTime());
+        }
+        if (pool.getValidationQuery() != null) {
+            configuration.validationQuery(pool.getValidationQuery());
+        }
+        return new ConnectionPool(configuration.build());
+    }
+}
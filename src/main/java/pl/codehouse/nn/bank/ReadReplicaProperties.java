@@ -0,0 +1,28 @@
+package pl.codehouse.nn.bank;
+
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties of the read replicas serving the read-only repository calls.
+ *
+ * @param enabled               Whether read-only calls are routed to the replicas, otherwise all traffic goes to {@code spring.r2dbc.url}.
+ * @param urls                  The R2DBC urls of the replicas, the read-only calls are spread round-robin among them.
+ * @param username              The user of the replicas, by default the user of the primary.
+ * @param password              The password of the replicas, by default the password of the primary.
+ * @param maxSize               The maximum size of the connection pool of every replica.
+ * @param readYourWritesWindow  How long after a balance change of a customer its reads still go to the primary,
+ *                              so that the customer sees its own writes despite the replication lag. Zero disables it.
+ */
+@ConfigurationProperties("app.read-replicas")
+public record ReadReplicaProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue List<String> urls,
+        String username,
+        String password,
+        @DefaultValue("20") int maxSize,
+        @DefaultValue("PT0S") Duration readYourWritesWindow
+) {
+}
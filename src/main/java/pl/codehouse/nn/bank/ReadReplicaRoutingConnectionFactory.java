@@ -0,0 +1,75 @@
+package pl.codehouse.nn.bank;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import pl.codehouse.nn.bank.account.AccountBalanceChangedEvent;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Routes the calls marked by {@link ReadReplicas#readOf(long)} or {@link ReadReplicas#readOfAll()} round-robin to the replicas,
+ * all other calls to the primary. Once the balances of a customer change, the calls marked as reads of that customer
+ * keep going to the primary for the read-your-writes window.
+ */
+class ReadReplicaRoutingConnectionFactory extends AbstractRoutingConnectionFactory implements DisposableBean {
+    private final List<ConnectionFactory> targets = new ArrayList<>();
+    private final int replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Cache<Long, Boolean> recentWriters;
+
+    ReadReplicaRoutingConnectionFactory(ConnectionFactory primary, List<? extends ConnectionFactory> replicas, Duration readYourWritesWindow) {
+        Map<Integer, ConnectionFactory> replicasByKey = new HashMap<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            replicasByKey.put(i, replicas.get(i));
+        }
+        this.targets.add(primary);
+        this.targets.addAll(replicas);
+        this.replicas = replicas.size();
+        this.recentWriters = readYourWritesWindow.isZero() ? null : Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .build();
+        setTargetConnectionFactories(replicasByKey);
+        setDefaultTargetConnectionFactory(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> {
+            boolean replicaRead = context.hasKey(ReadReplicas.ALL_CUSTOMERS_KEY)
+                    || context.<Long>getOrEmpty(ReadReplicas.CUSTOMER_ID_KEY).filter(customerId -> !hasRecentlyWritten(customerId)).isPresent();
+            return replicas > 0 && replicaRead
+                    ? Mono.<Object>just(Math.floorMod(nextReplica.getAndIncrement(), replicas))
+                    : Mono.<Object>empty();
+        });
+    }
+
+    @EventListener
+    void onAccountBalanceChanged(AccountBalanceChangedEvent event) {
+        if (recentWriters != null) {
+            recentWriters.put(event.customerId(), Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        targets.stream()
+                .filter(Disposable.class::isInstance)
+                .map(Disposable.class::cast)
+                .forEach(Disposable::dispose);
+    }
+
+    private boolean hasRecentlyWritten(long customerId) {
+        return recentWriters != null && recentWriters.getIfPresent(customerId) != null;
+    }
+}
@@ -0,0 +1,57 @@
+package pl.codehouse.nn.bank;
+
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Marks read-only repository calls that may be served by a read replica.
+ * The mark is a Reactor context entry holding the id of the customer being read, so that its reads go back
+ * to the primary for a while after it has written, or marking a read of many customers, which no such window holds back.
+ * Calls within a transaction keep using the connection of the transaction, whatever the mark.
+ * Without read replicas configured, the mark is ignored.
+ */
+public final class ReadReplicas {
+    static final String CUSTOMER_ID_KEY = ReadReplicas.class.getName() + ".customerId";
+    static final String ALL_CUSTOMERS_KEY = ReadReplicas.class.getName() + ".allCustomers";
+
+    private ReadReplicas() {
+    }
+
+    /**
+     * Creates the context marking a read-only call reading data of the given customer.
+     *
+     * @param customerId The id of the customer being read.
+     * @return The context to be written into the read-only call with {@code contextWrite}.
+     */
+    public static ContextView readOf(long customerId) {
+        return Context.of(CUSTOMER_ID_KEY, customerId);
+    }
+
+    /**
+     * Creates the context marking a read-only call reading data of many customers, such as a listing or an export.
+     * Such a call is not held back to the primary by the read-your-writes window of any customer.
+     *
+     * @return The context to be written into the read-only call with {@code contextWrite}.
+     */
+    public static ContextView readOfAll() {
+        return Context.of(ALL_CUSTOMERS_KEY, Boolean.TRUE);
+    }
+
+    /**
+     * Runs a read-only call looking up a customer on a read replica, and once more on the primary when the replica
+     * finds nothing. A customer created a moment ago, on this or on another node, may not have reached the replicas
+     * yet, while the read-your-writes window only covers balance changes made by this node.
+     *
+     * @param customerId The id of the customer being read.
+     * @param read       Creates the read-only call, invoked a second time when the first call completes empty.
+     * @param <T>        The type of the value read.
+     * @return The value read from a replica, or from the primary when not found on the replica.
+     */
+    public static <T> Mono<T> readOfExisting(long customerId, Supplier<Mono<T>> read) {
+        return read.get()
+                .contextWrite(readOf(customerId))
+                .switchIfEmpty(Mono.defer(read));
+    }
+}
@@ -0,0 +1,27 @@
+package pl.codehouse.nn.bank;
+
+import java.util.function.Function;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link Command} decorator executing the delegate through the {@link StripedCommandExecutor},
+ * so that executions sharing the same key run one at a time. The delegate holds up every key of its stripe while it runs,
+ * so the remote calls it depends on, such as fetching the exchange rates, should be made before executing it.
+ *
+ * @param delegate     The command to be executed.
+ * @param executor     The executor serializing the executions.
+ * @param keyExtractor Extracts the key serializing the executions from the command context, e.g. the customer id.
+ * @param <T>          The type of the input context.
+ * @param <R>          The type of the result produced by the command.
+ */
+public record SerializedCommand<T, R>(
+        Command<T, R> delegate,
+        StripedCommandExecutor executor,
+        Function<T, Object> keyExtractor
+) implements Command<T, R> {
+
+    @Override
+    public Mono<ExecutionResult<R>> execute(T context) {
+        return executor.submit(keyExtractor.apply(context), () -> delegate.execute(context));
+    }
+}
@@ -0,0 +1,124 @@
+package pl.codehouse.nn.bank;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Executes reactive tasks one at a time per key, while tasks of different keys run in parallel.
+ * Keys are hashed into a fixed number of stripes. Every stripe is a lock-free queue drained by a single consumer:
+ * the next task of a stripe is started only once the previous one has terminated. A slow task therefore holds up
+ * every key of its stripe, so remote calls should be made before submitting the task.
+ */
+@Component
+public class StripedCommandExecutor {
+
+    private final Stripe[] stripes;
+    private final Scheduler scheduler;
+
+    StripedCommandExecutor(CommandExecutorProperties properties) {
+        this.scheduler = Schedulers.newParallel("command-stripes", properties.resolvedThreads());
+        this.stripes = new Stripe[properties.stripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(scheduler.createWorker());
+        }
+    }
+
+    /**
+     * Submits the task to the stripe of the given key. The task is started once all tasks previously submitted
+     * to the same stripe have terminated.
+     *
+     * @param key  The key serializing the tasks, e.g. the customer id.
+     * @param task The task to be executed, subscribed when its turn comes.
+     * @param <R>  The type of the task result.
+     * @return A Mono emitting the result of the task.
+     */
+    public <R> Mono<R> submit(Object key, Supplier<Mono<R>> task) {
+        Stripe stripe = stripeFor(key);
+        return Mono.create(sink -> stripe.enqueue(new Task<>(task, sink)));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.dispose();
+    }
+
+    private Stripe stripeFor(Object key) {
+        int hash = key.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private static final class Stripe {
+        private final Queue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Scheduler.Worker worker;
+
+        private Stripe(Scheduler.Worker worker) {
+            this.worker = worker;
+        }
+
+        void enqueue(Task<?> task) {
+            queue.offer(task);
+            if (pending.getAndIncrement() == 0) {
+                worker.schedule(this::startNext);
+            }
+        }
+
+        private void startNext() {
+            queue.poll().start(this::onTerminated);
+        }
+
+        private void onTerminated() {
+            if (pending.decrementAndGet() > 0) {
+                worker.schedule(this::startNext);
+            }
+        }
+    }
+
+    private static final class Task<R> {
+        private final Supplier<Mono<R>> supplier;
+        private final MonoSink<R> sink;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private volatile Disposable subscription;
+
+        private Task(Supplier<Mono<R>> supplier, MonoSink<R> sink) {
+            this.supplier = supplier;
+            this.sink = sink;
+            sink.onCancel(() -> {
+                cancelled.set(true);
+                Disposable running = subscription;
+                if (running != null) {
+                    running.dispose();
+                }
+            });
+        }
+
+        void start(Runnable onTerminated) {
+            if (cancelled.get()) {
+                onTerminated.run();
+                return;
+            }
+            AtomicBoolean terminated = new AtomicBoolean();
+            Runnable terminateOnce = () -> {
+                if (terminated.compareAndSet(false, true)) {
+                    onTerminated.run();
+                }
+            };
+            subscription = Mono.defer(supplier)
+                    .doFinally(signal -> terminateOnce.run())
+                    .subscribe(sink::success, sink::error, sink::success);
+            if (cancelled.get()) {
+                subscription.dispose();
+            }
+        }
+    }
+}
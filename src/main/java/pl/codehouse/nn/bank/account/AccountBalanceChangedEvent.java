@@ -0,0 +1,9 @@
+package pl.codehouse.nn.bank.account;
+
+/**
+ * Published once the balances of the currency accounts of a customer were changed and committed.
+ *
+ * @param customerId The id of the customer owning the changed accounts.
+ */
+public record AccountBalanceChangedEvent(long customerId) {
+}
@@ -0,0 +1,58 @@
+package pl.codehouse.nn.bank.account;
+
+import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+interface AccountLedgerRepository {
+
+    /**
+     * Locks the ledger of the customer until the end of the current transaction,
+     * so that the balances read by the transaction stay current until its entries are appended.
+     *
+     * @param customerId The id of the customer.
+     * @return A Mono completing once the lock is acquired.
+     */
+    Mono<Void> lockCustomer(long customerId);
+
+    /**
+     * Reads the accounts of the customer with their current balances, i.e. the last balance snapshot
+     * (or the opening balance when none was taken yet) plus the ledger entries appended since.
+     *
+     * @param customerId The id of the customer.
+     * @return The accounts of the customer with their current balances.
+     */
+    Flux<CurrencyAccount> findBalances(long customerId);
+
+    /**
+     * Appends the entries to the ledger with a single statement.
+     *
+     * @param entries The entries to be appended.
+     * @return A Mono completing once the entries are appended.
+     */
+    Mono<Void> append(List<LedgerEntry> entries);
+
+    /**
+     * Finds the customers with ledger entries appended after the given entry.
+     *
+     * @param afterEntryId The id of the entry after which entries are looked for.
+     * @return The customers with their latest entry.
+     */
+    Flux<LedgerTail> findTails(long afterEntryId);
+
+    /**
+     * Finds the newest ledger entry already folded into any balance snapshot.
+     *
+     * @return The id of the entry, 0 when no snapshot was taken yet.
+     */
+    Mono<Long> findLastSnapshotEntryId();
+
+    /**
+     * Folds the ledger entries of the customer appended since the last snapshot into new balance snapshots.
+     * Must be called while holding the lock of the customer, so that no entry of a pending transaction is skipped.
+     *
+     * @param customerId The id of the customer.
+     * @return The number of account snapshots taken.
+     */
+    Mono<Long> foldTail(long customerId);
+}
@@ -0,0 +1,141 @@
+package pl.codehouse.nn.bank.account;
+
+import io.r2dbc.spi.Readable;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+class AccountLedgerRepositoryImpl implements AccountLedgerRepository {
+    /**
+     * Transaction scoped advisory lock, keyed by the ledger table and the customer.
+     */
+    private static final String LOCK_CUSTOMER_SQL = """
+            SELECT pg_advisory_xact_lock(hashtext('account_ledger'), CAST(:customerId AS INT))
+            """;
+
+    private static final String SELECT_BALANCES_SQL = """
+            SELECT a.customer_id, a.currency, a.is_main_account,
+                   COALESCE(s.amount_minor, a.amount_minor) + COALESCE(t.amount_minor, 0) AS amount_minor
+            FROM currency_accounts a
+            LEFT JOIN account_balance_snapshots s ON s.customer_id = a.customer_id AND s.currency = a.currency
+            LEFT JOIN LATERAL (
+                SELECT CAST(SUM(l.amount_minor) AS BIGINT) AS amount_minor
+                FROM account_ledger l
+                WHERE l.customer_id = a.customer_id AND l.currency = a.currency AND l.entry_id > COALESCE(s.last_entry_id, 0)
+            ) t ON TRUE
+            WHERE a.customer_id = :customerId
+            """;
+
+    private static final String INSERT_ENTRIES_SQL = """
+            INSERT INTO account_ledger(transaction_id, customer_id, currency, amount_minor)
+            SELECT * FROM UNNEST(CAST(:transactionIds AS UUID[]), CAST(:customerIds AS INT[]), CAST(:currencies AS TEXT[]), CAST(:amounts AS BIGINT[]))
+            """;
+
+    private static final String SELECT_TAILS_SQL = """
+            SELECT customer_id, MAX(entry_id) AS last_entry_id
+            FROM account_ledger
+            WHERE entry_id > :afterEntryId
+            GROUP BY customer_id
+            """;
+
+    private static final String SELECT_LAST_SNAPSHOT_ENTRY_ID_SQL = """
+            SELECT COALESCE(MAX(last_entry_id), 0) AS last_entry_id
+            FROM account_balance_snapshots
+            """;
+
+    private static final String FOLD_TAIL_SQL = """
+            INSERT INTO account_balance_snapshots(customer_id, currency, amount_minor, last_entry_id, taken_at)
+            SELECT a.customer_id, a.currency, COALESCE(s.amount_minor, a.amount_minor) + t.amount_minor, t.last_entry_id, NOW()
+            FROM currency_accounts a
+            LEFT JOIN account_balance_snapshots s ON s.customer_id = a.customer_id AND s.currency = a.currency
+            JOIN LATERAL (
+                SELECT CAST(SUM(l.amount_minor) AS BIGINT) AS amount_minor, MAX(l.entry_id) AS last_entry_id
+                FROM account_ledger l
+                WHERE l.customer_id = a.customer_id AND l.currency = a.currency AND l.entry_id > COALESCE(s.last_entry_id, 0)
+            ) t ON t.last_entry_id IS NOT NULL
+            WHERE a.customer_id = :customerId
+            ON CONFLICT (customer_id, currency) DO UPDATE
+            SET amount_minor = EXCLUDED.amount_minor, last_entry_id = EXCLUDED.last_entry_id, taken_at = EXCLUDED.taken_at
+            """;
+
+    private final R2dbcEntityTemplate entityTemplate;
+
+    AccountLedgerRepositoryImpl(R2dbcEntityTemplate entityTemplate) {
+        this.entityTemplate = entityTemplate;
+    }
+
+    @Override
+    public Mono<Void> lockCustomer(long customerId) {
+        return entityTemplate.getDatabaseClient().sql(LOCK_CUSTOMER_SQL)
+                .bind("customerId", customerId)
+                .then();
+    }
+
+    @Override
+    public Flux<CurrencyAccount> findBalances(long customerId) {
+        return entityTemplate.getDatabaseClient().sql(SELECT_BALANCES_SQL)
+                .bind("customerId", customerId)
+                .map(AccountLedgerRepositoryImpl::mapToCurrencyAccount)
+                .all();
+    }
+
+    @Override
+    public Mono<Void> append(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        int size = entries.size();
+        UUID[] transactionIds = new UUID[size];
+        Long[] customerIds = new Long[size];
+        String[] currencies = new String[size];
+        Long[] amounts = new Long[size];
+        for (int i = 0; i < size; i++) {
+            LedgerEntry entry = entries.get(i);
+            transactionIds[i] = entry.transactionId();
+            customerIds[i] = entry.id().customerId();
+            currencies[i] = entry.id().currency().name();
+            amounts[i] = entry.amount().minorUnits();
+        }
+        return entityTemplate.getDatabaseClient().sql(INSERT_ENTRIES_SQL)
+                .bind("transactionIds", transactionIds)
+                .bind("customerIds", customerIds)
+                .bind("currencies", currencies)
+                .bind("amounts", amounts)
+                .then();
+    }
+
+    @Override
+    public Flux<LedgerTail> findTails(long afterEntryId) {
+        return entityTemplate.getDatabaseClient().sql(SELECT_TAILS_SQL)
+                .bind("afterEntryId", afterEntryId)
+                .map(readable -> new LedgerTail(readable.get("customer_id", Long.class), readable.get("last_entry_id", Long.class)))
+                .all();
+    }
+
+    @Override
+    public Mono<Long> findLastSnapshotEntryId() {
+        return entityTemplate.getDatabaseClient().sql(SELECT_LAST_SNAPSHOT_ENTRY_ID_SQL)
+                .map(readable -> readable.get("last_entry_id", Long.class))
+                .one();
+    }
+
+    @Override
+    public Mono<Long> foldTail(long customerId) {
+        return entityTemplate.getDatabaseClient().sql(FOLD_TAIL_SQL)
+                .bind("customerId", customerId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static CurrencyAccount mapToCurrencyAccount(Readable readable) {
+        Long customerId = readable.get("customer_id", Long.class);
+        Currency currency = Currency.valueOf(readable.get("currency", String.class));
+        Money amount = Money.ofMinor(readable.get("amount_minor", Long.class), currency);
+        Boolean isMainAccount = readable.get("is_main_account", Boolean.class);
+        return new CurrencyAccount(new CurrencyAccountPk(customerId, currency), amount, isMainAccount);
+    }
+}
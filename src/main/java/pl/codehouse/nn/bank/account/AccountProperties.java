@@ -0,0 +1,106 @@
+package pl.codehouse.nn.bank.account;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for currency accounts.
+ *
+ * @param storage     Where the balances of the accounts are kept.
+ * @param concurrency How concurrent balance updates of the same accounts are protected, when stored in {@link Storage#ROWS}.
+ * @param ledger      Configuration of the balance snapshots, when stored in the {@link Storage#LEDGER}.
+ * @param holdings    Configuration of the totals held per currency across all customers.
+ */
+@ConfigurationProperties("app.accounts")
+public record AccountProperties(
+        @DefaultValue("ROWS") Storage storage,
+        @DefaultValue Concurrency concurrency,
+        @DefaultValue Ledger ledger,
+        @DefaultValue Holdings holdings
+) {
+
+    /**
+     * Where the balances of the accounts are kept. Balances are written to the configured layout only,
+     * so the storage of a database holding customers cannot be switched, see {@link AccountStorageGuard}.
+     */
+    public enum Storage {
+        /**
+         * Every balance is kept in its {@code currency_accounts} row, updated in place.
+         */
+        ROWS,
+        /**
+         * Every balance change is appended to the {@code account_ledger}, balances are read as the last snapshot plus
+         * the entries appended since. The {@code currency_accounts} rows keep the opening balances.
+         */
+        LEDGER,
+        /**
+         * All balances of a customer are kept in a single {@code customer_balances} row, every balance update
+         * of a customer is a single-row atomic {@code UPDATE}.
+         */
+        COMPACT
+    }
+
+    /**
+     * The concurrency control applied to balance updates.
+     */
+    public enum ConcurrencyMode {
+        /**
+         * Every balance is changed by a single conditional {@code UPDATE ... SET amount = amount + delta} statement.
+         */
+        ATOMIC,
+        /**
+         * Balances are read with their version and written with a compare-and-set on that version.
+         */
+        OPTIMISTIC,
+        /**
+         * All accounts of the update are locked with {@code SELECT ... FOR UPDATE} in currency order before being written.
+         */
+        PESSIMISTIC,
+        /**
+         * Balances are read and written within a {@code SERIALIZABLE} transaction.
+         */
+        SERIALIZABLE
+    }
+
+    /**
+     * Configuration of the concurrency control of balance updates.
+     *
+     * @param mode       The concurrency control applied to balance updates.
+     * @param maxRetries How many times an update failing on a concurrent update of the same accounts is retried.
+     * @param minBackoff The delay before the first retry, doubled on every following retry.
+     * @param maxBackoff The maximum delay between retries.
+     * @param jitter     The random factor (between 0 and 1) applied to the delays, so that conflicting updates do not retry in lockstep.
+     */
+    public record Concurrency(
+            @DefaultValue("ATOMIC") ConcurrencyMode mode,
+            @DefaultValue("5") int maxRetries,
+            @DefaultValue("PT0.01S") Duration minBackoff,
+            @DefaultValue("PT0.5S") Duration maxBackoff,
+            @DefaultValue("0.5") double jitter
+    ) {
+    }
+
+    /**
+     * Configuration of the balance snapshots folded from the account ledger.
+     *
+     * @param snapshotInterval How often the ledger entries appended since the last snapshots are folded into new ones.
+     * @param snapshotConcurrency How many customers are snapshotted at once.
+     */
+    public record Ledger(
+            @DefaultValue("PT1M") Duration snapshotInterval,
+            @DefaultValue("4") int snapshotConcurrency
+    ) {
+    }
+
+    /**
+     * Configuration of the totals held per currency across all customers.
+     *
+     * @param stripes The number of rows the total of a currency is split into, the customers being hashed into them.
+     *                May be changed at any time, the totals sum all existing rows.
+     */
+    public record Holdings(
+            @DefaultValue("64") int stripes
+    ) {
+    }
+}
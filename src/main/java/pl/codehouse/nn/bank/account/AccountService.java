@@ -1,7 +1,7 @@
 package pl.codehouse.nn.bank.account;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import reactor.core.publisher.Mono;
 
 /**
@@ -32,5 +32,48 @@ public interface AccountService {
      */
     Mono<List<CurrencyAccountDto>> createNewAccounts(NewAccountsRequest request);
 
-    Mono<CurrencyAccountDto> updateAmountFor(long customerId, Currency currency, BigDecimal amount);
+    /**
+     * Creates the currency accounts of many customers at once, all of them inserted with a single statement.
+     *
+     * @param requests The {@link NewAccountsRequest} of every customer, at most one per customer.
+     * @return A {@link Mono} that emits the created accounts per customer id, the main account first followed by
+     *         the additional accounts in the order of the request.
+     */
+    Mono<Map<Long, List<CurrencyAccountDto>>> createNewAccountsForAll(List<NewAccountsRequest> requests);
+
+    /**
+     * Atomically adds the given amount to the balance of a single currency account.
+     * Once updated, an {@link AccountBalanceChangedEvent} is published.
+     *
+     * @param customerId The unique identifier of the customer owning the account.
+     * @param amount     The amount to be added, negative for a debit, in the currency of the account.
+     * @return A {@link Mono} that emits the updated {@link CurrencyAccountDto}.
+     * @throws InsufficientFundsException if the debit would make the balance negative.
+     * @throws CurrencyAccountNotFoundException if the customer does not have an account in the given currency.
+     */
+    Mono<CurrencyAccountDto> updateAmountFor(long customerId, Money amount);
+
+    /**
+     * Adds the given amounts to the balances of several currency accounts of a customer within a single transaction.
+     * The accounts are updated one by one in {@link Currency} order, so that concurrent updates of the same accounts
+     * always lock them in the same order. Either all balances are updated, or none of them.
+     * Concurrent updates of the same accounts are handled as configured by {@link AccountProperties.Concurrency}.
+     * Once updated, an {@link AccountBalanceChangedEvent} is published.
+     *
+     * @param customerId    The unique identifier of the customer owning the accounts.
+     * @param amountChanges The amounts to be added per currency, negative for a debit.
+     * @return A {@link Mono} that emits the updated accounts, in {@link Currency} order.
+     * @throws InsufficientFundsException if any debit would make the balance negative.
+     * @throws CurrencyAccountNotFoundException if the customer does not have an account in any of the given currencies.
+     */
+    Mono<List<CurrencyAccountDto>> updateAmountsFor(long customerId, Map<Currency, Money> amountChanges);
+
+    /**
+     * Retrieves the total balance held in every currency across all customers. The totals are maintained
+     * by every balance change, so reading them does not depend on the number of customers or accounts.
+     *
+     * @return A {@link Mono} that emits the {@link CurrencyHoldingDto} of every currency any customer has an account in,
+     *         in {@link Currency} order.
+     */
+    Mono<List<CurrencyHoldingDto>> findHoldings();
 }
@@ -1,45 +1,97 @@
 package pl.codehouse.nn.bank.account;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import pl.codehouse.nn.bank.ReadReplicas;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 record AccountServiceImpl(
-        CurrencyAccountRepository repository
+        CurrencyAccountRepository repository,
+        AccountLedgerRepository ledgerRepository,
+        BalanceUpdater balanceUpdater,
+        CurrencyHoldingsRepository holdingsRepository,
+        TransactionalOperator transactionalOperator,
+        AccountProperties properties,
+        ApplicationEventPublisher eventPublisher
 ) implements AccountService {
     private static final Logger log = LoggerFactory.getLogger(AccountServiceImpl.class);
 
     @Override
     public Mono<List<CurrencyAccountDto>> findAccountsFor(long customerId) {
-        return repository.findByCustomerId(customerId)
+        Flux<CurrencyAccount> accounts = properties.storage() == AccountProperties.Storage.LEDGER
+                ? ledgerRepository.findBalances(customerId)
+                : repository.findByCustomerId(customerId);
+        return accounts
                 .mapNotNull(CurrencyAccount::toDto)
-                .collectList();
+                .collectList()
+                .contextWrite(ReadReplicas.readOf(customerId));
     }
 
     @Override
     public Mono<List<CurrencyAccountDto>> createNewAccounts(NewAccountsRequest request) {
         log.info("Creating new currency accounts: {}.", request);
+        List<CurrencyAccount> accounts = accountsOf(request);
+        return repository.saveAll(accounts)
+                .mapNotNull(CurrencyAccount::toDto)
+                .collectList()
+                .flatMap(created -> holdingsRepository.addOpeningBalances(accounts).thenReturn(created))
+                .as(transactionalOperator::transactional);
+    }
+
+    @Override
+    public Mono<Map<Long, List<CurrencyAccountDto>>> createNewAccountsForAll(List<NewAccountsRequest> requests) {
+        log.info("Creating new currency accounts of {} customers.", requests.size());
+        List<CurrencyAccount> accounts = requests.stream()
+                .flatMap(request -> accountsOf(request).stream())
+                .toList();
+        return repository.saveAll(accounts)
+                .then(holdingsRepository.addOpeningBalances(accounts))
+                .as(transactionalOperator::transactional)
+                .then(Mono.fromSupplier(() -> accounts.stream()
+                        .collect(Collectors.groupingBy(account -> account.id().customerId(),
+                                Collectors.mapping(CurrencyAccount::toDto, Collectors.toList())))));
+    }
+
+    @Override
+    public Mono<List<CurrencyHoldingDto>> findHoldings() {
+        return holdingsRepository.findTotals()
+                .map(totals -> totals.values().stream()
+                        .map(total -> new CurrencyHoldingDto(total.currency(), total.toBigDecimal()))
+                        .toList());
+    }
+
+    private static List<CurrencyAccount> accountsOf(NewAccountsRequest request) {
         ArrayList<CurrencyAccount> accounts = new ArrayList<>();
-        accounts.add(new CurrencyAccount(new CurrencyAccountPk(request.customerId(), request.mainAccountCurrency()), request.mainAccountBalance(), true));
+        accounts.add(new CurrencyAccount(new CurrencyAccountPk(request.customerId(), request.mainAccountCurrency()),
+                Money.of(request.mainAccountBalance(), request.mainAccountCurrency()), true));
         List<CurrencyAccount> additionalCurrencyAccounts = request.additionalCurrencies()
                 .stream()
-                .map(currency -> new CurrencyAccount(new CurrencyAccountPk(request.customerId(), currency), BigDecimal.ZERO, false))
+                .map(currency -> new CurrencyAccount(new CurrencyAccountPk(request.customerId(), currency), Money.zero(currency), false))
                 .toList();
         accounts.addAll(additionalCurrencyAccounts);
-        return repository.saveAll(accounts)
-                .mapNotNull(CurrencyAccount::toDto)
-                .collectList();
+        return accounts;
+    }
+
+    @Override
+    public Mono<CurrencyAccountDto> updateAmountFor(long customerId, Money amount) {
+        log.info("Updating amount for customer account: {} {}. Amount update value = {}", customerId, amount.currency(), amount);
+        return balanceUpdater.update(customerId, Map.of(amount.currency(), amount))
+                .doOnSuccess(accounts -> eventPublisher.publishEvent(new AccountBalanceChangedEvent(customerId)))
+                .map(accounts -> accounts.get(0));
     }
 
     @Override
-    public Mono<CurrencyAccountDto> updateAmountFor(long customerId, Currency currency, BigDecimal amount) {
-        log.info("Updating amount for customer account: {} {}. Amount update value = {}", customerId, currency, amount);
-        return repository.findById(new CurrencyAccountPk(customerId, currency))
-                .flatMap(currencyAccount -> repository.updateAmountBy(currencyAccount.id(), currencyAccount.amount().add(amount)));
+    public Mono<List<CurrencyAccountDto>> updateAmountsFor(long customerId, Map<Currency, Money> amountChanges) {
+        return balanceUpdater.update(customerId, amountChanges)
+                .doOnSuccess(accounts -> eventPublisher.publishEvent(new AccountBalanceChangedEvent(customerId)));
     }
 }
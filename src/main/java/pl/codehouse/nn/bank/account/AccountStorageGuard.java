@@ -0,0 +1,71 @@
+package pl.codehouse.nn.bank.account;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Refuses to start the application with an {@link AccountProperties.Storage} other than the one the balances
+ * of the existing customers are kept in. Balances are written to the configured layout only, the layouts are copied
+ * into each other once by the migrations, so switching the storage of a database holding customers would silently
+ * serve balances left behind at the switch. A database without customers takes over the configured storage.
+ * Runs once all beans, including the Flyway migration, are initialized and before the server starts.
+ */
+@Component
+class AccountStorageGuard implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(AccountStorageGuard.class);
+
+    private static final String SELECT_STORAGE_SQL = """
+            SELECT s.storage, EXISTS (SELECT 1 FROM customers) AS has_customers
+            FROM account_storage s
+            """;
+
+    private static final String UPDATE_STORAGE_SQL = "UPDATE account_storage SET storage = :storage";
+
+    private final R2dbcEntityTemplate entityTemplate;
+    private final AccountProperties.Storage storage;
+
+    AccountStorageGuard(R2dbcEntityTemplate entityTemplate, AccountProperties properties) {
+        this.entityTemplate = entityTemplate;
+        this.storage = properties.storage();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        verifyStorage().block();
+    }
+
+    /**
+     * Verifies the configured storage against the one recorded in the database.
+     *
+     * @return A Mono completing once verified, or failing with {@link IllegalStateException}
+     *      when the database holds customers kept in another storage.
+     */
+    Mono<Void> verifyStorage() {
+        return entityTemplate.getDatabaseClient().sql(SELECT_STORAGE_SQL)
+                .map(row -> new RecordedStorage(
+                        AccountProperties.Storage.valueOf(row.get("storage", String.class)),
+                        Boolean.TRUE.equals(row.get("has_customers", Boolean.class))))
+                .one()
+                .flatMap(recorded -> {
+                    if (recorded.storage() == storage) {
+                        return Mono.empty();
+                    }
+                    if (recorded.hasCustomers()) {
+                        return Mono.error(new IllegalStateException(
+                                "Balances of existing customers are kept in %s storage, app.accounts.storage=%s would serve stale balances. Move the balances between the layouts before switching the storage."
+                                        .formatted(recorded.storage(), storage)));
+                    }
+                    log.info("Switching account storage of database without customers from {} to {}.", recorded.storage(), storage);
+                    return entityTemplate.getDatabaseClient().sql(UPDATE_STORAGE_SQL)
+                            .bind("storage", storage.name())
+                            .then();
+                });
+    }
+
+    private record RecordedStorage(AccountProperties.Storage storage, boolean hasCustomers) {
+    }
+}
@@ -0,0 +1,196 @@
+package pl.codehouse.nn.bank.account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import pl.codehouse.nn.bank.account.AccountProperties.Concurrency;
+import pl.codehouse.nn.bank.account.AccountProperties.ConcurrencyMode;
+import pl.codehouse.nn.bank.account.AccountProperties.Storage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Applies balance changes to the currency accounts of a customer within a single transaction.
+ * Balances kept in {@link Storage#ROWS} are protected by the configured {@link ConcurrencyMode}. With the
+ * {@link Storage#LEDGER}, the changes are appended as ledger entries while holding the ledger lock of the customer.
+ * With the {@link Storage#COMPACT} storage, all changes are applied by a single atomic update of the row of the customer.
+ * Within the same transaction, the changes are added to the totals held per currency.
+ * A transaction failing on a concurrent update of the same accounts is retried as a whole with a jittered backoff.
+ */
+@Component
+class BalanceUpdater {
+    private static final Logger log = LoggerFactory.getLogger(BalanceUpdater.class);
+    private final CurrencyAccountRepository repository;
+    private final AccountLedgerRepository ledgerRepository;
+    private final CurrencyHoldingsRepository holdingsRepository;
+    private final Storage storage;
+    private final TransactionalOperator transactionalOperator;
+    private final Concurrency concurrency;
+    private final Counter retries;
+    private final Counter conflicts;
+
+    BalanceUpdater(CurrencyAccountRepository repository,
+                   AccountLedgerRepository ledgerRepository,
+                   CurrencyHoldingsRepository holdingsRepository,
+                   ReactiveTransactionManager transactionManager,
+                   AccountProperties properties,
+                   MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.ledgerRepository = ledgerRepository;
+        this.holdingsRepository = holdingsRepository;
+        this.storage = properties.storage();
+        this.concurrency = properties.concurrency();
+        ConcurrencyMode effectiveMode = storage == Storage.ROWS ? concurrency.mode() : null;
+        this.transactionalOperator = TransactionalOperator.create(transactionManager, transactionDefinition(effectiveMode));
+        String mode = effectiveMode != null ? effectiveMode.name().toLowerCase() : storage.name().toLowerCase();
+        this.retries = Counter.builder("accounts.balance.update.retries")
+                .description("Number of balance updates retried after a conflict")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("accounts.balance.update.conflicts")
+                .description("Number of balance updates failed on a concurrent update of the same accounts")
+                .tag("mode", mode)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds the given amounts to the balances of the accounts of a customer, in {@link Currency} order.
+     *
+     * @param customerId    The id of the customer owning the accounts.
+     * @param amountChanges The amounts to be added per currency, negative for a debit.
+     * @return The updated accounts, in {@link Currency} order.
+     */
+    Mono<List<CurrencyAccountDto>> update(long customerId, Map<Currency, Money> amountChanges) {
+        Map<Currency, Money> changesInLockOrder = new EnumMap<>(Currency.class);
+        changesInLockOrder.putAll(amountChanges);
+        return Mono.defer(() -> apply(customerId, changesInLockOrder)
+                        .flatMap(accounts -> holdingsRepository.add(customerId, changesInLockOrder).thenReturn(accounts))
+                        .as(transactionalOperator::transactional))
+                .doOnError(ConcurrencyFailureException.class, error -> {
+                    log.debug("Conflicting balance update of customer {} accounts: {}", customerId, error.getMessage());
+                    conflicts.increment();
+                })
+                .retryWhen(Retry.backoff(concurrency.maxRetries(), concurrency.minBackoff())
+                        .maxBackoff(concurrency.maxBackoff())
+                        .jitter(concurrency.jitter())
+                        .filter(ConcurrencyFailureException.class::isInstance)
+                        .doBeforeRetry(signal -> retries.increment())
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    private Mono<List<CurrencyAccountDto>> apply(long customerId, Map<Currency, Money> changes) {
+        if (storage == Storage.LEDGER) {
+            return appendToLedger(customerId, changes);
+        }
+        if (storage == Storage.COMPACT) {
+            return updateAllAtomically(customerId, changes);
+        }
+        return switch (concurrency.mode()) {
+            case ATOMIC -> Flux.fromIterable(changes.entrySet())
+                    .concatMap(change -> updateAtomically(new CurrencyAccountPk(customerId, change.getKey()), change.getValue()))
+                    .collectList();
+            case OPTIMISTIC, SERIALIZABLE -> Flux.fromIterable(changes.entrySet())
+                    .concatMap(change -> readAndCompareAndSet(new CurrencyAccountPk(customerId, change.getKey()), change.getValue()))
+                    .collectList();
+            case PESSIMISTIC -> repository.lockBalances(customerId, changes.keySet())
+                    .collectMap(balance -> balance.id().currency())
+                    .flatMap(balances -> Flux.fromIterable(changes.entrySet())
+                            .concatMap(change -> compareAndSet(new CurrencyAccountPk(customerId, change.getKey()),
+                                    balances.get(change.getKey()), change.getValue()))
+                            .collectList());
+        };
+    }
+
+    private Mono<List<CurrencyAccountDto>> appendToLedger(long customerId, Map<Currency, Money> changes) {
+        UUID transactionId = UUID.randomUUID();
+        return ledgerRepository.lockCustomer(customerId)
+                .thenMany(ledgerRepository.findBalances(customerId))
+                .collectMap(account -> account.id().currency())
+                .flatMap(accounts -> {
+                    List<LedgerEntry> entries = new ArrayList<>(changes.size());
+                    List<CurrencyAccountDto> updatedAccounts = new ArrayList<>(changes.size());
+                    for (Map.Entry<Currency, Money> change : changes.entrySet()) {
+                        CurrencyAccountPk id = new CurrencyAccountPk(customerId, change.getKey());
+                        CurrencyAccount account = accounts.get(change.getKey());
+                        if (account == null) {
+                            return Mono.error(new CurrencyAccountNotFoundException(customerId, change.getKey()));
+                        }
+                        Money newAmount = account.amount().plus(change.getValue());
+                        if (newAmount.isNegative()) {
+                            return Mono.error(new InsufficientFundsException(change.getKey()));
+                        }
+                        entries.add(new LedgerEntry(transactionId, id, change.getValue()));
+                        updatedAccounts.add(new CurrencyAccountDto(change.getKey(), newAmount.toBigDecimal(), account.isMainAccount()));
+                    }
+                    return ledgerRepository.append(entries).thenReturn(updatedAccounts);
+                });
+    }
+
+    private Mono<List<CurrencyAccountDto>> updateAllAtomically(long customerId, Map<Currency, Money> changes) {
+        return repository.updateAmountsBy(customerId, changes)
+                .switchIfEmpty(Mono.defer(() -> repository.findByCustomerId(customerId)
+                        .collectMap(account -> account.id().currency())
+                        .flatMap(accounts -> Mono.<List<CurrencyAccountDto>>error(rejectionOf(customerId, changes, accounts)))));
+    }
+
+    private static RuntimeException rejectionOf(long customerId, Map<Currency, Money> changes, Map<Currency, CurrencyAccount> accounts) {
+        for (Map.Entry<Currency, Money> change : changes.entrySet()) {
+            CurrencyAccount account = accounts.get(change.getKey());
+            if (account == null) {
+                return new CurrencyAccountNotFoundException(customerId, change.getKey());
+            }
+            if (account.amount().plus(change.getValue()).isNegative()) {
+                return new InsufficientFundsException(change.getKey());
+            }
+        }
+        return new OptimisticLockingFailureException("Balances of customer %d were updated concurrently".formatted(customerId));
+    }
+
+    private Mono<CurrencyAccountDto> updateAtomically(CurrencyAccountPk id, Money delta) {
+        return repository.updateAmountBy(id, delta)
+                .switchIfEmpty(Mono.defer(() -> repository.findById(id)
+                        .flatMap(account -> Mono.<CurrencyAccountDto>error(new InsufficientFundsException(id.currency())))
+                        .switchIfEmpty(Mono.error(new CurrencyAccountNotFoundException(id.customerId(), id.currency())))));
+    }
+
+    private Mono<CurrencyAccountDto> readAndCompareAndSet(CurrencyAccountPk id, Money delta) {
+        return repository.findBalance(id)
+                .flatMap(balance -> compareAndSet(id, balance, delta))
+                .switchIfEmpty(Mono.error(() -> new CurrencyAccountNotFoundException(id.customerId(), id.currency())));
+    }
+
+    private Mono<CurrencyAccountDto> compareAndSet(CurrencyAccountPk id, VersionedBalance balance, Money delta) {
+        if (balance == null) {
+            return Mono.error(new CurrencyAccountNotFoundException(id.customerId(), id.currency()));
+        }
+        Money newAmount = balance.amount().plus(delta);
+        if (newAmount.isNegative()) {
+            return Mono.error(new InsufficientFundsException(id.currency()));
+        }
+        return repository.compareAndSetAmount(balance, newAmount)
+                .switchIfEmpty(Mono.error(() -> new OptimisticLockingFailureException(
+                        "Balance of account %s was updated concurrently since version %d".formatted(id, balance.version()))));
+    }
+
+    private static TransactionDefinition transactionDefinition(ConcurrencyMode mode) {
+        DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+        if (mode == ConcurrencyMode.SERIALIZABLE) {
+            definition.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        }
+        return definition;
+    }
+}
@@ -0,0 +1,227 @@
+package pl.codehouse.nn.bank.account;
+
+import io.r2dbc.spi.Readable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps all balances of a customer in a single {@code customer_balances} row, as an array of minor units indexed by
+ * {@link Currency#ordinal()}, with NULL for a currency the customer has no account in.
+ * Updating any number of accounts of a customer is a single-row atomic {@code UPDATE}, reading them a primary key lookup.
+ * The version of a balance is the version of the whole row.
+ */
+@Service
+@ConditionalOnProperty(value = "app.accounts.storage", havingValue = "COMPACT")
+class CompactCurrencyAccountRepository implements CurrencyAccountRepository {
+    private static final Logger log = LoggerFactory.getLogger(CompactCurrencyAccountRepository.class);
+    private static final int WIDTH = Currency.values().length;
+
+    /**
+     * Inserts a row per customer, the balances of all customers are passed as a single array sliced per customer.
+     */
+    private static final String INSERT_ALL_SQL = """
+            INSERT INTO customer_balances(customer_id, amounts_minor, main_currency)
+            SELECT c.customer_id, (CAST(:amounts AS BIGINT[]))[(c.i - 1) * :width + 1 : c.i * :width], c.main_currency
+            FROM UNNEST(CAST(:customerIds AS INT[]), CAST(:mainCurrencies AS TEXT[])) WITH ORDINALITY AS c(customer_id, main_currency, i)
+            """;
+
+    private static final String SELECT_SQL = """
+            SELECT customer_id, amounts_minor, main_currency, version
+            FROM customer_balances
+            WHERE customer_id = :customerId
+            """;
+
+    private static final String LOCK_SQL = SELECT_SQL + "FOR UPDATE";
+
+    /**
+     * Adds the deltas element-wise, NULL deltas leave the balance unchanged. The whole row is left untouched when
+     * any delta targets a missing account or would make its balance negative.
+     */
+    private static final String UPDATE_AMOUNTS_SQL = """
+            UPDATE customer_balances
+            SET amounts_minor = ARRAY(
+                    SELECT COALESCE(t.amount + t.delta, t.amount)
+                    FROM UNNEST(amounts_minor, CAST(:deltas AS BIGINT[])) WITH ORDINALITY AS t(amount, delta, i)
+                    ORDER BY t.i),
+                version = version + 1
+            WHERE customer_id = :customerId
+              AND NOT EXISTS (
+                    SELECT 1
+                    FROM UNNEST(amounts_minor, CAST(:deltas AS BIGINT[])) AS t(amount, delta)
+                    WHERE t.delta IS NOT NULL AND (t.amount IS NULL OR t.amount + t.delta < 0))
+            RETURNING customer_id, amounts_minor, main_currency, version
+            """;
+
+    private static final String COMPARE_AND_SET_SQL = """
+            UPDATE customer_balances
+            SET amounts_minor[:index] = :amount, version = version + 1
+            WHERE customer_id = :customerId AND version = :version AND amounts_minor[:index] IS NOT NULL
+            RETURNING customer_id, amounts_minor, main_currency, version
+            """;
+
+    private final R2dbcEntityTemplate entityTemplate;
+
+    CompactCurrencyAccountRepository(R2dbcEntityTemplate entityTemplate) {
+        this.entityTemplate = entityTemplate;
+    }
+
+    @Override
+    public Flux<CurrencyAccount> findByCustomerId(long customerId) {
+        return findRow(customerId)
+                .flatMapIterable(BalancesRow::accounts);
+    }
+
+    @Override
+    public Mono<CurrencyAccount> findById(CurrencyAccountPk id) {
+        return findRow(id.customerId())
+                .mapNotNull(row -> row.account(id.currency()));
+    }
+
+    @Override
+    public Flux<CurrencyAccount> saveAll(List<CurrencyAccount> accounts) {
+        if (accounts.isEmpty()) {
+            return Flux.empty();
+        }
+        Map<Long, List<CurrencyAccount>> accountsByCustomer = new LinkedHashMap<>();
+        for (CurrencyAccount account : accounts) {
+            accountsByCustomer.computeIfAbsent(account.id().customerId(), customerId -> new ArrayList<>()).add(account);
+        }
+        int size = accountsByCustomer.size();
+        Long[] customerIds = new Long[size];
+        String[] mainCurrencies = new String[size];
+        Long[] amounts = new Long[size * WIDTH];
+        int i = 0;
+        for (Map.Entry<Long, List<CurrencyAccount>> customer : accountsByCustomer.entrySet()) {
+            customerIds[i] = customer.getKey();
+            for (CurrencyAccount account : customer.getValue()) {
+                amounts[i * WIDTH + account.id().currency().ordinal()] = account.amount().minorUnits();
+                if (account.isMainAccount()) {
+                    mainCurrencies[i] = account.id().currency().name();
+                }
+            }
+            i++;
+        }
+        return entityTemplate.getDatabaseClient().sql(INSERT_ALL_SQL)
+                .bind("customerIds", customerIds)
+                .bind("mainCurrencies", mainCurrencies)
+                .bind("amounts", amounts)
+                .bind("width", WIDTH)
+                .then()
+                .thenMany(Flux.fromIterable(accounts));
+    }
+
+    @Override
+    public Mono<CurrencyAccountDto> updateAmountBy(CurrencyAccountPk id, Money delta) {
+        return updateAmountsBy(id.customerId(), Map.of(id.currency(), delta))
+                .map(accounts -> accounts.get(0));
+    }
+
+    @Override
+    public Mono<List<CurrencyAccountDto>> updateAmountsBy(long customerId, Map<Currency, Money> deltas) {
+        log.info("Updating Customer {} balances by deltas => {}.", customerId, deltas);
+        Long[] minorDeltas = new Long[WIDTH];
+        deltas.forEach((currency, delta) -> minorDeltas[currency.ordinal()] = delta.minorUnits());
+        return entityTemplate.getDatabaseClient().sql(UPDATE_AMOUNTS_SQL)
+                .bind("customerId", customerId)
+                .bind("deltas", minorDeltas)
+                .map(CompactCurrencyAccountRepository::mapToBalancesRow)
+                .one()
+                .map(row -> row.accounts().stream()
+                        .filter(account -> deltas.containsKey(account.id().currency()))
+                        .map(CurrencyAccount::toDto)
+                        .toList());
+    }
+
+    @Override
+    public Mono<VersionedBalance> findBalance(CurrencyAccountPk id) {
+        return findRow(id.customerId())
+                .mapNotNull(row -> row.balance(id.currency()));
+    }
+
+    @Override
+    public Flux<VersionedBalance> lockBalances(long customerId, Collection<Currency> currencies) {
+        return entityTemplate.getDatabaseClient().sql(LOCK_SQL)
+                .bind("customerId", customerId)
+                .map(CompactCurrencyAccountRepository::mapToBalancesRow)
+                .one()
+                .flatMapIterable(row -> currencies.stream()
+                        .sorted()
+                        .map(row::balance)
+                        .filter(Objects::nonNull)
+                        .toList());
+    }
+
+    @Override
+    public Mono<CurrencyAccountDto> compareAndSetAmount(VersionedBalance expected, Money amount) {
+        log.info("Updating Customer CurrencyAccount ({}) at version {} with amount => {}.", expected.id(), expected.version(), amount);
+        Currency currency = expected.id().currency();
+        return entityTemplate.getDatabaseClient().sql(COMPARE_AND_SET_SQL)
+                .bind("customerId", expected.id().customerId())
+                .bind("index", currency.ordinal() + 1)
+                .bind("version", expected.version())
+                .bind("amount", amount.minorUnits())
+                .map(CompactCurrencyAccountRepository::mapToBalancesRow)
+                .one()
+                .map(row -> row.account(currency).toDto());
+    }
+
+    private Mono<BalancesRow> findRow(long customerId) {
+        return entityTemplate.getDatabaseClient().sql(SELECT_SQL)
+                .bind("customerId", customerId)
+                .map(CompactCurrencyAccountRepository::mapToBalancesRow)
+                .one();
+    }
+
+    private static BalancesRow mapToBalancesRow(Readable readable) {
+        String mainCurrency = readable.get("main_currency", String.class);
+        return new BalancesRow(
+                readable.get("customer_id", Long.class),
+                readable.get("amounts_minor", Long[].class),
+                mainCurrency == null ? null : Currency.valueOf(mainCurrency),
+                readable.get("version", Long.class));
+    }
+
+    /**
+     * All balances of a customer, the amount of a currency without an account is null.
+     */
+    private record BalancesRow(long customerId, Long[] amountsMinor, Currency mainCurrency, long version) {
+
+        List<CurrencyAccount> accounts() {
+            List<CurrencyAccount> accounts = new ArrayList<>(WIDTH);
+            for (Currency currency : Currency.values()) {
+                CurrencyAccount account = account(currency);
+                if (account != null) {
+                    accounts.add(account);
+                }
+            }
+            return accounts;
+        }
+
+        CurrencyAccount account(Currency currency) {
+            Long amount = amount(currency);
+            return amount == null ? null : new CurrencyAccount(new CurrencyAccountPk(customerId, currency),
+                    Money.ofMinor(amount, currency), currency == mainCurrency);
+        }
+
+        VersionedBalance balance(Currency currency) {
+            Long amount = amount(currency);
+            return amount == null ? null : new VersionedBalance(new CurrencyAccountPk(customerId, currency),
+                    Money.ofMinor(amount, currency), version);
+        }
+
+        private Long amount(Currency currency) {
+            return currency.ordinal() < amountsMinor.length ? amountsMinor[currency.ordinal()] : null;
+        }
+    }
+}
@@ -23,6 +23,12 @@ public enum Currency {
      */
     EUR;
 
+    private final int scale;
+
+    Currency() {
+        this.scale = java.util.Currency.getInstance(name()).getDefaultFractionDigits();
+    }
+
     /**
      * Checks if the currency is a valid main account currency.
      * Currently, all defined currencies are valid as main account currencies.
@@ -33,6 +39,15 @@ public enum Currency {
         return true; // All currencies are currently valid as main account currencies
     }
 
+    /**
+     * Provides the number of fraction digits amounts in this currency are rounded to.
+     *
+     * @return the default fraction digits of the ISO 4217 currency with the same code.
+     */
+    public int scale() {
+        return scale;
+    }
+
     /**
      * Provides the default currency for new accounts when no specific currency is specified.
      *
@@ -1,20 +1,12 @@
 package pl.codehouse.nn.bank.account;
 
-import java.math.BigDecimal;
-import org.springframework.data.annotation.Id;
-import org.springframework.data.relational.core.mapping.Embedded;
-import org.springframework.data.relational.core.mapping.Table;
-
-@Table("currency_accounts")
 record CurrencyAccount(
-        @Id
-        @Embedded.Empty
         CurrencyAccountPk id,
-        BigDecimal amount,
+        Money amount,
         boolean isMainAccount
 ) {
 
     CurrencyAccountDto toDto() {
-        return new CurrencyAccountDto(this.id.currency(), this.amount(), this.isMainAccount());
+        return new CurrencyAccountDto(this.id.currency(), this.amount().toBigDecimal(), this.isMainAccount());
     }
 }
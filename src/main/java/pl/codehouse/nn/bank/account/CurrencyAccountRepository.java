@@ -1,10 +1,15 @@
 package pl.codehouse.nn.bank.account;
 
-import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+/**
+ * Storage of the balances of currency accounts. The implementation is chosen by {@link AccountProperties#storage()}:
+ * {@link CurrencyAccountRepositoryImpl} keeps a row per account, {@link CompactCurrencyAccountRepository} a row per customer.
+ */
 interface CurrencyAccountRepository {
 
     Flux<CurrencyAccount> findByCustomerId(long customerId);
@@ -13,6 +18,50 @@ interface CurrencyAccountRepository {
 
     Flux<CurrencyAccount> saveAll(List<CurrencyAccount> accounts);
 
-    Mono<CurrencyAccountDto> updateAmountBy(CurrencyAccountPk id, BigDecimal updatedAmount);
+    /**
+     * Atomically adds the delta to the amount of the account, unless the resulting amount would be negative.
+     *
+     * @param id    The id of the account.
+     * @param delta The amount to be added, negative for a debit.
+     * @return The updated account, or empty when the account does not exist or does not hold enough funds.
+     */
+    Mono<CurrencyAccountDto> updateAmountBy(CurrencyAccountPk id, Money delta);
 
+    /**
+     * Adds the deltas to the amounts of several accounts of a customer, unless any resulting amount would be negative.
+     * Implementations writing more than one row rely on the surrounding transaction to roll back the accounts updated
+     * before the one failing.
+     *
+     * @param customerId The id of the customer owning the accounts.
+     * @param deltas     The amounts to be added per currency, negative for a debit.
+     * @return The updated accounts in {@link Currency} order, or empty when any account does not exist or does not hold enough funds.
+     */
+    Mono<List<CurrencyAccountDto>> updateAmountsBy(long customerId, Map<Currency, Money> deltas);
+
+    /**
+     * Reads the balance of the account together with its version.
+     *
+     * @param id The id of the account.
+     * @return The versioned balance, or empty when the account does not exist.
+     */
+    Mono<VersionedBalance> findBalance(CurrencyAccountPk id);
+
+    /**
+     * Reads and locks the balances of the given accounts of a customer until the end of the current transaction.
+     * The rows are locked in a fixed currency order.
+     *
+     * @param customerId The id of the customer owning the accounts.
+     * @param currencies The currencies of the accounts to be locked.
+     * @return The locked balances of the existing accounts.
+     */
+    Flux<VersionedBalance> lockBalances(long customerId, Collection<Currency> currencies);
+
+    /**
+     * Sets the amount of the account, provided its balance was not updated since it was read.
+     *
+     * @param expected The balance as read before the update.
+     * @param amount   The new amount of the account.
+     * @return The updated account, or empty when the balance was updated concurrently.
+     */
+    Mono<CurrencyAccountDto> compareAndSetAmount(VersionedBalance expected, Money amount);
 }
@@ -1,32 +1,76 @@
 package pl.codehouse.nn.bank.account;
 
 import io.r2dbc.spi.Readable;
-import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import org.apache.commons.lang3.BooleanUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
-import org.springframework.data.relational.core.query.Criteria;
-import org.springframework.data.relational.core.query.Query;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
+@ConditionalOnExpression("'${app.accounts.storage:ROWS}' != 'COMPACT'")
 class CurrencyAccountRepositoryImpl implements CurrencyAccountRepository {
-    private static final String INSERT_SQL_TEMPLATE = """
-            INSERT INTO currency_accounts(customer_id, currency, amount, is_main_account) 
-            VALUES (:customerId, :currency, :amount, :isMainAccount) RETURNING customer_id, currency, amount, is_main_account;
+    /**
+     * Inserts all accounts with a single statement, the column values are passed as one array per column.
+     */
+    private static final String INSERT_ALL_SQL_TEMPLATE = """
+            INSERT INTO currency_accounts(customer_id, currency, amount_minor, is_main_account)
+            SELECT * FROM UNNEST(CAST(:customerIds AS INT[]), CAST(:currencies AS TEXT[]), CAST(:amounts AS BIGINT[]), CAST(:isMainAccounts AS BOOLEAN[]))
+            RETURNING customer_id, currency, amount_minor, is_main_account;
+            """;
+
+    private static final String SELECT_BY_CUSTOMER_SQL = """
+            SELECT customer_id, currency, amount_minor, is_main_account
+            FROM currency_accounts
+            WHERE customer_id = :customerId
+            """;
+
+    private static final String SELECT_BY_ID_SQL = """
+            SELECT customer_id, currency, amount_minor, is_main_account
+            FROM currency_accounts
+            WHERE customer_id = :customerId AND currency = :currency
             """;
 
     private static final String updateSql = """
             UPDATE currency_accounts
-            SET amount = :updatedAmount
+            SET amount_minor = amount_minor + :delta, version = version + 1
+            WHERE customer_id = :customerId AND currency = :currency AND amount_minor + :delta >= 0
+            RETURNING customer_id, currency, amount_minor, is_main_account
+            """;
+
+    private static final String COMPARE_AND_SET_SQL = """
+            UPDATE currency_accounts
+            SET amount_minor = :amount, version = version + 1
+            WHERE customer_id = :customerId AND currency = :currency AND version = :version
+            RETURNING customer_id, currency, amount_minor, is_main_account
+            """;
+
+    private static final String SELECT_BALANCE_SQL = """
+            SELECT customer_id, currency, amount_minor, version
+            FROM currency_accounts
             WHERE customer_id = :customerId AND currency = :currency
-            RETURNING customer_id, currency, amount, is_main_account
             """;
+
+    /**
+     * Locks the rows in a fixed currency order, so that transactions locking the same accounts cannot deadlock.
+     */
+    private static final String LOCK_BALANCES_SQL = """
+            SELECT customer_id, currency, amount_minor, version
+            FROM currency_accounts
+            WHERE customer_id = :customerId AND currency IN (:currencies)
+            ORDER BY currency
+            FOR UPDATE
+            """;
+
     private static final Logger log = LoggerFactory.getLogger(CurrencyAccountRepositoryImpl.class);
     private final R2dbcEntityTemplate entityTemplate;
 
@@ -36,50 +80,116 @@ class CurrencyAccountRepositoryImpl implements CurrencyAccountRepository {
 
     @Override
     public Flux<CurrencyAccount> findByCustomerId(long customerId) {
-        return entityTemplate.select(CurrencyAccount.class)
-                .matching(Query.query(Criteria.where("customer_id").is(customerId)))
+        return entityTemplate.getDatabaseClient().sql(SELECT_BY_CUSTOMER_SQL)
+                .bind("customerId", customerId)
+                .map(CurrencyAccountRepositoryImpl::mapToCurrencyAccount)
                 .all();
     }
 
     @Override
     public Mono<CurrencyAccount> findById(CurrencyAccountPk id) {
-        return entityTemplate.select(CurrencyAccount.class)
-                .matching(Query.query(
-                        Criteria.where("customer_id").is(id.customerId())
-                                .and("currency").is(id.currency().name())
-                ))
-                .first();
+        return entityTemplate.getDatabaseClient().sql(SELECT_BY_ID_SQL)
+                .bind("customerId", id.customerId())
+                .bind("currency", id.currency().name())
+                .map(CurrencyAccountRepositoryImpl::mapToCurrencyAccount)
+                .one();
     }
 
     @Override
     public Flux<CurrencyAccount> saveAll(List<CurrencyAccount> accounts) {
-        return Flux.fromIterable(accounts)
-                .flatMap(account -> entityTemplate.getDatabaseClient().sql(INSERT_SQL_TEMPLATE)
-                        .bind("customerId", account.id().customerId())
-                        .bind("currency", account.id().currency().name())
-                        .bind("amount", account.amount())
-                        .bind("isMainAccount", account.isMainAccount())
-                        .map(CurrencyAccountRepositoryImpl::mapToCurrencyAccount)
-                        .one()
-                );
+        if (accounts.isEmpty()) {
+            return Flux.empty();
+        }
+        int size = accounts.size();
+        Long[] customerIds = new Long[size];
+        String[] currencies = new String[size];
+        Long[] amounts = new Long[size];
+        Boolean[] isMainAccounts = new Boolean[size];
+        for (int i = 0; i < size; i++) {
+            CurrencyAccount account = accounts.get(i);
+            customerIds[i] = account.id().customerId();
+            currencies[i] = account.id().currency().name();
+            amounts[i] = account.amount().minorUnits();
+            isMainAccounts[i] = account.isMainAccount();
+        }
+        return entityTemplate.getDatabaseClient().sql(INSERT_ALL_SQL_TEMPLATE)
+                .bind("customerIds", customerIds)
+                .bind("currencies", currencies)
+                .bind("amounts", amounts)
+                .bind("isMainAccounts", isMainAccounts)
+                .map(CurrencyAccountRepositoryImpl::mapToCurrencyAccount)
+                .all();
     }
 
     @Override
-    public Mono<CurrencyAccountDto> updateAmountBy(CurrencyAccountPk id, BigDecimal updatedAmount) {
-        log.info("Updating Customer CurrencyAccount ({}) with updatedAmount => {}.", id, updatedAmount);
+    public Mono<CurrencyAccountDto> updateAmountBy(CurrencyAccountPk id, Money delta) {
+        log.info("Updating Customer CurrencyAccount ({}) by delta => {}.", id, delta);
         return entityTemplate.getDatabaseClient().sql(updateSql)
                 .bind("customerId", id.customerId())
                 .bind("currency", id.currency().name())
-                .bind("updatedAmount", updatedAmount)
+                .bind("delta", delta.minorUnits())
                 .map(CurrencyAccountRepositoryImpl::mapToCurrencyAccount)
                 .one()
                 .map(CurrencyAccount::toDto);
     }
 
+    @Override
+    public Mono<List<CurrencyAccountDto>> updateAmountsBy(long customerId, Map<Currency, Money> deltas) {
+        Map<Currency, Money> deltasInLockOrder = new EnumMap<>(Currency.class);
+        deltasInLockOrder.putAll(deltas);
+        return Flux.fromIterable(deltasInLockOrder.entrySet())
+                .concatMap(delta -> updateAmountBy(new CurrencyAccountPk(customerId, delta.getKey()), delta.getValue())
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()))
+                .takeUntil(Optional::isEmpty)
+                .collectList()
+                .filter(updated -> updated.stream().allMatch(Optional::isPresent))
+                .map(updated -> updated.stream().map(Optional::get).toList());
+    }
+
+    @Override
+    public Mono<VersionedBalance> findBalance(CurrencyAccountPk id) {
+        return entityTemplate.getDatabaseClient().sql(SELECT_BALANCE_SQL)
+                .bind("customerId", id.customerId())
+                .bind("currency", id.currency().name())
+                .map(CurrencyAccountRepositoryImpl::mapToVersionedBalance)
+                .one();
+    }
+
+    @Override
+    public Flux<VersionedBalance> lockBalances(long customerId, Collection<Currency> currencies) {
+        return entityTemplate.getDatabaseClient().sql(LOCK_BALANCES_SQL)
+                .bind("customerId", customerId)
+                .bind("currencies", currencies.stream().map(Currency::name).toList())
+                .map(CurrencyAccountRepositoryImpl::mapToVersionedBalance)
+                .all();
+    }
+
+    @Override
+    public Mono<CurrencyAccountDto> compareAndSetAmount(VersionedBalance expected, Money amount) {
+        log.info("Updating Customer CurrencyAccount ({}) at version {} with amount => {}.", expected.id(), expected.version(), amount);
+        return entityTemplate.getDatabaseClient().sql(COMPARE_AND_SET_SQL)
+                .bind("customerId", expected.id().customerId())
+                .bind("currency", expected.id().currency().name())
+                .bind("version", expected.version())
+                .bind("amount", amount.minorUnits())
+                .map(CurrencyAccountRepositoryImpl::mapToCurrencyAccount)
+                .one()
+                .map(CurrencyAccount::toDto);
+    }
+
+    private static VersionedBalance mapToVersionedBalance(Readable readable) {
+        Long customerId = readable.get("customer_id", Long.class);
+        Currency currency = Currency.valueOf(readable.get("currency", String.class));
+        return new VersionedBalance(new CurrencyAccountPk(customerId, currency),
+                Money.ofMinor(readable.get("amount_minor", Long.class), currency),
+                readable.get("version", Long.class));
+    }
+
     private static CurrencyAccount mapToCurrencyAccount(Readable readable) {
         Long customerId = readable.get("customer_id", Long.class);
         Currency currency = Currency.valueOf(readable.get("currency", String.class));
-        BigDecimal amount = readable.get("amount", BigDecimal.class);
+        Money amount = Money.ofMinor(readable.get("amount_minor", Long.class), currency);
         Boolean isMainAccount = readable.get("is_main_account", Boolean.class);
         return new CurrencyAccount(new CurrencyAccountPk(customerId, currency), amount, isMainAccount);
     }
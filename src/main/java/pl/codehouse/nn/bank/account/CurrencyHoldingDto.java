@@ -0,0 +1,15 @@
+package pl.codehouse.nn.bank.account;
+
+import java.math.BigDecimal;
+
+/**
+ * Data Transfer Object (DTO) representing the total balance held in a currency across all customers.
+ *
+ * @param currency The currency of the total.
+ * @param amount   The sum of the balances of all accounts in the currency.
+ */
+public record CurrencyHoldingDto(
+        Currency currency,
+        BigDecimal amount
+) {
+}
@@ -0,0 +1,36 @@
+package pl.codehouse.nn.bank.account;
+
+import java.util.List;
+import java.util.Map;
+import reactor.core.publisher.Mono;
+
+/**
+ * Storage of the total balance held per currency across all customers, kept up to date by every balance change
+ * within the transaction of the change. Every total is split into stripes, a customer always adding to the same one.
+ */
+interface CurrencyHoldingsRepository {
+
+    /**
+     * Adds the balance changes of a customer to the totals of their currencies.
+     *
+     * @param customerId The id of the customer whose balances were changed.
+     * @param changes    The amounts added to the balances per currency, negative for a debit.
+     * @return A Mono completing once the totals are updated.
+     */
+    Mono<Void> add(long customerId, Map<Currency, Money> changes);
+
+    /**
+     * Adds the opening balances of new accounts to the totals of their currencies with a single statement.
+     *
+     * @param accounts The new accounts, of any number of customers.
+     * @return A Mono completing once the totals are updated.
+     */
+    Mono<Void> addOpeningBalances(List<CurrencyAccount> accounts);
+
+    /**
+     * Reads the totals by summing their stripes, so the cost does not depend on the number of customers.
+     *
+     * @return The total balance held per currency, in {@link Currency} order, a currency without any account missing.
+     */
+    Mono<Map<Currency, Money>> findTotals();
+}
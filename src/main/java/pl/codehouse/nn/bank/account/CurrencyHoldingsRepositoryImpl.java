@@ -0,0 +1,102 @@
+package pl.codehouse.nn.bank.account;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+@Service
+class CurrencyHoldingsRepositoryImpl implements CurrencyHoldingsRepository {
+    /**
+     * Adds the amounts to their stripes with a single statement. The stripes are passed in a fixed order, so that
+     * transactions updating the same stripes lock them in the same order and cannot deadlock.
+     */
+    private static final String ADD_ALL_SQL = """
+            INSERT INTO currency_holdings(currency, stripe, amount_minor)
+            SELECT * FROM UNNEST(CAST(:currencies AS TEXT[]), CAST(:stripes AS INT[]), CAST(:amounts AS BIGINT[]))
+            ON CONFLICT (currency, stripe) DO UPDATE
+            SET amount_minor = currency_holdings.amount_minor + EXCLUDED.amount_minor
+            """;
+
+    private static final String SELECT_TOTALS_SQL = """
+            SELECT currency, CAST(SUM(amount_minor) AS BIGINT) AS amount_minor
+            FROM currency_holdings
+            GROUP BY currency
+            """;
+
+    private final R2dbcEntityTemplate entityTemplate;
+    private final int stripes;
+
+    CurrencyHoldingsRepositoryImpl(R2dbcEntityTemplate entityTemplate, AccountProperties properties) {
+        this.entityTemplate = entityTemplate;
+        this.stripes = properties.holdings().stripes();
+    }
+
+    @Override
+    public Mono<Void> add(long customerId, Map<Currency, Money> changes) {
+        Map<StripeKey, Long> amounts = new TreeMap<>();
+        changes.forEach((currency, change) -> amounts.merge(new StripeKey(currency, stripeOf(customerId)), change.minorUnits(), Long::sum));
+        return addAll(amounts);
+    }
+
+    @Override
+    public Mono<Void> addOpeningBalances(List<CurrencyAccount> accounts) {
+        Map<StripeKey, Long> amounts = new TreeMap<>();
+        accounts.forEach(account -> amounts.merge(new StripeKey(account.id().currency(), stripeOf(account.id().customerId())),
+                account.amount().minorUnits(), Long::sum));
+        return addAll(amounts);
+    }
+
+    @Override
+    public Mono<Map<Currency, Money>> findTotals() {
+        return entityTemplate.getDatabaseClient().sql(SELECT_TOTALS_SQL)
+                .map(readable -> {
+                    Currency currency = Currency.valueOf(readable.get("currency", String.class));
+                    return Money.ofMinor(readable.get("amount_minor", Long.class), currency);
+                })
+                .all()
+                .collectMap(Money::currency, total -> total, () -> new EnumMap<>(Currency.class));
+    }
+
+    private Mono<Void> addAll(Map<StripeKey, Long> amounts) {
+        amounts.values().removeIf(amount -> amount == 0);
+        if (amounts.isEmpty()) {
+            return Mono.empty();
+        }
+        int size = amounts.size();
+        String[] currencies = new String[size];
+        Integer[] stripeIds = new Integer[size];
+        Long[] amountsMinor = new Long[size];
+        int i = 0;
+        for (Map.Entry<StripeKey, Long> amount : amounts.entrySet()) {
+            currencies[i] = amount.getKey().currency().name();
+            stripeIds[i] = amount.getKey().stripe();
+            amountsMinor[i] = amount.getValue();
+            i++;
+        }
+        return entityTemplate.getDatabaseClient().sql(ADD_ALL_SQL)
+                .bind("currencies", currencies)
+                .bind("stripes", stripeIds)
+                .bind("amounts", amountsMinor)
+                .then();
+    }
+
+    private int stripeOf(long customerId) {
+        return (int) Math.floorMod(customerId, (long) stripes);
+    }
+
+    /**
+     * A stripe of the total of a currency, ordered by currency and then by stripe.
+     */
+    private record StripeKey(Currency currency, int stripe) implements Comparable<StripeKey> {
+
+        @Override
+        public int compareTo(StripeKey other) {
+            int byCurrency = currency.compareTo(other.currency);
+            return byCurrency != 0 ? byCurrency : Integer.compare(stripe, other.stripe);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package pl.codehouse.nn.bank.account;
+
+import java.util.List;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping(value = "/holdings", produces = {MediaType.APPLICATION_JSON_VALUE})
+class HoldingsResource {
+    private final AccountService accountService;
+
+    HoldingsResource(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    @GetMapping
+    Mono<List<CurrencyHoldingDto>> fetchHoldings() {
+        return accountService.findHoldings();
+    }
+}
@@ -0,0 +1,22 @@
+package pl.codehouse.nn.bank.account;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exception thrown when a currency account does not hold enough funds for the requested debit.
+ * This exception is mapped to an HTTP 422 Unprocessable Entity response.
+ */
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class InsufficientFundsException extends ResponseStatusException {
+
+    /**
+     * Constructs a new InsufficientFundsException for the given currency account.
+     *
+     * @param currency The currency of the account lacking the funds.
+     */
+    public InsufficientFundsException(Currency currency) {
+        super(HttpStatus.UNPROCESSABLE_ENTITY, "Not enough amount for exchanging from %s currency".formatted(currency));
+    }
+}
@@ -0,0 +1,13 @@
+package pl.codehouse.nn.bank.account;
+
+import java.util.UUID;
+
+/**
+ * A single immutable leg of a balance change, appended to the account ledger.
+ *
+ * @param transactionId The id shared by all legs of the same exchange or deposit.
+ * @param id            The id of the account whose balance is changed.
+ * @param amount        The amount added to the balance, negative for a debit.
+ */
+record LedgerEntry(UUID transactionId, CurrencyAccountPk id, Money amount) {
+}
@@ -0,0 +1,87 @@
+package pl.codehouse.nn.bank.account;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Periodically folds the account ledger entries appended since the last balance snapshots into new snapshots,
+ * so that reading a current balance only sums a short tail of entries. The schedule is driven by {@link AccountProperties.Ledger}.
+ * Every customer is snapshotted in its own transaction holding the ledger lock of the customer, so that no entry
+ * of a pending balance update is skipped.
+ */
+@Component
+@ConditionalOnProperty(value = "app.accounts.storage", havingValue = "LEDGER")
+class LedgerSnapshotter {
+    private static final Logger log = LoggerFactory.getLogger(LedgerSnapshotter.class);
+
+    private final AccountLedgerRepository ledgerRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final AccountProperties.Ledger properties;
+    private final TaskScheduler taskScheduler;
+    private final Clock clock;
+    private final AtomicLong lastSnapshotEntryId = new AtomicLong(-1);
+
+    LedgerSnapshotter(AccountLedgerRepository ledgerRepository,
+                      TransactionalOperator transactionalOperator,
+                      AccountProperties properties,
+                      TaskScheduler taskScheduler,
+                      Clock clock) {
+        this.ledgerRepository = ledgerRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.properties = properties.ledger();
+        this.taskScheduler = taskScheduler;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void scheduleSnapshots() {
+        log.info("Scheduling account ledger snapshots every {}.", properties.snapshotInterval());
+        taskScheduler.scheduleWithFixedDelay(
+                () -> snapshot().block(),
+                clock.instant().plus(properties.snapshotInterval()),
+                properties.snapshotInterval()
+        );
+    }
+
+    /**
+     * Folds the ledger entries appended since the previous run into new balance snapshots.
+     * A customer skipped by a failed or a previous run is folded as soon as it gets a new entry,
+     * its balances stay correct meanwhile, only read from a longer tail. The first run after a start continues
+     * from the newest entry already folded into a snapshot, instead of scanning the whole ledger again.
+     *
+     * @return A Mono emitting the number of account snapshots taken.
+     */
+    Mono<Long> snapshot() {
+        return Mono.defer(this::lastSnapshotEntryId)
+                .flatMapMany(ledgerRepository::findTails)
+                .flatMap(tail -> ledgerRepository.lockCustomer(tail.customerId())
+                                .then(ledgerRepository.foldTail(tail.customerId()))
+                                .as(transactionalOperator::transactional)
+                                .doOnSuccess(snapshots -> lastSnapshotEntryId.accumulateAndGet(tail.lastEntryId(), Math::max)),
+                        properties.snapshotConcurrency())
+                .reduce(0L, Long::sum)
+                .doOnNext(snapshots -> log.info("Taken {} account balance snapshots up to ledger entry {}.", snapshots, lastSnapshotEntryId.get()))
+                .onErrorResume(error -> {
+                    log.warn("Unable to snapshot the account ledger. Reason: {}", error.getMessage());
+                    return Mono.just(0L);
+                });
+    }
+
+    private Mono<Long> lastSnapshotEntryId() {
+        long lastEntryId = lastSnapshotEntryId.get();
+        if (lastEntryId >= 0) {
+            return Mono.just(lastEntryId);
+        }
+        return ledgerRepository.findLastSnapshotEntryId()
+                .map(entryId -> lastSnapshotEntryId.accumulateAndGet(entryId, Math::max));
+    }
+}
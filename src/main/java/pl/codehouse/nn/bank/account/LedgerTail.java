@@ -0,0 +1,10 @@
+package pl.codehouse.nn.bank.account;
+
+/**
+ * The ledger entries of a customer not yet folded into the balance snapshots of its accounts.
+ *
+ * @param customerId  The id of the customer.
+ * @param lastEntryId The id of the latest entry of the customer.
+ */
+record LedgerTail(long customerId, long lastEntryId) {
+}
@@ -0,0 +1,190 @@
+package pl.codehouse.nn.bank.account;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a {@code long} count of the minor units of its {@link Currency}, e.g. cents.
+ * The scale of the amount is the {@link Currency#scale()} of its currency. All arithmetic is exact and fails with
+ * an {@link ArithmeticException} on overflow. Rounding happens only in {@link #multiplyAndDivide} and
+ * {@link #of(BigDecimal, Currency, RoundingMode)}, both with an explicit {@link RoundingMode}.
+ * {@link BigDecimal} amounts are converted only at the JSON and SQL boundaries.
+ *
+ * @param minorUnits The amount in minor units of the currency.
+ * @param currency   The currency of the amount.
+ */
+public record Money(long minorUnits, Currency currency) implements Comparable<Money> {
+    /**
+     * Creates money of the given amount of minor units.
+     *
+     * @param minorUnits The amount in minor units of the currency.
+     * @param currency   The currency of the amount.
+     * @throws IllegalArgumentException when the currency is not given.
+     */
+    public Money {
+        if (currency == null) {
+            throw new IllegalArgumentException("Currency of money must be given");
+        }
+    }
+
+    /**
+     * Creates money of the given amount of minor units.
+     *
+     * @param minorUnits The amount in minor units of the currency.
+     * @param currency   The currency of the amount.
+     * @return The money.
+     */
+    public static Money ofMinor(long minorUnits, Currency currency) {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * Creates money of zero amount.
+     *
+     * @param currency The currency of the amount.
+     * @return The money.
+     */
+    public static Money zero(Currency currency) {
+        return new Money(0, currency);
+    }
+
+    /**
+     * Converts the decimal amount into money, it must not have more fraction digits than the scale of the currency.
+     *
+     * @param amount   The decimal amount.
+     * @param currency The currency of the amount.
+     * @return The money.
+     * @throws ArithmeticException when the amount has more fraction digits than the currency, or does not fit in a long.
+     */
+    public static Money of(BigDecimal amount, Currency currency) {
+        return of(amount, currency, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Converts the decimal amount into money, rounded to the scale of the currency.
+     *
+     * @param amount   The decimal amount.
+     * @param currency The currency of the amount.
+     * @param rounding The rounding applied when the amount has more fraction digits than the currency.
+     * @return The money.
+     * @throws ArithmeticException when the amount does not fit in a long.
+     */
+    public static Money of(BigDecimal amount, Currency currency, RoundingMode rounding) {
+        return new Money(amount.setScale(currency.scale(), rounding).unscaledValue().longValueExact(), currency);
+    }
+
+    /**
+     * Converts the money into a decimal amount with the scale of its currency.
+     *
+     * @return The decimal amount.
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.scale());
+    }
+
+    /**
+     * Adds the given money to this one.
+     *
+     * @param other The money to be added, in the same currency.
+     * @return The sum.
+     * @throws IllegalArgumentException when the currencies differ.
+     * @throws ArithmeticException when the sum does not fit in a long.
+     */
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    /**
+     * Subtracts the given money from this one.
+     *
+     * @param other The money to be subtracted, in the same currency.
+     * @return The difference.
+     * @throws IllegalArgumentException when the currencies differ.
+     * @throws ArithmeticException when the difference does not fit in a long.
+     */
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, sameCurrency(other).minorUnits), currency);
+    }
+
+    /**
+     * Negates the amount.
+     *
+     * @return The money of the opposite amount in the same currency.
+     * @throws ArithmeticException when the amount is the smallest long.
+     */
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    /**
+     * Checks whether the amount is below zero.
+     *
+     * @return true if the amount is negative, false otherwise.
+     */
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    /**
+     * Multiplies the amount by the ratio of the given factors and expresses it in minor units of the target currency.
+     * The factors must already account for the difference of scales of both currencies.
+     *
+     * @param target     The currency of the result.
+     * @param multiplier The numerator of the ratio.
+     * @param divisor    The positive denominator of the ratio.
+     * @param rounding   The rounding of the result to whole minor units of the target currency.
+     * @return The money in the target currency.
+     */
+    public Money multiplyAndDivide(Currency target, long multiplier, long divisor, RoundingMode rounding) {
+        long product;
+        try {
+            product = Math.multiplyExact(minorUnits, multiplier);
+        } catch (ArithmeticException overflow) {
+            return new Money(BigDecimal.valueOf(minorUnits)
+                    .multiply(BigDecimal.valueOf(multiplier))
+                    .divide(BigDecimal.valueOf(divisor), 0, rounding)
+                    .longValueExact(), target);
+        }
+        return new Money(divide(product, divisor, rounding), target);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, sameCurrency(other).minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+
+    private Money sameCurrency(Money other) {
+        if (other.currency != currency) {
+            throw new IllegalArgumentException("Cannot combine %s with %s".formatted(this, other));
+        }
+        return other;
+    }
+
+    private static long divide(long dividend, long divisor, RoundingMode rounding) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        int signum = Long.signum(dividend) * Long.signum(divisor);
+        boolean increment = switch (rounding) {
+            case UNNECESSARY -> throw new ArithmeticException("Rounding necessary");
+            case DOWN -> false;
+            case UP -> true;
+            case FLOOR -> signum < 0;
+            case CEILING -> signum > 0;
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> {
+                long absRemainder = Math.abs(remainder);
+                long halfComparison = absRemainder - (Math.abs(divisor) - absRemainder);
+                yield halfComparison > 0
+                        || halfComparison == 0 && (rounding == RoundingMode.HALF_UP || rounding == RoundingMode.HALF_EVEN && (quotient & 1) != 0);
+            }
+        };
+        return increment ? quotient + signum : quotient;
+    }
+}
@@ -0,0 +1,11 @@
+package pl.codehouse.nn.bank.account;
+
+/**
+ * The balance of a currency account together with its version, as read before an update.
+ *
+ * @param id      The id of the account.
+ * @param amount  The balance of the account.
+ * @param version The version of the balance, incremented by every update.
+ */
+record VersionedBalance(CurrencyAccountPk id, Money amount, long version) {
+}
@@ -0,0 +1,245 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import pl.codehouse.nn.bank.Command;
+import pl.codehouse.nn.bank.ExecutionResult;
+import pl.codehouse.nn.bank.SerializedCommand;
+import pl.codehouse.nn.bank.StripedCommandExecutor;
+import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountNotFoundException;
+import pl.codehouse.nn.bank.account.InsufficientFundsException;
+import pl.codehouse.nn.bank.account.Money;
+import pl.codehouse.nn.bank.customer.CurrencyExchangeCommand.ExchangeAmountValues;
+import pl.codehouse.nn.bank.exchange.rates.CrossRateMatrix;
+import pl.codehouse.nn.bank.exchange.rates.ExchangeRatesService;
+import pl.codehouse.nn.bank.exchange.rates.RatesSnapshot;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Executes a stream of exchanges of many customers, such as the end of day conversions of the back office.
+ * All exchanges at the current rates use the same rates snapshot, fetched once per {@link ExchangeBatchProperties#ratesTtl()}
+ * of the stream. A failed fetch rejects only the groups waiting for it, the following groups fetch the rates again.
+ * The stream is cut into batches of {@link ExchangeBatchProperties#batchSize()} and the exchanges of a batch are grouped
+ * by customer. The exchanges of a group are checked one after another against the balances read once for the customer,
+ * and the net change of every balance is applied with a single update in a single transaction.
+ * The rates needed by a group are resolved first, then only reading and updating the balances of the group is executed
+ * by a {@link SerializedCommand}, one at a time with any other exchange of the customer.
+ * The results are streamed back as the groups complete, so not in the order of the lines.
+ */
+@Component
+class BatchExchangeCommand {
+    private static final Logger log = LoggerFactory.getLogger(BatchExchangeCommand.class);
+
+    private final CustomerRepository repository;
+    private final AccountService accountService;
+    private final ExchangeRatesService exchangeRatesService;
+    private final ExchangeQuoteStore quoteStore;
+    private final CustomerCache customerCache;
+    private final ExchangeBatchProperties properties;
+    private final Command<PricedGroup, List<BatchExchangeResult>> groupUpdate;
+
+    BatchExchangeCommand(CustomerRepository repository,
+                         AccountService accountService,
+                         ExchangeRatesService exchangeRatesService,
+                         ExchangeQuoteStore quoteStore,
+                         CustomerCache customerCache,
+                         StripedCommandExecutor commandExecutor,
+                         ExchangeBatchProperties properties) {
+        this.repository = repository;
+        this.accountService = accountService;
+        this.exchangeRatesService = exchangeRatesService;
+        this.quoteStore = quoteStore;
+        this.customerCache = customerCache;
+        this.properties = properties;
+        this.groupUpdate = new SerializedCommand<>(this::updateBalances, commandExecutor, PricedGroup::customerId);
+    }
+
+    /**
+     * Executes every exchange of the stream.
+     *
+     * @param items The stream of exchanges, consumed under backpressure.
+     * @return The result of every line.
+     */
+    Flux<BatchExchangeResult> execute(Flux<BatchExchangeItem> items) {
+        Mono<CrossRateMatrix> crossRates = Mono.defer(exchangeRatesService::fetchRatesSnapshot)
+                .map(RatesSnapshot::crossRates)
+                .cache(rates -> properties.ratesTtl(), error -> Duration.ZERO, () -> Duration.ZERO);
+        return items
+                .index((index, item) -> new Line(index + 1, item))
+                .bufferTimeout(properties.batchSize(), properties.maxBatchDelay(), true)
+                .concatMap(batch -> Flux.fromIterable(groupByCustomer(batch))
+                        .flatMap(group -> exchange(group, crossRates), properties.concurrency())
+                        .flatMapIterable(results -> results), 1);
+    }
+
+    private Mono<List<BatchExchangeResult>> exchange(CustomerLines group, Mono<CrossRateMatrix> crossRates) {
+        long customerId = group.customerId();
+        Mono<Optional<CrossRateMatrix>> neededCrossRates = group.needsRates() ? crossRates.map(Optional::of) : Mono.just(Optional.empty());
+        return neededCrossRates
+                .flatMap(rates -> groupUpdate.execute(new PricedGroup(group, rates)))
+                .map(ExecutionResult::handle)
+                .onErrorResume(error -> {
+                    log.error("Error during batch exchange of customer {}: {}", customerId, error.getMessage(), error);
+                    return Mono.just(group.lines().stream()
+                            .map(line -> BatchExchangeResult.rejected(line.number(), customerId, reasonOf(error)))
+                            .toList());
+                });
+    }
+
+    private Mono<ExecutionResult<List<BatchExchangeResult>>> updateBalances(PricedGroup pricedGroup) {
+        long customerId = pricedGroup.customerId();
+        CustomerLines group = pricedGroup.group();
+        log.info("Executing {} exchanges of customer {} as a single update.", group.lines().size(), customerId);
+        return repository.findWithAccounts(customerId)
+                .switchIfEmpty(Mono.error(new CustomerNotFoundException(customerId)))
+                .flatMap(customer -> apply(customer, plan(customer, group, pricedGroup.crossRates())))
+                .map(ExecutionResult::success)
+                .onErrorResume(RuntimeException.class, error -> Mono.just(ExecutionResult.failure(error)));
+    }
+
+    /**
+     * Checks the exchanges of the group one after another, each against the balances left by the previous ones,
+     * so that only the exchanges overdrawing an account are rejected instead of the net change of the whole group.
+     * The balances are read outside the transaction applying the net change, so this check only picks the exchanges,
+     * the limit is enforced by the guarded update of {@link AccountService#updateAmountsFor}. When the balances change
+     * meanwhile, e.g. by a single exchange executed on another node, the update fails and all exchanges of the group
+     * are rejected with the reason reported by the update.
+     */
+    private ExchangePlan plan(CustomerDto customer, CustomerLines group, Optional<CrossRateMatrix> crossRates) {
+        Map<Currency, Money> balances = new EnumMap<>(Currency.class);
+        customer.accountBalance().forEach(account -> balances.put(account.currency(), Money.of(account.amount(), account.currency())));
+        Map<Currency, Money> netChanges = new EnumMap<>(Currency.class);
+        List<Line> accepted = new ArrayList<>();
+        List<ExchangeQuote> takenQuotes = new ArrayList<>();
+        List<BatchExchangeResult> rejected = new ArrayList<>();
+        for (Line line : group.lines()) {
+            ExchangeQuote quote = null;
+            try {
+                ExchangeRequest request = line.item().request();
+                if (request != null && request.quoteId() != null) {
+                    quote = quoteStore.take(customer.accountId(), request.quoteId())
+                            .orElseThrow(() -> new ExchangeQuoteNotFoundException(customer.accountId(), request.quoteId()));
+                }
+                ExchangeAmountValues amountValues = quote != null
+                        ? CurrencyExchangeCommand.lockedExchangeAmounts(quote)
+                        : amountValues(request, crossRates);
+                Map<Currency, Money> changes = amountValues.amountChanges();
+                Map<Currency, Money> updated = new EnumMap<>(Currency.class);
+                changes.forEach((currency, change) -> {
+                    Money balance = balances.get(currency);
+                    if (balance == null) {
+                        throw new CurrencyAccountNotFoundException(customer.accountId(), currency);
+                    }
+                    Money updatedBalance = balance.plus(change);
+                    if (updatedBalance.isNegative()) {
+                        throw new InsufficientFundsException(currency);
+                    }
+                    updated.put(currency, updatedBalance);
+                });
+                balances.putAll(updated);
+                changes.forEach((currency, change) -> netChanges.merge(currency, change, Money::plus));
+                accepted.add(line);
+                if (quote != null) {
+                    takenQuotes.add(quote);
+                }
+            } catch (RuntimeException error) {
+                // nothing has been written yet, the line is rejected by the checks above
+                if (quote != null) {
+                    quoteStore.putBack(quote);
+                }
+                rejected.add(BatchExchangeResult.rejected(line.number(), customer.accountId(), reasonOf(error)));
+            }
+        }
+        netChanges.values().removeIf(change -> change.minorUnits() == 0);
+        return new ExchangePlan(netChanges, accepted, takenQuotes, rejected);
+    }
+
+    private static ExchangeAmountValues amountValues(ExchangeRequest request, Optional<CrossRateMatrix> crossRates) {
+        if (request == null) {
+            throw new IllegalArgumentException("request must not be empty");
+        }
+        if (request.fromCurrency() == null || request.toCurrency() == null || request.amount() == null) {
+            throw new IllegalArgumentException("fromCurrency, toCurrency and amount are required unless quoteId is given");
+        }
+        if (request.amount().stripTrailingZeros().scale() > request.fromCurrency().scale()) {
+            throw new IllegalArgumentException("amount must not have more than %d fraction digits".formatted(request.fromCurrency().scale()));
+        }
+        return CurrencyExchangeCommand.calculateTheExchangeAmounts(request, crossRates.orElseThrow());
+    }
+
+    private Mono<List<BatchExchangeResult>> apply(CustomerDto customer, ExchangePlan plan) {
+        Mono<CustomerDto> updatedCustomer = plan.netChanges().isEmpty()
+                ? Mono.just(customer)
+                : accountService.updateAmountsFor(customer.accountId(), plan.netChanges())
+                        .doOnError(ExchangeQuoteStore::isRejectedBeforeUpdate, error -> plan.takenQuotes().forEach(quoteStore::putBack))
+                        .map(customer::withUpdatedAccounts)
+                        .doOnNext(customerCache::put);
+        return updatedCustomer.map(updated -> {
+            List<BatchExchangeResult> results = new ArrayList<>(plan.rejected());
+            plan.accepted().forEach(line -> results.add(BatchExchangeResult.executed(line.number(), updated)));
+            results.sort(Comparator.comparingLong(BatchExchangeResult::line));
+            return results;
+        });
+    }
+
+    private static String reasonOf(Throwable error) {
+        return error instanceof ResponseStatusException statusException && statusException.getReason() != null
+                ? statusException.getReason()
+                : error.getMessage();
+    }
+
+    private static List<CustomerLines> groupByCustomer(List<Line> batch) {
+        Map<Long, List<Line>> linesByCustomer = new LinkedHashMap<>();
+        batch.forEach(line -> linesByCustomer.computeIfAbsent(line.item().customerId(), customerId -> new ArrayList<>()).add(line));
+        return linesByCustomer.entrySet().stream()
+                .map(customer -> new CustomerLines(customer.getKey(), customer.getValue()))
+                .toList();
+    }
+
+    /**
+     * An exchange together with the number of its line in the stream.
+     */
+    private record Line(long number, BatchExchangeItem item) {
+    }
+
+    /**
+     * The exchanges of a single customer within a batch, in the order of the lines.
+     */
+    private record CustomerLines(long customerId, List<Line> lines) {
+
+        boolean needsRates() {
+            return lines.stream().anyMatch(line -> line.item().request() != null && line.item().request().quoteId() == null);
+        }
+    }
+
+    /**
+     * The exchanges of a customer together with the rates resolved for them, if any of them needs the current rates.
+     */
+    private record PricedGroup(CustomerLines group, Optional<CrossRateMatrix> crossRates) {
+
+        long customerId() {
+            return group.customerId();
+        }
+    }
+
+    /**
+     * The net change of every balance of a customer, and which of its exchanges make it up,
+     * together with the quotes they execute, put back when the change is rejected.
+     */
+    private record ExchangePlan(Map<Currency, Money> netChanges, List<Line> accepted, List<ExchangeQuote> takenQuotes,
+                                List<BatchExchangeResult> rejected) {
+    }
+}
@@ -0,0 +1,15 @@
+package pl.codehouse.nn.bank.customer;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A single exchange of a batch exchange.
+ *
+ * @param customerId The id of the customer whose accounts take part in the exchange.
+ * @param request    The exchange, at the current rates or executing a quote.
+ */
+public record BatchExchangeItem(
+        @JsonProperty("customerId") long customerId,
+        @JsonProperty("request") ExchangeRequest request
+) {
+}
@@ -0,0 +1,25 @@
+package pl.codehouse.nn.bank.customer;
+
+/**
+ * The result of a single line of a batch exchange.
+ *
+ * @param line       The number of the line of the request stream, starting at 1.
+ * @param customerId The id of the customer of the exchange.
+ * @param customer   The customer with the balances after all the exchanges of its group, or null when the line was rejected.
+ * @param error      The reason the line was rejected, or null when the exchange was executed.
+ */
+public record BatchExchangeResult(
+        long line,
+        long customerId,
+        CustomerDto customer,
+        String error
+) {
+
+    static BatchExchangeResult executed(long line, CustomerDto customer) {
+        return new BatchExchangeResult(line, customer.accountId(), customer, null);
+    }
+
+    static BatchExchangeResult rejected(long line, long customerId, String error) {
+        return new BatchExchangeResult(line, customerId, null, error);
+    }
+}
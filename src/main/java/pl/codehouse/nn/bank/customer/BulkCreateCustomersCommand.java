@@ -0,0 +1,142 @@
+package pl.codehouse.nn.bank.customer;
+
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.NewAccountsRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Creates customers from a stream of requests, such as a migration of existing accounts.
+ * The requests are grouped into batches of {@link CustomerBulkProperties#batchSize()}, every batch inserted in its own
+ * transaction with one statement for the customers and one for their accounts. The next batch is requested only once
+ * the previous one is written, so the memory used does not depend on the length of the stream.
+ * A line failing validation is rejected on its own, a batch failing to insert is retried line by line,
+ * so that a single bad line does not reject the lines batched with it.
+ * Unlike {@link CreateCustomerCommand}, the created customers are not put into the cache of fetched customers.
+ */
+@Component
+class BulkCreateCustomersCommand {
+    private static final Logger log = LoggerFactory.getLogger(BulkCreateCustomersCommand.class);
+
+    private final CustomerRepository customerRepository;
+    private final AccountService accountService;
+    private final TransactionalOperator transactionalOperator;
+    private final Validator validator;
+    private final CustomerBulkProperties properties;
+
+    BulkCreateCustomersCommand(CustomerRepository customerRepository,
+                               AccountService accountService,
+                               TransactionalOperator transactionalOperator,
+                               Validator validator,
+                               CustomerBulkProperties properties) {
+        this.customerRepository = customerRepository;
+        this.accountService = accountService;
+        this.transactionalOperator = transactionalOperator;
+        this.validator = validator;
+        this.properties = properties;
+    }
+
+    /**
+     * Creates a customer with its accounts for every request of the stream.
+     *
+     * @param requests The stream of requests, consumed under backpressure.
+     * @return The result of every line, in the order of the lines.
+     */
+    Flux<BulkCustomerResult> execute(Flux<CreateCustomerRequest> requests) {
+        return requests
+                .index((index, request) -> new Line(index + 1, request))
+                .bufferTimeout(properties.batchSize(), properties.maxBatchDelay(), true)
+                .concatMap(this::createBatch, 1);
+    }
+
+    private Flux<BulkCustomerResult> createBatch(List<Line> batch) {
+        List<BulkCustomerResult> rejected = new ArrayList<>();
+        List<Line> valid = new ArrayList<>(batch.size());
+        for (Line line : batch) {
+            String violations = violationsOf(line.request());
+            if (violations.isEmpty()) {
+                valid.add(line);
+            } else {
+                rejected.add(BulkCustomerResult.rejected(line.number(), violations));
+            }
+        }
+        log.info("Creating a batch of {} customers, lines {} to {}, {} rejected by validation.",
+                 valid.size(), batch.get(0).number(), batch.get(batch.size() - 1).number(), rejected.size());
+        return insert(valid)
+                .onErrorResume(error -> valid.size() > 1, error -> {
+                    log.warn("Batch of customers failed to insert, retrying line by line. Reason: {}", error.getMessage());
+                    return Flux.fromIterable(valid)
+                            .concatMap(line -> insert(List.of(line))
+                                    .onErrorResume(lineError -> Mono.just(List.of(
+                                            BulkCustomerResult.rejected(line.number(), lineError.getMessage())))))
+                            .flatMapIterable(results -> results)
+                            .collectList();
+                })
+                .onErrorResume(error -> Mono.just(valid.stream()
+                        .map(line -> BulkCustomerResult.rejected(line.number(), error.getMessage()))
+                        .toList()))
+                .flatMapIterable(created -> {
+                    List<BulkCustomerResult> results = new ArrayList<>(batch.size());
+                    results.addAll(created);
+                    results.addAll(rejected);
+                    results.sort(Comparator.comparingLong(BulkCustomerResult::line));
+                    return results;
+                });
+    }
+
+    private Mono<List<BulkCustomerResult>> insert(List<Line> lines) {
+        if (lines.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<Customer> customers = lines.stream()
+                .map(line -> Customer.createNew(line.request().firstName(), line.request().lastName()))
+                .toList();
+        return customerRepository.insertAll(customers)
+                .flatMap(inserted -> {
+                    List<NewAccountsRequest> accountsRequests = new ArrayList<>(inserted.size());
+                    for (int i = 0; i < inserted.size(); i++) {
+                        accountsRequests.add(CreateCustomerCommand.newAccountsRequest(inserted.get(i).accountId(), lines.get(i).request()));
+                    }
+                    return accountService.createNewAccountsForAll(accountsRequests)
+                            .map(accounts -> results(lines, inserted, accounts));
+                })
+                .as(transactionalOperator::transactional);
+    }
+
+    private static List<BulkCustomerResult> results(List<Line> lines, List<Customer> customers, Map<Long, List<CurrencyAccountDto>> accounts) {
+        List<BulkCustomerResult> results = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            Customer customer = customers.get(i);
+            results.add(BulkCustomerResult.created(lines.get(i).number(),
+                    CustomerDto.from(customer, accounts.getOrDefault(customer.accountId(), List.of()))));
+        }
+        return results;
+    }
+
+    private String violationsOf(CreateCustomerRequest request) {
+        if (request == null) {
+            return "request must not be empty";
+        }
+        return validator.validate(request).stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * A request together with the number of its line in the stream.
+     */
+    private record Line(long number, CreateCustomerRequest request) {
+    }
+}
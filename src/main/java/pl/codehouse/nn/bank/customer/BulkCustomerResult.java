@@ -0,0 +1,23 @@
+package pl.codehouse.nn.bank.customer;
+
+/**
+ * The result of a single line of a bulk customer onboarding.
+ *
+ * @param line     The number of the line of the request stream, starting at 1.
+ * @param customer The created customer with its accounts, or null when the line was rejected.
+ * @param error    The reason the line was rejected, or null when the customer was created.
+ */
+public record BulkCustomerResult(
+        long line,
+        CustomerDto customer,
+        String error
+) {
+
+    static BulkCustomerResult created(long line, CustomerDto customer) {
+        return new BulkCustomerResult(line, customer, null);
+    }
+
+    static BulkCustomerResult rejected(long line, String error) {
+        return new BulkCustomerResult(line, null, error);
+    }
+}
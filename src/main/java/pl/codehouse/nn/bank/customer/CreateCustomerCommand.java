@@ -8,9 +8,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import pl.codehouse.nn.bank.Command;
 import pl.codehouse.nn.bank.ExecutionResult;
-import pl.codehouse.nn.bank.account.AccountService;
 import pl.codehouse.nn.bank.account.Currency;
-import pl.codehouse.nn.bank.account.CurrencyAccountDto;
 import pl.codehouse.nn.bank.account.NewAccountsRequest;
 import reactor.core.publisher.Mono;
 
@@ -23,26 +21,26 @@ class CreateCustomerCommand implements Command<CreateCustomerRequest, CustomerDt
 
     private final Logger log = LoggerFactory.getLogger(CreateCustomerCommand.class);
     private final CustomerRepository customerRepository;
-    private final AccountService accountService;
+    private final CustomerCache customerCache;
 
     /**
      * Constructs a new CreateCustomerCommand with the necessary dependencies.
      *
      * @param customerRepository Repository for customer data operations.
-     * @param accountService     Service for managing currency accounts.
+     * @param customerCache      Cache of fetched customers, the created customer is put into.
      */
-    CreateCustomerCommand(CustomerRepository customerRepository, AccountService accountService) {
+    CreateCustomerCommand(CustomerRepository customerRepository, CustomerCache customerCache) {
         this.customerRepository = customerRepository;
-        this.accountService = accountService;
+        this.customerCache = customerCache;
     }
 
     /**
      * Executes the command to create a new customer account.
      * This method performs the following steps:
      * 1. Creates a new customer entity.
-     * 2. Saves the customer to the repository.
-     * 3. Creates initial currency accounts for the customer.
-     * 4. Combines the customer data with the created accounts.
+     * 2. Resolves the initial currency accounts of the customer.
+     * 3. Inserts the customer together with its accounts with a single statement, so either both or none are created.
+     * 4. Puts the created customer into the cache of fetched customers.
      * 5. Handles any errors that occur during the process.
      *
      * @param request The {@link CreateCustomerRequest} containing the details for creating a new customer account.
@@ -53,11 +51,12 @@ class CreateCustomerCommand implements Command<CreateCustomerRequest, CustomerDt
     public Mono<ExecutionResult<CustomerDto>> execute(CreateCustomerRequest request) {
         log.info("Creating new customer with data: {}", request);
         var newAccount = Customer.createNew(request.firstName(), request.lastName());
+        var newAccountsRequest = newAccountsRequest(newAccount.accountId(), request);
+        log.info("Creating a new currency accounts for new customer => {}", newAccountsRequest);
 
-        return customerRepository.save(newAccount)
-                .flatMap(entity -> Mono.zip(Mono.just(entity), createInitialDeposit(entity.accountId(), request)))
-                .map(accountBalanceTuple -> CustomerDto.from(accountBalanceTuple.getT1(), accountBalanceTuple.getT2()))
+        return customerRepository.insertWithAccounts(newAccount, newAccountsRequest)
                 .doOnNext(accountDto -> log.debug("New customer created =>> {}", accountDto))
+                .doOnNext(customerCache::put)
                 .map(ExecutionResult::success)
                 .onErrorResume(error -> {
                     log.error("Error during Customer creation Reason: {}", error.getMessage(), error);
@@ -68,17 +67,27 @@ class CreateCustomerCommand implements Command<CreateCustomerRequest, CustomerDt
                 });
     }
 
-    private Mono<List<CurrencyAccountDto>> createInitialDeposit(long accountId, CreateCustomerRequest request) {
-        List<Currency> additionalCurrencies = createListOfAdditionalCurrencies(request);
+    /**
+     * Resolves the accounts to be opened for a new customer, defaulting the main currency and the additional currencies
+     * when the request leaves them out. The additional currencies never repeat, nor repeat the main currency,
+     * as a customer has a single account per currency.
+     *
+     * @param accountId The id of the new customer.
+     * @param request   The request the customer is created from.
+     * @return The request for opening the currency accounts of the customer.
+     */
+    static NewAccountsRequest newAccountsRequest(long accountId, CreateCustomerRequest request) {
         Currency startingCurrency = Optional.ofNullable(request.mainAccountCurrency()).orElse(Currency.PLN);
-        NewAccountsRequest newAccountsRequest = new NewAccountsRequest(
+        List<Currency> additionalCurrencies = createListOfAdditionalCurrencies(request).stream()
+                .filter(currency -> currency != startingCurrency)
+                .distinct()
+                .toList();
+        return new NewAccountsRequest(
                 accountId,
                 request.mainAccountBalance(),
                 startingCurrency,
                 additionalCurrencies
         );
-        log.info("Creating a new currency accounts for customer {}, => {}", accountId, newAccountsRequest);
-        return accountService.createNewAccounts(newAccountsRequest);
     }
 
     private static List<Currency> createListOfAdditionalCurrencies(CreateCustomerRequest request) {
@@ -3,6 +3,7 @@ package pl.codehouse.nn.bank.customer;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -18,7 +19,7 @@ import pl.codehouse.nn.bank.account.Currency;
 public record CreateCustomerRequest(
         @JsonProperty("firstName") @NotBlank String firstName,
         @JsonProperty("lastName") @NotBlank String lastName,
-        @JsonProperty("mainAccountBalance") @NotNull @DecimalMin("0.00") BigDecimal mainAccountBalance,
+        @JsonProperty("mainAccountBalance") @NotNull @DecimalMin("0.00") @Digits(integer = 16, fraction = 2) BigDecimal mainAccountBalance,
         @JsonProperty("mainAccountCurrency") @Nullable Currency mainAccountCurrency,
         @JsonProperty("additionalCurrencies") @NotNull List<Currency> additionalCurrencies
 ) {
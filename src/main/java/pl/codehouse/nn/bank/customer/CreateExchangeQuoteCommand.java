@@ -0,0 +1,65 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import pl.codehouse.nn.bank.Command;
+import pl.codehouse.nn.bank.ExecutionResult;
+import pl.codehouse.nn.bank.ReadReplicas;
+import pl.codehouse.nn.bank.account.Money;
+import pl.codehouse.nn.bank.exchange.rates.CrossRateMatrix;
+import pl.codehouse.nn.bank.exchange.rates.ExchangeRatesService;
+import pl.codehouse.nn.bank.exchange.rates.RatesSnapshot;
+import reactor.core.publisher.Mono;
+
+/**
+ * Command issuing a quote of a currency exchange for a customer.
+ * The quote locks the current cross rate and both amounts in the {@link ExchangeQuoteStore}
+ * for the configured time to live.
+ */
+@Component
+record CreateExchangeQuoteCommand(
+        CustomerRepository repository,
+        ExchangeRatesService exchangeRatesService,
+        ExchangeQuoteStore quoteStore,
+        ExchangeQuoteProperties properties,
+        Clock clock
+) implements Command<CustomerAwareContext<ExchangeRequest>, ExchangeQuote> {
+    private static final Logger log = LoggerFactory.getLogger(CreateExchangeQuoteCommand.class);
+
+    @Override
+    public Mono<ExecutionResult<ExchangeQuote>> execute(CustomerAwareContext<ExchangeRequest> context) {
+        long customerId = context.customerId();
+        ExchangeRequest request = context.request();
+        log.info("Customer {} requested a quote for exchanging {} {} to {}.",
+                 customerId, request.fromCurrency(), request.amount(), request.toCurrency());
+
+        return ReadReplicas.readOfExisting(customerId, () -> repository.findById(customerId))
+                .switchIfEmpty(Mono.error(new CustomerNotFoundException(customerId)))
+                .then(exchangeRatesService.fetchRatesSnapshot())
+                .map(snapshot -> quote(customerId, request, snapshot))
+                .doOnNext(quoteStore::save)
+                .doOnNext(quote -> log.info("Issued exchange quote {} valid until {}.", quote.quoteId(), quote.expiresAt()))
+                .map(ExecutionResult::success)
+                .onErrorResume(RuntimeException.class, error -> Mono.just(ExecutionResult.failure(error)));
+    }
+
+    private ExchangeQuote quote(long customerId, ExchangeRequest request, RatesSnapshot snapshot) {
+        CrossRateMatrix.Conversion conversion = snapshot.crossRates().conversion(request.fromCurrency(), request.toCurrency());
+        Instant now = clock.instant();
+        return new ExchangeQuote(
+                UUID.randomUUID(),
+                customerId,
+                request.fromCurrency(),
+                request.toCurrency(),
+                conversion.rate(),
+                request.amount(),
+                conversion.convert(Money.of(request.amount(), request.fromCurrency())).toBigDecimal(),
+                snapshot.effectiveDate().orElse(null),
+                now.plus(properties.ttl())
+        );
+    }
+}
@@ -1,60 +1,77 @@
 package pl.codehouse.nn.bank.customer;
 
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.Optional;
+import java.util.EnumMap;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import pl.codehouse.nn.bank.Command;
 import pl.codehouse.nn.bank.ExecutionResult;
+import pl.codehouse.nn.bank.SerializedCommand;
+import pl.codehouse.nn.bank.StripedCommandExecutor;
 import pl.codehouse.nn.bank.account.AccountService;
 import pl.codehouse.nn.bank.account.Currency;
 import pl.codehouse.nn.bank.account.CurrencyAccountDto;
 import pl.codehouse.nn.bank.account.CurrencyAccountNotFoundException;
-import pl.codehouse.nn.bank.exchange.rates.ExchangeRateDto;
+import pl.codehouse.nn.bank.account.InsufficientFundsException;
+import pl.codehouse.nn.bank.account.Money;
+import pl.codehouse.nn.bank.exchange.rates.CrossRateMatrix;
 import pl.codehouse.nn.bank.exchange.rates.ExchangeRatesService;
 import reactor.core.publisher.Mono;
 
+/**
+ * Command exchanging an amount between two currency accounts of a customer, at the current rates or at the rates
+ * locked by a quote. The rates are fetched, or the quote taken, before the balances are updated by a
+ * {@link SerializedCommand}, so that only reading and updating the balances runs one at a time with any other
+ * exchange of the customer, and a slow rates fetch does not hold up the customers sharing its stripe.
+ */
 @Component
-record CurrencyExchangeCommand(
-        CustomerRepository repository,
-        AccountService accountService,
-        ExchangeRatesService exchangeRatesService
-)  implements Command<CustomerAwareContext<ExchangeRequest>, CustomerDto> {
+class CurrencyExchangeCommand implements Command<CustomerAwareContext<ExchangeRequest>, CustomerDto> {
     private static final Logger log = LoggerFactory.getLogger(CurrencyExchangeCommand.class);
 
+    private final CustomerRepository repository;
+    private final AccountService accountService;
+    private final ExchangeRatesService exchangeRatesService;
+    private final ExchangeQuoteStore quoteStore;
+    private final CustomerCache customerCache;
+    private final Command<CustomerAwareContext<ExchangeAmountValues>, CustomerDto> balancesUpdate;
+
+    CurrencyExchangeCommand(CustomerRepository repository,
+                            AccountService accountService,
+                            ExchangeRatesService exchangeRatesService,
+                            ExchangeQuoteStore quoteStore,
+                            CustomerCache customerCache,
+                            StripedCommandExecutor commandExecutor) {
+        this.repository = repository;
+        this.accountService = accountService;
+        this.exchangeRatesService = exchangeRatesService;
+        this.quoteStore = quoteStore;
+        this.customerCache = customerCache;
+        this.balancesUpdate = new SerializedCommand<>(this::updateBalances, commandExecutor, CustomerAwareContext::customerId);
+    }
+
     @Override
     public Mono<ExecutionResult<CustomerDto>> execute(CustomerAwareContext<ExchangeRequest> context) {
         long customerId = context.customerId();
         ExchangeRequest exchangeRequest = context.request();
-        log.info("Customer {} requested to exchange {} {} to {}.",
-                 customerId, exchangeRequest.fromCurrency(), exchangeRequest.amount(), exchangeRequest.toCurrency());
+        Mono<CustomerDto> exchange;
+        if (exchangeRequest.quoteId() == null) {
+            log.info("Customer {} requested to exchange {} {} to {}.",
+                     customerId, exchangeRequest.fromCurrency(), exchangeRequest.amount(), exchangeRequest.toCurrency());
+            exchange = exchangeRatesService.fetchRatesSnapshot()
+                    .map(ratesSnapshot -> calculateTheExchangeAmounts(exchangeRequest, ratesSnapshot.crossRates()))
+                    .flatMap(exchangeAmounts -> exchange(customerId, exchangeAmounts));
+        } else {
+            log.info("Customer {} requested to execute exchange quote {}.", customerId, exchangeRequest.quoteId());
+            exchange = Mono.fromSupplier(() -> quoteStore.take(customerId, exchangeRequest.quoteId()))
+                    .flatMap(Mono::justOrEmpty)
+                    .switchIfEmpty(Mono.error(new ExchangeQuoteNotFoundException(customerId, exchangeRequest.quoteId())))
+                    .flatMap(quote -> exchange(customerId, lockedExchangeAmounts(quote))
+                            .doOnError(ExchangeQuoteStore::isRejectedBeforeUpdate, error -> quoteStore.putBack(quote)));
+        }
 
-        return repository.findById(customerId)
-                .switchIfEmpty(Mono.error(new CustomerNotFoundException(customerId)))
-                .zipWith(accountService.findAccountsFor(customerId))
-                .map(customerAccountsTuple -> customerAccountsTuple.getT2().stream()
-                        .filter(account -> exchangeRequest.fromCurrency() == account.currency())
-                        .findFirst()
-                        .orElseThrow(() -> new CurrencyAccountNotFoundException(customerId, exchangeRequest.fromCurrency()))
-                )
-                .filter(account -> validateNeededBalance(account, exchangeRequest.amount()))
-                .flatMap(account -> switch (exchangeRequest.toCurrency()) {
-                    case PLN: yield exchangeRatesService.fetchCurrentRatesFor(exchangeRequest.fromCurrency());
-                    case USD:
-                    case EUR: yield exchangeRatesService.fetchCurrentRatesFor(exchangeRequest.toCurrency());
-                })
-                .map(exchangeRates -> calculateTheExchangeAmounts(exchangeRequest, exchangeRates))
-                .flatMap(exchangeAmountValues -> Mono.when(
-                        accountService.updateAmountFor(customerId, exchangeRequest.toCurrency(), exchangeAmountValues.to.amount),
-                        accountService.updateAmountFor(customerId, exchangeRequest.fromCurrency(), exchangeAmountValues.from.amount))
-                        .doOnSuccess((v) -> log.info("Updated all Currency Accounts..."))
-                        .thenReturn(true)
-                )
-                .flatMap(x -> repository.findById(customerId).zipWith(accountService.findAccountsFor(customerId)))
-                .map(accountBalanceTuple -> CustomerDto.from(accountBalanceTuple.getT1(), accountBalanceTuple.getT2()))
+        return exchange
                 .map(ExecutionResult::success)
                 .onErrorResume(error -> {
                     log.error("Error during Exchange Currency command: {}", error.getMessage(), error);
@@ -65,31 +82,69 @@ record CurrencyExchangeCommand(
                 });
     }
 
-    private ExchangeAmountValues calculateTheExchangeAmounts(ExchangeRequest request, ExchangeRateDto exchangeRequest) {
-        ExchangeAmount from = new ExchangeAmount(request.fromCurrency(), request.amount().negate());
-        ExchangeAmount to;
-        BigDecimal exchangeToCurrencyAmount = switch (request.fromCurrency()) {
-            case PLN: yield request.amount().divide(exchangeRequest.rate(), 2, RoundingMode.HALF_DOWN);
-            case USD:
-            case EUR: yield request.amount().multiply(exchangeRequest.rate())
-                    .setScale(2, RoundingMode.HALF_UP);
-        };
-        to = new ExchangeAmount(request.toCurrency(), exchangeToCurrencyAmount);
+    private Mono<CustomerDto> exchange(long customerId, ExchangeAmountValues exchangeAmounts) {
+        return balancesUpdate.execute(new CustomerAwareContext<>(customerId, exchangeAmounts))
+                .map(ExecutionResult::handle);
+    }
+
+    private Mono<ExecutionResult<CustomerDto>> updateBalances(CustomerAwareContext<ExchangeAmountValues> context) {
+        long customerId = context.customerId();
+        ExchangeAmount from = context.request().from();
+        return repository.findWithAccounts(customerId)
+                .switchIfEmpty(Mono.error(new CustomerNotFoundException(customerId)))
+                .flatMap(customer -> Mono.just(customer.accountBalance().stream()
+                                .filter(account -> from.currency() == account.currency())
+                                .findFirst()
+                                .orElseThrow(() -> new CurrencyAccountNotFoundException(customerId, from.currency())))
+                        .filter(account -> validateNeededBalance(account, from.amount().negate()))
+                        .switchIfEmpty(Mono.error(() -> new InsufficientFundsException(from.currency())))
+                        .flatMap(account -> accountService.updateAmountsFor(customerId, context.request().amountChanges()))
+                        .doOnSuccess((v) -> log.info("Updated all Currency Accounts..."))
+                        .map(customer::withUpdatedAccounts))
+                .doOnNext(customerCache::put)
+                .map(ExecutionResult::success)
+                .onErrorResume(RuntimeException.class, error -> Mono.just(ExecutionResult.failure(error)));
+    }
+
+    static ExchangeAmountValues lockedExchangeAmounts(ExchangeQuote quote) {
+        ExchangeAmount from = new ExchangeAmount(quote.fromCurrency(), Money.of(quote.fromAmount(), quote.fromCurrency()).negate());
+        ExchangeAmount to = new ExchangeAmount(quote.toCurrency(), Money.of(quote.toAmount(), quote.toCurrency()));
+
+        log.info("Exchange Amount values locked by quote {} for {} =>> {}", quote.quoteId(), from, to);
+        return new ExchangeAmountValues(from, to);
+    }
+
+    static ExchangeAmountValues calculateTheExchangeAmounts(ExchangeRequest request, CrossRateMatrix crossRates) {
+        Money amount = Money.of(request.amount(), request.fromCurrency());
+        ExchangeAmount from = new ExchangeAmount(request.fromCurrency(), amount.negate());
+        Money exchangeToCurrencyAmount = crossRates.conversion(request.fromCurrency(), request.toCurrency())
+                .convert(amount);
+        ExchangeAmount to = new ExchangeAmount(request.toCurrency(), exchangeToCurrencyAmount);
 
         log.info("Exchange Amount values for {} =>> {}", from, to);
         return new ExchangeAmountValues(from, to);
     }
 
-    private boolean validateNeededBalance(CurrencyAccountDto account, BigDecimal amount) {
-        return account.amount().compareTo(amount) >= 0;
+    private boolean validateNeededBalance(CurrencyAccountDto account, Money amount) {
+        return Money.of(account.amount(), account.currency()).compareTo(amount) >= 0;
     }
 
-    private record ExchangeAmountValues(
+    /**
+     * The changes of the balances of both accounts taking part in an exchange.
+     */
+    record ExchangeAmountValues(
             ExchangeAmount from,
             ExchangeAmount to
     ) {
+
+        Map<Currency, Money> amountChanges() {
+            Map<Currency, Money> amountChanges = new EnumMap<>(Currency.class);
+            amountChanges.merge(from.currency, from.amount, Money::plus);
+            amountChanges.merge(to.currency, to.amount, Money::plus);
+            return amountChanges;
+        }
     }
 
-    private record ExchangeAmount(Currency currency, BigDecimal amount) {
+    record ExchangeAmount(Currency currency, Money amount) {
     }
 }
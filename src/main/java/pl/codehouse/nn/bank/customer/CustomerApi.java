@@ -1,6 +1,7 @@
 package pl.codehouse.nn.bank.customer;
 
 import jakarta.validation.Valid;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -19,6 +20,25 @@ public interface CustomerApi {
      */
     Mono<CustomerDto> fetchCustomer(long customerId);
 
+    /**
+     * Fetches a page of customers with their currency accounts. Pages are chained by the id of the last customer,
+     * so fetching a deep page takes as long as fetching the first one.
+     *
+     * @param afterCustomerId Only the customers with a greater id are fetched, 0 fetches the first page.
+     * @param limit           The maximum number of customers of the page.
+     * @return A {@link Mono} that emits the {@link CustomerPage}, with the id to fetch the next page after.
+     */
+    Mono<CustomerPage> fetchCustomers(long afterCustomerId, int limit);
+
+    /**
+     * Streams all customers with their currency accounts, straight from the database under backpressure,
+     * so that the memory used does not depend on the number of customers.
+     *
+     * @param afterCustomerId Only the customers with a greater id are exported, so that an interrupted export can be resumed.
+     * @return A {@link Flux} emitting the customers in the order of their ids.
+     */
+    Flux<CustomerDto> exportCustomers(long afterCustomerId);
+
     /**
      * Creates a new customer account based on the provided request.
      * This method handles the creation of a new customer record along with associated currency accounts.
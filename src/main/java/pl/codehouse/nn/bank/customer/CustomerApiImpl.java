@@ -2,20 +2,36 @@ package pl.codehouse.nn.bank.customer;
 
 import org.springframework.stereotype.Service;
 import pl.codehouse.nn.bank.ExecutionResult;
-import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.ReadReplicas;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 record CustomerApiImpl(
         CustomerRepository repository,
-        AccountService accountService,
-        CreateCustomerCommand createCustomerCommand
+        CreateCustomerCommand createCustomerCommand,
+        CustomerCache customerCache,
+        CustomerExportProperties exportProperties
 ) implements CustomerApi {
 
     @Override
     public Mono<CustomerDto> fetchCustomer(long customerId) {
-        return repository.findById(customerId)
-                .zipWith(accountService.findAccountsFor(customerId), CustomerDto::from);
+        // loaded from the primary: the read-your-writes window only covers the balance changes of this node, so a replica
+        // lagging behind a change of another node would be cached until expiry, its invalidation being already consumed
+        return customerCache.get(customerId, repository::findWithAccounts);
+    }
+
+    @Override
+    public Mono<CustomerPage> fetchCustomers(long afterCustomerId, int limit) {
+        return repository.findPageWithAccounts(afterCustomerId, limit)
+                .map(customers -> CustomerPage.of(customers, limit))
+                .contextWrite(ReadReplicas.readOfAll());
+    }
+
+    @Override
+    public Flux<CustomerDto> exportCustomers(long afterCustomerId) {
+        return repository.streamAllWithAccounts(afterCustomerId, exportProperties.fetchSize())
+                .contextWrite(ReadReplicas.readOfAll());
     }
 
     @Override
@@ -0,0 +1,18 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for the bulk onboarding of customers.
+ *
+ * @param batchSize     The maximum number of customers inserted with a single statement, and so held in memory at once.
+ * @param maxBatchDelay How long a batch waits for further customers of a slow stream before it is inserted anyway.
+ */
+@ConfigurationProperties("app.customer-bulk")
+public record CustomerBulkProperties(
+        @DefaultValue("500") int batchSize,
+        @DefaultValue("PT0.1S") Duration maxBatchDelay
+) {
+}
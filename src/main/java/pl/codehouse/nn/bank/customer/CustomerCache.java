@@ -0,0 +1,62 @@
+package pl.codehouse.nn.bank.customer;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import pl.codehouse.nn.bank.account.AccountBalanceChangedEvent;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded read-through cache of fetched customers with their currency accounts.
+ * Customers are evicted once their time to live passes, or the least recently used ones when the cache is full.
+ * A customer is dropped as soon as the balance of any of its accounts changes on this node, and on the other nodes
+ * once the change is delivered by {@link CustomerCacheKafkaInvalidation}, when enabled. Otherwise the other nodes
+ * serve the customer for up to {@link CustomerCacheProperties#ttl()} after the change.
+ * The hits, misses and evictions are reported as {@code cache.*} metrics of the {@code customers} cache.
+ */
+@Component
+class CustomerCache {
+    static final String CACHE_NAME = "customers";
+
+    private final AsyncCache<Long, CustomerDto> customers;
+
+    CustomerCache(CustomerCacheProperties properties, MeterRegistry meterRegistry) {
+        this.customers = Caffeine.newBuilder()
+                .expireAfterWrite(properties.ttl())
+                .maximumSize(properties.maximumSize())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, customers, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached customer, or loads it once for all concurrent callers when it is not cached.
+     * A customer which was not found is not cached.
+     *
+     * @param customerId The id of the customer.
+     * @param loader     Loads the customer, completes empty when it does not exist.
+     * @return The customer, or empty when it does not exist.
+     */
+    Mono<CustomerDto> get(long customerId, LongFunction<Mono<CustomerDto>> loader) {
+        CompletableFuture<CustomerDto> customer = customers.get(customerId, (id, executor) -> loader.apply(id).toFuture());
+        return Mono.fromFuture(customer, true);
+    }
+
+    void put(CustomerDto customer) {
+        customers.put(customer.accountId(), CompletableFuture.completedFuture(customer));
+    }
+
+    void invalidate(long customerId) {
+        customers.synchronous().invalidate(customerId);
+    }
+
+    @EventListener
+    void onAccountBalanceChanged(AccountBalanceChangedEvent event) {
+        invalidate(event.customerId());
+    }
+}
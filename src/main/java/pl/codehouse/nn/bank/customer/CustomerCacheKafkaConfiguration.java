@@ -0,0 +1,25 @@
+package pl.codehouse.nn.bank.customer;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+@ConditionalOnProperty(value = "app.customer-cache.kafka.enabled", havingValue = "true")
+class CustomerCacheKafkaConfiguration {
+
+    /**
+     * A change older than the time to live of the cache cannot drop anything, so it is not retained any longer.
+     */
+    @Bean
+    NewTopic customerBalanceChangesTopic(CustomerCacheProperties properties) {
+        return TopicBuilder.name(properties.kafka().topic())
+                .partitions(1)
+                .replicas(1)
+                .config(TopicConfig.RETENTION_MS_CONFIG, String.valueOf(properties.ttl().toMillis()))
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package pl.codehouse.nn.bank.customer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import pl.codehouse.nn.bank.account.AccountBalanceChangedEvent;
+
+/**
+ * Fans out the balance changes of this node to all nodes over Kafka, and drops the changed customers from the local
+ * {@link CustomerCache}. Every node reads the topic with its own consumer group, starting from the latest change,
+ * as the changes published before it started cannot concern its empty cache. A node receives its own changes too,
+ * dropping a customer which it has already dropped or just put back costs only a cache miss.
+ */
+@Component
+@ConditionalOnProperty(value = "app.customer-cache.kafka.enabled", havingValue = "true")
+class CustomerCacheKafkaInvalidation {
+    private static final Logger log = LoggerFactory.getLogger(CustomerCacheKafkaInvalidation.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final CustomerCache customerCache;
+    private final String topic;
+
+    CustomerCacheKafkaInvalidation(KafkaTemplate<String, String> kafkaTemplate, CustomerCache customerCache, CustomerCacheProperties properties) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.customerCache = customerCache;
+        this.topic = properties.kafka().topic();
+    }
+
+    @EventListener
+    void onAccountBalanceChanged(AccountBalanceChangedEvent event) {
+        String customerId = String.valueOf(event.customerId());
+        kafkaTemplate.send(topic, customerId, customerId)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.warn("Unable to publish balance change of customer {} to {}, other nodes drop it from their cache on expiry. Reason: {}",
+                                 customerId, topic, error.getMessage());
+                    }
+                });
+    }
+
+    @KafkaListener(
+            topics = "${app.customer-cache.kafka.topic:customer-balance-changes}",
+            groupId = "customer-cache-${random.uuid}",
+            properties = "auto.offset.reset=latest")
+    void onBalanceChanged(String customerId) {
+        try {
+            customerCache.invalidate(Long.parseLong(customerId));
+        } catch (NumberFormatException e) {
+            log.error("Skipping malformed balance change message: {}", customerId);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for the cache of fetched customers.
+ *
+ * @param ttl         How long a customer stays cached after it was loaded or updated.
+ * @param maximumSize The maximum number of customers held in memory, the least recently used ones are evicted first.
+ * @param kafka       Configuration of dropping customers cached by the other nodes when a balance changes.
+ */
+@ConfigurationProperties("app.customer-cache")
+public record CustomerCacheProperties(
+        @DefaultValue("PT1M") Duration ttl,
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue Kafka kafka
+) {
+
+    /**
+     * Configuration of fanning out balance changes to all nodes over Kafka, so that every node drops the customer
+     * from its cache. Without it the other nodes serve a changed customer for up to {@link #ttl()}.
+     *
+     * @param enabled Whether balance changes are published to and consumed from the topic.
+     * @param topic   The name of the topic of changed customer ids, retained for the time to live of the cache.
+     */
+    public record Kafka(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("customer-balance-changes") String topic
+    ) {
+    }
+}
@@ -0,0 +1,46 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.util.stream.Collectors;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+
+/**
+ * Formats customers as CSV lines, a line per currency account of a customer and a single line with empty account
+ * columns for a customer without any account.
+ */
+final class CustomerCsv {
+    static final String MEDIA_TYPE_VALUE = "text/csv";
+    static final String HEADER = "customerId,firstName,lastName,currency,amount,isMainAccount\n";
+
+    private CustomerCsv() {
+    }
+
+    /**
+     * Formats the lines of a single customer.
+     *
+     * @param customer The customer with its accounts.
+     * @return The lines of the customer, each terminated with a line feed.
+     */
+    static String lines(CustomerDto customer) {
+        String prefix = "%d,%s,%s,".formatted(customer.accountId(), escape(customer.firstName()), escape(customer.lastName()));
+        if (customer.accountBalance().isEmpty()) {
+            return prefix + ",,\n";
+        }
+        return customer.accountBalance().stream()
+                .map(account -> prefix + account(account))
+                .collect(Collectors.joining());
+    }
+
+    private static String account(CurrencyAccountDto account) {
+        return "%s,%s,%s\n".formatted(account.currency(), account.amount().toPlainString(), account.isMainAccount());
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
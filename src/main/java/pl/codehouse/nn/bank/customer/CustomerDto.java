@@ -1,6 +1,9 @@
 package pl.codehouse.nn.bank.customer;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import pl.codehouse.nn.bank.account.Currency;
 import pl.codehouse.nn.bank.account.CurrencyAccountDto;
 
 /**
@@ -24,4 +27,19 @@ public record CustomerDto(
     static CustomerDto from(Customer entity, List<CurrencyAccountDto> currencyAccounts) {
         return new CustomerDto(entity.accountId(), entity.firstName(), entity.lastName(), currencyAccounts);
     }
+
+    /**
+     * Creates a copy of this CustomerDto with the given accounts replacing the accounts of the same currency.
+     *
+     * @param updatedAccounts The updated accounts, as returned by the update.
+     * @return A new CustomerDto instance with the accounts in the same order.
+     */
+    CustomerDto withUpdatedAccounts(List<CurrencyAccountDto> updatedAccounts) {
+        Map<Currency, CurrencyAccountDto> updatedByCurrency = new EnumMap<>(Currency.class);
+        updatedAccounts.forEach(account -> updatedByCurrency.put(account.currency(), account));
+        List<CurrencyAccountDto> accounts = accountBalance.stream()
+                .map(account -> updatedByCurrency.getOrDefault(account.currency(), account))
+                .toList();
+        return new CustomerDto(accountId, firstName, lastName, accounts);
+    }
 }
@@ -0,0 +1,15 @@
+package pl.codehouse.nn.bank.customer;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for the export of all customers.
+ *
+ * @param fetchSize The number of rows the database cursor fetches at a time, bounding the rows held in memory.
+ */
+@ConfigurationProperties("app.customer-export")
+public record CustomerExportProperties(
+        @DefaultValue("1000") int fetchSize
+) {
+}
@@ -0,0 +1,20 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.util.List;
+
+/**
+ * A page of the listing of customers, ordered by their ids.
+ *
+ * @param customers The customers of the page, each with its currency accounts.
+ * @param nextAfter The id to pass as {@code after} to fetch the next page, or null when this is the last page.
+ */
+public record CustomerPage(
+        List<CustomerDto> customers,
+        Long nextAfter
+) {
+
+    static CustomerPage of(List<CustomerDto> customers, int limit) {
+        Long nextAfter = customers.size() < limit ? null : customers.get(customers.size() - 1).accountId();
+        return new CustomerPage(customers, nextAfter);
+    }
+}
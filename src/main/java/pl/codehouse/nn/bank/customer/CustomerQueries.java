@@ -0,0 +1,59 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.util.List;
+import pl.codehouse.nn.bank.account.NewAccountsRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Custom queries of the {@link CustomerRepository}.
+ */
+interface CustomerQueries {
+
+    /**
+     * Loads the customer together with all its currency accounts with a single query.
+     *
+     * @param customerId The id of the customer.
+     * @return The customer with its accounts, the main account first, or empty when the customer does not exist.
+     */
+    Mono<CustomerDto> findWithAccounts(long customerId);
+
+    /**
+     * Streams all customers together with their currency accounts with a single query, read through a cursor
+     * fetching {@code fetchSize} rows at a time as the subscriber requests more.
+     *
+     * @param afterCustomerId Only the customers with a greater id are streamed, 0 streams all of them.
+     * @param fetchSize       The number of rows fetched from the database at a time.
+     * @return The customers in the order of their ids, each with its accounts, the main account first.
+     */
+    Flux<CustomerDto> streamAllWithAccounts(long afterCustomerId, int fetchSize);
+
+    /**
+     * Loads a page of customers together with their currency accounts with a single query, seeking the page
+     * by the id of the last customer of the previous one rather than skipping the previous pages.
+     *
+     * @param afterCustomerId Only the customers with a greater id are loaded, 0 loads the first page.
+     * @param limit           The maximum number of customers of the page.
+     * @return The customers in the order of their ids, each with its accounts, the main account first.
+     */
+    Mono<List<CustomerDto>> findPageWithAccounts(long afterCustomerId, int limit);
+
+    /**
+     * Inserts a new customer together with its currency accounts with a single statement, atomically and in a single
+     * round trip. The opening balances are added to the currency holdings by the same statement.
+     *
+     * @param customer The new customer, its id is ignored.
+     * @param accounts The accounts to be opened, its customer id is ignored. An additional currency equal to
+     *                 the main currency opens no second account.
+     * @return The inserted customer with its allocated id and its accounts, the main account first.
+     */
+    Mono<CustomerDto> insertWithAccounts(Customer customer, NewAccountsRequest accounts);
+
+    /**
+     * Inserts many new customers with a single statement, their ids allocated up front from the customers sequence.
+     *
+     * @param customers The new customers, their ids are ignored.
+     * @return The inserted customers with their allocated ids, in the order of the given customers.
+     */
+    Mono<List<Customer>> insertAll(List<Customer> customers);
+}
@@ -0,0 +1,306 @@
+package pl.codehouse.nn.bank.customer;
+
+import io.r2dbc.spi.Readable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import pl.codehouse.nn.bank.account.AccountProperties;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.Money;
+import pl.codehouse.nn.bank.account.NewAccountsRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class CustomerQueriesImpl implements CustomerQueries {
+    private static final String FROM_ACCOUNTS_SQL = """
+            SELECT c.id, c.first_name, c.last_name, a.currency, a.amount_minor, a.is_main_account
+            FROM customers c
+            LEFT JOIN currency_accounts a ON a.customer_id = c.id
+            """;
+
+    /**
+     * Reads every balance as its last snapshot plus the ledger entries appended since.
+     */
+    private static final String FROM_LEDGER_ACCOUNTS_SQL = """
+            SELECT c.id, c.first_name, c.last_name, a.currency, a.is_main_account,
+                   COALESCE(s.amount_minor, a.amount_minor) + COALESCE(t.amount_minor, 0) AS amount_minor
+            FROM customers c
+            LEFT JOIN currency_accounts a ON a.customer_id = c.id
+            LEFT JOIN account_balance_snapshots s ON s.customer_id = a.customer_id AND s.currency = a.currency
+            LEFT JOIN LATERAL (
+                SELECT CAST(SUM(l.amount_minor) AS BIGINT) AS amount_minor
+                FROM account_ledger l
+                WHERE l.customer_id = a.customer_id AND l.currency = a.currency AND l.entry_id > COALESCE(s.last_entry_id, 0)
+            ) t ON TRUE
+            """;
+
+    /**
+     * Expands the balances array of the customer row into a row per existing account, element i of the array holding
+     * the balance of the currency with ordinal i - 1.
+     */
+    private static final String FROM_COMPACT_ACCOUNTS_SQL = """
+            SELECT c.id, c.first_name, c.last_name, a.currency, a.amount_minor, a.is_main_account
+            FROM customers c
+            LEFT JOIN LATERAL (
+                SELECT cur.currency, b.amounts_minor[cur.i] AS amount_minor, cur.currency = b.main_currency AS is_main_account
+                FROM customer_balances b
+                CROSS JOIN UNNEST(ARRAY[%s]) WITH ORDINALITY AS cur(currency, i)
+                WHERE b.customer_id = c.id AND b.amounts_minor[cur.i] IS NOT NULL
+            ) a ON TRUE
+            """.formatted(Arrays.stream(Currency.values())
+                    .map(currency -> "'%s'".formatted(currency.name()))
+                    .collect(Collectors.joining(", ")));
+
+    private static final String BY_CUSTOMER_SQL = """
+            WHERE c.id = :customerId
+            ORDER BY a.is_main_account DESC, a.currency
+            """;
+
+    /**
+     * Walks the customers in primary key order, so that the rows of a customer come one after another and no sort
+     * of the whole book is needed. The accounts of a customer are ordered once read.
+     */
+    private static final String ALL_AFTER_SQL = """
+            WHERE c.id > :afterCustomerId
+            ORDER BY c.id
+            """;
+
+    /**
+     * Seeks the page by the last id of the previous one, so that a deep page costs as much as the first one,
+     * and reads the accounts of all customers of the page with the same statement.
+     */
+    private static final String PAGE_AFTER_SQL = """
+            WHERE c.id IN (
+                SELECT p.id
+                FROM customers p
+                WHERE p.id > :afterCustomerId
+                ORDER BY p.id
+                LIMIT :limit
+            )
+            ORDER BY c.id
+            """;
+
+    private static final Comparator<CurrencyAccountDto> ACCOUNT_ORDER = Comparator
+            .comparing(CurrencyAccountDto::isMainAccount).reversed()
+            .thenComparing(account -> account.currency().name());
+
+    private static final String ALLOCATE_IDS_SQL = """
+            SELECT NEXTVAL('customer_idx_seq') AS id
+            FROM GENERATE_SERIES(1, :count)
+            """;
+
+    /**
+     * Inserts all customers with a single statement, the column values are passed as one array per column.
+     */
+    private static final String INSERT_ALL_SQL = """
+            INSERT INTO customers(id, first_name, last_name)
+            SELECT * FROM UNNEST(CAST(:ids AS INT[]), CAST(:firstNames AS TEXT[]), CAST(:lastNames AS TEXT[]))
+            """;
+
+    /**
+     * Inserts the customer, its accounts and their opening balances into the currency holdings with a single statement,
+     * returning a row per account. The accounts are passed as one array per column, in {@link Currency} order,
+     * and the customer is added to the holdings stripe of its id, as {@code CurrencyHoldingsRepositoryImpl} does.
+     * The accounts are inserted by the storage specific {@code %s} statement.
+     */
+    private static final String INSERT_WITH_ACCOUNTS_SQL_TEMPLATE = """
+            WITH c AS (
+                INSERT INTO customers(first_name, last_name)
+                VALUES (:firstName, :lastName)
+                RETURNING id, first_name, last_name
+            ), t AS (
+                SELECT *
+                FROM UNNEST(CAST(:currencies AS TEXT[]), CAST(:amounts AS BIGINT[]), CAST(:isMainAccounts AS BOOLEAN[]))
+                    WITH ORDINALITY AS t(currency, amount_minor, is_main_account, i)
+            ), accounts AS (
+                %s
+            ), holdings AS (
+                INSERT INTO currency_holdings(currency, stripe, amount_minor)
+                SELECT t.currency, MOD(c.id, :stripes), t.amount_minor
+                FROM c CROSS JOIN t
+                WHERE t.amount_minor <> 0
+                ORDER BY t.i
+                ON CONFLICT (currency, stripe) DO UPDATE
+                SET amount_minor = currency_holdings.amount_minor + EXCLUDED.amount_minor
+            )
+            SELECT c.id, c.first_name, c.last_name, t.currency, t.amount_minor, t.is_main_account
+            FROM c CROSS JOIN t
+            ORDER BY t.i
+            """;
+
+    private static final String INSERT_ACCOUNTS_SQL = """
+            INSERT INTO currency_accounts(customer_id, currency, amount_minor, is_main_account)
+                SELECT c.id, t.currency, t.amount_minor, t.is_main_account
+                FROM c CROSS JOIN t""";
+
+    /**
+     * Inserts the row of all balances of the customer, the balances array indexed by {@link Currency#ordinal()}.
+     */
+    private static final String INSERT_COMPACT_ACCOUNTS_SQL = """
+            INSERT INTO customer_balances(customer_id, amounts_minor, main_currency)
+                SELECT c.id, CAST(:amountsByCurrency AS BIGINT[]), CAST(:mainCurrency AS TEXT)
+                FROM c""";
+
+    private final R2dbcEntityTemplate entityTemplate;
+    private final boolean compactStorage;
+    private final int holdingsStripes;
+    private final String insertWithAccountsSql;
+    private final String selectWithAccountsSql;
+    private final String selectAllWithAccountsSql;
+    private final String selectPageWithAccountsSql;
+
+    CustomerQueriesImpl(R2dbcEntityTemplate entityTemplate, AccountProperties accountProperties) {
+        this.entityTemplate = entityTemplate;
+        String fromAccountsSql = switch (accountProperties.storage()) {
+            case ROWS -> FROM_ACCOUNTS_SQL;
+            case LEDGER -> FROM_LEDGER_ACCOUNTS_SQL;
+            case COMPACT -> FROM_COMPACT_ACCOUNTS_SQL;
+        };
+        this.selectWithAccountsSql = fromAccountsSql + BY_CUSTOMER_SQL;
+        this.selectAllWithAccountsSql = fromAccountsSql + ALL_AFTER_SQL;
+        this.selectPageWithAccountsSql = fromAccountsSql + PAGE_AFTER_SQL;
+        this.compactStorage = accountProperties.storage() == AccountProperties.Storage.COMPACT;
+        this.holdingsStripes = accountProperties.holdings().stripes();
+        this.insertWithAccountsSql = INSERT_WITH_ACCOUNTS_SQL_TEMPLATE.formatted(compactStorage ? INSERT_COMPACT_ACCOUNTS_SQL : INSERT_ACCOUNTS_SQL);
+    }
+
+    @Override
+    public Mono<CustomerDto> findWithAccounts(long customerId) {
+        return entityTemplate.getDatabaseClient().sql(selectWithAccountsSql)
+                .bind("customerId", customerId)
+                .map(CustomerQueriesImpl::mapToCustomerAccountRow)
+                .all()
+                .collectList()
+                .filter(rows -> !rows.isEmpty())
+                .map(CustomerQueriesImpl::toCustomerDto);
+    }
+
+    @Override
+    public Flux<CustomerDto> streamAllWithAccounts(long afterCustomerId, int fetchSize) {
+        return entityTemplate.getDatabaseClient().sql(selectAllWithAccountsSql)
+                .bind("afterCustomerId", afterCustomerId)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(CustomerQueriesImpl::mapToCustomerAccountRow)
+                .all()
+                .bufferUntilChanged(CustomerAccountRow::customerId)
+                .map(CustomerQueriesImpl::toCustomerDto);
+    }
+
+    @Override
+    public Mono<List<CustomerDto>> findPageWithAccounts(long afterCustomerId, int limit) {
+        return entityTemplate.getDatabaseClient().sql(selectPageWithAccountsSql)
+                .bind("afterCustomerId", afterCustomerId)
+                .bind("limit", limit)
+                .map(CustomerQueriesImpl::mapToCustomerAccountRow)
+                .all()
+                .bufferUntilChanged(CustomerAccountRow::customerId)
+                .map(CustomerQueriesImpl::toCustomerDto)
+                .collectList();
+    }
+
+    @Override
+    public Mono<List<Customer>> insertAll(List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return entityTemplate.getDatabaseClient().sql(ALLOCATE_IDS_SQL)
+                .bind("count", customers.size())
+                .map(readable -> readable.get("id", Long.class))
+                .all()
+                .collectList()
+                .flatMap(ids -> {
+                    int size = customers.size();
+                    Long[] customerIds = ids.toArray(Long[]::new);
+                    String[] firstNames = new String[size];
+                    String[] lastNames = new String[size];
+                    List<Customer> inserted = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        Customer customer = customers.get(i);
+                        firstNames[i] = customer.firstName();
+                        lastNames[i] = customer.lastName();
+                        inserted.add(new Customer(customerIds[i], customer.firstName(), customer.lastName()));
+                    }
+                    return entityTemplate.getDatabaseClient().sql(INSERT_ALL_SQL)
+                            .bind("ids", customerIds)
+                            .bind("firstNames", firstNames)
+                            .bind("lastNames", lastNames)
+                            .then()
+                            .thenReturn(inserted);
+                });
+    }
+
+    @Override
+    public Mono<CustomerDto> insertWithAccounts(Customer customer, NewAccountsRequest accounts) {
+        Map<Currency, Money> balances = new EnumMap<>(Currency.class);
+        accounts.additionalCurrencies().forEach(currency -> balances.put(currency, Money.zero(currency)));
+        balances.put(accounts.mainAccountCurrency(), Money.of(accounts.mainAccountBalance(), accounts.mainAccountCurrency()));
+        int size = balances.size();
+        String[] currencies = new String[size];
+        Long[] amounts = new Long[size];
+        Boolean[] isMainAccounts = new Boolean[size];
+        Long[] amountsByCurrency = new Long[Currency.values().length];
+        int i = 0;
+        for (Money balance : balances.values()) {
+            currencies[i] = balance.currency().name();
+            amounts[i] = balance.minorUnits();
+            isMainAccounts[i] = balance.currency() == accounts.mainAccountCurrency();
+            amountsByCurrency[balance.currency().ordinal()] = balance.minorUnits();
+            i++;
+        }
+        DatabaseClient.GenericExecuteSpec statement = entityTemplate.getDatabaseClient().sql(insertWithAccountsSql)
+                .bind("firstName", customer.firstName())
+                .bind("lastName", customer.lastName())
+                .bind("currencies", currencies)
+                .bind("amounts", amounts)
+                .bind("isMainAccounts", isMainAccounts)
+                .bind("stripes", holdingsStripes);
+        if (compactStorage) {
+            statement = statement
+                    .bind("amountsByCurrency", amountsByCurrency)
+                    .bind("mainCurrency", accounts.mainAccountCurrency().name());
+        }
+        return statement
+                .map(CustomerQueriesImpl::mapToCustomerAccountRow)
+                .all()
+                .collectList()
+                .map(CustomerQueriesImpl::toCustomerDto);
+    }
+
+    private static CustomerDto toCustomerDto(List<CustomerAccountRow> rows) {
+        CustomerAccountRow customer = rows.get(0);
+        List<CurrencyAccountDto> accounts = rows.stream()
+                .map(CustomerAccountRow::account)
+                .filter(Objects::nonNull)
+                .sorted(ACCOUNT_ORDER)
+                .toList();
+        return new CustomerDto(customer.customerId(), customer.firstName(), customer.lastName(), accounts);
+    }
+
+    private static CustomerAccountRow mapToCustomerAccountRow(Readable readable) {
+        String currencyCode = readable.get("currency", String.class);
+        Currency currency = currencyCode == null ? null : Currency.valueOf(currencyCode);
+        CurrencyAccountDto account = currency == null ? null : new CurrencyAccountDto(
+                currency,
+                Money.ofMinor(readable.get("amount_minor", Long.class), currency).toBigDecimal(),
+                Boolean.TRUE.equals(readable.get("is_main_account", Boolean.class)));
+        return new CustomerAccountRow(
+                readable.get("id", Long.class),
+                readable.get("first_name", String.class),
+                readable.get("last_name", String.class),
+                account);
+    }
+
+    /**
+     * A single row of the join, the account is null for a customer without any account.
+     */
+    private record CustomerAccountRow(long customerId, String firstName, String lastName, CurrencyAccountDto account) {
+    }
+}
@@ -4,6 +4,6 @@ import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-interface CustomerRepository extends ReactiveCrudRepository<Customer, Long> {
+interface CustomerRepository extends ReactiveCrudRepository<Customer, Long>, CustomerQueries {
 
 }
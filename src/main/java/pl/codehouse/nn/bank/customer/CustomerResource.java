@@ -1,6 +1,8 @@
 package pl.codehouse.nn.bank.customer;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -10,23 +12,44 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import pl.codehouse.nn.bank.ExecutionResult;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Validated
 @RestController
 @RequestMapping(value = "/customers", consumes = {MediaType.APPLICATION_JSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE})
 class CustomerResource {
+    private static final int MAX_PAGE_LIMIT = 1000;
+
     private final CustomerApi customerApi;
     private final CreateCustomerCommand createCustomerCommand;
     private final CurrencyExchangeCommand currencyExchangeCommand;
+    private final CreateExchangeQuoteCommand createExchangeQuoteCommand;
+    private final BulkCreateCustomersCommand bulkCreateCustomersCommand;
+    private final BatchExchangeCommand batchExchangeCommand;
 
-    CustomerResource(CustomerApi customerApi, CreateCustomerCommand createCustomerCommand, CurrencyExchangeCommand currencyExchangeCommand) {
+    CustomerResource(CustomerApi customerApi,
+                     CreateCustomerCommand createCustomerCommand,
+                     BulkCreateCustomersCommand bulkCreateCustomersCommand,
+                     BatchExchangeCommand batchExchangeCommand,
+                     CurrencyExchangeCommand currencyExchangeCommand,
+                     CreateExchangeQuoteCommand createExchangeQuoteCommand) {
         this.customerApi = customerApi;
         this.createCustomerCommand = createCustomerCommand;
         this.currencyExchangeCommand = currencyExchangeCommand;
+        this.createExchangeQuoteCommand = createExchangeQuoteCommand;
+        this.bulkCreateCustomersCommand = bulkCreateCustomersCommand;
+        this.batchExchangeCommand = batchExchangeCommand;
+    }
+
+    @GetMapping(consumes = MediaType.ALL_VALUE)
+    Mono<CustomerPage> fetchCustomers(@RequestParam(defaultValue = "0") long after,
+                                      @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_LIMIT) int limit) {
+        return customerApi.fetchCustomers(after, limit);
     }
 
     @GetMapping("/{customerId}")
@@ -35,6 +58,18 @@ class CustomerResource {
                 .switchIfEmpty(Mono.error(new CustomerNotFoundException(customerId)));
     }
 
+    @GetMapping(value = "/export", consumes = MediaType.ALL_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<CustomerDto> exportCustomers(@RequestParam(defaultValue = "0") long after) {
+        return customerApi.exportCustomers(after);
+    }
+
+    @GetMapping(value = "/export", consumes = MediaType.ALL_VALUE, produces = CustomerCsv.MEDIA_TYPE_VALUE)
+    Flux<String> exportCustomersAsCsv(@RequestParam(defaultValue = "0") long after) {
+        return customerApi.exportCustomers(after)
+                .map(CustomerCsv::lines)
+                .startWith(CustomerCsv.HEADER);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     Mono<CustomerDto> createCustomer(@RequestBody @Valid CreateCustomerRequest request) {
@@ -42,9 +77,26 @@ class CustomerResource {
                 .map(ExecutionResult::handle);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<BulkCustomerResult> createCustomers(@RequestBody Flux<CreateCustomerRequest> requests) {
+        return bulkCreateCustomersCommand.execute(requests);
+    }
+
+    @PostMapping(value = "/exchange/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    Flux<BatchExchangeResult> exchangeInBatch(@RequestBody Flux<BatchExchangeItem> items) {
+        return batchExchangeCommand.execute(items);
+    }
+
     @PostMapping("{customerId}/exchange")
     Mono<CustomerDto> createCustomer(@PathVariable @Valid @NotNull Long customerId, @RequestBody @Valid ExchangeRequest request) {
         return currencyExchangeCommand.execute(new CustomerAwareContext<>(customerId, request))
                 .map(ExecutionResult::handle);
     }
+
+    @PostMapping("{customerId}/exchange/quote")
+    @ResponseStatus(HttpStatus.CREATED)
+    Mono<ExchangeQuote> createExchangeQuote(@PathVariable @Valid @NotNull Long customerId, @RequestBody @Valid ExchangeRequest request) {
+        return createExchangeQuoteCommand.execute(new CustomerAwareContext<>(customerId, request))
+                .map(ExecutionResult::handle);
+    }
 }
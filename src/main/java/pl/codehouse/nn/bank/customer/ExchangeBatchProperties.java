@@ -0,0 +1,23 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for the batch exchange of many customers.
+ *
+ * @param batchSize     The maximum number of exchanges grouped by customer at once, and so held in memory at once.
+ * @param maxBatchDelay How long a batch waits for further exchanges of a slow stream before it is executed anyway.
+ * @param concurrency   The maximum number of customers of a batch whose exchanges are executed in parallel.
+ * @param ratesTtl      How long the rates snapshot fetched for a stream is reused before it is fetched again.
+ *                      A failed fetch is never reused, the next group of exchanges fetches the rates again.
+ */
+@ConfigurationProperties("app.exchange-batch")
+public record ExchangeBatchProperties(
+        @DefaultValue("1000") int batchSize,
+        @DefaultValue("PT0.1S") Duration maxBatchDelay,
+        @DefaultValue("16") int concurrency,
+        @DefaultValue("PT1M") Duration ratesTtl
+) {
+}
@@ -0,0 +1,45 @@
+package pl.codehouse.nn.bank.customer;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+import pl.codehouse.nn.bank.account.Currency;
+
+/**
+ * Represents a quote of a currency exchange, locking the rate and both amounts until it expires.
+ * A quote is executed by passing its id in the {@link ExchangeRequest}, which does not look up the rates again.
+ *
+ * @param quoteId            The unique id of the quote.
+ * @param customerId         The id of the customer the quote was issued for.
+ * @param fromCurrency       The currency being exchanged.
+ * @param toCurrency         The currency being bought.
+ * @param rate               The cross rate locked by the quote.
+ * @param fromAmount         The amount taken from the {@code fromCurrency} account.
+ * @param toAmount           The amount added to the {@code toCurrency} account.
+ * @param ratesEffectiveDate The day the NBP rates used for the quote were published for.
+ * @param expiresAt          The moment after which the quote can no longer be executed.
+ */
+public record ExchangeQuote(
+        UUID quoteId,
+        @JsonIgnore long customerId,
+        Currency fromCurrency,
+        Currency toCurrency,
+        BigDecimal rate,
+        BigDecimal fromAmount,
+        BigDecimal toAmount,
+        LocalDate ratesEffectiveDate,
+        Instant expiresAt
+) {
+
+    /**
+     * Checks whether the quote can still be executed at the given moment.
+     *
+     * @param now The current moment.
+     * @return true if the quote has not expired yet, false otherwise.
+     */
+    boolean isValidAt(Instant now) {
+        return now.isBefore(expiresAt);
+    }
+}
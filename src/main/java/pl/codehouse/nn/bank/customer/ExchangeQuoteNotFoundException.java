@@ -0,0 +1,25 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.util.UUID;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exception thrown when an exchange quote cannot be executed, because it does not exist,
+ * has expired, was already executed or was issued for another customer.
+ * This exception is mapped to an HTTP 404 Not Found response.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ExchangeQuoteNotFoundException extends ResponseStatusException {
+
+    /**
+     * Constructs a new ExchangeQuoteNotFoundException.
+     *
+     * @param customerId The id of the customer executing the quote.
+     * @param quoteId    The id of the quote that was not found.
+     */
+    public ExchangeQuoteNotFoundException(long customerId, UUID quoteId) {
+        super(HttpStatus.NOT_FOUND, "Exchange quote %s not found or expired for customer with id %s.".formatted(quoteId, customerId));
+    }
+}
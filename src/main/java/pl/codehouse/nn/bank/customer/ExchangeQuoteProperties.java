@@ -0,0 +1,18 @@
+package pl.codehouse.nn.bank.customer;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Configuration properties for exchange quotes.
+ *
+ * @param ttl         How long a quote locks the rate and can be executed.
+ * @param maximumSize The maximum number of quotes held in memory, the oldest ones are evicted first.
+ */
+@ConfigurationProperties("app.exchange-quotes")
+public record ExchangeQuoteProperties(
+        @DefaultValue("PT30S") Duration ttl,
+        @DefaultValue("10000") long maximumSize
+) {
+}
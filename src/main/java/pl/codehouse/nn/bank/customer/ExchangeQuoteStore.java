@@ -0,0 +1,76 @@
+package pl.codehouse.nn.bank.customer;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.stereotype.Component;
+import pl.codehouse.nn.bank.account.CurrencyAccountNotFoundException;
+import pl.codehouse.nn.bank.account.InsufficientFundsException;
+
+/**
+ * Bounded in-memory store of issued exchange quotes.
+ * Quotes are evicted once their time to live passes, or the oldest ones when the store is full.
+ * A quote can be taken only once, by the customer it was issued for. An exchange rejected before changing the balances
+ * puts its quote back, so that the customer can retry at the quoted price until the quote expires. Any other failure
+ * leaves the quote consumed, as the balances may have changed before it, e.g. when the commit timed out.
+ */
+@Component
+class ExchangeQuoteStore {
+
+    private final Cache<UUID, ExchangeQuote> quotes;
+    private final Clock clock;
+
+    ExchangeQuoteStore(ExchangeQuoteProperties properties, Clock clock) {
+        this.quotes = Caffeine.newBuilder()
+                .expireAfterWrite(properties.ttl())
+                .maximumSize(properties.maximumSize())
+                .build();
+        this.clock = clock;
+    }
+
+    void save(ExchangeQuote quote) {
+        quotes.put(quote.quoteId(), quote);
+    }
+
+    /**
+     * Removes the quote from the store and returns it, provided it belongs to the given customer and has not expired.
+     *
+     * @param customerId The id of the customer executing the quote.
+     * @param quoteId    The id of the quote.
+     * @return The quote, or empty when there is no valid quote with the given id for the customer.
+     */
+    Optional<ExchangeQuote> take(long customerId, UUID quoteId) {
+        ExchangeQuote quote = quotes.getIfPresent(quoteId);
+        if (quote == null || quote.customerId() != customerId || !quotes.asMap().remove(quoteId, quote)) {
+            return Optional.empty();
+        }
+        return Optional.of(quote).filter(taken -> taken.isValidAt(clock.instant()));
+    }
+
+    /**
+     * Returns a taken quote to the store, unless it has expired meanwhile.
+     *
+     * @param quote The quote whose exchange failed to execute.
+     */
+    void putBack(ExchangeQuote quote) {
+        if (quote.isValidAt(clock.instant())) {
+            quotes.asMap().putIfAbsent(quote.quoteId(), quote);
+        }
+    }
+
+    /**
+     * Tells whether an exchange failing with the given error certainly left the balances unchanged,
+     * so that its quote can be put back. Such an exchange was rejected by the checks of the customer and its accounts,
+     * made either before the update or by the guarded update within its rolled back transaction.
+     *
+     * @param error The error the exchange failed with.
+     * @return true if the exchange was rejected without changing the balances, false otherwise.
+     */
+    static boolean isRejectedBeforeUpdate(Throwable error) {
+        return error instanceof CustomerNotFoundException
+                || error instanceof CurrencyAccountNotFoundException
+                || error instanceof InsufficientFundsException;
+    }
+}
@@ -1,15 +1,42 @@
 package pl.codehouse.nn.bank.customer;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Digits;
 import java.math.BigDecimal;
+import java.util.UUID;
 import pl.codehouse.nn.bank.account.Currency;
 
 /**
  * Represents a request for currency exchange.
  * This record encapsulates the details needed to perform a currency exchange operation.
+ * When {@code quoteId} is given, the exchange is executed with the currencies, amounts and rate locked by that
+ * {@link ExchangeQuote} instead of the current rates.
+ * The amount must not have more fraction digits than the minor units of the currencies, it is never rounded.
  */
 public record ExchangeRequest(
         @JsonProperty("fromCurrency") Currency fromCurrency,
         @JsonProperty("toCurrency") Currency toCurrency,
-        @JsonProperty("amount") BigDecimal amount) {
+        @JsonProperty("amount") @Digits(integer = 16, fraction = 2) BigDecimal amount,
+        @JsonProperty("quoteId") UUID quoteId) {
+
+    /**
+     * Creates a request exchanging at the current rates.
+     *
+     * @param fromCurrency The currency being exchanged.
+     * @param toCurrency   The currency being bought.
+     * @param amount       The amount of {@code fromCurrency} to exchange.
+     */
+    public ExchangeRequest(Currency fromCurrency, Currency toCurrency, BigDecimal amount) {
+        this(fromCurrency, toCurrency, amount, null);
+    }
+
+    /**
+     * Creates a request executing the given quote.
+     *
+     * @param quoteId The id of the quote to execute.
+     * @return A new request referring to the quote.
+     */
+    public static ExchangeRequest forQuote(UUID quoteId) {
+        return new ExchangeRequest(null, null, null, quoteId);
+    }
 }
@@ -0,0 +1,61 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.time.Clock;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ExchangeRatesService} decorator serving exchange rates from the {@link ExchangeRatesCache}.
+ * The delegate is only called when the cache does not hold a rate for the requested currency
+ * (or a complete snapshot) yet, the fetched rates are then stored for the following lookups.
+ * Cached rates older than {@link ExchangeRatesProperties.Resilience#maxStaleness()} are treated as a miss,
+ * so that rates of unbounded age are never served when the NBP API, or the node pushing its tables, is down.
+ */
+class CachingExchangeRatesService implements ExchangeRatesService {
+    private static final Logger log = LoggerFactory.getLogger(CachingExchangeRatesService.class);
+
+    private final ExchangeRatesService delegate;
+    private final ExchangeRatesCache cache;
+    private final String table;
+    private final Duration maxStaleness;
+    private final Clock clock;
+
+    CachingExchangeRatesService(ExchangeRatesService delegate, ExchangeRatesCache cache, ExchangeRatesProperties properties, Clock clock) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.table = properties.sourceTable();
+        this.maxStaleness = properties.resilience().maxStaleness();
+        this.clock = clock;
+    }
+
+    @Override
+    public Mono<ExchangeRateDto> fetchCurrentRatesFor(Currency currency) {
+        return Mono.defer(() -> Mono.justOrEmpty(cache.lookup(table, currency)))
+                .filter(this::withinStalenessBound)
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.info("Exchange rate for {} not cached yet or too old, fetching it from the source.", currency);
+                    return delegate.fetchCurrentRatesFor(currency)
+                            .doOnNext(rate -> cache.put(table, rate));
+                }));
+    }
+
+    @Override
+    public Mono<RatesSnapshot> fetchRatesSnapshot() {
+        return Mono.defer(() -> {
+            RatesSnapshot snapshot = cache.snapshot(table);
+            if (snapshot.isComplete() && snapshot.rates().stream().allMatch(this::withinStalenessBound)) {
+                return Mono.just(snapshot);
+            }
+            log.info("Exchange rates snapshot of table {} not cached yet or too old, fetching it from the source.", table);
+            return delegate.fetchRatesSnapshot()
+                    .map(fetched -> cache.publish(table, fetched));
+        });
+    }
+
+    private boolean withinStalenessBound(ExchangeRateDto rate) {
+        return rate.age(clock).compareTo(maxStaleness) <= 0;
+    }
+}
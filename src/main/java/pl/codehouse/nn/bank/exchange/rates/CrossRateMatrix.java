@@ -0,0 +1,148 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.Money;
+
+/**
+ * Dense {@link Currency} x {@link Currency} matrix of conversions, built once per {@link RatesSnapshot}.
+ * Every pair is converted through the base currency, so cross rates such as USD to EUR use both NBP mid rates.
+ * A lookup is a single array access indexed by the ordinals of both currencies.
+ */
+public final class CrossRateMatrix {
+    private static final int SIZE = Currency.values().length;
+    private static final int[] SCALES_BY_ORDINAL = Arrays.stream(Currency.values()).mapToInt(Currency::scale).toArray();
+
+    private final Conversion[] conversions;
+
+    private CrossRateMatrix(Conversion[] conversions) {
+        this.conversions = conversions;
+    }
+
+    /**
+     * Builds the matrix from the mid rates of all currencies against the base currency.
+     * Pairs involving a currency without a rate are left out of the matrix.
+     *
+     * @param midsByOrdinal The mid rates indexed by {@link Currency#ordinal()}, null when the rate is unknown.
+     * @return The matrix of conversions between all pairs of currencies with a known rate.
+     */
+    static CrossRateMatrix of(BigDecimal[] midsByOrdinal) {
+        Currency[] currencies = Currency.values();
+        Conversion[] conversions = new Conversion[SIZE * SIZE];
+        for (Currency from : currencies) {
+            for (Currency to : currencies) {
+                BigDecimal fromMid = from == to ? BigDecimal.ONE : midsByOrdinal[from.ordinal()];
+                BigDecimal toMid = from == to ? BigDecimal.ONE : midsByOrdinal[to.ordinal()];
+                if (fromMid != null && toMid != null) {
+                    conversions[index(from, to)] = conversion(from, to, fromMid, toMid);
+                }
+            }
+        }
+        return new CrossRateMatrix(conversions);
+    }
+
+    /**
+     * Looks up the conversion between the given currencies.
+     *
+     * @param from The currency being exchanged.
+     * @param to   The currency being bought.
+     * @return The conversion of amounts in {@code from} currency into {@code to} currency.
+     * @throws IllegalStateException when the rate of any of the currencies is unknown.
+     */
+    public Conversion conversion(Currency from, Currency to) {
+        Conversion conversion = conversions[index(from, to)];
+        if (conversion == null) {
+            throw new IllegalStateException("No exchange rate available for exchanging %s to %s".formatted(from, to));
+        }
+        return conversion;
+    }
+
+    /**
+     * Builds the conversion of the pair, together with the ratio of both mid rates reduced to a fraction of longs
+     * converting minor units of the source currency straight into minor units of the target currency.
+     * The ratio is left as 0/0 when it does not fit into longs, in which case {@link Money} is converted via {@link BigDecimal}.
+     */
+    private static Conversion conversion(Currency from, Currency to, BigDecimal fromMid, BigDecimal toMid) {
+        int scale = Math.max(fromMid.scale(), toMid.scale());
+        BigInteger numerator = fromMid.setScale(scale).unscaledValue().multiply(BigInteger.TEN.pow(SCALES_BY_ORDINAL[to.ordinal()]));
+        BigInteger denominator = toMid.setScale(scale).unscaledValue().multiply(BigInteger.TEN.pow(SCALES_BY_ORDINAL[from.ordinal()]));
+        BigInteger gcd = numerator.gcd(denominator);
+        numerator = numerator.divide(gcd);
+        denominator = denominator.divide(gcd);
+        boolean fitsInLongs = numerator.bitLength() < Long.SIZE && denominator.bitLength() < Long.SIZE;
+        return new Conversion(from, to, fromMid, toMid, SCALES_BY_ORDINAL[to.ordinal()], roundingOf(from),
+                fitsInLongs ? numerator.longValue() : 0, fitsInLongs ? denominator.longValue() : 0);
+    }
+
+    /**
+     * Amounts bought with the base currency are rounded half down, all other amounts half up,
+     * so that a tie on the last minor unit is never settled in favour of the customer buying foreign currency.
+     */
+    private static RoundingMode roundingOf(Currency from) {
+        return from == RatesSnapshot.BASE_CURRENCY ? RoundingMode.HALF_DOWN : RoundingMode.HALF_UP;
+    }
+
+    private static int index(Currency from, Currency to) {
+        return from.ordinal() * SIZE + to.ordinal();
+    }
+
+    /**
+     * Conversion of amounts between a pair of currencies.
+     * The amount is multiplied by the mid rate of the source currency and divided by the mid rate of the target currency,
+     * so that the only rounding happens once, to the scale of the target currency.
+     * Amounts bought with the base currency are rounded half down, all other amounts half up.
+     *
+     * @param from       The currency being exchanged.
+     * @param to         The currency being bought.
+     * @param multiplier The mid rate of the source currency against the base currency.
+     * @param divisor    The mid rate of the target currency against the base currency.
+     * @param scale      The number of fraction digits of the target currency.
+     * @param rounding   The rounding of the converted amount to the scale of the target currency.
+     * @param minorMultiplier The numerator of the ratio converting minor units of the source currency into the target one.
+     * @param minorDivisor    The denominator of that ratio, 0 when the ratio does not fit into longs.
+     */
+    public record Conversion(Currency from, Currency to, BigDecimal multiplier, BigDecimal divisor, int scale,
+                             RoundingMode rounding, long minorMultiplier, long minorDivisor) {
+
+        /**
+         * Converts the given amount into the target currency, rounded to its scale.
+         *
+         * @param amount The amount in the source currency.
+         * @return The amount in the target currency.
+         */
+        public BigDecimal convert(BigDecimal amount) {
+            return amount.multiply(multiplier).divide(divisor, scale, rounding);
+        }
+
+        /**
+         * Converts the given money into the target currency, rounded to its scale.
+         * The result is the same as of {@link #convert(BigDecimal)}, but computed on longs without any allocation
+         * other than the result, unless the ratio of the pair does not fit into longs.
+         *
+         * @param amount The money in the source currency.
+         * @return The money in the target currency.
+         */
+        public Money convert(Money amount) {
+            if (amount.currency() != from) {
+                throw new IllegalArgumentException("Cannot convert %s from %s".formatted(amount, from));
+            }
+            if (minorDivisor == 0) {
+                return Money.of(convert(amount.toBigDecimal()), to);
+            }
+            return amount.multiplyAndDivide(to, minorMultiplier, minorDivisor, rounding);
+        }
+
+        /**
+         * Returns the cross rate of the pair, i.e. the amount of the target currency bought for one unit of the source currency.
+         *
+         * @return The cross rate of the pair.
+         */
+        public BigDecimal rate() {
+            return multiplier.divide(divisor, MathContext.DECIMAL64);
+        }
+    }
+}
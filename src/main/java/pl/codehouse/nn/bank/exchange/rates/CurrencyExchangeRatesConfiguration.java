@@ -2,22 +2,71 @@ package pl.codehouse.nn.bank.exchange.rates;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import java.time.Clock;
+import java.time.Duration;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
 
 @Configuration
+@EnableScheduling
 class CurrencyExchangeRatesConfiguration {
     
     @Bean
     @Qualifier("exchangeRatesWebClient")
     WebClient exchangeRatesWebClient(ExchangeRatesProperties properties) {
-        return WebClient.builder()
+        WebClient.Builder builder = WebClient.builder();
+        if (properties.resilience().enabled()) {
+            Duration callTimeout = properties.resilience().callTimeout();
+            builder.clientConnector(new ReactorClientHttpConnector(HttpClient.create()
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) callTimeout.toMillis())
+                    .responseTimeout(callTimeout)));
+        }
+        return builder
                 .baseUrl(properties.baseUrl())
                 .defaultHeader(HttpHeaders.ACCEPT, APPLICATION_JSON_VALUE)
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, APPLICATION_JSON_VALUE)
                 .build();
     }
+
+    /**
+     * The chain of decorators calling the NBP API, used on a cache miss and by the scheduled refresh.
+     */
+    @Bean
+    @Qualifier("upstreamExchangeRatesService")
+    ExchangeRatesService upstreamExchangeRatesService(ExchangeRatesServiceImpl nbpExchangeRatesService,
+                                                      ExchangeRatesCache cache,
+                                                      ExchangeRateHistoryRepository history,
+                                                      ExchangeRatesProperties properties,
+                                                      Clock clock,
+                                                      MeterRegistry meterRegistry) {
+        ExchangeRatesService service = nbpExchangeRatesService;
+        if (properties.resilience().enabled()) {
+            service = new ResilientExchangeRatesService(service, cache, history, properties, clock, meterRegistry);
+        }
+        if (properties.singleFlight().enabled()) {
+            service = new SingleFlightExchangeRatesService(service, meterRegistry);
+        }
+        return service;
+    }
+
+    @Bean
+    @Primary
+    ExchangeRatesService exchangeRatesService(@Qualifier("upstreamExchangeRatesService") ExchangeRatesService upstreamExchangeRatesService,
+                                              ExchangeRatesCache cache,
+                                              ExchangeRatesProperties properties,
+                                              Clock clock) {
+        if (properties.cache().enabled()) {
+            return new CachingExchangeRatesService(upstreamExchangeRatesService, cache, properties, clock);
+        }
+        return upstreamExchangeRatesService;
+    }
 }
@@ -1,14 +1,31 @@
 package pl.codehouse.nn.bank.exchange.rates;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import pl.codehouse.nn.bank.account.Currency;
 
 /**
  * Data Transfer Object (DTO) representing an exchange rate.
- * This record encapsulates the currency and its corresponding exchange rate.
+ * This record encapsulates the currency, its corresponding exchange rate,
+ * the day the rate was published for and the moment it was fetched from the source.
  */
 public record ExchangeRateDto(
         Currency currency,
-        BigDecimal rate
+        BigDecimal rate,
+        LocalDate effectiveDate,
+        Instant fetchedAt
 ) {
+
+    /**
+     * Calculates how long ago the rate was fetched from the source.
+     *
+     * @param clock The clock used to determine the current time.
+     * @return The time elapsed since the rate was fetched.
+     */
+    public Duration age(Clock clock) {
+        return Duration.between(fetchedAt, clock.instant());
+    }
 }
@@ -0,0 +1,24 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import pl.codehouse.nn.bank.account.Currency;
+
+record ExchangeRateHistoryEntry(
+        String sourceTable,
+        Currency currency,
+        LocalDate effectiveDate,
+        BigDecimal mid,
+        String no,
+        Instant fetchedAt
+) {
+
+    static ExchangeRateHistoryEntry from(String sourceTable, String no, ExchangeRateDto rate) {
+        return new ExchangeRateHistoryEntry(sourceTable, rate.currency(), rate.effectiveDate(), rate.rate(), no, rate.fetchedAt());
+    }
+
+    ExchangeRateDto toDto() {
+        return new ExchangeRateDto(currency, mid, effectiveDate, fetchedAt);
+    }
+}
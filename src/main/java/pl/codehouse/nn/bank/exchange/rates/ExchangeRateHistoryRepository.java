@@ -0,0 +1,16 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.time.LocalDate;
+import java.util.List;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+interface ExchangeRateHistoryRepository {
+
+    Mono<Void> saveAll(List<ExchangeRateHistoryEntry> entries);
+
+    Mono<ExchangeRateHistoryEntry> findAsOf(String sourceTable, Currency currency, LocalDate asOf);
+
+    Flux<ExchangeRateHistoryEntry> findAllAsOf(String sourceTable, LocalDate asOf);
+}
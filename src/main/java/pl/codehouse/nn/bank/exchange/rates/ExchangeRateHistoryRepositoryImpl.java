@@ -0,0 +1,110 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import io.r2dbc.spi.Readable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+class ExchangeRateHistoryRepositoryImpl implements ExchangeRateHistoryRepository {
+    /**
+     * Inserts all rates with a single statement, the column values are passed as one array per column.
+     */
+    private static final String INSERT_ALL_SQL = """
+            INSERT INTO exchange_rates(source_table, currency, effective_date, mid, no, fetched_at)
+            SELECT * FROM UNNEST(CAST(:sourceTables AS TEXT[]), CAST(:currencies AS TEXT[]), CAST(:effectiveDates AS DATE[]),
+                                 CAST(:mids AS DECIMAL[]), CAST(:nos AS TEXT[]), CAST(:fetchedAts AS TIMESTAMPTZ[]))
+            ON CONFLICT (source_table, currency, effective_date) DO NOTHING
+            """;
+
+    private static final String FIND_AS_OF_SQL = """
+            SELECT source_table, currency, effective_date, mid, no, fetched_at
+            FROM exchange_rates
+            WHERE source_table = :sourceTable AND currency = :currency AND effective_date <= :asOf
+            ORDER BY effective_date DESC
+            LIMIT 1
+            """;
+
+    private static final String FIND_ALL_AS_OF_SQL = """
+            SELECT DISTINCT ON (currency) source_table, currency, effective_date, mid, no, fetched_at
+            FROM exchange_rates
+            WHERE source_table = :sourceTable AND effective_date <= :asOf
+            ORDER BY currency, effective_date DESC
+            """;
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRateHistoryRepositoryImpl.class);
+    private final R2dbcEntityTemplate entityTemplate;
+
+    ExchangeRateHistoryRepositoryImpl(R2dbcEntityTemplate entityTemplate) {
+        this.entityTemplate = entityTemplate;
+    }
+
+    @Override
+    public Mono<Void> saveAll(List<ExchangeRateHistoryEntry> entries) {
+        if (entries.isEmpty()) {
+            return Mono.empty();
+        }
+        log.debug("Recording {} exchange rates in history.", entries.size());
+        int size = entries.size();
+        String[] sourceTables = new String[size];
+        String[] currencies = new String[size];
+        LocalDate[] effectiveDates = new LocalDate[size];
+        BigDecimal[] mids = new BigDecimal[size];
+        String[] nos = new String[size];
+        Instant[] fetchedAts = new Instant[size];
+        for (int i = 0; i < size; i++) {
+            ExchangeRateHistoryEntry entry = entries.get(i);
+            sourceTables[i] = entry.sourceTable();
+            currencies[i] = entry.currency().name();
+            effectiveDates[i] = entry.effectiveDate();
+            mids[i] = entry.mid();
+            nos[i] = entry.no();
+            fetchedAts[i] = entry.fetchedAt();
+        }
+        return entityTemplate.getDatabaseClient().sql(INSERT_ALL_SQL)
+                .bind("sourceTables", sourceTables)
+                .bind("currencies", currencies)
+                .bind("effectiveDates", effectiveDates)
+                .bind("mids", mids)
+                .bind("nos", nos)
+                .bind("fetchedAts", fetchedAts)
+                .then();
+    }
+
+    @Override
+    public Mono<ExchangeRateHistoryEntry> findAsOf(String sourceTable, Currency currency, LocalDate asOf) {
+        return entityTemplate.getDatabaseClient().sql(FIND_AS_OF_SQL)
+                .bind("sourceTable", sourceTable)
+                .bind("currency", currency.name())
+                .bind("asOf", asOf)
+                .map(ExchangeRateHistoryRepositoryImpl::mapToEntry)
+                .one();
+    }
+
+    @Override
+    public Flux<ExchangeRateHistoryEntry> findAllAsOf(String sourceTable, LocalDate asOf) {
+        return entityTemplate.getDatabaseClient().sql(FIND_ALL_AS_OF_SQL)
+                .bind("sourceTable", sourceTable)
+                .bind("asOf", asOf)
+                .map(ExchangeRateHistoryRepositoryImpl::mapToEntry)
+                .all();
+    }
+
+    private static ExchangeRateHistoryEntry mapToEntry(Readable readable) {
+        return new ExchangeRateHistoryEntry(
+                readable.get("source_table", String.class),
+                Currency.valueOf(readable.get("currency", String.class)),
+                readable.get("effective_date", LocalDate.class),
+                readable.get("mid", BigDecimal.class),
+                readable.get("no", String.class),
+                readable.get("fetched_at", Instant.class)
+        );
+    }
+}
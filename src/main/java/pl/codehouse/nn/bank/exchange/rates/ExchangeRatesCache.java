@@ -0,0 +1,59 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.stereotype.Component;
+import pl.codehouse.nn.bank.account.Currency;
+
+/**
+ * In-memory store of the most recently fetched exchange rates, holding one shared {@link RatesSnapshot} per NBP table.
+ * Lookups never perform any I/O - the store is filled by the fetch path and by the scheduled refresh.
+ */
+@Component
+class ExchangeRatesCache {
+
+    private final ConcurrentMap<String, RatesSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    Optional<ExchangeRateDto> lookup(String table, Currency currency) {
+        return snapshot(table).rateFor(currency);
+    }
+
+    RatesSnapshot snapshot(String table) {
+        return snapshots.getOrDefault(table, RatesSnapshot.empty());
+    }
+
+    void put(String table, ExchangeRateDto rate) {
+        snapshots.compute(table, (key, current) -> (current == null ? RatesSnapshot.empty() : current).with(rate));
+    }
+
+    /**
+     * Publishes the given snapshot as the current one of the table.
+     * Rates that are missing from the published snapshot, or that are older than the cached ones, are kept as cached.
+     *
+     * @param table    The NBP table the snapshot belongs to.
+     * @param snapshot The snapshot to be published.
+     * @return The snapshot that is current after publishing.
+     */
+    RatesSnapshot publish(String table, RatesSnapshot snapshot) {
+        return snapshots.merge(table, snapshot, ExchangeRatesCache::merge);
+    }
+
+    void clear() {
+        snapshots.clear();
+    }
+
+    private static RatesSnapshot merge(RatesSnapshot current, RatesSnapshot published) {
+        if (published.isComplete() && current.rates().stream()
+                .allMatch(cached -> published.rateFor(cached.currency())
+                        .filter(rate -> !rate.fetchedAt().isBefore(cached.fetchedAt()))
+                        .isPresent())) {
+            return published;
+        }
+        RatesSnapshot merged = current;
+        for (ExchangeRateDto rate : published.rates()) {
+            merged = merged.with(rate);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,79 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker guarding the calls to the NBP API.
+ * The circuit opens after a number of consecutive failures and rejects calls for the configured duration,
+ * after which a single probe call is let through - its outcome either closes the circuit or opens it again.
+ */
+class ExchangeRatesCircuitBreaker {
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRatesCircuitBreaker.class);
+
+    /**
+     * The state of the circuit, the ordinal is exposed as the circuit state metric.
+     */
+    enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN
+    }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, 0, Instant.MIN));
+
+    ExchangeRatesCircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    State state() {
+        return status.get().state();
+    }
+
+    /**
+     * Checks whether a call may be executed. When the open duration has passed,
+     * the first caller is granted the permission to probe the API and the circuit becomes half-open.
+     *
+     * @return true if the call may be executed, false if it should be rejected.
+     */
+    boolean tryAcquirePermission() {
+        Status current = status.get();
+        return switch (current.state()) {
+            case CLOSED -> true;
+            case HALF_OPEN -> false;
+            case OPEN -> !clock.instant().isBefore(current.openedAt().plus(openDuration))
+                    && status.compareAndSet(current, new Status(State.HALF_OPEN, current.failures(), current.openedAt()));
+        };
+    }
+
+    void onSuccess() {
+        Status previous = status.getAndSet(new Status(State.CLOSED, 0, Instant.MIN));
+        if (previous.state() != State.CLOSED) {
+            log.info("NBP API call succeeded, closing the circuit.");
+        }
+    }
+
+    void onFailure() {
+        Status updated = status.updateAndGet(current -> switch (current.state()) {
+            case CLOSED -> current.failures() + 1 >= failureThreshold
+                    ? new Status(State.OPEN, current.failures() + 1, clock.instant())
+                    : new Status(State.CLOSED, current.failures() + 1, current.openedAt());
+            case HALF_OPEN, OPEN -> new Status(State.OPEN, current.failures() + 1, clock.instant());
+        });
+        if (updated.state() == State.OPEN) {
+            log.warn("NBP API call failed {} times in a row, the circuit is open for {}.", updated.failures(), openDuration);
+        }
+    }
+
+    private record Status(State state, int failures, Instant openedAt) {
+    }
+}
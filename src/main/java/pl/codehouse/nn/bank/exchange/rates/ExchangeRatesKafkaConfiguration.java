@@ -0,0 +1,24 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+@ConditionalOnProperty(value = "app.exchange-rates.kafka.enabled", havingValue = "true")
+class ExchangeRatesKafkaConfiguration {
+
+    /**
+     * The compacted topic keeps only the latest table per key, so a starting node reads just the current rates.
+     */
+    @Bean
+    NewTopic exchangeRatesTopic(ExchangeRatesProperties properties) {
+        return TopicBuilder.name(properties.kafka().topic())
+                .partitions(1)
+                .replicas(1)
+                .compact()
+                .build();
+    }
+}
@@ -0,0 +1,41 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes the exchange rates tables pushed over Kafka into the local {@link ExchangeRatesCache}.
+ * Every node reads the whole topic with its own consumer group, starting from the earliest retained table.
+ */
+@Component
+@ConditionalOnProperty(value = "app.exchange-rates.kafka.enabled", havingValue = "true")
+class ExchangeRatesKafkaListener {
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRatesKafkaListener.class);
+
+    private final ExchangeRatesCache cache;
+    private final ObjectMapper objectMapper;
+
+    ExchangeRatesKafkaListener(ExchangeRatesCache cache, ObjectMapper objectMapper) {
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+    }
+
+    @KafkaListener(
+            topics = "${app.exchange-rates.kafka.topic:exchange-rates}",
+            groupId = "exchange-rates-${random.uuid}",
+            properties = "auto.offset.reset=earliest")
+    void onRatesPushed(String payload) {
+        try {
+            ExchangeRatesMessage message = objectMapper.readValue(payload, ExchangeRatesMessage.class);
+            RatesSnapshot current = cache.publish(message.table(), message.toSnapshot());
+            log.info("Exchange rates table {} received over Kafka, cache holds {}.", message.no(), current);
+        } catch (JsonProcessingException e) {
+            log.error("Skipping malformed exchange rates message: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes every new NBP table fetched by the ingestor node to the exchange rates Kafka topic.
+ * Only rates fetched as a numbered table are published. A table that was already published is not sent again,
+ * neither are rates without a table number nor rates not fetched after the last published ones,
+ * such as the last known good rates served by {@link ResilientExchangeRatesService} while the NBP API is down.
+ */
+@Component
+@ConditionalOnProperty(value = {"app.exchange-rates.kafka.enabled", "app.exchange-rates.kafka.ingestor"}, havingValue = "true")
+class ExchangeRatesKafkaPublisher {
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRatesKafkaPublisher.class);
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String topic;
+    private final AtomicReference<Published> lastPublished = new AtomicReference<>();
+
+    ExchangeRatesKafkaPublisher(KafkaTemplate<String, String> kafkaTemplate, ObjectMapper objectMapper, ExchangeRatesProperties properties) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.topic = properties.kafka().topic();
+    }
+
+    @EventListener
+    void onRatesRefreshed(ExchangeRatesRefreshedEvent event) {
+        Optional<String> tableNo = event.snapshot().no();
+        Optional<Instant> fetchedAt = event.snapshot().rates().stream()
+                .map(ExchangeRateDto::fetchedAt)
+                .max(Comparator.naturalOrder());
+        if (tableNo.isEmpty() || fetchedAt.isEmpty()) {
+            log.debug("Exchange rates of table {} were not fetched as a numbered table, skipping publishing.", event.table());
+            return;
+        }
+        String no = tableNo.get();
+        Published current = new Published(no, fetchedAt.get());
+        Published previous = lastPublished.getAndUpdate(last -> current.isNewerThan(last) ? current : last);
+        if (!current.isNewerThan(previous)) {
+            log.debug("Exchange rates table {} fetched at {} was already published.", no, current.fetchedAt());
+            return;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(ExchangeRatesMessage.from(event.table(), event.snapshot()));
+            kafkaTemplate.send(topic, event.table(), payload)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            log.warn("Unable to publish exchange rates table {} to {}. Reason: {}", no, topic, error.getMessage());
+                            lastPublished.compareAndSet(current, previous);
+                        } else {
+                            log.info("Published exchange rates table {} to {}.", no, topic);
+                        }
+                    });
+        } catch (JsonProcessingException e) {
+            log.error("Unable to serialize exchange rates table {}.", no, e);
+            lastPublished.compareAndSet(current, previous);
+        }
+    }
+
+    /**
+     * The table number and the newest fetch time of the most recently published snapshot.
+     */
+    private record Published(String no, Instant fetchedAt) {
+
+        boolean isNewerThan(Published last) {
+            return last == null
+                    || fetchedAt.isAfter(last.fetchedAt()) && !no.equals(last.no());
+        }
+    }
+}
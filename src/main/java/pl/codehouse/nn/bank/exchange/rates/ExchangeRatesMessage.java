@@ -0,0 +1,21 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.util.List;
+
+/**
+ * Payload of the exchange rates Kafka topic, carrying a whole NBP table.
+ *
+ * @param table The NBP table the rates belong to, also used as the record key.
+ * @param no    The number of the NBP table, or null when the rates were fetched one by one.
+ * @param rates The rates of the quoted currencies.
+ */
+record ExchangeRatesMessage(String table, String no, List<ExchangeRateDto> rates) {
+
+    static ExchangeRatesMessage from(String table, RatesSnapshot snapshot) {
+        return new ExchangeRatesMessage(table, snapshot.no().orElse(null), snapshot.rates());
+    }
+
+    RatesSnapshot toSnapshot() {
+        return RatesSnapshot.of(no, rates);
+    }
+}
@@ -1,6 +1,8 @@
 package pl.codehouse.nn.bank.exchange.rates;
 
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 
 /**
  * Configuration properties for exchange rates.
@@ -9,7 +11,87 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties("app.exchange-rates")
 public record ExchangeRatesProperties(
         String baseUrl,
-        String sourceTable
+        String sourceTable,
+        @DefaultValue("TABLE") FetchMode fetchMode,
+        @DefaultValue Cache cache,
+        @DefaultValue SingleFlight singleFlight,
+        @DefaultValue Resilience resilience,
+        @DefaultValue Kafka kafka
 ) {
 
+    /**
+     * Defines how a snapshot of all exchange rates is loaded from the NBP API.
+     */
+    public enum FetchMode {
+        /**
+         * Every quoted currency is fetched with a separate request.
+         */
+        PER_CURRENCY,
+
+        /**
+         * The whole rates table is fetched with a single request.
+         */
+        TABLE
+    }
+
+    /**
+     * Configuration of the in-memory exchange rates cache.
+     *
+     * @param enabled         Whether exchange rates lookups are served from the in-memory cache.
+     * @param refreshInterval How often the cached exchange rates are reloaded from the NBP API.
+     * @param initialDelay    How long after the application start the first reload is executed.
+     */
+    public record Cache(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("PT30M") Duration refreshInterval,
+            @DefaultValue("PT0S") Duration initialDelay
+    ) {
+    }
+
+    /**
+     * Configuration of the deduplication of concurrent exchange rates fetches.
+     *
+     * @param enabled Whether concurrent fetches of the same rates share a single request to the NBP API.
+     */
+    public record SingleFlight(
+            @DefaultValue("true") boolean enabled
+    ) {
+    }
+
+    /**
+     * Configuration of the resilience of calls to the NBP API.
+     *
+     * @param enabled          Whether calls to the NBP API are guarded by timeouts, the circuit breaker and the stale rates fallback.
+     * @param callTimeout      The maximum time of a single call to the NBP API, after which the call is considered failed.
+     * @param staleAfter       How long a caller waits for the NBP API before being served the last known good rates,
+     *                         while the call completes in the background and refreshes them.
+     * @param maxStaleness     The maximum age of the rates that may still be served, from the cache or as the last known good rates.
+     * @param failureThreshold The number of consecutive failed calls after which the circuit opens.
+     * @param openDuration     How long the open circuit rejects calls before letting a probe call through.
+     */
+    public record Resilience(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("PT5S") Duration callTimeout,
+            @DefaultValue("PT1S") Duration staleAfter,
+            @DefaultValue("PT24H") Duration maxStaleness,
+            @DefaultValue("5") int failureThreshold,
+            @DefaultValue("PT30S") Duration openDuration
+    ) {
+    }
+
+    /**
+     * Configuration of pushing new exchange rates tables to all nodes over Kafka.
+     * When enabled, only the ingestor node polls the NBP API and publishes every new table to a compacted topic,
+     * all nodes consume that topic into their local cache.
+     *
+     * @param enabled  Whether exchange rates are distributed over Kafka instead of being polled by every node.
+     * @param ingestor Whether this node polls the NBP API and publishes new tables to the topic.
+     * @param topic    The name of the compacted topic holding the latest table, keyed by the NBP table.
+     */
+    public record Kafka(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("false") boolean ingestor,
+            @DefaultValue("exchange-rates") String topic
+    ) {
+    }
 }
@@ -0,0 +1,10 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+/**
+ * Application event announcing a snapshot freshly fetched from the NBP API by the {@link ExchangeRatesRefresher}.
+ *
+ * @param table    The NBP table the snapshot belongs to.
+ * @param snapshot The fetched snapshot.
+ */
+record ExchangeRatesRefreshedEvent(String table, RatesSnapshot snapshot) {
+}
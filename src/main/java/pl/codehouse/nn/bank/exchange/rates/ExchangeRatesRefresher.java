@@ -0,0 +1,77 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.time.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Periodically reloads the snapshot of all exchange rates quoted by NBP into the {@link ExchangeRatesCache}.
+ * The refresh schedule is driven by {@link ExchangeRatesProperties.Cache}. Every refreshed snapshot is announced
+ * with an {@link ExchangeRatesRefreshedEvent}. When the rates are pushed over Kafka, only the ingestor node polls NBP.
+ */
+@Component
+@ConditionalOnProperty(value = "app.exchange-rates.cache.enabled", havingValue = "true", matchIfMissing = true)
+class ExchangeRatesRefresher {
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRatesRefresher.class);
+
+    private final ExchangeRatesService upstreamExchangeRatesService;
+    private final ExchangeRatesCache cache;
+    private final ExchangeRatesProperties properties;
+    private final TaskScheduler taskScheduler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+
+    ExchangeRatesRefresher(@Qualifier("upstreamExchangeRatesService") ExchangeRatesService upstreamExchangeRatesService,
+                           ExchangeRatesCache cache,
+                           ExchangeRatesProperties properties,
+                           TaskScheduler taskScheduler,
+                           ApplicationEventPublisher eventPublisher,
+                           Clock clock) {
+        this.upstreamExchangeRatesService = upstreamExchangeRatesService;
+        this.cache = cache;
+        this.properties = properties;
+        this.taskScheduler = taskScheduler;
+        this.eventPublisher = eventPublisher;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void scheduleRefresh() {
+        if (properties.kafka().enabled() && !properties.kafka().ingestor()) {
+            log.info("Exchange rates are pushed over Kafka topic {}, skipping the scheduled refresh.", properties.kafka().topic());
+            return;
+        }
+        ExchangeRatesProperties.Cache cacheProperties = properties.cache();
+        log.info("Scheduling exchange rates refresh every {}, starting in {}.", cacheProperties.refreshInterval(), cacheProperties.initialDelay());
+        taskScheduler.scheduleAtFixedRate(
+                () -> refresh().block(),
+                clock.instant().plus(cacheProperties.initialDelay()),
+                cacheProperties.refreshInterval()
+        );
+    }
+
+    /**
+     * Fetches the current snapshot of all quoted currencies, publishes it in the cache and announces it.
+     * A failed refresh is logged, the previously cached rates stay in place until the next attempt.
+     *
+     * @return A Mono completing once the refresh was processed.
+     */
+    Mono<Void> refresh() {
+        return upstreamExchangeRatesService.fetchRatesSnapshot()
+                .doOnNext(snapshot -> log.info("Exchange rates cache refreshed with {}.", cache.publish(properties.sourceTable(), snapshot)))
+                .doOnNext(snapshot -> eventPublisher.publishEvent(new ExchangeRatesRefreshedEvent(properties.sourceTable(), snapshot)))
+                .onErrorResume(error -> {
+                    log.warn("Unable to refresh exchange rates of table {}. Reason: {}", properties.sourceTable(), error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
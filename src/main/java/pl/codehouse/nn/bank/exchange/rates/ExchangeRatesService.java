@@ -1,6 +1,7 @@
 package pl.codehouse.nn.bank.exchange.rates;
 
 import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -17,4 +18,19 @@ public interface ExchangeRatesService {
      *         If the rate cannot be fetched, the Mono may complete empty or with an error.
      */
     Mono<ExchangeRateDto> fetchCurrentRatesFor(Currency currency);
+
+    /**
+     * Fetches the current exchange rates of all quoted currencies as a single {@link RatesSnapshot}.
+     * The default implementation fetches the rates one by one, implementations able to load
+     * the whole table at once should override it.
+     *
+     * @return A Mono emitting the snapshot of current exchange rates.
+     *         If any of the rates cannot be fetched, the Mono completes with an error.
+     */
+    default Mono<RatesSnapshot> fetchRatesSnapshot() {
+        return Flux.fromIterable(RatesSnapshot.QUOTED_CURRENCIES)
+                .flatMap(this::fetchCurrentRatesFor)
+                .collectList()
+                .map(rates -> RatesSnapshot.of(null, rates));
+    }
 }
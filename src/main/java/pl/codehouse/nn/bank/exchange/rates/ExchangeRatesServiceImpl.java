@@ -1,11 +1,20 @@
 package pl.codehouse.nn.bank.exchange.rates;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import pl.codehouse.nn.bank.account.Currency;
@@ -14,9 +23,14 @@ import reactor.core.publisher.Mono;
 @Service
 record ExchangeRatesServiceImpl(
         @Qualifier("exchangeRatesWebClient") WebClient webClient,
-        ExchangeRatesProperties properties) implements ExchangeRatesService {
+        ExchangeRatesProperties properties,
+        ObjectMapper objectMapper,
+        ExchangeRateHistoryRepository history,
+        Clock clock) implements ExchangeRatesService {
+    private static final Logger log = LoggerFactory.getLogger(ExchangeRatesServiceImpl.class);
 
     private static final String API_EXCHANGE_RATES_TABLE_CODE_URL = "/api/exchangerates/rates/{table}/{code}/";
+    private static final String API_EXCHANGE_RATES_TABLE_URL = "/api/exchangerates/tables/{table}/";
 
     @Override
     public Mono<ExchangeRateDto> fetchCurrentRatesFor(Currency currency) {
@@ -26,8 +40,78 @@ record ExchangeRatesServiceImpl(
                         .build(properties.sourceTable(), currency.name()))
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<ExchangeRateResponse>() {})
-                .map(response -> new ExchangeRateDto(currency, BigDecimal.valueOf(response.rates().get(0).mid())))
-                .onErrorResume(e -> Mono.error(new RuntimeException("Error fetching exchange rate for " + currency, e)));
+                .map(response -> toNumberedRate(currency, response.rates().get(0)))
+                .doOnNext(rate -> recordInHistory(rate.no(), List.of(rate.dto())))
+                .map(NumberedRate::dto)
+                .onErrorMap(e -> new RuntimeException("Error fetching exchange rate for " + currency, e));
+    }
+
+    @Override
+    public Mono<RatesSnapshot> fetchRatesSnapshot() {
+        if (properties.fetchMode() == ExchangeRatesProperties.FetchMode.PER_CURRENCY) {
+            return ExchangeRatesService.super.fetchRatesSnapshot();
+        }
+        return Mono.using(() -> new ExchangeRatesTableReader(objectMapper.getFactory()),
+                        reader -> webClient.get()
+                                .uri(uriBuilder -> uriBuilder
+                                        .path(API_EXCHANGE_RATES_TABLE_URL)
+                                        .build(properties.sourceTable()))
+                                .retrieve()
+                                .bodyToFlux(DataBuffer.class)
+                                .concatMap(dataBuffer -> feed(reader, dataBuffer))
+                                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                                .then(Mono.fromCallable(reader::finish)),
+                        ExchangeRatesTableReader::close)
+                .map(this::toSnapshot)
+                .doOnNext(snapshot -> snapshot.no().ifPresent(no -> recordInHistory(no, snapshot.rates())))
+                .onErrorMap(e -> new RuntimeException("Error fetching exchange rates table " + properties.sourceTable(), e));
+    }
+
+    private NumberedRate toNumberedRate(Currency currency, RateResponse rate) {
+        return new NumberedRate(rate.no(), new ExchangeRateDto(currency, BigDecimal.valueOf(rate.mid()), rate.effectiveDate(), clock.instant()));
+    }
+
+    /**
+     * Stores the fetched rates of the numbered table in the history in the background, so that the freshly fetched
+     * rates are served without waiting for it. A failure to do so is only logged.
+     */
+    private void recordInHistory(String no, List<ExchangeRateDto> rates) {
+        List<ExchangeRateHistoryEntry> entries = rates.stream()
+                .map(rate -> ExchangeRateHistoryEntry.from(properties.sourceTable(), no, rate))
+                .toList();
+        history.saveAll(entries)
+                .subscribe(null, e -> log.warn("Unable to record exchange rates {} in history. Reason: {}", no, e.getMessage()));
+    }
+
+    /**
+     * Feeds the next chunk of the NBP table response to the reader, releasing the chunk once parsed.
+     */
+    private static Mono<Void> feed(ExchangeRatesTableReader reader, DataBuffer dataBuffer) {
+        try {
+            reader.feed(dataBuffer);
+            return Mono.empty();
+        } catch (IOException e) {
+            return Mono.error(e);
+        } finally {
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+
+    private RatesSnapshot toSnapshot(ExchangeRatesTableReader.Table table) {
+        Instant fetchedAt = clock.instant();
+        LocalDate effectiveDate = table.effectiveDate();
+        BigDecimal[] midsByOrdinal = table.midsByOrdinal();
+        List<ExchangeRateDto> rates = new ArrayList<>();
+        for (Currency currency : RatesSnapshot.QUOTED_CURRENCIES) {
+            BigDecimal mid = midsByOrdinal[currency.ordinal()];
+            if (mid != null) {
+                rates.add(new ExchangeRateDto(currency, mid, effectiveDate, fetchedAt));
+            }
+        }
+        return RatesSnapshot.of(table.no(), rates);
+    }
+
+    private record NumberedRate(String no, ExchangeRateDto dto) {
     }
 
     private record ExchangeRateResponse(
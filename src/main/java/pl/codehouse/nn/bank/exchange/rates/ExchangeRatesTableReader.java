@@ -0,0 +1,156 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.core.io.buffer.DataBuffer;
+import pl.codehouse.nn.bank.account.Currency;
+
+/**
+ * Reads the NBP table response token by token as its chunks arrive, picking only the rates of supported currencies.
+ * Every chunk is fed to a non-blocking parser and consumed straight away, so neither the whole response body
+ * nor the rates of unsupported currencies are ever held in memory.
+ * Only the first table of the response is read. The reader is not thread safe, chunks must be fed one after another.
+ */
+final class ExchangeRatesTableReader implements AutoCloseable {
+    private static final Map<String, Currency> CURRENCIES_BY_CODE = Arrays.stream(Currency.values())
+            .collect(Collectors.toUnmodifiableMap(Currency::name, Function.identity()));
+    private static final int TABLE_DEPTH = 2;
+    private static final int RATE_DEPTH = 4;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final BigDecimal[] midsByOrdinal = new BigDecimal[Currency.values().length];
+
+    private int depth;
+    private int tables;
+    private String fieldName;
+    private boolean inRates;
+    private Currency currency;
+    private BigDecimal mid;
+    private String no;
+    private LocalDate effectiveDate;
+
+    ExchangeRatesTableReader(JsonFactory jsonFactory) throws IOException {
+        this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses the next chunk of the response. The buffer is left to the caller to release.
+     *
+     * @param dataBuffer The next chunk of the response body.
+     * @throws IOException when the chunk is not valid JSON.
+     */
+    void feed(DataBuffer dataBuffer) throws IOException {
+        byte[] bytes = new byte[dataBuffer.readableByteCount()];
+        dataBuffer.read(bytes);
+        feeder.feedInput(bytes, 0, bytes.length);
+        consumeAvailableTokens();
+    }
+
+    /**
+     * Completes the parsing once the whole response has been fed.
+     *
+     * @return The number, the effective date and the mid rates of the table.
+     * @throws IOException when the response ends in the middle of a JSON value.
+     */
+    Table finish() throws IOException {
+        feeder.endOfInput();
+        consumeAvailableTokens();
+        if (tables == 0 || depth != 0) {
+            throw new IllegalStateException("Incomplete exchange rates table response");
+        }
+        return new Table(no, effectiveDate, midsByOrdinal);
+    }
+
+    @Override
+    public void close() {
+        try {
+            parser.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void consumeAvailableTokens() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            consume(token);
+        }
+    }
+
+    private void consume(JsonToken token) throws IOException {
+        switch (token) {
+            case FIELD_NAME -> fieldName = parser.currentName();
+            case START_ARRAY, START_OBJECT -> {
+                if (depth == 0 && token != JsonToken.START_ARRAY) {
+                    throw new IllegalStateException("Unexpected token %s in exchange rates table, expected %s".formatted(token, JsonToken.START_ARRAY));
+                }
+                if (depth == 1 && token == JsonToken.START_OBJECT) {
+                    tables++;
+                }
+                if (depth == TABLE_DEPTH && token == JsonToken.START_ARRAY && "rates".equals(fieldName)) {
+                    inRates = true;
+                }
+                if (depth == RATE_DEPTH - 1 && inRates) {
+                    currency = null;
+                    mid = null;
+                }
+                depth++;
+            }
+            case END_ARRAY, END_OBJECT -> {
+                depth--;
+                if (depth == RATE_DEPTH - 1 && inRates && isFirstTable() && currency != null && mid != null) {
+                    midsByOrdinal[currency.ordinal()] = mid;
+                }
+                if (depth == TABLE_DEPTH) {
+                    inRates = false;
+                }
+            }
+            default -> {
+                if (!isFirstTable()) {
+                    return;
+                }
+                if (depth == TABLE_DEPTH) {
+                    switch (fieldName) {
+                        case "no" -> no = parser.getText();
+                        case "effectiveDate" -> effectiveDate = LocalDate.parse(parser.getText());
+                        default -> {
+                        }
+                    }
+                } else if (depth == RATE_DEPTH && inRates) {
+                    switch (fieldName) {
+                        case "code" -> currency = CURRENCIES_BY_CODE.get(parser.getText());
+                        case "mid" -> mid = parser.getDecimalValue();
+                        default -> {
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isFirstTable() {
+        return tables == 1;
+    }
+
+    /**
+     * The parts of an NBP table the snapshot is built from.
+     *
+     * @param no            The number of the table.
+     * @param effectiveDate The date the rates are effective as of.
+     * @param midsByOrdinal The mid rates indexed by {@link Currency#ordinal()}, null when the currency is not in the table.
+     */
+    record Table(String no, LocalDate effectiveDate, BigDecimal[] midsByOrdinal) {
+    }
+}
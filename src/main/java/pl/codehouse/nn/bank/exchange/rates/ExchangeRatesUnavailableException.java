@@ -0,0 +1,24 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exception thrown when exchange rates can neither be fetched from the NBP API
+ * nor served from the last known good rates within the allowed staleness.
+ * This exception is mapped to an HTTP 503 Service Unavailable response.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ExchangeRatesUnavailableException extends ResponseStatusException {
+
+    /**
+     * Constructs a new ExchangeRatesUnavailableException.
+     *
+     * @param description The description of the rates that were requested.
+     * @param cause       The failure of the last attempt to fetch the rates.
+     */
+    public ExchangeRatesUnavailableException(String description, Throwable cause) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Exchange rates unavailable: %s".formatted(description), cause);
+    }
+}
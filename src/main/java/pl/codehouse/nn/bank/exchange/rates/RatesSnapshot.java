@@ -0,0 +1,170 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import pl.codehouse.nn.bank.account.Currency;
+
+/**
+ * Immutable set of exchange rates of a single NBP table, shared by all callers.
+ * Rates are indexed by {@link Currency#ordinal()}, so a lookup is a plain array access.
+ * All NBP rates are quoted against {@link #BASE_CURRENCY}, which always has a rate of one.
+ */
+public final class RatesSnapshot {
+
+    /**
+     * The currency all NBP rates are quoted against.
+     */
+    public static final Currency BASE_CURRENCY = Currency.PLN;
+
+    /**
+     * All currencies for which a rate is published by NBP.
+     */
+    public static final List<Currency> QUOTED_CURRENCIES = Arrays.stream(Currency.values())
+            .filter(currency -> currency != BASE_CURRENCY)
+            .toList();
+
+    private static final RatesSnapshot EMPTY = new RatesSnapshot(null, new ExchangeRateDto[Currency.values().length]);
+
+    private final String no;
+    private final ExchangeRateDto[] ratesByOrdinal;
+    private final ExchangeRateDto baseRate;
+    private final CrossRateMatrix crossRates;
+
+    private RatesSnapshot(String no, ExchangeRateDto[] ratesByOrdinal) {
+        this.no = no;
+        this.ratesByOrdinal = ratesByOrdinal;
+        this.baseRate = latestRate(ratesByOrdinal)
+                .map(latest -> new ExchangeRateDto(BASE_CURRENCY, BigDecimal.ONE, latest.effectiveDate(), latest.fetchedAt()))
+                .orElse(null);
+        this.crossRates = CrossRateMatrix.of(midsByOrdinal(ratesByOrdinal, baseRate));
+    }
+
+    /**
+     * Returns a snapshot without any rates.
+     *
+     * @return The empty snapshot.
+     */
+    public static RatesSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a snapshot from the given rates.
+     *
+     * @param no    The number of the NBP table the rates come from, or null when the rates were fetched one by one.
+     * @param rates The rates to be included in the snapshot.
+     * @return A new snapshot holding the given rates.
+     */
+    public static RatesSnapshot of(String no, Collection<ExchangeRateDto> rates) {
+        ExchangeRateDto[] ratesByOrdinal = new ExchangeRateDto[Currency.values().length];
+        rates.forEach(rate -> ratesByOrdinal[rate.currency().ordinal()] = rate);
+        return new RatesSnapshot(no, ratesByOrdinal);
+    }
+
+    /**
+     * Looks up the rate of the given currency.
+     * The base currency resolves to a rate of one, effective as of the most recent rate in the snapshot.
+     *
+     * @param currency The currency to look up.
+     * @return The rate of the given currency, or empty when the snapshot does not hold it.
+     */
+    public Optional<ExchangeRateDto> rateFor(Currency currency) {
+        if (currency == BASE_CURRENCY) {
+            return Optional.ofNullable(baseRate);
+        }
+        return Optional.ofNullable(ratesByOrdinal[currency.ordinal()]);
+    }
+
+    /**
+     * Returns the conversions between all pairs of currencies, computed once when the snapshot was created.
+     *
+     * @return The cross rate matrix of the snapshot.
+     */
+    public CrossRateMatrix crossRates() {
+        return crossRates;
+    }
+
+    /**
+     * Returns a copy of this snapshot with the rate of {@code rate.currency()} replaced,
+     * unless this snapshot already holds a more recently fetched rate of that currency.
+     *
+     * @param rate The rate to be included.
+     * @return The updated snapshot, or this snapshot when nothing changed.
+     */
+    public RatesSnapshot with(ExchangeRateDto rate) {
+        ExchangeRateDto current = ratesByOrdinal[rate.currency().ordinal()];
+        if (current != null && !current.fetchedAt().isBefore(rate.fetchedAt())) {
+            return this;
+        }
+        ExchangeRateDto[] updated = ratesByOrdinal.clone();
+        updated[rate.currency().ordinal()] = rate;
+        return new RatesSnapshot(null, updated);
+    }
+
+    /**
+     * Checks whether the snapshot holds a rate for every quoted currency.
+     *
+     * @return true if all quoted currencies have a rate, false otherwise.
+     */
+    public boolean isComplete() {
+        return QUOTED_CURRENCIES.stream().allMatch(currency -> ratesByOrdinal[currency.ordinal()] != null);
+    }
+
+    /**
+     * Returns all rates held by the snapshot, in {@link Currency} order.
+     *
+     * @return The rates of the snapshot.
+     */
+    public List<ExchangeRateDto> rates() {
+        return Arrays.stream(ratesByOrdinal).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Returns the number of the NBP table the rates were taken from.
+     *
+     * @return The table number, or empty when the snapshot was assembled from rates fetched one by one.
+     */
+    public Optional<String> no() {
+        return Optional.ofNullable(no);
+    }
+
+    /**
+     * Returns the effective date of the most recent rate in the snapshot.
+     *
+     * @return The effective date, or empty when the snapshot does not hold any rate.
+     */
+    public Optional<LocalDate> effectiveDate() {
+        return Optional.ofNullable(baseRate).map(ExchangeRateDto::effectiveDate);
+    }
+
+    private static BigDecimal[] midsByOrdinal(ExchangeRateDto[] ratesByOrdinal, ExchangeRateDto baseRate) {
+        BigDecimal[] mids = new BigDecimal[ratesByOrdinal.length];
+        for (int ordinal = 0; ordinal < ratesByOrdinal.length; ordinal++) {
+            mids[ordinal] = ratesByOrdinal[ordinal] == null ? null : ratesByOrdinal[ordinal].rate();
+        }
+        if (baseRate != null) {
+            mids[BASE_CURRENCY.ordinal()] = baseRate.rate();
+        }
+        return mids;
+    }
+
+    private static Optional<ExchangeRateDto> latestRate(ExchangeRateDto[] ratesByOrdinal) {
+        ExchangeRateDto latest = null;
+        for (ExchangeRateDto rate : ratesByOrdinal) {
+            if (rate != null && (latest == null || rate.effectiveDate().isAfter(latest.effectiveDate()))) {
+                latest = rate;
+            }
+        }
+        return Optional.ofNullable(latest);
+    }
+
+    @Override
+    public String toString() {
+        return "RatesSnapshot[no=%s, rates=%s]".formatted(no, rates());
+    }
+}
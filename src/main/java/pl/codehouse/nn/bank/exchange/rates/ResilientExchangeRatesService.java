@@ -0,0 +1,163 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ExchangeRatesService} decorator guarding the calls to the NBP API.
+ * Every call is bounded by a timeout and passes through a circuit breaker. When the API is slow, failing
+ * or the circuit is open, callers are served the last known good rates - from the in-memory cache or the history -
+ * as long as they are not older than the configured staleness bound. A whole table is served stale only when it holds
+ * a rate for every quoted currency. A slow call is not cancelled,
+ * it completes in the background and refreshes the last known good rates.
+ */
+class ResilientExchangeRatesService implements ExchangeRatesService {
+    private static final Logger log = LoggerFactory.getLogger(ResilientExchangeRatesService.class);
+    private static final String STALE_SERVED_METRIC = "exchange.rates.stale.served";
+
+    private final ExchangeRatesService delegate;
+    private final ExchangeRatesCache cache;
+    private final ExchangeRateHistoryRepository history;
+    private final ExchangeRatesCircuitBreaker circuitBreaker;
+    private final String sourceTable;
+    private final ExchangeRatesProperties.Resilience resilience;
+    private final Clock clock;
+    private final AtomicLong lastServedStaleAgeMillis = new AtomicLong();
+    private final Counter staleServedOnCircuitOpen;
+    private final Counter staleServedOnSlowCall;
+    private final Counter staleServedOnFailure;
+
+    ResilientExchangeRatesService(ExchangeRatesService delegate,
+                                  ExchangeRatesCache cache,
+                                  ExchangeRateHistoryRepository history,
+                                  ExchangeRatesProperties properties,
+                                  Clock clock,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.history = history;
+        this.sourceTable = properties.sourceTable();
+        this.resilience = properties.resilience();
+        this.clock = clock;
+        this.circuitBreaker = new ExchangeRatesCircuitBreaker(resilience.failureThreshold(), resilience.openDuration(), clock);
+        Gauge.builder("exchange.rates.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("State of the NBP API circuit breaker: 0 - closed, 1 - half-open, 2 - open")
+                .register(meterRegistry);
+        TimeGauge.builder("exchange.rates.stale.age", lastServedStaleAgeMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Age of the most recently served stale exchange rates")
+                .register(meterRegistry);
+        this.staleServedOnCircuitOpen = staleServedCounter("circuit-open", meterRegistry);
+        this.staleServedOnSlowCall = staleServedCounter("slow", meterRegistry);
+        this.staleServedOnFailure = staleServedCounter("failure", meterRegistry);
+    }
+
+    @Override
+    public Mono<ExchangeRateDto> fetchCurrentRatesFor(Currency currency) {
+        return guarded("%s rate".formatted(currency),
+                () -> delegate.fetchCurrentRatesFor(currency),
+                rate -> cache.put(sourceTable, rate),
+                () -> lastKnownRate(currency),
+                rate -> rate.age(clock));
+    }
+
+    @Override
+    public Mono<RatesSnapshot> fetchRatesSnapshot() {
+        return guarded("rates table %s".formatted(sourceTable),
+                delegate::fetchRatesSnapshot,
+                snapshot -> cache.publish(sourceTable, snapshot),
+                this::lastKnownSnapshot,
+                this::ageOf);
+    }
+
+    private <T> Mono<T> guarded(String description,
+                                Supplier<Mono<T>> call,
+                                Consumer<T> onFresh,
+                                Supplier<Mono<T>> lastKnownGood,
+                                Function<T, Duration> ageOf) {
+        return Mono.defer(() -> {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                return serveStale(description, lastKnownGood, ageOf, "circuit-open", staleServedOnCircuitOpen)
+                        .switchIfEmpty(Mono.error(() -> new ExchangeRatesUnavailableException(description,
+                                new IllegalStateException("The NBP API circuit is open"))));
+            }
+            Mono<T> inFlight = Mono.defer(call)
+                    .timeout(resilience.callTimeout())
+                    .doOnNext(onFresh)
+                    .doOnSuccess(value -> circuitBreaker.onSuccess())
+                    .doOnError(e -> circuitBreaker.onFailure())
+                    .cache();
+            // keeps the call running when the caller stops waiting for it, so that it refreshes the last known good rates
+            inFlight.subscribe(value -> { },
+                    e -> log.warn("Fetching {} from NBP API failed. Reason: {}", description, e.getMessage()));
+            return inFlight
+                    .timeout(resilience.staleAfter(), Mono.defer(() -> serveStale(description, lastKnownGood, ageOf, "slow", staleServedOnSlowCall)
+                            .switchIfEmpty(inFlight)))
+                    .onErrorResume(e -> serveStale(description, lastKnownGood, ageOf, "failure", staleServedOnFailure)
+                            .switchIfEmpty(Mono.error(() -> new ExchangeRatesUnavailableException(description, e))));
+        });
+    }
+
+    private <T> Mono<T> serveStale(String description, Supplier<Mono<T>> lastKnownGood, Function<T, Duration> ageOf,
+                                   String reason, Counter staleServed) {
+        return lastKnownGood.get()
+                .doOnNext(stale -> {
+                    Duration age = ageOf.apply(stale);
+                    log.warn("NBP API unavailable ({}), serving {} fetched {} ago.", reason, description, age);
+                    lastServedStaleAgeMillis.set(age.toMillis());
+                    staleServed.increment();
+                });
+    }
+
+    private Mono<ExchangeRateDto> lastKnownRate(Currency currency) {
+        return Mono.justOrEmpty(cache.lookup(sourceTable, currency))
+                .switchIfEmpty(Mono.defer(() -> history.findAsOf(sourceTable, currency, LocalDate.now(clock))
+                        .map(ExchangeRateHistoryEntry::toDto)
+                        .onErrorResume(e -> Mono.empty())))
+                .filter(this::withinStalenessBound);
+    }
+
+    private Mono<RatesSnapshot> lastKnownSnapshot() {
+        // a partial table would fail a later exchange with a missing rate instead of the rates being unavailable
+        return Mono.just(cache.snapshot(sourceTable))
+                .filter(RatesSnapshot::isComplete)
+                .switchIfEmpty(Mono.defer(() -> history.findAllAsOf(sourceTable, LocalDate.now(clock))
+                        .map(ExchangeRateHistoryEntry::toDto)
+                        .collectList()
+                        .map(rates -> RatesSnapshot.of(null, rates))
+                        .onErrorResume(e -> Mono.empty())))
+                .filter(snapshot -> snapshot.isComplete()
+                        && snapshot.rates().stream().allMatch(this::withinStalenessBound));
+    }
+
+    private boolean withinStalenessBound(ExchangeRateDto rate) {
+        return rate.age(clock).compareTo(resilience.maxStaleness()) <= 0;
+    }
+
+    private Duration ageOf(RatesSnapshot snapshot) {
+        return snapshot.rates().stream()
+                .map(rate -> rate.age(clock))
+                .max(Duration::compareTo)
+                .orElse(Duration.ZERO);
+    }
+
+    private static Counter staleServedCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder(STALE_SERVED_METRIC)
+                .description("Calls served with the last known good exchange rates")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
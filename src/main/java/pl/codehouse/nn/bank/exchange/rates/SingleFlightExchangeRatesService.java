@@ -0,0 +1,77 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ExchangeRatesService} decorator deduplicating concurrent fetches.
+ * Callers asking for the same currency (or for the snapshot) while a fetch is in flight share its result
+ * instead of issuing another request. Once the shared fetch completes, the next call starts a new one.
+ */
+class SingleFlightExchangeRatesService implements ExchangeRatesService {
+    private static final Logger log = LoggerFactory.getLogger(SingleFlightExchangeRatesService.class);
+    private static final String SNAPSHOT_KEY = "snapshot";
+    private static final String CALLS_METRIC = "exchange.rates.fetch.calls";
+
+    private final ExchangeRatesService delegate;
+    private final ConcurrentMap<Object, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executedCalls;
+    private final Counter coalescedCalls;
+
+    SingleFlightExchangeRatesService(ExchangeRatesService delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executedCalls = Counter.builder(CALLS_METRIC)
+                .description("Exchange rates fetches passed on to the source")
+                .tag("outcome", "executed")
+                .register(meterRegistry);
+        this.coalescedCalls = Counter.builder(CALLS_METRIC)
+                .description("Exchange rates fetches joined to an already running fetch")
+                .tag("outcome", "coalesced")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ExchangeRateDto> fetchCurrentRatesFor(Currency currency) {
+        return coalesce(currency, () -> delegate.fetchCurrentRatesFor(currency));
+    }
+
+    @Override
+    public Mono<RatesSnapshot> fetchRatesSnapshot() {
+        return coalesce(SNAPSHOT_KEY, delegate::fetchRatesSnapshot);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> coalesce(Object key, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            boolean[] started = {false};
+            Mono<T> shared = (Mono<T>) inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                return share(k, call);
+            });
+            if (started[0]) {
+                executedCalls.increment();
+            } else {
+                log.debug("Joining the exchange rates fetch already in flight for {}.", key);
+                coalescedCalls.increment();
+            }
+            return shared;
+        });
+    }
+
+    private <T> Mono<T> share(Object key, Supplier<Mono<T>> call) {
+        AtomicReference<Mono<T>> self = new AtomicReference<>();
+        Mono<T> shared = Mono.defer(call)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .cache();
+        self.set(shared);
+        return shared;
+    }
+}
@@ -0,0 +1,10 @@
+CREATE TABLE exchange_rates
+(
+    source_table   TEXT        NOT NULL,
+    currency       TEXT        NOT NULL,
+    effective_date DATE        NOT NULL,
+    mid            DECIMAL     NOT NULL,
+    no             TEXT        NOT NULL,
+    fetched_at     TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (source_table, currency, effective_date)
+);
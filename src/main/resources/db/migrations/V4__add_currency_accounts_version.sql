@@ -0,0 +1,2 @@
+-- Version of the balance, used by the optimistic concurrency control of balance updates
+ALTER TABLE currency_accounts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,23 @@
+-- Append-only ledger of all balance changes, every exchange or deposit writes one entry per leg
+CREATE TABLE account_ledger
+(
+    entry_id       BIGSERIAL PRIMARY KEY,
+    transaction_id UUID        NOT NULL,
+    customer_id    INT         NOT NULL,
+    currency       TEXT        NOT NULL,
+    amount         DECIMAL     NOT NULL,
+    created_at     TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX account_ledger_account_idx ON account_ledger (customer_id, currency, entry_id) INCLUDE (amount);
+
+-- Balance of every account folded from its ledger entries up to last_entry_id
+CREATE TABLE account_balance_snapshots
+(
+    customer_id   INT         NOT NULL,
+    currency      TEXT        NOT NULL,
+    amount        DECIMAL     NOT NULL,
+    last_entry_id BIGINT      NOT NULL,
+    taken_at      TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (customer_id, currency)
+);
@@ -0,0 +1,17 @@
+-- Amounts are kept as BIGINT counts of the minor units of their currency.
+-- All supported currencies (PLN, USD, EUR) have 2 fraction digits.
+ALTER TABLE currency_accounts ADD COLUMN amount_minor BIGINT;
+UPDATE currency_accounts SET amount_minor = ROUND(amount * 100);
+ALTER TABLE currency_accounts ALTER COLUMN amount_minor SET NOT NULL;
+ALTER TABLE currency_accounts DROP COLUMN amount;
+
+ALTER TABLE account_ledger ADD COLUMN amount_minor BIGINT;
+UPDATE account_ledger SET amount_minor = ROUND(amount * 100);
+ALTER TABLE account_ledger ALTER COLUMN amount_minor SET NOT NULL;
+ALTER TABLE account_ledger DROP COLUMN amount;
+CREATE INDEX account_ledger_account_idx ON account_ledger (customer_id, currency, entry_id) INCLUDE (amount_minor);
+
+ALTER TABLE account_balance_snapshots ADD COLUMN amount_minor BIGINT;
+UPDATE account_balance_snapshots SET amount_minor = ROUND(amount * 100);
+ALTER TABLE account_balance_snapshots ALTER COLUMN amount_minor SET NOT NULL;
+ALTER TABLE account_balance_snapshots DROP COLUMN amount;
@@ -0,0 +1,21 @@
+-- Compact storage of all balances of a customer in a single row.
+-- Element i of amounts_minor holds the balance of the currency with ordinal i - 1 (PLN, USD, EUR), NULL when the
+-- customer has no account in that currency. New currencies must be appended to the end of the Currency enum.
+CREATE TABLE customer_balances
+(
+    customer_id   INT      NOT NULL PRIMARY KEY,
+    amounts_minor BIGINT[] NOT NULL,
+    main_currency TEXT,
+    version       BIGINT   NOT NULL DEFAULT 0
+);
+
+INSERT INTO customer_balances(customer_id, amounts_minor, main_currency)
+SELECT customer_id,
+       ARRAY [
+           MAX(amount_minor) FILTER (WHERE currency = 'PLN'),
+           MAX(amount_minor) FILTER (WHERE currency = 'USD'),
+           MAX(amount_minor) FILTER (WHERE currency = 'EUR')
+           ],
+       MAX(currency) FILTER (WHERE is_main_account)
+FROM currency_accounts
+GROUP BY customer_id;
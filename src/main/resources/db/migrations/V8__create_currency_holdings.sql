@@ -0,0 +1,24 @@
+-- Total balance held per currency across all customers, split into stripes so that concurrent balance updates of
+-- different customers do not queue on a single row. The total of a currency is the sum of its stripes.
+CREATE TABLE currency_holdings
+(
+    currency     TEXT   NOT NULL,
+    stripe       INT    NOT NULL,
+    amount_minor BIGINT NOT NULL,
+    PRIMARY KEY (currency, stripe)
+);
+
+-- Opening totals summed from where the balances are kept, as configured by app.accounts.storage (flyway placeholder)
+INSERT INTO currency_holdings(currency, stripe, amount_minor)
+SELECT currency, 0, CAST(SUM(amount_minor) AS BIGINT)
+FROM (
+    SELECT currency, amount_minor FROM currency_accounts WHERE '${storage}' IN ('ROWS', 'LEDGER')
+    UNION ALL
+    SELECT currency, amount_minor FROM account_ledger WHERE '${storage}' = 'LEDGER'
+    UNION ALL
+    SELECT cur.currency, b.amounts_minor[cur.i]
+    FROM customer_balances b
+    CROSS JOIN UNNEST(ARRAY ['PLN', 'USD', 'EUR']) WITH ORDINALITY AS cur(currency, i)
+    WHERE '${storage}' = 'COMPACT' AND b.amounts_minor[cur.i] IS NOT NULL
+) balances
+GROUP BY currency;
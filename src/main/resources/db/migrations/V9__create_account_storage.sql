@@ -0,0 +1,11 @@
+-- The layout the balances are kept in, as configured by app.accounts.storage (flyway placeholder).
+-- Balances are written to the configured layout only, the others stop being updated once migrated, so the storage
+-- of a database holding customers must not be switched without moving the balances between the layouts first.
+CREATE TABLE account_storage
+(
+    id      INT  NOT NULL PRIMARY KEY DEFAULT 1 CHECK (id = 1),
+    storage TEXT NOT NULL
+);
+
+INSERT INTO account_storage(storage)
+VALUES ('${storage}');
@@ -0,0 +1,142 @@
+package pl.codehouse.nn.bank;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pl.codehouse.nn.bank.account.AccountBalanceChangedEvent;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ReadReplicaRoutingConnectionFactoryTest {
+    private static final long CUSTOMER_ID = 1000L;
+
+    private final Connection primary = mock(Connection.class);
+    private final Connection firstReplica = mock(Connection.class);
+    private final Connection secondReplica = mock(Connection.class);
+    private final ConnectionFactory primaryFactory = connectionFactoryOf(primary);
+    private final ConnectionFactory firstReplicaFactory = connectionFactoryOf(firstReplica);
+    private final ConnectionFactory secondReplicaFactory = connectionFactoryOf(secondReplica);
+
+    private final ReadReplicaRoutingConnectionFactory sut =
+            new ReadReplicaRoutingConnectionFactory(primaryFactory, List.of(firstReplicaFactory, secondReplicaFactory), Duration.ofMinutes(1));
+
+    @BeforeEach
+    void setUp() {
+        sut.afterPropertiesSet();
+    }
+
+    @Test
+    @DisplayName("should connect calls not marked as reads to the primary")
+    void should_RouteUnmarkedCallsToPrimary() {
+        // when
+        var target = sut.create();
+
+        // then
+        StepVerifier.create(target)
+                .expectNext(primary)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should spread reads round-robin among the replicas")
+    void should_SpreadReadsRoundRobinAmongReplicas() {
+        // when
+        var targets = sut.create()
+                .repeat(3)
+                .contextWrite(ReadReplicas.readOf(CUSTOMER_ID));
+
+        // then
+        StepVerifier.create(targets)
+                .expectNext(firstReplica, secondReplica, firstReplica, secondReplica)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should route reads of a customer to the primary within the read-your-writes window after its balance changed")
+    void should_RouteReadsToPrimary_When_CustomerHasRecentlyWritten() {
+        // given
+        sut.onAccountBalanceChanged(new AccountBalanceChangedEvent(CUSTOMER_ID));
+
+        // when
+        var target = sut.create()
+                .contextWrite(ReadReplicas.readOf(CUSTOMER_ID));
+        var otherCustomerTarget = sut.create()
+                .contextWrite(ReadReplicas.readOf(CUSTOMER_ID + 1));
+
+        // then
+        StepVerifier.create(target)
+                .expectNext(primary)
+                .verifyComplete();
+        StepVerifier.create(otherCustomerTarget)
+                .expectNext(firstReplica)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should route reads of all customers to the replicas even after a balance of a customer changed")
+    void should_RouteReadsOfAllCustomersToReplicas_When_CustomerHasRecentlyWritten() {
+        // given
+        sut.onAccountBalanceChanged(new AccountBalanceChangedEvent(CUSTOMER_ID));
+
+        // when
+        var targets = sut.create()
+                .repeat(1)
+                .contextWrite(ReadReplicas.readOfAll());
+
+        // then
+        StepVerifier.create(targets)
+                .expectNext(firstReplica, secondReplica)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should keep routing reads to the replicas after a write when the read-your-writes window is zero")
+    void should_RouteReadsToReplicas_When_ReadYourWritesWindowIsZero() {
+        // given
+        var noWindowSut = new ReadReplicaRoutingConnectionFactory(primaryFactory, List.of(firstReplicaFactory), Duration.ZERO);
+        noWindowSut.afterPropertiesSet();
+        noWindowSut.onAccountBalanceChanged(new AccountBalanceChangedEvent(CUSTOMER_ID));
+
+        // when
+        var target = noWindowSut.create()
+                .contextWrite(ReadReplicas.readOf(CUSTOMER_ID));
+
+        // then
+        StepVerifier.create(target)
+                .expectNext(firstReplica)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should read a customer not found on the replica once more from the primary")
+    void should_ReadFromPrimary_When_CustomerNotFoundOnReplica() {
+        // given
+        List<Boolean> markedReads = new ArrayList<>();
+
+        // when
+        var customer = ReadReplicas.readOfExisting(CUSTOMER_ID, () -> Mono.deferContextual(context -> {
+            markedReads.add(context.hasKey(ReadReplicas.CUSTOMER_ID_KEY));
+            return Mono.<String>empty();
+        }));
+
+        // then
+        StepVerifier.create(customer)
+                .verifyComplete();
+        assertThat(markedReads).containsExactly(true, false);
+    }
+
+    private static ConnectionFactory connectionFactoryOf(Connection connection) {
+        ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+        doReturn(Mono.just(connection)).when(connectionFactory).create();
+        return connectionFactory;
+    }
+}
@@ -0,0 +1,46 @@
+package pl.codehouse.nn.bank;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class SerializedCommandTest {
+
+    private final StripedCommandExecutor executor = new StripedCommandExecutor(new CommandExecutorProperties(16, 4));
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("should execute the delegate one at a time for contexts sharing the same key")
+    void should_executeDelegateOneAtATime_When_ContextsShareKey() {
+        // given
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        Command<Integer, Integer> delegate = context -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                .then(Mono.delay(Duration.ofMillis(5)))
+                .then(Mono.fromRunnable(running::decrementAndGet))
+                .thenReturn(ExecutionResult.success(context));
+        var sut = new SerializedCommand<>(delegate, executor, context -> 1000L);
+
+        // when
+        var results = Flux.range(0, 20)
+                .flatMap(sut::execute)
+                .collectList();
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(values -> assertThat(values).hasSize(20).allMatch(ExecutionResult::isSuccess))
+                .verifyComplete();
+        assertThat(maxRunning.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,82 @@
+package pl.codehouse.nn.bank;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class StripedCommandExecutorTest {
+
+    private final StripedCommandExecutor sut = new StripedCommandExecutor(new CommandExecutorProperties(16, 4));
+
+    @AfterEach
+    void tearDown() {
+        sut.shutdown();
+    }
+
+    @Test
+    @DisplayName("should run tasks of the same key one at a time")
+    void should_runTasksOfSameKeyOneAtATime() {
+        // given
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+
+        // when
+        var results = Flux.range(0, 20)
+                .flatMap(i -> sut.submit(1000L, () -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                        .then(Mono.delay(Duration.ofMillis(5)))
+                        .then(Mono.fromRunnable(running::decrementAndGet))
+                        .thenReturn(i)))
+                .collectList();
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(values -> assertThat(values).hasSize(20))
+                .verifyComplete();
+        assertThat(maxRunning.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should run tasks of different keys in parallel")
+    void should_runTasksOfDifferentKeysInParallel() {
+        // given
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+
+        // when
+        var results = Flux.range(0, 4)
+                .flatMap(customerId -> sut.submit(customerId, () -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+                        .then(Mono.delay(Duration.ofMillis(100)))
+                        .doFinally(signal -> running.decrementAndGet())
+                        .thenReturn(customerId)))
+                .collectList();
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(values -> assertThat(values).containsExactlyInAnyOrder(0, 1, 2, 3))
+                .verifyComplete();
+        assertThat(maxRunning.get()).isGreaterThan(1);
+    }
+
+    @Test
+    @DisplayName("should start next task of the key when previous one failed")
+    void should_startNextTask_When_PreviousOneFailed() {
+        // when
+        var failed = sut.<Integer>submit(1000L, () -> Mono.error(new IllegalStateException("failed")));
+        var next = sut.submit(1000L, () -> Mono.just(42));
+
+        // then
+        StepVerifier.create(failed)
+                .expectErrorMessage("failed")
+                .verify();
+        StepVerifier.create(next)
+                .expectNext(42)
+                .verifyComplete();
+    }
+}
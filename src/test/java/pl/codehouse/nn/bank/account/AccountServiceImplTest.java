@@ -4,15 +4,22 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -23,9 +30,30 @@ class AccountServiceImplTest {
     @Mock
     private CurrencyAccountRepository repository;
 
+    @Mock
+    private AccountLedgerRepository ledgerRepository;
+
+    @Mock
+    private BalanceUpdater balanceUpdater;
+
+    @Mock
+    private CurrencyHoldingsRepository holdingsRepository;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private AccountServiceImpl sut;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(params -> params.getArgument(0));
+        lenient().when(holdingsRepository.addOpeningBalances(anyList())).thenReturn(Mono.empty());
+    }
+
     @Test
     @DisplayName("should save new main account with proper balance")
     void should_SaveNewMainAccountWithProperBalance() {
@@ -53,6 +81,26 @@ class AccountServiceImplTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("should add opening balances of new accounts to currency holdings")
+    void should_AddOpeningBalancesOfNewAccountsToCurrencyHoldings() {
+        // given
+        var customerId = 1000L;
+        NewAccountsRequest request = new NewAccountsRequest(customerId, BigDecimal.valueOf(97.98), Currency.PLN, List.of(Currency.USD));
+        given(repository.saveAll(anyList())).willAnswer(params -> Flux.fromIterable(params.getArgument(0)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> createdAccountsMono = sut.createNewAccounts(request);
+
+        // then
+        StepVerifier.create(createdAccountsMono)
+                .expectNextCount(1)
+                .verifyComplete();
+        then(holdingsRepository).should().addOpeningBalances(List.of(
+                new CurrencyAccount(new CurrencyAccountPk(customerId, Currency.PLN), Money.ofMinor(9798, Currency.PLN), true),
+                new CurrencyAccount(new CurrencyAccountPk(customerId, Currency.USD), Money.zero(Currency.USD), false)));
+    }
+
     @Test
     @DisplayName("should create additional accounts when additionalCurrencies are not empty")
     void should_CreateAdditionalAccounts_When_AdditionalCurrenciesAreEmpty() {
@@ -76,15 +124,72 @@ class AccountServiceImplTest {
                                         .hasFieldOrPropertyWithValue("currency", mainAccountCurrency)
                                         .hasFieldOrPropertyWithValue("isMainAccount", true);
                                 assertThat(accounts.get(1))
-                                        .hasFieldOrPropertyWithValue("amount", BigDecimal.ZERO)
+                                        .hasFieldOrPropertyWithValue("amount", new BigDecimal("0.00"))
                                         .hasFieldOrPropertyWithValue("currency", Currency.USD)
                                         .hasFieldOrPropertyWithValue("isMainAccount", false);
                                 assertThat(accounts.get(2))
-                                        .hasFieldOrPropertyWithValue("amount", BigDecimal.ZERO)
+                                        .hasFieldOrPropertyWithValue("amount", new BigDecimal("0.00"))
                                         .hasFieldOrPropertyWithValue("currency", Currency.EUR)
                                         .hasFieldOrPropertyWithValue("isMainAccount", false);
                             }
                 )
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("should update single account with balance updater")
+    void should_UpdateSingleAccount_WithBalanceUpdater() {
+        // given
+        var customerId = 1000L;
+        var updatedAccount = new CurrencyAccountDto(Currency.USD, BigDecimal.ONE, false);
+        var debit = Money.ofMinor(-1000, Currency.USD);
+        given(balanceUpdater.update(customerId, Map.of(Currency.USD, debit))).willReturn(Mono.just(List.of(updatedAccount)));
+
+        // when
+        Mono<CurrencyAccountDto> updatedAccountMono = sut.updateAmountFor(customerId, debit);
+
+        // then
+        StepVerifier.create(updatedAccountMono)
+                .expectNext(updatedAccount)
+                .verifyComplete();
+        then(eventPublisher).should().publishEvent(new AccountBalanceChangedEvent(customerId));
+    }
+
+    @Test
+    @DisplayName("should not publish balance changed event when update fails")
+    void should_NotPublishBalanceChangedEvent_When_UpdateFails() {
+        // given
+        var customerId = 1000L;
+        var amountChanges = Map.of(Currency.USD, Money.ofMinor(-1000, Currency.USD), Currency.PLN, Money.ofMinor(4166, Currency.PLN));
+        given(balanceUpdater.update(customerId, amountChanges)).willReturn(Mono.error(new InsufficientFundsException(Currency.USD)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.updateAmountsFor(customerId, amountChanges);
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    @DisplayName("should read balances from snapshot plus ledger tail when stored in ledger")
+    void should_ReadBalancesFromLedger_When_StoredInLedger() {
+        // given
+        var customerId = 1000L;
+        var properties = new AccountProperties(AccountProperties.Storage.LEDGER, null, null, null);
+        var ledgerSut = new AccountServiceImpl(repository, ledgerRepository, balanceUpdater, holdingsRepository, transactionalOperator, properties, eventPublisher);
+        given(ledgerRepository.findBalances(customerId)).willReturn(Flux.just(
+                new CurrencyAccount(new CurrencyAccountPk(customerId, Currency.PLN), Money.ofMinor(9000, Currency.PLN), true)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> accountsMono = ledgerSut.findAccountsFor(customerId);
+
+        // then
+        StepVerifier.create(accountsMono)
+                .expectNext(List.of(new CurrencyAccountDto(Currency.PLN, new BigDecimal("90.00"), true)))
+                .verifyComplete();
+        verifyNoInteractions(repository);
+    }
+}
@@ -0,0 +1,427 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.ReactiveTransaction;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import pl.codehouse.nn.bank.account.AccountProperties.Concurrency;
+import pl.codehouse.nn.bank.account.AccountProperties.ConcurrencyMode;
+import pl.codehouse.nn.bank.account.AccountProperties.Holdings;
+import pl.codehouse.nn.bank.account.AccountProperties.Ledger;
+import pl.codehouse.nn.bank.account.AccountProperties.Storage;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceUpdaterTest {
+    private static final long CUSTOMER_ID = 1000L;
+
+    @Mock
+    private CurrencyAccountRepository repository;
+
+    @Mock
+    private AccountLedgerRepository ledgerRepository;
+
+    @Mock
+    private CurrencyHoldingsRepository holdingsRepository;
+
+    @Mock
+    private ReactiveTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getReactiveTransaction(any())).thenReturn(Mono.just(mock(ReactiveTransaction.class)));
+        lenient().when(transactionManager.commit(any())).thenReturn(Mono.empty());
+        lenient().when(transactionManager.rollback(any())).thenReturn(Mono.empty());
+        lenient().when(holdingsRepository.add(anyLong(), any())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("should update all accounts in currency order within a single transaction")
+    void should_UpdateAllAccountsInCurrencyOrder_WithinSingleTransaction() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.ATOMIC);
+        given(repository.updateAmountBy(any(), any())).willAnswer(params -> {
+            CurrencyAccountPk id = params.getArgument(0);
+            return Mono.just(new CurrencyAccountDto(id.currency(), params.<Money>getArgument(1).toBigDecimal(), false));
+        });
+        Map<Currency, Money> amountChanges = new LinkedHashMap<>();
+        amountChanges.put(Currency.EUR, money("2.34", Currency.EUR));
+        amountChanges.put(Currency.PLN, money("-10", Currency.PLN));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, amountChanges);
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .assertNext(accounts -> assertThat(accounts.stream().map(CurrencyAccountDto::currency).toList())
+                        .isEqualTo(List.of(Currency.PLN, Currency.EUR)))
+                .verifyComplete();
+
+        // and
+        InOrder inOrder = inOrder(repository, transactionManager);
+        inOrder.verify(transactionManager).getReactiveTransaction(any());
+        inOrder.verify(repository).updateAmountBy(new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN), money("-10", Currency.PLN));
+        inOrder.verify(repository).updateAmountBy(new CurrencyAccountPk(CUSTOMER_ID, Currency.EUR), money("2.34", Currency.EUR));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("should add the changes to the currency holdings within the transaction of the update")
+    void should_AddChangesToCurrencyHoldings_WithinTransactionOfUpdate() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.ATOMIC);
+        given(repository.updateAmountBy(any(), any())).willAnswer(params -> {
+            CurrencyAccountPk id = params.getArgument(0);
+            return Mono.just(new CurrencyAccountDto(id.currency(), params.<Money>getArgument(1).toBigDecimal(), false));
+        });
+        var amountChanges = Map.of(Currency.PLN, money("-10", Currency.PLN), Currency.EUR, money("2.34", Currency.EUR));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, amountChanges);
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectNextCount(1)
+                .verifyComplete();
+        InOrder inOrder = inOrder(repository, holdingsRepository, transactionManager);
+        inOrder.verify(repository, times(2)).updateAmountBy(any(), any());
+        inOrder.verify(holdingsRepository).add(CUSTOMER_ID, amountChanges);
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("should not change the currency holdings when the update is rejected")
+    void should_NotChangeCurrencyHoldings_When_UpdateIsRejected() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.ATOMIC);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.USD);
+        given(repository.updateAmountBy(id, money("-10", Currency.USD))).willReturn(Mono.empty());
+        given(repository.findById(id)).willReturn(Mono.just(new CurrencyAccount(id, money("1", Currency.USD), false)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.USD, money("-10", Currency.USD)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        verify(holdingsRepository, never()).add(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("should fail with insufficient funds when debit would make the balance negative")
+    void should_FailWithInsufficientFunds_When_DebitWouldMakeBalanceNegative() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.ATOMIC);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.USD);
+        given(repository.updateAmountBy(id, money("-10", Currency.USD))).willReturn(Mono.empty());
+        given(repository.findById(id)).willReturn(Mono.just(new CurrencyAccount(id, money("1", Currency.USD), false)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.USD, money("-10", Currency.USD)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(InsufficientFundsException.class)
+                        .hasMessageContaining("Not enough amount for exchanging from USD currency"))
+                .verify();
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    @DisplayName("should fail with currency account not found when customer does not have account of given currency")
+    void should_FailWithCurrencyAccountNotFound_When_AccountDoesNotExist() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.ATOMIC);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.USD);
+        given(repository.updateAmountBy(id, money("10", Currency.USD))).willReturn(Mono.empty());
+        given(repository.findById(id)).willReturn(Mono.empty());
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.USD, money("10", Currency.USD)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectError(CurrencyAccountNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("should retry whole transaction when optimistic compare-and-set loses to concurrent update")
+    void should_RetryWholeTransaction_When_OptimisticCompareAndSetConflicts() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.OPTIMISTIC);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN);
+        var staleBalance = new VersionedBalance(id, money("100.00", Currency.PLN), 1);
+        var currentBalance = new VersionedBalance(id, money("90.00", Currency.PLN), 2);
+        given(repository.findBalance(id)).willReturn(Mono.just(staleBalance), Mono.just(currentBalance));
+        given(repository.compareAndSetAmount(staleBalance, money("90.00", Currency.PLN))).willReturn(Mono.empty());
+        given(repository.compareAndSetAmount(currentBalance, money("80.00", Currency.PLN)))
+                .willReturn(Mono.just(new CurrencyAccountDto(Currency.PLN, new BigDecimal("80.00"), true)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.PLN, money("-10", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .assertNext(accounts -> assertThat(accounts.get(0).amount()).isEqualByComparingTo("80.00"))
+                .verifyComplete();
+        verify(transactionManager).rollback(any());
+        verify(transactionManager).commit(any());
+        assertThat(meterRegistry.get("accounts.balance.update.conflicts").tag("mode", "optimistic").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("accounts.balance.update.retries").tag("mode", "optimistic").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should fail with insufficient funds without writing when optimistic read balance is too low")
+    void should_FailWithInsufficientFunds_When_OptimisticReadBalanceIsTooLow() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.OPTIMISTIC);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN);
+        given(repository.findBalance(id)).willReturn(Mono.just(new VersionedBalance(id, money("1", Currency.PLN), 3)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.PLN, money("-10", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        verify(repository, never()).compareAndSetAmount(any(), any());
+    }
+
+    @Test
+    @DisplayName("should lock all accounts before writing when pessimistic")
+    void should_LockAllAccountsBeforeWriting_When_Pessimistic() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.PESSIMISTIC);
+        var plnBalance = new VersionedBalance(new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN), money("100.00", Currency.PLN), 0);
+        var eurBalance = new VersionedBalance(new CurrencyAccountPk(CUSTOMER_ID, Currency.EUR), Money.zero(Currency.EUR), 0);
+        given(repository.lockBalances(CUSTOMER_ID, Set.of(Currency.PLN, Currency.EUR))).willReturn(Flux.just(eurBalance, plnBalance));
+        given(repository.compareAndSetAmount(any(), any())).willAnswer(params -> {
+            VersionedBalance balance = params.getArgument(0);
+            return Mono.just(new CurrencyAccountDto(balance.id().currency(), params.<Money>getArgument(1).toBigDecimal(), false));
+        });
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(
+                Currency.EUR, money("2.34", Currency.EUR),
+                Currency.PLN, money("-10", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .assertNext(accounts -> assertThat(accounts).containsExactly(
+                        new CurrencyAccountDto(Currency.PLN, new BigDecimal("90.00"), false),
+                        new CurrencyAccountDto(Currency.EUR, new BigDecimal("2.34"), false)))
+                .verifyComplete();
+
+        // and
+        InOrder inOrder = inOrder(repository);
+        inOrder.verify(repository).lockBalances(any(Long.class), any());
+        inOrder.verify(repository).compareAndSetAmount(plnBalance, money("90.00", Currency.PLN));
+        inOrder.verify(repository).compareAndSetAmount(eurBalance, money("2.34", Currency.EUR));
+    }
+
+    @Test
+    @DisplayName("should run serializable transaction and retry on serialization failure")
+    void should_RunSerializableTransaction_And_RetryOnSerializationFailure() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.SERIALIZABLE);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN);
+        var balance = new VersionedBalance(id, money("100.00", Currency.PLN), 0);
+        given(repository.findBalance(id))
+                .willReturn(Mono.error(new PessimisticLockingFailureException("could not serialize access")), Mono.just(balance));
+        given(repository.compareAndSetAmount(balance, money("90.00", Currency.PLN)))
+                .willReturn(Mono.just(new CurrencyAccountDto(Currency.PLN, new BigDecimal("90.00"), true)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.PLN, money("-10", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectNextCount(1)
+                .verifyComplete();
+        ArgumentCaptor<TransactionDefinition> definition = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(2)).getReactiveTransaction(definition.capture());
+        assertThat(definition.getValue().getIsolationLevel()).isEqualTo(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        assertThat(meterRegistry.get("accounts.balance.update.retries").tag("mode", "serializable").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should propagate conflict when retries are exhausted")
+    void should_PropagateConflict_When_RetriesAreExhausted() {
+        // given
+        var sut = balanceUpdater(ConcurrencyMode.OPTIMISTIC);
+        var id = new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN);
+        var balance = new VersionedBalance(id, money("100.00", Currency.PLN), 0);
+        given(repository.findBalance(id)).willReturn(Mono.just(balance));
+        given(repository.compareAndSetAmount(balance, money("90.00", Currency.PLN))).willReturn(Mono.empty());
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(Currency.PLN, money("-10", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+        assertThat(meterRegistry.get("accounts.balance.update.conflicts").tag("mode", "optimistic").counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get("accounts.balance.update.retries").tag("mode", "optimistic").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should append ledger entries of all legs while holding customer lock when stored in ledger")
+    void should_AppendLedgerEntriesOfAllLegs_WhileHoldingCustomerLock_When_StoredInLedger() {
+        // given
+        var sut = balanceUpdater(Storage.LEDGER, ConcurrencyMode.ATOMIC);
+        given(ledgerRepository.lockCustomer(CUSTOMER_ID)).willReturn(Mono.empty());
+        given(ledgerRepository.findBalances(CUSTOMER_ID)).willReturn(Flux.just(
+                new CurrencyAccount(new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN), money("100.00", Currency.PLN), true),
+                new CurrencyAccount(new CurrencyAccountPk(CUSTOMER_ID, Currency.EUR), Money.zero(Currency.EUR), false)));
+        given(ledgerRepository.append(anyList())).willReturn(Mono.empty());
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(
+                Currency.EUR, money("2.34", Currency.EUR),
+                Currency.PLN, money("-10", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .assertNext(accounts -> assertThat(accounts).containsExactly(
+                        new CurrencyAccountDto(Currency.PLN, new BigDecimal("90.00"), true),
+                        new CurrencyAccountDto(Currency.EUR, new BigDecimal("2.34"), false)))
+                .verifyComplete();
+
+        // and
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LedgerEntry>> entries = ArgumentCaptor.forClass(List.class);
+        InOrder inOrder = inOrder(ledgerRepository);
+        inOrder.verify(ledgerRepository).lockCustomer(CUSTOMER_ID);
+        inOrder.verify(ledgerRepository).findBalances(CUSTOMER_ID);
+        inOrder.verify(ledgerRepository).append(entries.capture());
+        assertThat(entries.getValue()).extracting(LedgerEntry::amount).containsExactly(money("-10", Currency.PLN), money("2.34", Currency.EUR));
+        assertThat(entries.getValue()).extracting(LedgerEntry::transactionId).containsOnly(entries.getValue().get(0).transactionId());
+        verify(repository, never()).updateAmountBy(any(), any());
+    }
+
+    @Test
+    @DisplayName("should not append any entry when one leg would overdraw the ledger balance")
+    void should_NotAppendAnyEntry_When_OneLegWouldOverdrawLedgerBalance() {
+        // given
+        var sut = balanceUpdater(Storage.LEDGER, ConcurrencyMode.ATOMIC);
+        given(ledgerRepository.lockCustomer(CUSTOMER_ID)).willReturn(Mono.empty());
+        given(ledgerRepository.findBalances(CUSTOMER_ID)).willReturn(Flux.just(
+                new CurrencyAccount(new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN), money("100.00", Currency.PLN), true),
+                new CurrencyAccount(new CurrencyAccountPk(CUSTOMER_ID, Currency.EUR), money("1", Currency.EUR), false)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, Map.of(
+                Currency.EUR, money("-10", Currency.EUR),
+                Currency.PLN, money("43.00", Currency.PLN)));
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectError(InsufficientFundsException.class)
+                .verify();
+        verify(ledgerRepository, never()).append(anyList());
+    }
+
+    @Test
+    @DisplayName("should update all accounts with single statement when stored compact")
+    void should_UpdateAllAccountsWithSingleStatement_When_StoredCompact() {
+        // given
+        var sut = balanceUpdater(Storage.COMPACT, ConcurrencyMode.PESSIMISTIC);
+        var amountChanges = Map.of(Currency.EUR, money("2.34", Currency.EUR), Currency.PLN, money("-10", Currency.PLN));
+        var updatedAccounts = List.of(
+                new CurrencyAccountDto(Currency.PLN, new BigDecimal("90.00"), true),
+                new CurrencyAccountDto(Currency.EUR, new BigDecimal("2.34"), false));
+        given(repository.updateAmountsBy(CUSTOMER_ID, amountChanges)).willReturn(Mono.just(updatedAccounts));
+
+        // when
+        Mono<List<CurrencyAccountDto>> updatedAccountsMono = sut.update(CUSTOMER_ID, amountChanges);
+
+        // then
+        StepVerifier.create(updatedAccountsMono)
+                .expectNext(updatedAccounts)
+                .verifyComplete();
+        verify(repository, never()).lockBalances(any(Long.class), any());
+        verify(repository, never()).updateAmountBy(any(), any());
+    }
+
+    @Test
+    @DisplayName("should tell which leg was rejected when compact update leaves the row untouched")
+    void should_TellWhichLegWasRejected_When_CompactUpdateLeavesRowUntouched() {
+        // given
+        var sut = balanceUpdater(Storage.COMPACT, ConcurrencyMode.ATOMIC);
+        given(repository.updateAmountsBy(any(Long.class), any())).willReturn(Mono.empty());
+        given(repository.findByCustomerId(CUSTOMER_ID)).willReturn(Flux.just(
+                new CurrencyAccount(new CurrencyAccountPk(CUSTOMER_ID, Currency.PLN), money("100.00", Currency.PLN), true),
+                new CurrencyAccount(new CurrencyAccountPk(CUSTOMER_ID, Currency.EUR), money("1", Currency.EUR), false)));
+
+        // when
+        Mono<List<CurrencyAccountDto>> overdrawingMono = sut.update(CUSTOMER_ID, Map.of(
+                Currency.EUR, money("-10", Currency.EUR),
+                Currency.PLN, money("43.00", Currency.PLN)));
+        Mono<List<CurrencyAccountDto>> missingAccountMono = sut.update(CUSTOMER_ID, Map.of(
+                Currency.PLN, money("-10", Currency.PLN),
+                Currency.USD, money("2.41", Currency.USD)));
+
+        // then
+        StepVerifier.create(overdrawingMono)
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(InsufficientFundsException.class)
+                        .hasMessageContaining("EUR"))
+                .verify();
+        StepVerifier.create(missingAccountMono)
+                .expectError(CurrencyAccountNotFoundException.class)
+                .verify();
+    }
+
+    private BalanceUpdater balanceUpdater(ConcurrencyMode mode) {
+        return balanceUpdater(Storage.ROWS, mode);
+    }
+
+    private BalanceUpdater balanceUpdater(Storage storage, ConcurrencyMode mode) {
+        var properties = new AccountProperties(storage,
+                new Concurrency(mode, 2, Duration.ofMillis(1), Duration.ofMillis(5), 0.5),
+                new Ledger(Duration.ofMinutes(1), 1),
+                new Holdings(64));
+        return new BalanceUpdater(repository, ledgerRepository, holdingsRepository, transactionManager, properties, meterRegistry);
+    }
+
+    private static Money money(String amount, Currency currency) {
+        return Money.of(new BigDecimal(amount), currency);
+    }
+}
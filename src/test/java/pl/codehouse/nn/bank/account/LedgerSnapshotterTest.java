@@ -0,0 +1,60 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+import java.time.Clock;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerSnapshotterTest {
+
+    @Mock
+    private AccountLedgerRepository ledgerRepository;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    private LedgerSnapshotter sut;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new AccountProperties(AccountProperties.Storage.LEDGER, null, new AccountProperties.Ledger(Duration.ofMinutes(1), 4), null);
+        sut = new LedgerSnapshotter(ledgerRepository, transactionalOperator, properties, taskScheduler, Clock.systemUTC());
+    }
+
+    @Test
+    @DisplayName("should continue from the newest entry already folded into a snapshot instead of scanning the whole ledger after a start")
+    void should_continueFromNewestFoldedEntry_When_FirstRunAfterStart() {
+        // given
+        given(ledgerRepository.findLastSnapshotEntryId()).willReturn(Mono.just(42L));
+        given(ledgerRepository.findTails(42L)).willReturn(Flux.empty());
+
+        // when
+        StepVerifier.create(sut.snapshot())
+                .expectNext(0L)
+                .verifyComplete();
+        StepVerifier.create(sut.snapshot())
+                .expectNext(0L)
+                .verifyComplete();
+
+        // then
+        then(ledgerRepository).should(times(1)).findLastSnapshotEntryId();
+        then(ledgerRepository).should(times(2)).findTails(42L);
+    }
+}
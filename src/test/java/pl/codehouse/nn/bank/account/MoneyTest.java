@@ -0,0 +1,113 @@
+package pl.codehouse.nn.bank.account;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class MoneyTest {
+
+    @Test
+    @DisplayName("should convert decimal amount into minor units and back with the scale of the currency")
+    void should_ConvertDecimalAmountIntoMinorUnitsAndBack() {
+        // when
+        var money = Money.of(new BigDecimal("199.9"), Currency.PLN);
+
+        // then
+        assertThat(money.minorUnits()).isEqualTo(19990);
+        assertThat(money.toBigDecimal()).isEqualTo("199.90");
+        assertThat(money).hasToString("199.90 PLN");
+    }
+
+    @Test
+    @DisplayName("should fail conversion of decimal amount with more fraction digits than the currency unless rounded")
+    void should_FailConversion_When_AmountHasMoreFractionDigitsThanCurrency() {
+        // when & then
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.005"), Currency.EUR))
+                .isInstanceOf(ArithmeticException.class);
+        assertThat(Money.of(new BigDecimal("0.005"), Currency.EUR, RoundingMode.HALF_UP)).isEqualTo(Money.ofMinor(1, Currency.EUR));
+    }
+
+    @Test
+    @DisplayName("should fail arithmetic on money of different currencies")
+    void should_FailArithmetic_When_CurrenciesDiffer() {
+        // given
+        var pln = Money.ofMinor(100, Currency.PLN);
+        var eur = Money.ofMinor(100, Currency.EUR);
+
+        // when & then
+        assertThatThrownBy(() -> pln.plus(eur))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cannot combine 1.00 PLN with 1.00 EUR");
+        assertThatThrownBy(() -> pln.compareTo(eur))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("should fail arithmetic on overflow instead of wrapping around")
+    void should_FailArithmetic_When_Overflowing() {
+        // given
+        var max = Money.ofMinor(Long.MAX_VALUE, Currency.USD);
+
+        // when & then
+        assertThatThrownBy(() -> max.plus(Money.ofMinor(1, Currency.USD)))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MIN_VALUE, Currency.USD).negate())
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @ParameterizedTest(name = "{0} x 2/3 rounded {1} = {2}")
+    @CsvSource({
+            "100, HALF_UP, 67",
+            "-100, HALF_UP, -67",
+            "100, DOWN, 66",
+            "-100, FLOOR, -67",
+            "-100, CEILING, -66",
+            "75, HALF_EVEN, 50",
+            "3, HALF_EVEN, 2",
+            "3, HALF_DOWN, 2",
+            "3, HALF_UP, 2",
+    })
+    @DisplayName("should round ratio of minor units as requested")
+    void should_RoundRatioOfMinorUnits_AsRequested(long minorUnits, RoundingMode rounding, long expected) {
+        // when
+        var result = Money.ofMinor(minorUnits, Currency.PLN).multiplyAndDivide(Currency.EUR, 2, 3, rounding);
+
+        // then
+        assertThat(result).isEqualTo(Money.ofMinor(expected, Currency.EUR));
+        assertThat(result.toBigDecimal()).isEqualTo(BigDecimal.valueOf(minorUnits * 2).divide(BigDecimal.valueOf(3), 0, rounding).movePointLeft(2));
+    }
+
+    @Test
+    @DisplayName("should round ties as requested")
+    void should_RoundTies_AsRequested() {
+        // given
+        var money = Money.ofMinor(5, Currency.PLN);
+
+        // when & then
+        assertThat(money.multiplyAndDivide(Currency.PLN, 1, 2, RoundingMode.HALF_UP)).isEqualTo(Money.ofMinor(3, Currency.PLN));
+        assertThat(money.multiplyAndDivide(Currency.PLN, 1, 2, RoundingMode.HALF_DOWN)).isEqualTo(Money.ofMinor(2, Currency.PLN));
+        assertThat(money.multiplyAndDivide(Currency.PLN, 1, 2, RoundingMode.HALF_EVEN)).isEqualTo(Money.ofMinor(2, Currency.PLN));
+        assertThat(money.multiplyAndDivide(Currency.PLN, 3, 2, RoundingMode.HALF_EVEN)).isEqualTo(Money.ofMinor(8, Currency.PLN));
+        assertThatThrownBy(() -> money.multiplyAndDivide(Currency.PLN, 1, 2, RoundingMode.UNNECESSARY))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    @DisplayName("should fall back to decimal arithmetic when product of minor units overflows")
+    void should_FallBackToDecimalArithmetic_When_ProductOverflows() {
+        // given
+        var money = Money.ofMinor(Long.MAX_VALUE / 2, Currency.USD);
+
+        // when
+        var result = money.multiplyAndDivide(Currency.USD, 4, 8, RoundingMode.HALF_UP);
+
+        // then
+        assertThat(result).isEqualTo(Money.ofMinor(Long.MAX_VALUE / 4 + 1, Currency.USD));
+    }
+}
@@ -0,0 +1,268 @@
+package pl.codehouse.nn.bank.customer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.codehouse.nn.bank.StripedCommandExecutor;
+import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.InsufficientFundsException;
+import pl.codehouse.nn.bank.account.Money;
+import pl.codehouse.nn.bank.exchange.rates.ExchangeRateDto;
+import pl.codehouse.nn.bank.exchange.rates.ExchangeRatesService;
+import pl.codehouse.nn.bank.exchange.rates.RatesSnapshot;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class BatchExchangeCommandTest {
+    private static final LocalDate RATES_DATE = LocalDate.parse("2024-11-29");
+    private static final Instant FETCHED_AT = Instant.parse("2024-11-29T12:00:00Z");
+    private static final long CUSTOMER_ID = 1000L;
+    private static final long OTHER_CUSTOMER_ID = 1001L;
+
+    @Mock
+    private CustomerRepository repository;
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private ExchangeRatesService exchangeRatesService;
+
+    @Mock
+    private ExchangeQuoteStore quoteStore;
+
+    @Mock
+    private CustomerCache customerCache;
+
+    @Mock
+    private StripedCommandExecutor commandExecutor;
+
+    private BatchExchangeCommand sut;
+
+    @BeforeEach
+    void setUp() {
+        var accounts = List.of(
+                new CurrencyAccountDto(Currency.PLN, BigDecimal.TEN, true),
+                new CurrencyAccountDto(Currency.EUR, BigDecimal.TEN, false));
+        lenient().when(repository.findWithAccounts(CUSTOMER_ID)).thenReturn(Mono.just(new CustomerDto(CUSTOMER_ID, "Bob", "Johnson", accounts)));
+        lenient().when(repository.findWithAccounts(OTHER_CUSTOMER_ID)).thenReturn(Mono.just(new CustomerDto(OTHER_CUSTOMER_ID, "Ann", "Smith", accounts)));
+        lenient().when(accountService.updateAmountsFor(anyLong(), anyMap())).thenReturn(Mono.just(accounts));
+        lenient().when(exchangeRatesService.fetchRatesSnapshot()).thenReturn(Mono.just(ratesSnapshot()));
+        lenient().when(commandExecutor.submit(any(), any())).thenAnswer(params -> params.<Supplier<Mono<?>>>getArgument(1).get());
+        sut = new BatchExchangeCommand(repository, accountService, exchangeRatesService, quoteStore, customerCache,
+                commandExecutor, new ExchangeBatchProperties(100, Duration.ofSeconds(1), 4, Duration.ofMinutes(1)));
+    }
+
+    @Test
+    @DisplayName("should apply the net changes of all exchanges of a customer with a single update using a single rates snapshot")
+    void should_ApplyNetChangesOfCustomerWithSingleUpdate() {
+        // given
+        var items = Flux.just(
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("2.00"))),
+                new BatchExchangeItem(OTHER_CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("4.00"))),
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.EUR, Currency.PLN, new BigDecimal("0.25"))));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results.collectMap(BatchExchangeResult::line, BatchExchangeResult::customerId))
+                .expectNext(Map.of(1L, CUSTOMER_ID, 2L, OTHER_CUSTOMER_ID, 3L, CUSTOMER_ID))
+                .verifyComplete();
+        then(exchangeRatesService).should(times(1)).fetchRatesSnapshot();
+        then(accountService).should(times(1)).updateAmountsFor(CUSTOMER_ID, Map.of(
+                Currency.PLN, Money.ofMinor(-100, Currency.PLN),
+                Currency.EUR, Money.ofMinor(25, Currency.EUR)));
+        then(accountService).should(times(1)).updateAmountsFor(OTHER_CUSTOMER_ID, Map.of(
+                Currency.PLN, Money.ofMinor(-400, Currency.PLN),
+                Currency.EUR, Money.ofMinor(100, Currency.EUR)));
+    }
+
+    @Test
+    @DisplayName("should check every exchange against the balances left by the previous exchanges of the customer")
+    void should_RejectExchange_When_PreviousExchangesSpentTheBalance() {
+        // given
+        var items = Flux.just(
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("6.00"))),
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("6.00"))),
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.USD, new BigDecimal("1.00"))));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isNull())
+                .assertNext(result -> assertThat(result.error()).contains("Not enough amount"))
+                .assertNext(result -> assertThat(result.error()).contains("USD"))
+                .verifyComplete();
+        then(accountService).should(times(1)).updateAmountsFor(eq(CUSTOMER_ID),
+                argThat(changes -> changes.get(Currency.PLN).equals(Money.ofMinor(-600, Currency.PLN))));
+    }
+
+    @Test
+    @DisplayName("should reject an exchange of an amount with more fraction digits than minor units instead of rounding it")
+    void should_RejectExchange_When_AmountHasMoreThanTwoFractionDigits() {
+        // given
+        var items = Flux.just(
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("2.005"))),
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("2.000"))));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isEqualTo("amount must not have more than 2 fraction digits"))
+                .assertNext(result -> assertThat(result.error()).isNull())
+                .verifyComplete();
+        then(accountService).should(times(1)).updateAmountsFor(CUSTOMER_ID, Map.of(
+                Currency.PLN, Money.ofMinor(-200, Currency.PLN),
+                Currency.EUR, Money.ofMinor(50, Currency.EUR)));
+    }
+
+    @Test
+    @DisplayName("should put back the quotes of exchanges rejected without changing the balances")
+    void should_PutBackQuotes_When_ExchangesAreRejected() {
+        // given
+        var spentQuote = quote(new BigDecimal("6.00"));
+        var overdrawingQuote = quote(new BigDecimal("6.00"));
+        given(quoteStore.take(CUSTOMER_ID, spentQuote.quoteId())).willReturn(Optional.of(spentQuote));
+        given(quoteStore.take(CUSTOMER_ID, overdrawingQuote.quoteId())).willReturn(Optional.of(overdrawingQuote));
+        given(accountService.updateAmountsFor(anyLong(), anyMap())).willReturn(Mono.error(new InsufficientFundsException(Currency.PLN)));
+        var items = Flux.just(
+                new BatchExchangeItem(CUSTOMER_ID, ExchangeRequest.forQuote(spentQuote.quoteId())),
+                new BatchExchangeItem(CUSTOMER_ID, ExchangeRequest.forQuote(overdrawingQuote.quoteId())));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isEqualTo("Not enough amount for exchanging from PLN currency"))
+                .assertNext(result -> assertThat(result.error()).isEqualTo("Not enough amount for exchanging from PLN currency"))
+                .verifyComplete();
+        then(quoteStore).should().putBack(overdrawingQuote);
+        then(quoteStore).should().putBack(spentQuote);
+    }
+
+    @Test
+    @DisplayName("should keep the quotes consumed when the update fails after the balances may have changed")
+    void should_KeepQuotesConsumed_When_UpdateFailsAfterBalancesMayHaveChanged() {
+        // given
+        var quote = quote(new BigDecimal("6.00"));
+        given(quoteStore.take(CUSTOMER_ID, quote.quoteId())).willReturn(Optional.of(quote));
+        given(accountService.updateAmountsFor(anyLong(), anyMap())).willReturn(Mono.error(new IllegalStateException("Commit timed out")));
+        var items = Flux.just(new BatchExchangeItem(CUSTOMER_ID, ExchangeRequest.forQuote(quote.quoteId())));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isEqualTo("Commit timed out"))
+                .verifyComplete();
+        then(quoteStore).should(never()).putBack(any());
+    }
+
+    @Test
+    @DisplayName("should fetch the rates again for the following batches when fetching them fails")
+    void should_FetchRatesAgain_When_FetchingThemFails() {
+        // given
+        given(exchangeRatesService.fetchRatesSnapshot())
+                .willReturn(Mono.error(new IllegalStateException("NBP unavailable")), Mono.just(ratesSnapshot()));
+        var command = new BatchExchangeCommand(repository, accountService, exchangeRatesService, quoteStore, customerCache,
+                commandExecutor, new ExchangeBatchProperties(1, Duration.ofSeconds(1), 4, Duration.ofMinutes(1)));
+        var items = Flux.just(
+                new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("2.00"))),
+                new BatchExchangeItem(OTHER_CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("2.00"))));
+
+        // when
+        var results = command.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isEqualTo("NBP unavailable"))
+                .assertNext(result -> assertThat(result.error()).isNull())
+                .verifyComplete();
+        then(exchangeRatesService).should(times(2)).fetchRatesSnapshot();
+    }
+
+    @Test
+    @DisplayName("should reject the exchanges of a customer without entering its stripe when fetching the rates fails")
+    void should_NotEnterStripe_When_FetchingRatesFails() {
+        // given
+        given(exchangeRatesService.fetchRatesSnapshot()).willReturn(Mono.error(new IllegalStateException("NBP unavailable")));
+        var items = Flux.just(new BatchExchangeItem(CUSTOMER_ID, new ExchangeRequest(Currency.PLN, Currency.EUR, new BigDecimal("2.00"))));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isEqualTo("NBP unavailable"))
+                .verifyComplete();
+        then(commandExecutor).shouldHaveNoInteractions();
+        then(repository).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("should reject all exchanges of a customer that does not exist without fetching the rates for quotes only")
+    void should_RejectAllExchanges_When_CustomerDoesNotExist() {
+        // given
+        given(repository.findWithAccounts(CUSTOMER_ID)).willReturn(Mono.empty());
+        var items = Flux.just(
+                new BatchExchangeItem(CUSTOMER_ID, ExchangeRequest.forQuote(UUID.randomUUID())),
+                new BatchExchangeItem(CUSTOMER_ID, ExchangeRequest.forQuote(UUID.randomUUID())));
+
+        // when
+        var results = sut.execute(items);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isEqualTo("Customer with id 1000 not found."))
+                .assertNext(result -> assertThat(result.customer()).isNull())
+                .verifyComplete();
+        then(exchangeRatesService).should(never()).fetchRatesSnapshot();
+        then(accountService).should(never()).updateAmountsFor(anyLong(), anyMap());
+    }
+
+    private static RatesSnapshot ratesSnapshot() {
+        return RatesSnapshot.of(null, List.of(
+                new ExchangeRateDto(Currency.EUR, new BigDecimal("4.0000"), RATES_DATE, FETCHED_AT),
+                new ExchangeRateDto(Currency.USD, new BigDecimal("4.1658"), RATES_DATE, FETCHED_AT)));
+    }
+
+    private static ExchangeQuote quote(BigDecimal fromAmount) {
+        return new ExchangeQuote(UUID.randomUUID(), CUSTOMER_ID, Currency.PLN, Currency.EUR, new BigDecimal("0.25"),
+                fromAmount, fromAmount.divide(BigDecimal.valueOf(4)), RATES_DATE, FETCHED_AT.plusSeconds(30));
+    }
+}
@@ -0,0 +1,177 @@
+package pl.codehouse.nn.bank.customer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import jakarta.validation.Validation;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.ReactiveTransaction;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import pl.codehouse.nn.bank.account.AccountService;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import pl.codehouse.nn.bank.account.NewAccountsRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class BulkCreateCustomersCommandTest {
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    @Mock
+    private AccountService accountService;
+
+    @Mock
+    private ReactiveTransactionManager transactionManager;
+
+    private final AtomicLong nextCustomerId = new AtomicLong(1000L);
+
+    private BulkCreateCustomersCommand sut;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionManager.getReactiveTransaction(any())).thenReturn(Mono.just(mock(ReactiveTransaction.class)));
+        lenient().when(transactionManager.commit(any())).thenReturn(Mono.empty());
+        lenient().when(transactionManager.rollback(any())).thenReturn(Mono.empty());
+        lenient().when(customerRepository.insertAll(anyList())).thenAnswer(params -> Mono.just(params.<List<Customer>>getArgument(0).stream()
+                .map(customer -> new Customer(nextCustomerId.getAndIncrement(), customer.firstName(), customer.lastName()))
+                .toList()));
+        lenient().when(accountService.createNewAccountsForAll(anyList())).thenAnswer(params -> Mono.just(params.<List<NewAccountsRequest>>getArgument(0).stream()
+                .collect(Collectors.toMap(NewAccountsRequest::customerId,
+                        request -> List.of(new CurrencyAccountDto(request.mainAccountCurrency(), request.mainAccountBalance(), true))))));
+        sut = new BulkCreateCustomersCommand(
+                customerRepository,
+                accountService,
+                TransactionalOperator.create(transactionManager),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new CustomerBulkProperties(2, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    @DisplayName("should insert customers in batches and return a result per line in the order of the lines")
+    void should_InsertCustomersInBatches() {
+        // given
+        var requests = Flux.range(1, 5).map(i -> request("John" + i, BigDecimal.TEN));
+
+        // when
+        var results = sut.execute(requests);
+
+        // then
+        StepVerifier.create(results.map(BulkCustomerResult::line))
+                .expectNext(1L, 2L, 3L, 4L, 5L)
+                .verifyComplete();
+        then(customerRepository).should(times(3)).insertAll(anyList());
+        then(accountService).should(times(3)).createNewAccountsForAll(anyList());
+    }
+
+    @Test
+    @DisplayName("should default main currency and additional currencies as a single customer creation does")
+    void should_DefaultCurrenciesAsSingleCustomerCreation() {
+        // given
+        var requests = Flux.just(new CreateCustomerRequest("John", "Doe", BigDecimal.TEN, null, List.of()));
+
+        // when
+        var results = sut.execute(requests);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> {
+                    assertThat(result.error()).isNull();
+                    assertThat(result.customer().accountId()).isEqualTo(1000L);
+                    assertThat(result.customer().accountBalance())
+                            .containsExactly(new CurrencyAccountDto(Currency.PLN, BigDecimal.TEN, true));
+                })
+                .verifyComplete();
+        then(accountService).should().createNewAccountsForAll(List.of(
+                new NewAccountsRequest(1000L, BigDecimal.TEN, Currency.PLN, List.of(Currency.USD, Currency.EUR))));
+    }
+
+    @Test
+    @DisplayName("should open a single account per currency when additional currencies repeat the main currency")
+    void should_OpenSingleAccountPerCurrency_When_AdditionalCurrenciesRepeatMainCurrency() {
+        // given
+        var requests = Flux.just(
+                new CreateCustomerRequest("John", "Doe", BigDecimal.TEN, Currency.USD, List.of(Currency.USD, Currency.EUR, Currency.EUR)),
+                new CreateCustomerRequest("Jane", "Doe", BigDecimal.ONE, null, List.of(Currency.PLN)));
+
+        // when
+        var results = sut.execute(requests);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.error()).isNull())
+                .assertNext(result -> assertThat(result.error()).isNull())
+                .verifyComplete();
+        then(accountService).should().createNewAccountsForAll(List.of(
+                new NewAccountsRequest(1000L, BigDecimal.TEN, Currency.USD, List.of(Currency.EUR)),
+                new NewAccountsRequest(1001L, BigDecimal.ONE, Currency.PLN, List.of())));
+    }
+
+    @Test
+    @DisplayName("should reject invalid lines without rejecting the lines batched with them")
+    void should_RejectInvalidLines() {
+        // given
+        var requests = Flux.just(request("John", BigDecimal.TEN), request("", new BigDecimal("-1.00")));
+
+        // when
+        var results = sut.execute(requests);
+
+        // then
+        StepVerifier.create(results)
+                .assertNext(result -> assertThat(result.customer()).isNotNull())
+                .assertNext(result -> {
+                    assertThat(result.line()).isEqualTo(2L);
+                    assertThat(result.customer()).isNull();
+                    assertThat(result.error()).contains("firstName", "mainAccountBalance");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("should retry a failed batch line by line and reject only the failing lines")
+    void should_RetryFailedBatchLineByLine() {
+        // given
+        given(accountService.createNewAccountsForAll(anyList())).willAnswer(params -> {
+            List<NewAccountsRequest> accountsRequests = params.getArgument(0);
+            if (accountsRequests.stream().anyMatch(request -> request.mainAccountBalance().signum() == 0)) {
+                return Mono.error(new IllegalStateException("duplicate key"));
+            }
+            return Mono.just(accountsRequests.stream().collect(Collectors.toMap(NewAccountsRequest::customerId, request -> List.of())));
+        });
+        var requests = Flux.just(request("John", BigDecimal.TEN), request("Jane", BigDecimal.ZERO));
+
+        // when
+        var results = sut.execute(requests);
+
+        // then
+        StepVerifier.create(results.collectMap(BulkCustomerResult::line, result -> result.error() == null))
+                .expectNext(Map.of(1L, true, 2L, false))
+                .verifyComplete();
+        then(transactionManager).should(times(2)).rollback(any());
+    }
+
+    private static CreateCustomerRequest request(String firstName, BigDecimal balance) {
+        return new CreateCustomerRequest(firstName, "Doe", balance, Currency.PLN, List.of(Currency.USD));
+    }
+}
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 
 import java.math.BigDecimal;
@@ -22,7 +23,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import pl.codehouse.nn.bank.ExecutionResult;
-import pl.codehouse.nn.bank.account.AccountService;
 import pl.codehouse.nn.bank.account.Currency;
 import pl.codehouse.nn.bank.account.CurrencyAccountDto;
 import pl.codehouse.nn.bank.account.NewAccountsRequest;
@@ -36,7 +36,7 @@ class CreateCustomerCommandTest {
     private CustomerRepository customerRepository;
 
     @Mock
-    private AccountService accountService;
+    private CustomerCache customerCache;
 
     @Captor
     private ArgumentCaptor<Customer> accountArgumentCaptor;
@@ -69,8 +69,8 @@ class CreateCustomerCommandTest {
                 .map(entry -> new CurrencyAccountDto(entry.getKey(), entry.getValue(), !BigDecimal.ZERO.equals(entry.getValue())))
                 .toList();
 
-        given(customerRepository.save(any())).willReturn(Mono.just(new Customer(1000L, "John", "Doe")));
-        given(accountService.createNewAccounts(any())).willReturn(Mono.just(expectedRequestedCurrencyAccounts));
+        given(customerRepository.insertWithAccounts(any(), any()))
+                .willReturn(Mono.just(new CustomerDto(1000L, "John", "Doe", expectedRequestedCurrencyAccounts)));
 
         // when
         Mono<ExecutionResult<CustomerDto>> resultMono = createCustomerCommand.execute(request);
@@ -91,19 +91,18 @@ class CreateCustomerCommandTest {
                 .verifyComplete();
 
         // and
-        then(customerRepository).should(only()).save(accountArgumentCaptor.capture());
+        then(customerRepository).should(only()).insertWithAccounts(accountArgumentCaptor.capture(), newAccountsRequestArgumentCaptor.capture());
         assertThat(accountArgumentCaptor.getValue())
                 .hasFieldOrPropertyWithValue("accountId", 0L)
                 .hasFieldOrPropertyWithValue("firstName", "John")
                 .hasFieldOrPropertyWithValue("lastName", "Doe");
-
-        // and
-        then(accountService).should(only()).createNewAccounts(newAccountsRequestArgumentCaptor.capture());
         assertThat(newAccountsRequestArgumentCaptor.getValue())
-                .hasFieldOrPropertyWithValue("customerId", 1000L)
                 .hasFieldOrPropertyWithValue("mainAccountBalance", mainAccountBalance)
                 .hasFieldOrPropertyWithValue("mainAccountCurrency", mainAccountCurrency)
                 .hasFieldOrPropertyWithValue("additionalCurrencies", additionalCurrencyAccounts);
+
+        // and
+        then(customerCache).should(only()).put(any(CustomerDto.class));
     }
 
     @Test
@@ -122,12 +121,11 @@ class CreateCustomerCommandTest {
                 new CurrencyAccountDto(Currency.PLN, BigDecimal.valueOf(1000), true),
                 new CurrencyAccountDto(Currency.EUR, BigDecimal.ZERO, false)
         );
-        given(customerRepository.save(any())).willAnswer(invocation -> {
+        given(customerRepository.insertWithAccounts(any(), any())).willAnswer(invocation -> {
             Customer customerEntity = invocation.getArgument(0);
             var account = new Customer(1000, customerEntity.firstName(), customerEntity.lastName());
-            return Mono.just(account);
+            return Mono.just(CustomerDto.from(account, expectedCurrencyAccounts));
         });
-        given(accountService.createNewAccounts(any())).willReturn(Mono.just(expectedCurrencyAccounts));
 
         // when
         Mono<ExecutionResult<CustomerDto>> resultMono = createCustomerCommand.execute(request);
@@ -155,18 +153,14 @@ class CreateCustomerCommandTest {
                 .verifyComplete();
 
         // and
-        then(customerRepository).should(only()).save(accountArgumentCaptor.capture());
+        then(customerRepository).should(only()).insertWithAccounts(accountArgumentCaptor.capture(), newAccountsRequestArgumentCaptor.capture());
 
         assertThat(accountArgumentCaptor.getValue())
                 .hasFieldOrPropertyWithValue("accountId", 0L)
                 .hasFieldOrPropertyWithValue("firstName", "John")
                 .hasFieldOrPropertyWithValue("lastName", "Doe");
 
-        // and
-        then(accountService).should(only()).createNewAccounts(newAccountsRequestArgumentCaptor.capture());
-
         assertThat(newAccountsRequestArgumentCaptor.getValue())
-                .hasFieldOrPropertyWithValue("customerId", 1000L)
                 .hasFieldOrPropertyWithValue("mainAccountBalance", BigDecimal.valueOf(1000))
                 .hasFieldOrPropertyWithValue("mainAccountCurrency", expectedMainCurrencyAccount)
                 .hasFieldOrPropertyWithValue("additionalCurrencies", expectedRequestedAdditionalCurrencies);
@@ -187,12 +181,11 @@ class CreateCustomerCommandTest {
                 new CurrencyAccountDto(Currency.EUR, BigDecimal.ZERO, false),
                 new CurrencyAccountDto(Currency.USD, BigDecimal.ZERO, false)
         );
-        given(customerRepository.save(any())).willAnswer(invocation -> {
+        given(customerRepository.insertWithAccounts(any(), any())).willAnswer(invocation -> {
             Customer customerEntity = invocation.getArgument(0);
             var account = new Customer(1000, customerEntity.firstName(), customerEntity.lastName());
-            return Mono.just(account);
+            return Mono.just(CustomerDto.from(account, expectedCurrencyAccounts));
         });
-        given(accountService.createNewAccounts(any())).willReturn(Mono.just(expectedCurrencyAccounts));
 
         // when
         Mono<ExecutionResult<CustomerDto>> resultMono = createCustomerCommand.execute(request);
@@ -223,18 +216,14 @@ class CreateCustomerCommandTest {
                 .verifyComplete();
 
         // and
-        then(customerRepository).should(only()).save(accountArgumentCaptor.capture());
+        then(customerRepository).should(only()).insertWithAccounts(accountArgumentCaptor.capture(), newAccountsRequestArgumentCaptor.capture());
 
         assertThat(accountArgumentCaptor.getValue())
                 .hasFieldOrPropertyWithValue("accountId", 0L)
                 .hasFieldOrPropertyWithValue("firstName", "John")
                 .hasFieldOrPropertyWithValue("lastName", "Doe");
 
-        // and
-        then(accountService).should(only()).createNewAccounts(newAccountsRequestArgumentCaptor.capture());
-
         assertThat(newAccountsRequestArgumentCaptor.getValue())
-                .hasFieldOrPropertyWithValue("customerId", 1000L)
                 .hasFieldOrPropertyWithValue("mainAccountBalance", BigDecimal.valueOf(1000))
                 .hasFieldOrPropertyWithValue("mainAccountCurrency", Currency.PLN)
                 .hasFieldOrPropertyWithValue("additionalCurrencies", expectedRequestedAdditionalCurrencies);
@@ -252,8 +241,8 @@ class CreateCustomerCommandTest {
                 new CurrencyAccountDto(Currency.PLN, BigDecimal.valueOf(2000), true),
                 new CurrencyAccountDto(Currency.USD, BigDecimal.ZERO, false)
         );
-        given(customerRepository.save(any())).willReturn(Mono.just(new Customer(4000, "Bob", "Johnson")));
-        given(accountService.createNewAccounts(any())).willReturn(Mono.just(expectedCurrencyAccounts));
+        given(customerRepository.insertWithAccounts(any(), any()))
+                .willReturn(Mono.just(new CustomerDto(4000L, "Bob", "Johnson", expectedCurrencyAccounts)));
 
         // when
         Mono<ExecutionResult<CustomerDto>> resultMono = createCustomerCommand.execute(request);
@@ -281,16 +270,12 @@ class CreateCustomerCommandTest {
                 .verifyComplete();
 
         // and
-        then(customerRepository).should(only()).save(accountArgumentCaptor.capture());
+        then(customerRepository).should(only()).insertWithAccounts(accountArgumentCaptor.capture(), newAccountsRequestArgumentCaptor.capture());
         assertThat(accountArgumentCaptor.getValue())
                 .hasFieldOrPropertyWithValue("accountId", 0L)
                 .hasFieldOrPropertyWithValue("firstName", "Bob")
                 .hasFieldOrPropertyWithValue("lastName", "Johnson");
-
-        // and
-        then(accountService).should(only()).createNewAccounts(newAccountsRequestArgumentCaptor.capture());
         assertThat(newAccountsRequestArgumentCaptor.getValue())
-                .hasFieldOrPropertyWithValue("customerId", 4000L)
                 .hasFieldOrPropertyWithValue("mainAccountBalance", BigDecimal.valueOf(2000))
                 .hasFieldOrPropertyWithValue("mainAccountCurrency", Currency.PLN)
                 .hasFieldOrPropertyWithValue("additionalCurrencies", List.of(Currency.USD));
@@ -303,7 +288,7 @@ class CreateCustomerCommandTest {
         CreateCustomerRequest request = new CreateCustomerRequest(
                 "Error", "User", BigDecimal.valueOf(100), Currency.PLN, null
         );
-        given(customerRepository.save(any())).willReturn(Mono.error(new RuntimeException("Database error")));
+        given(customerRepository.insertWithAccounts(any(), any())).willReturn(Mono.error(new RuntimeException("Database error")));
 
         // when
         Mono<ExecutionResult<CustomerDto>> resultMono = createCustomerCommand.execute(request);
@@ -319,11 +304,14 @@ class CreateCustomerCommandTest {
                 .verifyComplete();
 
         // and
-        then(customerRepository).should(only()).save(accountArgumentCaptor.capture());
+        then(customerRepository).should(only()).insertWithAccounts(accountArgumentCaptor.capture(), any());
         assertThat(accountArgumentCaptor.getValue())
                 .hasFieldOrPropertyWithValue("accountId", 0L)
                 .hasFieldOrPropertyWithValue("firstName", "Error")
                 .hasFieldOrPropertyWithValue("lastName", "User");
+
+        // and
+        then(customerCache).should(never()).put(any(CustomerDto.class));
     }
 
     private static Stream<Arguments> createCustomerTestCases() {
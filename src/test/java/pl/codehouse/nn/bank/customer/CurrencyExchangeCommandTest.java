@@ -3,13 +3,26 @@ package pl.codehouse.nn.bank.customer;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,12 +35,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import pl.codehouse.nn.bank.ExecutionResult;
+import pl.codehouse.nn.bank.StripedCommandExecutor;
 import pl.codehouse.nn.bank.account.AccountService;
 import pl.codehouse.nn.bank.account.Currency;
 import pl.codehouse.nn.bank.account.CurrencyAccountDto;
 import pl.codehouse.nn.bank.account.CurrencyAccountNotFoundException;
+import pl.codehouse.nn.bank.account.InsufficientFundsException;
+import pl.codehouse.nn.bank.account.Money;
 import pl.codehouse.nn.bank.exchange.rates.ExchangeRateDto;
 import pl.codehouse.nn.bank.exchange.rates.ExchangeRatesService;
+import pl.codehouse.nn.bank.exchange.rates.RatesSnapshot;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -35,6 +52,8 @@ import reactor.test.StepVerifier;
 class CurrencyExchangeCommandTest {
     private static final BigDecimal EUR_RATE = new BigDecimal("4.2737");
     private static final BigDecimal USD_RATE = new BigDecimal("4.1658");
+    private static final LocalDate RATES_DATE = LocalDate.parse("2024-11-29");
+    private static final Instant FETCHED_AT = Instant.parse("2024-11-29T12:00:00Z");
     private final long customerId = 1000L;
     private final Customer mockCustomer = new Customer(customerId, "Bob", "Johnson");
 
@@ -47,6 +66,15 @@ class CurrencyExchangeCommandTest {
     @Mock
     private ExchangeRatesService exchangeRatesService;
 
+    @Mock
+    private ExchangeQuoteStore quoteStore;
+
+    @Mock
+    private CustomerCache customerCache;
+
+    @Mock
+    private StripedCommandExecutor commandExecutor;
+
     @InjectMocks
     private CurrencyExchangeCommand sut;
 
@@ -57,12 +85,13 @@ class CurrencyExchangeCommandTest {
                 new CurrencyAccountDto(Currency.EUR, BigDecimal.TEN, false),
                 new CurrencyAccountDto(Currency.USD, BigDecimal.TEN, false)
         );
-        lenient().when(repository.findById(customerId)).thenReturn(Mono.just(mockCustomer));
-        lenient().when(accountService.findAccountsFor(customerId)).thenReturn(Mono.just(customerAccounts));
+        lenient().when(repository.findWithAccounts(customerId)).thenReturn(Mono.just(CustomerDto.from(mockCustomer, customerAccounts)));
 
-        lenient().when(accountService.updateAmountFor(anyLong(), any(), any())).thenReturn(Mono.just(customerAccounts.getFirst()));
-        lenient().when(exchangeRatesService.fetchCurrentRatesFor(Currency.EUR)).thenReturn(Mono.just(new ExchangeRateDto(Currency.EUR, EUR_RATE)));
-        lenient().when(exchangeRatesService.fetchCurrentRatesFor(Currency.USD)).thenReturn(Mono.just(new ExchangeRateDto(Currency.USD, USD_RATE)));
+        lenient().when(accountService.updateAmountsFor(anyLong(), anyMap())).thenReturn(Mono.just(customerAccounts));
+        lenient().when(exchangeRatesService.fetchRatesSnapshot()).thenReturn(Mono.just(RatesSnapshot.of(null, List.of(
+                new ExchangeRateDto(Currency.EUR, EUR_RATE, RATES_DATE, FETCHED_AT),
+                new ExchangeRateDto(Currency.USD, USD_RATE, RATES_DATE, FETCHED_AT)))));
+        lenient().when(commandExecutor.submit(any(), any())).thenAnswer(params -> params.<Supplier<Mono<?>>>getArgument(1).get());
     }
 
     @MethodSource("toPlnCurrencyExchangeMethodSource")
@@ -81,15 +110,14 @@ class CurrencyExchangeCommandTest {
                 .verifyComplete();
 
         // and
-        then(accountService).should(times(1)).updateAmountFor(customerId, fromCurrency, exchangeToAmount.negate());
-        then(accountService).should(times(1)).updateAmountFor(customerId, Currency.PLN, expectedPlnAmountChange);
+        then(accountService).should(times(1)).updateAmountsFor(customerId, Map.of(fromCurrency, Money.of(exchangeToAmount.negate(), fromCurrency), Currency.PLN, Money.of(expectedPlnAmountChange, Currency.PLN)));
     }
 
     @Test
     @DisplayName("should not update PLN currency account when not enough amount for exchanging from USD currency")
     void shouldNotUpdateCurrencyAccount_When_NotEnoughAmountForExchangeFromUSDCurrency() {
         // given
-        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.USD, Currency.PLN, BigDecimal.valueOf(3.49)));
+        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.USD, Currency.PLN, BigDecimal.valueOf(10.01)));
 
         // when
         Mono<CustomerDto> resultMono = sut.execute(request).map(ExecutionResult::handle);
@@ -98,8 +126,10 @@ class CurrencyExchangeCommandTest {
         StepVerifier.create(resultMono)
                 .expectErrorSatisfies(error -> assertThat(error)
                         .isInstanceOf(RuntimeException.class)
-                        .hasRootCauseMessage("Not enough amount for exchanging from USD currency")
-                );
+                        .hasRootCauseInstanceOf(InsufficientFundsException.class)
+                        .hasMessageContaining("Not enough amount for exchanging from USD currency")
+                )
+                .verify();
     }
 
     @MethodSource("fromPlnCurrencyExchangeMethodSource")
@@ -119,16 +149,173 @@ class CurrencyExchangeCommandTest {
 
 
         // and
-        then(accountService).should(times(1)).updateAmountFor(customerId, Currency.PLN, exchangeToAmount.negate());
-        then(accountService).should(times(1)).updateAmountFor(customerId, toCurrency, expectedAmountChange);
+        then(accountService).should(times(1)).updateAmountsFor(customerId, Map.of(Currency.PLN, Money.of(exchangeToAmount.negate(), Currency.PLN), toCurrency, Money.of(expectedAmountChange, toCurrency)));
+    }
+
+
+    @MethodSource("crossCurrencyExchangeMethodSource")
+    @DisplayName("exchange between foreign currencies")
+    @ParameterizedTest(name = "should add {3} to {1} currency account when exchanging {2} from {0} currency")
+    void should_exchangeThroughCrossRate_When_exchangingBetweenForeignCurrencies(Currency fromCurrency, Currency toCurrency,
+                                                                                  BigDecimal exchangeAmount, BigDecimal expectedAmountChange) {
+        // given
+        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(fromCurrency, toCurrency, exchangeAmount));
+
+        // when
+        Mono<ExecutionResult<CustomerDto>> resultMono = sut.execute(request);
+
+        // then
+        StepVerifier.create(resultMono)
+                .assertNext(consumer -> assertThat(consumer.isSuccess()).isTrue())
+                .verifyComplete();
+
+        // and
+        then(accountService).should(times(1)).updateAmountsFor(customerId, Map.of(fromCurrency, Money.of(exchangeAmount.negate(), fromCurrency), toCurrency, Money.of(expectedAmountChange, toCurrency)));
+        then(exchangeRatesService).should(times(0)).fetchCurrentRatesFor(any());
+    }
+
+    @Test
+    @DisplayName("should exchange amounts locked by quote without looking up the rates")
+    void should_exchangeLockedAmounts_When_ExecutingQuote() {
+        // given
+        var quoteId = UUID.randomUUID();
+        var quote = new ExchangeQuote(quoteId, customerId, Currency.USD, Currency.EUR, new BigDecimal("0.9747525563329200"),
+                BigDecimal.TEN, new BigDecimal("9.75"), RATES_DATE, FETCHED_AT.plusSeconds(30));
+        given(quoteStore.take(customerId, quoteId)).willReturn(Optional.of(quote));
+        var request = new CustomerAwareContext<>(customerId, ExchangeRequest.forQuote(quoteId));
+
+        // when
+        Mono<ExecutionResult<CustomerDto>> resultMono = sut.execute(request);
+
+        // then
+        StepVerifier.create(resultMono)
+                .assertNext(consumer -> assertThat(consumer.isSuccess()).isTrue())
+                .verifyComplete();
+
+        // and
+        then(accountService).should(times(1)).updateAmountsFor(customerId, Map.of(Currency.USD, Money.ofMinor(-1000, Currency.USD), Currency.EUR, Money.ofMinor(975, Currency.EUR)));
+        then(exchangeRatesService).shouldHaveNoInteractions();
+        then(customerCache).should(times(1)).put(any(CustomerDto.class));
+    }
+
+    @Test
+    @DisplayName("should leave quote usable when its exchange is rejected without changing the balances")
+    void should_leaveQuoteUsable_When_ExchangeOfQuoteIsRejected() {
+        // given
+        var quoteStore = new ExchangeQuoteStore(new ExchangeQuoteProperties(Duration.ofMinutes(1), 100), Clock.fixed(FETCHED_AT, ZoneOffset.UTC));
+        var quote = new ExchangeQuote(UUID.randomUUID(), customerId, Currency.USD, Currency.EUR, new BigDecimal("0.9747525563329200"),
+                BigDecimal.TEN, new BigDecimal("9.75"), RATES_DATE, FETCHED_AT.plusSeconds(30));
+        quoteStore.save(quote);
+        given(accountService.updateAmountsFor(anyLong(), anyMap())).willReturn(Mono.error(new InsufficientFundsException(Currency.USD)));
+        var command = new CurrencyExchangeCommand(repository, accountService, exchangeRatesService, quoteStore, customerCache,
+                commandExecutor);
+
+        // when
+        Mono<ExecutionResult<CustomerDto>> resultMono = command.execute(new CustomerAwareContext<>(customerId, ExchangeRequest.forQuote(quote.quoteId())));
+
+        // then
+        StepVerifier.create(resultMono)
+                .assertNext(result -> assertThat(result.isSuccess()).isFalse())
+                .verifyComplete();
+        assertThat(quoteStore.take(customerId, quote.quoteId())).contains(quote);
+    }
+
+    @Test
+    @DisplayName("should keep quote consumed when its exchange fails after the balances may have changed")
+    void should_keepQuoteConsumed_When_ExchangeOfQuoteFailsAfterUpdate() {
+        // given
+        var quoteStore = new ExchangeQuoteStore(new ExchangeQuoteProperties(Duration.ofMinutes(1), 100), Clock.fixed(FETCHED_AT, ZoneOffset.UTC));
+        var quote = new ExchangeQuote(UUID.randomUUID(), customerId, Currency.USD, Currency.EUR, new BigDecimal("0.9747525563329200"),
+                BigDecimal.TEN, new BigDecimal("9.75"), RATES_DATE, FETCHED_AT.plusSeconds(30));
+        quoteStore.save(quote);
+        given(accountService.updateAmountsFor(anyLong(), anyMap())).willReturn(Mono.error(new IllegalStateException("Commit timed out")));
+        var command = new CurrencyExchangeCommand(repository, accountService, exchangeRatesService, quoteStore, customerCache,
+                commandExecutor);
+
+        // when
+        Mono<ExecutionResult<CustomerDto>> resultMono = command.execute(new CustomerAwareContext<>(customerId, ExchangeRequest.forQuote(quote.quoteId())));
+
+        // then
+        StepVerifier.create(resultMono)
+                .assertNext(result -> assertThat(result.isSuccess()).isFalse())
+                .verifyComplete();
+        assertThat(quoteStore.take(customerId, quote.quoteId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should fetch rates before entering the customer stripe and update balances within it")
+    void should_fetchRatesBeforeEnteringStripe_When_Exchanging() {
+        // given
+        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.EUR, Currency.PLN, BigDecimal.ONE));
+
+        // when
+        Mono<ExecutionResult<CustomerDto>> resultMono = sut.execute(request);
+
+        // then
+        StepVerifier.create(resultMono)
+                .assertNext(result -> assertThat(result.isSuccess()).isTrue())
+                .verifyComplete();
+
+        // and
+        var inOrder = inOrder(exchangeRatesService, commandExecutor, repository, accountService);
+        then(exchangeRatesService).should(inOrder).fetchRatesSnapshot();
+        then(commandExecutor).should(inOrder).submit(eq(customerId), any());
+        then(repository).should(inOrder).findWithAccounts(customerId);
+        then(accountService).should(inOrder).updateAmountsFor(anyLong(), anyMap());
     }
 
+    @Test
+    @DisplayName("should fail with quote not found exception when quote is unknown or expired")
+    void should_failWithQuoteNotFound_When_QuoteIsUnknownOrExpired() {
+        // given
+        var quoteId = UUID.randomUUID();
+        given(quoteStore.take(customerId, quoteId)).willReturn(Optional.empty());
+        var request = new CustomerAwareContext<>(customerId, ExchangeRequest.forQuote(quoteId));
+
+        // when
+        Mono<CustomerDto> resultMono = sut.execute(request).map(ExecutionResult::handle);
+
+        // then
+        StepVerifier.create(resultMono)
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .hasRootCauseInstanceOf(ExchangeQuoteNotFoundException.class)
+                )
+                .verify();
+        then(accountService).shouldHaveNoInteractions();
+    }
+
+    @Test
+    @DisplayName("should build response from updated accounts without reading customer again")
+    void should_BuildResponseFromUpdatedAccounts_WithoutReadingCustomerAgain() {
+        // given
+        var updatedAccounts = List.of(
+                new CurrencyAccountDto(Currency.PLN, new BigDecimal("52.74"), true),
+                new CurrencyAccountDto(Currency.EUR, BigDecimal.ZERO, false)
+        );
+        given(accountService.updateAmountsFor(anyLong(), anyMap())).willReturn(Mono.just(updatedAccounts));
+        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.EUR, Currency.PLN, BigDecimal.TEN));
+
+        // when
+        Mono<CustomerDto> resultMono = sut.execute(request).map(ExecutionResult::handle);
+
+        // then
+        StepVerifier.create(resultMono)
+                .assertNext(customer -> assertThat(customer.accountBalance()).containsExactly(
+                        new CurrencyAccountDto(Currency.PLN, new BigDecimal("52.74"), true),
+                        new CurrencyAccountDto(Currency.EUR, BigDecimal.ZERO, false),
+                        new CurrencyAccountDto(Currency.USD, BigDecimal.TEN, false)))
+                .verifyComplete();
+
+        // and
+        then(repository).should(times(1)).findWithAccounts(customerId);
+        then(accountService).should(never()).findAccountsFor(anyLong());
+    }
 
     @Test
     @DisplayName("should throw not found customer exception when customer id is not known")
     void should_throwNotFoundCustomer_When_CustomerIdIsUnknown() {
         // given
-        given(repository.findById(customerId)).willReturn(Mono.empty());
+        given(repository.findWithAccounts(customerId)).willReturn(Mono.empty());
         var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.USD, Currency.PLN, BigDecimal.valueOf(3.49)));
 
         // when
@@ -137,9 +324,10 @@ class CurrencyExchangeCommandTest {
         // then
         StepVerifier.create(resultMono)
                 .expectErrorSatisfies(error -> assertThat(error)
-                        .isInstanceOf(CustomerNotFoundException.class)
-                        .hasRootCauseMessage("Customer with id %s not found.".formatted(customerId))
-                );
+                        .hasRootCauseInstanceOf(CustomerNotFoundException.class)
+                        .hasMessageContaining("Customer with id %s not found.".formatted(customerId))
+                )
+                .verify();
     }
 
 
@@ -151,9 +339,9 @@ class CurrencyExchangeCommandTest {
                 new CurrencyAccountDto(Currency.PLN, BigDecimal.TEN, true),
                 new CurrencyAccountDto(Currency.EUR, BigDecimal.TEN, false)
         );
-        given(accountService.findAccountsFor(customerId)).willReturn(Mono.just(customerAccounts));
+        given(repository.findWithAccounts(customerId)).willReturn(Mono.just(CustomerDto.from(mockCustomer, customerAccounts)));
 
-        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.PLN, Currency.USD, BigDecimal.valueOf(3.49)));
+        var request = new CustomerAwareContext<ExchangeRequest>(customerId, new ExchangeRequest(Currency.USD, Currency.PLN, BigDecimal.valueOf(3.49)));
 
         // when
         Mono<CustomerDto> resultMono = sut.execute(request).map(ExecutionResult::handle);
@@ -161,9 +349,10 @@ class CurrencyExchangeCommandTest {
         // then
         StepVerifier.create(resultMono)
                 .expectErrorSatisfies(error -> assertThat(error)
-                        .isInstanceOf(CurrencyAccountNotFoundException.class)
-                        .hasRootCauseMessage("Customer with id %s does not have account with following currency %s".formatted(customerId, Currency.USD))
-                );
+                        .hasRootCauseInstanceOf(CurrencyAccountNotFoundException.class)
+                        .hasMessageContaining("Customer with id %s does not have account with following currency %s".formatted(customerId, Currency.USD))
+                )
+                .verify();
     }
 
 
@@ -175,10 +364,18 @@ class CurrencyExchangeCommandTest {
     }
 
 
+    public static Stream<Arguments> crossCurrencyExchangeMethodSource() {
+        return Stream.of(
+                Arguments.of(Currency.USD, Currency.EUR, BigDecimal.TEN, new BigDecimal("9.75")),
+                Arguments.of(Currency.EUR, Currency.USD, BigDecimal.TEN, new BigDecimal("10.26"))
+        );
+    }
+
+
     public static Stream<Arguments> fromPlnCurrencyExchangeMethodSource() {
         return Stream.of(
                 Arguments.of(Currency.EUR, BigDecimal.TEN, new BigDecimal("2.34")),
                 Arguments.of(Currency.USD, new BigDecimal("3.99"), new BigDecimal("0.96"))
         );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+package pl.codehouse.nn.bank.customer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import pl.codehouse.nn.bank.account.AccountBalanceChangedEvent;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class CustomerCacheTest {
+    private static final long CUSTOMER_ID = 1000L;
+    private static final CustomerDto CUSTOMER = new CustomerDto(CUSTOMER_ID, "John", "Doe",
+            List.of(new CurrencyAccountDto(Currency.PLN, BigDecimal.TEN, true)));
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CustomerCacheProperties properties = new CustomerCacheProperties(Duration.ofMinutes(1), 100,
+            new CustomerCacheProperties.Kafka(true, "customer-balance-changes"));
+    private final CustomerCache sut = new CustomerCache(properties, meterRegistry);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    @DisplayName("should load customer once and serve following reads from cache")
+    void should_LoadCustomerOnce_And_ServeFollowingReadsFromCache() {
+        // when
+        StepVerifier.create(sut.get(CUSTOMER_ID, this::load)).expectNext(CUSTOMER).verifyComplete();
+        StepVerifier.create(sut.get(CUSTOMER_ID, this::load)).expectNext(CUSTOMER).verifyComplete();
+
+        // then
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CustomerCache.CACHE_NAME).tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CustomerCache.CACHE_NAME).tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("should reload customer when balance of its accounts changed")
+    void should_ReloadCustomer_When_BalanceOfItsAccountsChanged() {
+        // given
+        sut.get(CUSTOMER_ID, this::load).block();
+
+        // when
+        sut.onAccountBalanceChanged(new AccountBalanceChangedEvent(CUSTOMER_ID));
+
+        // then
+        StepVerifier.create(sut.get(CUSTOMER_ID, this::load)).expectNext(CUSTOMER).verifyComplete();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should publish balance change to other nodes and reload customer when balance changed on another node")
+    @SuppressWarnings("unchecked")
+    void should_ReloadCustomer_When_BalanceChangedOnAnotherNode() {
+        // given
+        KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+        given(kafkaTemplate.send(anyString(), anyString(), anyString())).willReturn(new CompletableFuture<>());
+        var invalidation = new CustomerCacheKafkaInvalidation(kafkaTemplate, sut, properties);
+        sut.get(CUSTOMER_ID, this::load).block();
+
+        // when
+        invalidation.onAccountBalanceChanged(new AccountBalanceChangedEvent(CUSTOMER_ID));
+        invalidation.onBalanceChanged(String.valueOf(CUSTOMER_ID));
+
+        // then
+        then(kafkaTemplate).should().send("customer-balance-changes", "1000", "1000");
+        StepVerifier.create(sut.get(CUSTOMER_ID, this::load)).expectNext(CUSTOMER).verifyComplete();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should serve put customer without loading it")
+    void should_ServePutCustomer_WithoutLoadingIt() {
+        // given
+        sut.put(CUSTOMER);
+
+        // when
+        Mono<CustomerDto> customerMono = sut.get(CUSTOMER_ID, this::load);
+
+        // then
+        StepVerifier.create(customerMono).expectNext(CUSTOMER).verifyComplete();
+        assertThat(loads.get()).isZero();
+    }
+
+    @Test
+    @DisplayName("should not cache customer which was not found")
+    void should_NotCacheCustomer_When_NotFound() {
+        // when
+        StepVerifier.create(sut.get(CUSTOMER_ID, id -> {
+            loads.incrementAndGet();
+            return Mono.empty();
+        })).verifyComplete();
+
+        // then
+        StepVerifier.create(sut.get(CUSTOMER_ID, this::load)).expectNext(CUSTOMER).verifyComplete();
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private Mono<CustomerDto> load(long customerId) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return CUSTOMER;
+        });
+    }
+}
@@ -0,0 +1,57 @@
+package pl.codehouse.nn.bank.customer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+
+class CustomerCsvTest {
+
+    @Test
+    @DisplayName("should format a line per currency account of the customer")
+    void should_FormatLinePerCurrencyAccount() {
+        // given
+        var customer = new CustomerDto(1000L, "Peter", "Pan", List.of(
+                new CurrencyAccountDto(Currency.PLN, new BigDecimal("199.99"), true),
+                new CurrencyAccountDto(Currency.USD, new BigDecimal("0.00"), false)));
+
+        // when
+        var lines = CustomerCsv.lines(customer);
+
+        // then
+        assertThat(lines).isEqualTo("""
+                1000,Peter,Pan,PLN,199.99,true
+                1000,Peter,Pan,USD,0.00,false
+                """);
+    }
+
+    @Test
+    @DisplayName("should format a single line with empty account columns when customer has no accounts")
+    void should_FormatSingleLine_When_CustomerHasNoAccounts() {
+        // given
+        var customer = new CustomerDto(1000L, "Peter", "Pan", List.of());
+
+        // when
+        var lines = CustomerCsv.lines(customer);
+
+        // then
+        assertThat(lines).isEqualTo("1000,Peter,Pan,,,\n");
+    }
+
+    @Test
+    @DisplayName("should quote names containing separators or quotes")
+    void should_QuoteNamesContainingSeparatorsOrQuotes() {
+        // given
+        var customer = new CustomerDto(1000L, "Pan, Peter", "\"Captain\" Hook", List.of());
+
+        // when
+        var lines = CustomerCsv.lines(customer);
+
+        // then
+        assertThat(lines).isEqualTo("1000,\"Pan, Peter\",\"\"\"Captain\"\" Hook\",,,\n");
+    }
+}
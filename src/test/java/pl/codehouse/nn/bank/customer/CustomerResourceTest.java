@@ -5,15 +5,21 @@ import static io.restassured.module.webtestclient.RestAssuredWebTestClient.webTe
 import static org.hamcrest.Matchers.aMapWithSize;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -22,11 +28,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import pl.codehouse.nn.bank.ExecutionResult;
 import pl.codehouse.nn.bank.account.Currency;
 import pl.codehouse.nn.bank.account.CurrencyAccountDto;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 
@@ -43,6 +51,15 @@ private final static Logger log = LoggerFactory.getLogger(CustomerResourceTest.c
     @MockitoBean
     private CurrencyExchangeCommand exchangeCommand;
 
+    @MockitoBean
+    private CreateExchangeQuoteCommand createExchangeQuoteCommand;
+
+    @MockitoBean
+    private BulkCreateCustomersCommand bulkCreateCustomersCommand;
+
+    @MockitoBean
+    private BatchExchangeCommand batchExchangeCommand;
+
     @MockitoBean
     private CustomerApi customerApi;
 
@@ -86,6 +103,79 @@ private final static Logger log = LoggerFactory.getLogger(CustomerResourceTest.c
                 .body("accountBalance[1].isMainAccount", equalTo(false));
     }
 
+    @Test
+    @DisplayName("should return page of customers after the given id with the id of the next page")
+    void should_ReturnPageOfCustomers_AfterGivenId() {
+        // given
+        given(customerApi.fetchCustomers(100L, 2)).willReturn(Mono.just(CustomerPage.of(List.of(
+                new CustomerDto(101L, "Wendy", "Darling", List.of(new CurrencyAccountDto(Currency.PLN, new BigDecimal("5.00"), true))),
+                new CustomerDto(102L, "John", "Darling", List.of())), 2)));
+
+        // when & then
+        given()
+                .when()
+                .get("/customers?after=100&limit=2")
+
+                .then()
+                .status(HttpStatus.OK)
+                .body("customers", hasSize(2))
+                .body("customers[0].accountId", equalTo(101))
+                .body("customers[0].accountBalance", hasSize(1))
+                .body("customers[1].accountId", equalTo(102))
+                .body("nextAfter", equalTo(102));
+    }
+
+    @Test
+    @DisplayName("should return 400 Bad Request when page limit exceeds the maximum")
+    void should_ReturnBadRequest_When_PageLimitExceedsMaximum() {
+        // when & then
+        given()
+                .when()
+                .get("/customers?limit=1001")
+
+                .then()
+                .status(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    @DisplayName("should export all customers as CSV with a header line")
+    void should_ExportAllCustomersAsCsv_WithHeaderLine() {
+        // given
+        given(customerApi.exportCustomers(0L)).willReturn(Flux.just(
+                new CustomerDto(100L, "Peter", "Pan", List.of(new CurrencyAccountDto(Currency.PLN, new BigDecimal("199.99"), true))),
+                new CustomerDto(101L, "Wendy", "Darling", List.of())));
+
+        // when & then
+        webClient.get()
+                .uri("/customers/export")
+                .accept(MediaType.parseMediaType("text/csv"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("""
+                        customerId,firstName,lastName,currency,amount,isMainAccount
+                        100,Peter,Pan,PLN,199.99,true
+                        101,Wendy,Darling,,,
+                        """);
+    }
+
+    @Test
+    @DisplayName("should export customers after the given id as NDJSON")
+    void should_ExportCustomersAfterGivenIdAsNdjson() {
+        // given
+        given(customerApi.exportCustomers(100L)).willReturn(Flux.just(new CustomerDto(101L, "Wendy", "Darling", List.of())));
+
+        // when & then
+        webClient.get()
+                .uri("/customers/export?after=100")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(CustomerDto.class)
+                .hasSize(1)
+                .contains(new CustomerDto(101L, "Wendy", "Darling", List.of()));
+    }
+
     @Test
     @DisplayName("should return 404 Not Found when customer ID does not exist")
     void should_Return404NotFound_When_CustomerIdDoesNotExist() {
@@ -227,6 +317,36 @@ private final static Logger log = LoggerFactory.getLogger(CustomerResourceTest.c
         ;
     }
 
+    @Test
+    @DisplayName("should return 400 Validation Failed when main account balance has more fraction digits than minor units")
+    void should_Return400ValidationFailed_When_MainAccountBalanceHasMoreThanTwoFractionDigits() {
+        // given
+        var request = Map.of(
+                "firstName", "Peter",
+                "lastName", "Pan",
+                "mainAccountBalance", "10.005",
+                "mainAccountCurrency", "PLN",
+                "additionalCurrencies", List.of("USD")
+        );
+
+        // when & then
+        given()
+                .contentType(APPLICATION_JSON_VALUE)
+                .body(request)
+
+                .when()
+                .post("/customers")
+
+                .then()
+                .log().ifValidationFails()
+                .status(HttpStatus.BAD_REQUEST)
+                .body("title", equalTo("Validation Failed"))
+                .body("errors", aMapWithSize(1))
+                .body("errors", hasEntry("mainAccountBalance", "Digits"))
+        ;
+        then(createCustomerCommand).shouldHaveNoInteractions();
+    }
+
     @Test
     @DisplayName("should return 400 Validation Failed when additionalCurrencies is missing")
     void should_Return400ValidationFailed_When_AdditionalCurrenciesIsMissing() {
@@ -288,5 +408,67 @@ private final static Logger log = LoggerFactory.getLogger(CustomerResourceTest.c
         ;
     }
 
+    @Test
+    @DisplayName("should return 201 with exchange quote when valid quote request passed")
+    void should_Return201WithExchangeQuote_When_ValidQuoteRequestPassed() {
+        // given
+        long customerId = 100L;
+        var quoteId = UUID.fromString("6f1c1f3e-4a0f-4b7c-9a53-3d1f4e1c2b10");
+        var request = Map.of(
+                "fromCurrency", "PLN",
+                "toCurrency", "EUR",
+                "amount", "100.00"
+        );
+        var quote = new ExchangeQuote(quoteId, customerId, Currency.PLN, Currency.EUR, new BigDecimal("0.2346811"),
+                new BigDecimal("100.00"), new BigDecimal("23.47"), LocalDate.parse("2025-01-14"), Instant.parse("2025-01-14T12:00:30Z"));
+
+        given(createExchangeQuoteCommand.execute(any())).willReturn(Mono.just(ExecutionResult.success(quote)));
+
+        // when & then
+        given()
+                .contentType(APPLICATION_JSON_VALUE)
+                .body(request)
+
+                .when()
+                .post("/customers/{customerId}/exchange/quote", String.valueOf(customerId))
+
+                .then()
+                .log().ifValidationFails()
+                .status(CREATED)
+                .body("quoteId", equalTo(quoteId.toString()))
+                .body("fromCurrency", equalTo("PLN"))
+                .body("toCurrency", equalTo("EUR"))
+                .body("fromAmount", equalTo(100.00f))
+                .body("toAmount", equalTo(23.47f))
+                .body("expiresAt", equalTo("2025-01-14T12:00:30Z"))
+                .body("$", not(hasKey("customerId")))
+        ;
+    }
+
+    @Test
+    @DisplayName("should return 400 Validation Failed when exchange amount has more fraction digits than minor units")
+    void should_Return400ValidationFailed_When_ExchangeAmountHasMoreThanTwoFractionDigits() {
+        // given
+        var request = Map.of(
+                "fromCurrency", "PLN",
+                "toCurrency", "EUR",
+                "amount", "10.005"
+        );
 
+        // when & then
+        given()
+                .contentType(APPLICATION_JSON_VALUE)
+                .body(request)
+
+                .when()
+                .post("/customers/{customerId}/exchange", "100")
+
+                .then()
+                .log().ifValidationFails()
+                .status(HttpStatus.BAD_REQUEST)
+                .body("title", equalTo("Validation Failed"))
+                .body("errors", aMapWithSize(1))
+                .body("errors", hasEntry("amount", "Digits"))
+        ;
+    }
 }
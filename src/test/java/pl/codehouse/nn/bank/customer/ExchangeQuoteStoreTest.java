@@ -0,0 +1,90 @@
+package pl.codehouse.nn.bank.customer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pl.codehouse.nn.bank.account.Currency;
+
+class ExchangeQuoteStoreTest {
+    private static final Instant NOW = Instant.parse("2025-01-14T12:00:00Z");
+    private static final long CUSTOMER_ID = 1000L;
+
+    private final ExchangeQuoteStore sut = new ExchangeQuoteStore(
+            new ExchangeQuoteProperties(Duration.ofMinutes(1), 100), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    @Test
+    @DisplayName("should hand out quote only once")
+    void should_handOutQuoteOnlyOnce() {
+        // given
+        var quote = quoteExpiringAt(NOW.plusSeconds(30));
+        sut.save(quote);
+
+        // when & then
+        assertThat(sut.take(CUSTOMER_ID, quote.quoteId())).contains(quote);
+        assertThat(sut.take(CUSTOMER_ID, quote.quoteId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should not hand out quote to another customer")
+    void should_notHandOutQuote_When_TakenByAnotherCustomer() {
+        // given
+        var quote = quoteExpiringAt(NOW.plusSeconds(30));
+        sut.save(quote);
+
+        // when & then
+        assertThat(sut.take(CUSTOMER_ID + 1, quote.quoteId())).isEmpty();
+        assertThat(sut.take(CUSTOMER_ID, quote.quoteId())).contains(quote);
+    }
+
+    @Test
+    @DisplayName("should not hand out expired quote")
+    void should_notHandOutQuote_When_Expired() {
+        // given
+        var quote = quoteExpiringAt(NOW);
+        sut.save(quote);
+
+        // when & then
+        assertThat(sut.take(CUSTOMER_ID, quote.quoteId())).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should hand out quote again once put back")
+    void should_handOutQuoteAgain_When_PutBack() {
+        // given
+        var quote = quoteExpiringAt(NOW.plusSeconds(30));
+        sut.save(quote);
+        sut.take(CUSTOMER_ID, quote.quoteId());
+
+        // when
+        sut.putBack(quote);
+
+        // then
+        assertThat(sut.take(CUSTOMER_ID, quote.quoteId())).contains(quote);
+    }
+
+    @Test
+    @DisplayName("should not put back expired quote")
+    void should_notPutBackQuote_When_Expired() {
+        // given
+        var quote = quoteExpiringAt(NOW);
+
+        // when
+        sut.putBack(quote);
+
+        // then
+        assertThat(sut.take(CUSTOMER_ID, quote.quoteId())).isEmpty();
+    }
+
+    private static ExchangeQuote quoteExpiringAt(Instant expiresAt) {
+        return new ExchangeQuote(UUID.randomUUID(), CUSTOMER_ID, Currency.PLN, Currency.EUR, new BigDecimal("0.2346811"),
+                BigDecimal.TEN, new BigDecimal("2.35"), LocalDate.parse("2025-01-14"), expiresAt);
+    }
+}
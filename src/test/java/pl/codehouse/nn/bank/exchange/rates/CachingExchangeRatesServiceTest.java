@@ -0,0 +1,141 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class CachingExchangeRatesServiceTest {
+    private static final String TABLE = "A";
+    private static final Instant FETCHED_AT = Instant.parse("2024-11-29T12:00:00Z");
+    private static final Duration MAX_STALENESS = Duration.ofHours(24);
+    private static final ExchangeRateDto USD_RATE = new ExchangeRateDto(Currency.USD, new BigDecimal("4.1658"), LocalDate.parse("2024-11-29"), FETCHED_AT);
+    private static final ExchangeRateDto EUR_RATE = new ExchangeRateDto(Currency.EUR, new BigDecimal("4.2611"), LocalDate.parse("2024-11-29"), FETCHED_AT);
+
+    @Mock
+    private ExchangeRatesService delegate;
+
+    private ExchangeRatesCache cache;
+
+    private CachingExchangeRatesService sut;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ExchangeRatesCache();
+        sut = cachingServiceAt(FETCHED_AT.plus(Duration.ofMinutes(5)));
+    }
+
+    @Test
+    @DisplayName("should fetch rate from delegate and store it in cache when rate is not cached yet")
+    void should_fetchRateFromDelegateAndCacheIt_When_RateIsNotCached() {
+        // given
+        given(delegate.fetchCurrentRatesFor(Currency.USD)).willReturn(Mono.just(USD_RATE));
+
+        // when & then
+        StepVerifier.create(sut.fetchCurrentRatesFor(Currency.USD))
+                .expectNext(USD_RATE)
+                .verifyComplete();
+
+        assertThat(cache.lookup(TABLE, Currency.USD)).contains(USD_RATE);
+        then(delegate).should(times(1)).fetchCurrentRatesFor(Currency.USD);
+    }
+
+    @Test
+    @DisplayName("should serve rate from cache without calling delegate when rate is already cached")
+    void should_serveRateFromCache_When_RateIsAlreadyCached() {
+        // given
+        cache.put(TABLE, USD_RATE);
+
+        // when & then
+        StepVerifier.create(sut.fetchCurrentRatesFor(Currency.USD))
+                .expectNext(USD_RATE)
+                .verifyComplete();
+
+        then(delegate).should(never()).fetchCurrentRatesFor(Currency.USD);
+    }
+
+    @Test
+    @DisplayName("should keep the most recently fetched rate when an older rate is stored")
+    void should_keepNewerRate_When_OlderRateIsStored() {
+        // given
+        var olderRate = new ExchangeRateDto(Currency.USD, new BigDecimal("4.0000"), LocalDate.parse("2024-11-28"), FETCHED_AT.minusSeconds(60));
+        cache.put(TABLE, USD_RATE);
+
+        // when
+        cache.put(TABLE, olderRate);
+
+        // then
+        assertThat(cache.lookup(TABLE, Currency.USD)).contains(USD_RATE);
+    }
+
+    @Test
+    @DisplayName("should expose age of the cached rate")
+    void should_exposeAgeOfCachedRate() {
+        // given
+        var clock = Clock.fixed(FETCHED_AT.plus(Duration.ofMinutes(5)), ZoneOffset.UTC);
+        cache.put(TABLE, USD_RATE);
+
+        // when & then
+        assertThat(cache.lookup(TABLE, Currency.USD))
+                .hasValueSatisfying(rate -> assertThat(rate.age(clock)).isEqualTo(Duration.ofMinutes(5)));
+    }
+
+    @Test
+    @DisplayName("should fetch rate from delegate when cached rate is older than the staleness bound")
+    void should_fetchRateFromDelegate_When_CachedRateIsTooOld() {
+        // given
+        cache.put(TABLE, USD_RATE);
+        var unavailable = new ExchangeRatesUnavailableException("USD rate", new IllegalStateException("The NBP API circuit is open"));
+        given(delegate.fetchCurrentRatesFor(Currency.USD)).willReturn(Mono.error(unavailable));
+        var staleSut = cachingServiceAt(FETCHED_AT.plus(MAX_STALENESS).plusSeconds(1));
+
+        // when & then
+        StepVerifier.create(staleSut.fetchCurrentRatesFor(Currency.USD))
+                .expectErrorMatches(error -> error == unavailable)
+                .verify();
+        then(delegate).should(times(1)).fetchCurrentRatesFor(Currency.USD);
+    }
+
+    @Test
+    @DisplayName("should fetch snapshot from delegate when any cached rate is older than the staleness bound")
+    void should_fetchSnapshotFromDelegate_When_CachedSnapshotIsTooOld() {
+        // given
+        cache.publish(TABLE, RatesSnapshot.of("232/A/NBP/2024", List.of(USD_RATE, EUR_RATE)));
+        var fresh = RatesSnapshot.of("233/A/NBP/2024", List.of(
+                new ExchangeRateDto(Currency.USD, new BigDecimal("4.1000"), LocalDate.parse("2024-11-30"), FETCHED_AT.plus(MAX_STALENESS)),
+                new ExchangeRateDto(Currency.EUR, new BigDecimal("4.2000"), LocalDate.parse("2024-11-30"), FETCHED_AT.plus(MAX_STALENESS))));
+        given(delegate.fetchRatesSnapshot()).willReturn(Mono.just(fresh));
+        var staleSut = cachingServiceAt(FETCHED_AT.plus(MAX_STALENESS).plusSeconds(1));
+
+        // when & then
+        StepVerifier.create(staleSut.fetchRatesSnapshot())
+                .assertNext(snapshot -> assertThat(snapshot.no()).contains("233/A/NBP/2024"))
+                .verifyComplete();
+        then(delegate).should(times(1)).fetchRatesSnapshot();
+    }
+
+    private CachingExchangeRatesService cachingServiceAt(Instant now) {
+        var resilience = new ExchangeRatesProperties.Resilience(true, Duration.ofSeconds(5), Duration.ofSeconds(1), MAX_STALENESS, 5, Duration.ofSeconds(30));
+        var properties = new ExchangeRatesProperties("http://localhost", TABLE, ExchangeRatesProperties.FetchMode.TABLE, null, null, resilience, null);
+        return new CachingExchangeRatesService(delegate, cache, properties, Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,108 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pl.codehouse.nn.bank.account.Currency;
+import pl.codehouse.nn.bank.account.Money;
+
+class CrossRateMatrixTest {
+    private static final LocalDate EFFECTIVE_DATE = LocalDate.parse("2025-01-14");
+    private static final Instant FETCHED_AT = Instant.parse("2025-01-14T12:00:00Z");
+    private static final ExchangeRateDto USD_RATE = new ExchangeRateDto(Currency.USD, new BigDecimal("4.1658"), EFFECTIVE_DATE, FETCHED_AT);
+    private static final ExchangeRateDto EUR_RATE = new ExchangeRateDto(Currency.EUR, new BigDecimal("4.2611"), EFFECTIVE_DATE, FETCHED_AT);
+
+    @Test
+    @DisplayName("should provide a conversion for every pair of currencies when snapshot is complete")
+    void should_provideConversionForEveryPair_When_SnapshotIsComplete() {
+        // given
+        var crossRates = RatesSnapshot.of("009/A/NBP/2025", List.of(USD_RATE, EUR_RATE)).crossRates();
+
+        // when & then
+        for (Currency from : Currency.values()) {
+            for (Currency to : Currency.values()) {
+                var conversion = crossRates.conversion(from, to);
+                assertThat(conversion.from()).isEqualTo(from);
+                assertThat(conversion.to()).isEqualTo(to);
+                assertThat(conversion.scale()).isEqualTo(to.scale());
+            }
+        }
+        assertThat(crossRates.conversion(Currency.EUR, Currency.EUR).convert(new BigDecimal("12.34"))).isEqualTo("12.34");
+    }
+
+    @Test
+    @DisplayName("should convert between foreign currencies through the base currency")
+    void should_convertThroughBaseCurrency_When_ExchangingBetweenForeignCurrencies() {
+        // given
+        var crossRates = RatesSnapshot.of("009/A/NBP/2025", List.of(USD_RATE, EUR_RATE)).crossRates();
+
+        // when
+        var usdToEur = crossRates.conversion(Currency.USD, Currency.EUR);
+        var eurToPln = crossRates.conversion(Currency.EUR, Currency.PLN);
+        var plnToUsd = crossRates.conversion(Currency.PLN, Currency.USD);
+
+        // then
+        assertThat(usdToEur.convert(new BigDecimal("100"))).isEqualTo("97.76");
+        assertThat(usdToEur.rate()).isEqualByComparingTo("0.977634883011429");
+        assertThat(eurToPln.convert(new BigDecimal("100"))).isEqualTo("426.11");
+        assertThat(plnToUsd.convert(new BigDecimal("100"))).isEqualTo("24.00");
+    }
+
+    @Test
+    @DisplayName("should convert money in minor units exactly as decimal amounts for every pair of currencies")
+    void should_convertMoneyAsDecimalAmounts_ForEveryPair() {
+        // given
+        var crossRates = RatesSnapshot.of("009/A/NBP/2025", List.of(USD_RATE, EUR_RATE)).crossRates();
+
+        // when & then
+        for (Currency from : Currency.values()) {
+            for (Currency to : Currency.values()) {
+                var conversion = crossRates.conversion(from, to);
+                for (long minorUnits = -2_000; minorUnits <= 2_000; minorUnits += 7) {
+                    var money = Money.ofMinor(minorUnits, from);
+                    assertThat(conversion.convert(money).toBigDecimal()).isEqualTo(conversion.convert(money.toBigDecimal()));
+                }
+            }
+        }
+        assertThat(crossRates.conversion(Currency.USD, Currency.EUR).convert(Money.ofMinor(10_000, Currency.USD)))
+                .isEqualTo(Money.ofMinor(9_776, Currency.EUR));
+        assertThatThrownBy(() -> crossRates.conversion(Currency.USD, Currency.EUR).convert(Money.ofMinor(100, Currency.PLN)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("should round a tie half down when buying with the base currency and half up otherwise")
+    void should_roundTieHalfDown_When_BuyingWithBaseCurrency() {
+        // given
+        var usdRate = new ExchangeRateDto(Currency.USD, new BigDecimal("4.0000"), EFFECTIVE_DATE, FETCHED_AT);
+        var eurRate = new ExchangeRateDto(Currency.EUR, new BigDecimal("4.0500"), EFFECTIVE_DATE, FETCHED_AT);
+        var crossRates = RatesSnapshot.of(null, List.of(usdRate, eurRate)).crossRates();
+        var plnToUsd = crossRates.conversion(Currency.PLN, Currency.USD);
+        var eurToPln = crossRates.conversion(Currency.EUR, Currency.PLN);
+
+        // when & then
+        assertThat(plnToUsd.convert(new BigDecimal("0.10"))).isEqualTo("0.02");
+        assertThat(plnToUsd.convert(Money.ofMinor(10, Currency.PLN))).isEqualTo(Money.ofMinor(2, Currency.USD));
+        assertThat(eurToPln.convert(new BigDecimal("0.10"))).isEqualTo("0.41");
+        assertThat(eurToPln.convert(Money.ofMinor(10, Currency.EUR))).isEqualTo(Money.ofMinor(41, Currency.PLN));
+    }
+
+    @Test
+    @DisplayName("should fail lookup of pair when rate of any currency is unknown")
+    void should_failLookup_When_RateIsUnknown() {
+        // given
+        var crossRates = RatesSnapshot.of(null, List.of(USD_RATE)).crossRates();
+
+        // when & then
+        assertThat(crossRates.conversion(Currency.USD, Currency.PLN).convert(BigDecimal.ONE)).isEqualTo("4.17");
+        assertThatThrownBy(() -> crossRates.conversion(Currency.USD, Currency.EUR))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("No exchange rate available for exchanging USD to EUR");
+    }
+}
@@ -0,0 +1,105 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ExchangeRatesCircuitBreakerTest {
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-14T12:00:00Z"));
+
+    private ExchangeRatesCircuitBreaker sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new ExchangeRatesCircuitBreaker(2, OPEN_DURATION, clock);
+    }
+
+    @Test
+    @DisplayName("should open the circuit when consecutive failures reach the threshold")
+    void should_openCircuit_When_ConsecutiveFailuresReachThreshold() {
+        // when
+        sut.onFailure();
+        sut.onSuccess();
+        sut.onFailure();
+        boolean permittedBeforeOpening = sut.tryAcquirePermission();
+        sut.onFailure();
+
+        // then
+        assertThat(permittedBeforeOpening).isTrue();
+        assertThat(sut.state()).isEqualTo(ExchangeRatesCircuitBreaker.State.OPEN);
+        assertThat(sut.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    @DisplayName("should let a single probe through and close the circuit when it succeeds")
+    void should_letSingleProbeThrough_When_OpenDurationPassed() {
+        // given
+        sut.onFailure();
+        sut.onFailure();
+        clock.advance(OPEN_DURATION);
+
+        // when
+        boolean probePermitted = sut.tryAcquirePermission();
+        boolean concurrentCallPermitted = sut.tryAcquirePermission();
+        sut.onSuccess();
+
+        // then
+        assertThat(probePermitted).isTrue();
+        assertThat(concurrentCallPermitted).isFalse();
+        assertThat(sut.state()).isEqualTo(ExchangeRatesCircuitBreaker.State.CLOSED);
+        assertThat(sut.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    @DisplayName("should open the circuit again when the probe fails")
+    void should_reopenCircuit_When_ProbeFails() {
+        // given
+        sut.onFailure();
+        sut.onFailure();
+        clock.advance(OPEN_DURATION);
+        sut.tryAcquirePermission();
+
+        // when
+        sut.onFailure();
+
+        // then
+        assertThat(sut.state()).isEqualTo(ExchangeRatesCircuitBreaker.State.OPEN);
+        assertThat(sut.tryAcquirePermission()).isFalse();
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
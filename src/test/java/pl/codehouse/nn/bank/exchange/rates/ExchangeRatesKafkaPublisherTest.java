@@ -0,0 +1,70 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import pl.codehouse.nn.bank.account.Currency;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeRatesKafkaPublisherTest {
+    private static final String TABLE = "A";
+    private static final String TOPIC = "exchange-rates";
+    private static final Instant FETCHED_AT = Instant.parse("2025-01-14T12:00:00Z");
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private ExchangeRatesKafkaPublisher sut;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new ExchangeRatesProperties("http://localhost", TABLE, ExchangeRatesProperties.FetchMode.TABLE, null, null, null,
+                new ExchangeRatesProperties.Kafka(true, true, TOPIC));
+        sut = new ExchangeRatesKafkaPublisher(kafkaTemplate, new ObjectMapper().findAndRegisterModules(), properties);
+    }
+
+    @Test
+    @DisplayName("should publish only newly fetched numbered tables, not the last known good rates served while NBP is down")
+    void should_publishOnlyNewNumberedTables_When_RatesAreRefreshed() {
+        // given
+        given(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .willReturn(CompletableFuture.completedFuture(new SendResult<>(null, null)));
+        var fetched = snapshot("009/A/NBP/2025", FETCHED_AT);
+        var fetchedAgain = snapshot("009/A/NBP/2025", FETCHED_AT.plusSeconds(1800));
+        var fromHistory = snapshot(null, FETCHED_AT);
+        var fetchedOneByOne = snapshot(null, FETCHED_AT.plusSeconds(3600));
+        var nextTable = snapshot("010/A/NBP/2025", FETCHED_AT.plusSeconds(7200));
+
+        // when
+        sut.onRatesRefreshed(new ExchangeRatesRefreshedEvent(TABLE, fetched));
+        sut.onRatesRefreshed(new ExchangeRatesRefreshedEvent(TABLE, fetchedAgain));
+        sut.onRatesRefreshed(new ExchangeRatesRefreshedEvent(TABLE, fromHistory));
+        sut.onRatesRefreshed(new ExchangeRatesRefreshedEvent(TABLE, fetchedOneByOne));
+        sut.onRatesRefreshed(new ExchangeRatesRefreshedEvent(TABLE, nextTable));
+
+        // then
+        then(kafkaTemplate).should(times(2)).send(anyString(), anyString(), anyString());
+    }
+
+    private static RatesSnapshot snapshot(String no, Instant fetchedAt) {
+        return RatesSnapshot.of(no, List.of(
+                new ExchangeRateDto(Currency.USD, new BigDecimal("4.1658"), LocalDate.parse("2025-01-14"), fetchedAt),
+                new ExchangeRateDto(Currency.EUR, new BigDecimal("4.2611"), LocalDate.parse("2025-01-14"), fetchedAt)));
+    }
+}
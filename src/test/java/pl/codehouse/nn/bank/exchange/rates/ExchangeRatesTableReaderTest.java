@@ -0,0 +1,72 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import pl.codehouse.nn.bank.account.Currency;
+
+class ExchangeRatesTableReaderTest {
+    private static final String TABLE = """
+            [{"table":"A","no":"009/A/NBP/2025","effectiveDate":"2025-01-14","rates":[
+              {"currency":"bat (Tajlandia)","code":"THB","mid":0.1204},
+              {"currency":"dolar amerykański","code":"USD","mid":4.1658},
+              {"currency":"euro","code":"EUR","mid":4.2611,"extra":{"code":"GBP","mid":1}}
+            ]},
+            {"table":"A","no":"010/A/NBP/2025","effectiveDate":"2025-01-15","rates":[{"code":"USD","mid":9.9999}]}]
+            """;
+
+    @Test
+    @DisplayName("should read the rates of supported currencies from the first table when fed in small chunks")
+    void should_readRatesOfSupportedCurrencies_When_FedInSmallChunks() throws IOException {
+        // given
+        byte[] body = TABLE.getBytes(StandardCharsets.UTF_8);
+
+        // when
+        ExchangeRatesTableReader.Table table;
+        try (var reader = new ExchangeRatesTableReader(new JsonFactory())) {
+            for (int offset = 0; offset < body.length; offset += 7) {
+                reader.feed(DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(body, offset, Math.min(offset + 7, body.length))));
+            }
+            table = reader.finish();
+        }
+
+        // then
+        assertThat(table.no()).isEqualTo("009/A/NBP/2025");
+        assertThat(table.effectiveDate()).isEqualTo(LocalDate.parse("2025-01-14"));
+        assertThat(table.midsByOrdinal()[Currency.USD.ordinal()]).isEqualTo("4.1658");
+        assertThat(table.midsByOrdinal()[Currency.EUR.ordinal()]).isEqualTo("4.2611");
+        assertThat(table.midsByOrdinal()[Currency.PLN.ordinal()]).isNull();
+    }
+
+    @Test
+    @DisplayName("should fail when the response ends before the table is complete")
+    void should_fail_When_ResponseEndsBeforeTableIsComplete() throws IOException {
+        // given
+        byte[] body = TABLE.substring(0, TABLE.indexOf("EUR")).getBytes(StandardCharsets.UTF_8);
+
+        // when & then
+        try (var reader = new ExchangeRatesTableReader(new JsonFactory())) {
+            reader.feed(DefaultDataBufferFactory.sharedInstance.wrap(body));
+            assertThatThrownBy(reader::finish).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    @DisplayName("should fail when the response is not an array of tables")
+    void should_fail_When_ResponseIsNotArrayOfTables() throws IOException {
+        // when & then
+        try (var reader = new ExchangeRatesTableReader(new JsonFactory())) {
+            assertThatThrownBy(() -> reader.feed(DefaultDataBufferFactory.sharedInstance.wrap("{\"no\":1}".getBytes(StandardCharsets.UTF_8))))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Unexpected token START_OBJECT in exchange rates table, expected START_ARRAY");
+        }
+    }
+}
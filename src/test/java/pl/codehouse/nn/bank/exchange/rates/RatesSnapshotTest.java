@@ -0,0 +1,61 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import pl.codehouse.nn.bank.account.Currency;
+
+class RatesSnapshotTest {
+    private static final LocalDate EFFECTIVE_DATE = LocalDate.parse("2025-01-14");
+    private static final Instant FETCHED_AT = Instant.parse("2025-01-14T12:00:00Z");
+    private static final ExchangeRateDto USD_RATE = new ExchangeRateDto(Currency.USD, new BigDecimal("4.1658"), EFFECTIVE_DATE, FETCHED_AT);
+    private static final ExchangeRateDto EUR_RATE = new ExchangeRateDto(Currency.EUR, new BigDecimal("4.2611"), EFFECTIVE_DATE, FETCHED_AT);
+
+    @Test
+    @DisplayName("should resolve base currency to rate of one when snapshot holds any rate")
+    void should_resolveBaseCurrencyToRateOfOne() {
+        // given
+        var snapshot = RatesSnapshot.of("009/A/NBP/2025", List.of(USD_RATE, EUR_RATE));
+
+        // when & then
+        assertThat(snapshot.isComplete()).isTrue();
+        assertThat(snapshot.rateFor(Currency.PLN))
+                .hasValueSatisfying(rate -> assertThat(rate.rate()).isEqualTo(BigDecimal.ONE));
+        assertThat(snapshot.rateFor(Currency.USD)).contains(USD_RATE);
+        assertThat(snapshot.effectiveDate()).contains(EFFECTIVE_DATE);
+    }
+
+    @Test
+    @DisplayName("should create updated copy without touching the original snapshot when newer rate is added")
+    void should_createUpdatedCopy_When_NewerRateIsAdded() {
+        // given
+        var snapshot = RatesSnapshot.of("009/A/NBP/2025", List.of(USD_RATE));
+        var newerUsdRate = new ExchangeRateDto(Currency.USD, new BigDecimal("4.2000"), EFFECTIVE_DATE.plusDays(1), FETCHED_AT.plusSeconds(60));
+
+        // when
+        var updated = snapshot.with(newerUsdRate).with(EUR_RATE);
+
+        // then
+        assertThat(snapshot.rateFor(Currency.USD)).contains(USD_RATE);
+        assertThat(snapshot.isComplete()).isFalse();
+        assertThat(updated.rateFor(Currency.USD)).contains(newerUsdRate);
+        assertThat(updated.rateFor(Currency.EUR)).contains(EUR_RATE);
+        assertThat(updated.no()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("should ignore rate fetched before the one already held by the snapshot")
+    void should_ignoreOlderRate() {
+        // given
+        var snapshot = RatesSnapshot.of("009/A/NBP/2025", List.of(USD_RATE));
+        var olderUsdRate = new ExchangeRateDto(Currency.USD, new BigDecimal("4.0000"), EFFECTIVE_DATE.minusDays(1), FETCHED_AT.minusSeconds(60));
+
+        // when & then
+        assertThat(snapshot.with(olderUsdRate)).isSameAs(snapshot);
+    }
+}
@@ -0,0 +1,94 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class ResilientExchangeRatesServiceTest {
+    private static final String SOURCE_TABLE = "A";
+    private static final Instant NOW = Instant.parse("2025-01-14T13:00:00Z");
+    private static final ExchangeRateDto USD_RATE = new ExchangeRateDto(
+            Currency.USD, new BigDecimal("4.1658"), LocalDate.parse("2025-01-14"), Instant.parse("2025-01-14T12:00:00Z")
+    );
+
+    @Mock
+    private ExchangeRatesService delegate;
+
+    @Mock
+    private ExchangeRatesCache cache;
+
+    @Mock
+    private ExchangeRateHistoryRepository history;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ResilientExchangeRatesService sut;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        var properties = new ExchangeRatesProperties(null, SOURCE_TABLE, ExchangeRatesProperties.FetchMode.TABLE,
+                new ExchangeRatesProperties.Cache(true, Duration.ofMinutes(30), Duration.ZERO),
+                new ExchangeRatesProperties.SingleFlight(true),
+                new ExchangeRatesProperties.Resilience(true, Duration.ofSeconds(5), Duration.ofSeconds(1), Duration.ofHours(24), 5, Duration.ofSeconds(30)),
+                new ExchangeRatesProperties.Kafka(false, false, "exchange-rates"));
+        sut = new ResilientExchangeRatesService(delegate, cache, history, properties, Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("should count the last known good rate served when the NBP API call fails")
+    void should_countStaleRateServed_When_CallFails() {
+        // given
+        given(delegate.fetchCurrentRatesFor(Currency.USD)).willReturn(Mono.error(new IllegalStateException("NBP unavailable")));
+        given(cache.lookup(SOURCE_TABLE, Currency.USD)).willReturn(Optional.of(USD_RATE));
+
+        // when
+        var result = sut.fetchCurrentRatesFor(Currency.USD);
+
+        // then
+        StepVerifier.create(result)
+                .expectNext(USD_RATE)
+                .verifyComplete();
+        assertThat(meterRegistry.get("exchange.rates.stale.served").tag("reason", "failure").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("exchange.rates.stale.served").tag("reason", "slow").counter().count()).isZero();
+        assertThat(meterRegistry.get("exchange.rates.stale.served").tag("reason", "circuit-open").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("should not serve a rates table from the history when it misses a quoted currency")
+    void should_FailWithRatesUnavailable_When_HistoryMissesQuotedCurrency() {
+        // given
+        given(delegate.fetchRatesSnapshot()).willReturn(Mono.error(new IllegalStateException("NBP unavailable")));
+        given(cache.snapshot(SOURCE_TABLE)).willReturn(RatesSnapshot.empty());
+        given(history.findAllAsOf(SOURCE_TABLE, LocalDate.parse("2025-01-14")))
+                .willReturn(Flux.just(ExchangeRateHistoryEntry.from(SOURCE_TABLE, "008/A/NBP/2025", USD_RATE)));
+
+        // when
+        var result = sut.fetchRatesSnapshot();
+
+        // then
+        StepVerifier.create(result)
+                .expectError(ExchangeRatesUnavailableException.class)
+                .verify();
+        assertThat(meterRegistry.get("exchange.rates.stale.served").tag("reason", "failure").counter().count()).isZero();
+    }
+}
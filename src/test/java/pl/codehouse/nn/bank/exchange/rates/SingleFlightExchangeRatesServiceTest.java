@@ -0,0 +1,99 @@
+package pl.codehouse.nn.bank.exchange.rates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import pl.codehouse.nn.bank.account.Currency;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+class SingleFlightExchangeRatesServiceTest {
+    private static final ExchangeRateDto USD_RATE = new ExchangeRateDto(
+            Currency.USD, new BigDecimal("4.1658"), LocalDate.parse("2025-01-14"), Instant.parse("2025-01-14T12:00:00Z")
+    );
+
+    @Mock
+    private ExchangeRatesService delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SingleFlightExchangeRatesService sut;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sut = new SingleFlightExchangeRatesService(delegate, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("should share single delegate call when same currency is requested concurrently")
+    void should_shareSingleDelegateCall_When_SameCurrencyRequestedConcurrently() {
+        // given
+        Sinks.One<ExchangeRateDto> response = Sinks.one();
+        AtomicInteger subscriptions = new AtomicInteger();
+        given(delegate.fetchCurrentRatesFor(Currency.USD)).willReturn(response.asMono().doOnSubscribe(s -> subscriptions.incrementAndGet()));
+
+        // when
+        var first = sut.fetchCurrentRatesFor(Currency.USD).toFuture();
+        var second = sut.fetchCurrentRatesFor(Currency.USD).toFuture();
+        var third = sut.fetchCurrentRatesFor(Currency.USD).toFuture();
+        response.tryEmitValue(USD_RATE);
+
+        // then
+        assertThat(first).isCompletedWithValue(USD_RATE);
+        assertThat(second).isCompletedWithValue(USD_RATE);
+        assertThat(third).isCompletedWithValue(USD_RATE);
+        assertThat(subscriptions).hasValue(1);
+        assertThat(meterRegistry.get("exchange.rates.fetch.calls").tag("outcome", "executed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("exchange.rates.fetch.calls").tag("outcome", "coalesced").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("should start new delegate call when previous call already completed")
+    void should_startNewDelegateCall_When_PreviousCallCompleted() {
+        // given
+        given(delegate.fetchCurrentRatesFor(Currency.USD)).willReturn(Mono.just(USD_RATE));
+
+        // when & then
+        StepVerifier.create(sut.fetchCurrentRatesFor(Currency.USD)).expectNext(USD_RATE).verifyComplete();
+        StepVerifier.create(sut.fetchCurrentRatesFor(Currency.USD)).expectNext(USD_RATE).verifyComplete();
+
+        then(delegate).should(times(2)).fetchCurrentRatesFor(Currency.USD);
+        assertThat(meterRegistry.get("exchange.rates.fetch.calls").tag("outcome", "coalesced").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("should propagate error to all waiting callers and allow retry afterwards")
+    void should_propagateErrorToAllCallers_And_AllowRetry() {
+        // given
+        Sinks.One<ExchangeRateDto> response = Sinks.one();
+        given(delegate.fetchCurrentRatesFor(Currency.USD))
+                .willReturn(response.asMono())
+                .willReturn(Mono.just(USD_RATE));
+
+        // when
+        var first = sut.fetchCurrentRatesFor(Currency.USD).toFuture();
+        var second = sut.fetchCurrentRatesFor(Currency.USD).toFuture();
+        response.tryEmitError(new IllegalStateException("NBP unavailable"));
+
+        // then
+        assertThat(first).isCompletedExceptionally();
+        assertThat(second).isCompletedExceptionally();
+        StepVerifier.create(sut.fetchCurrentRatesFor(Currency.USD)).expectNext(USD_RATE).verifyComplete();
+    }
+}